@@ -0,0 +1,104 @@
+package com.earthquakeviewer.benchmarks;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.QuakeMessage;
+import com.earthquakeviewer.service.EarthquakeJsonDecoder;
+import com.earthquakeviewer.service.QuakeMessageDecoder;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming decoder versus the old readTree + JsonNode walk.
+ * Run with {@code -prof gc} and compare gc.alloc.rate.norm (bytes per operation).
+ * The tree variants include decoding the body into a String first, as the service used to.
+ * The dispatch variants go through the code-peeking realtime decoder; peerArea is a
+ * code 555 message it skips without reading the payload.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecoderBenchmark {
+
+    private byte[] historyBytes;
+    private EarthquakeJsonDecoder decoder;
+    private QuakeMessageDecoder messageDecoder;
+    private TreeModelParser treeParser;
+    private String peerAreaMessage;
+
+    @State(Scope.Benchmark)
+    public static class MessageState {
+        @Param({Fixtures.WS_SMALL, Fixtures.WS_LARGE})
+        public String fixture;
+
+        String text;
+
+        @Setup
+        public void setUp() {
+            text = new String(Fixtures.load(fixture), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        historyBytes = Fixtures.load(Fixtures.HISTORY);
+        JsonFactory jsonFactory = new JsonFactory();
+        decoder = new EarthquakeJsonDecoder(jsonFactory);
+        messageDecoder = new QuakeMessageDecoder(jsonFactory, decoder);
+        treeParser = new TreeModelParser();
+        StringBuilder areas = new StringBuilder();
+        for (int area = 0; area < 500; area++) {
+            areas.append(area == 0 ? "" : ",").append("{\"id\":").append(area).append(",\"peer\":").append(area % 40).append('}');
+        }
+        peerAreaMessage = "{\"_id\":\"65928f4a8a2e7c1d5b3e9f02\",\"code\":555,\"time\":\"2024/01/01 16:10:00.000\","
+                + "\"areas\":[" + areas + "]}";
+    }
+
+    @Benchmark
+    public void historyStreaming(Blackhole blackhole) throws IOException {
+        decoder.decodeArray(new ByteArrayInputStream(historyBytes), true, blackhole::consume);
+    }
+
+    @Benchmark
+    public void historyTree(Blackhole blackhole) throws IOException {
+        blackhole.consume(treeParser.parseHistory(new String(historyBytes, StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public Earthquake messageStreaming(MessageState state) throws IOException {
+        return decoder.decodeMessage(state.text);
+    }
+
+    @Benchmark
+    public Earthquake messageTree(MessageState state) throws IOException {
+        return treeParser.parseMessage(state.text);
+    }
+
+    @Benchmark
+    public QuakeMessage messageDispatch(MessageState state) throws IOException {
+        return messageDecoder.decode(state.text);
+    }
+
+    @Benchmark
+    public QuakeMessage peerAreaDispatch() throws IOException {
+        return messageDecoder.decode(peerAreaMessage);
+    }
+}
@@ -0,0 +1,31 @@
+package com.earthquakeviewer.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Loads the recorded P2P Quake JSON payloads bundled under /fixtures.
+ */
+final class Fixtures {
+    /** /v2/history?codes=551 response with 100 events of a few dozen points each. */
+    static final String HISTORY = "history-551.json";
+    /** Single WebSocket message for a small local event. */
+    static final String WS_SMALL = "ws-551-small.json";
+    /** Single WebSocket message for a large event with over a thousand observation points. */
+    static final String WS_LARGE = "ws-551-large.json";
+
+    private Fixtures() {
+    }
+
+    static byte[] load(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
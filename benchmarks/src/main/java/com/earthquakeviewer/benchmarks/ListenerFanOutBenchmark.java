@@ -0,0 +1,72 @@
+package com.earthquakeviewer.benchmarks;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.service.EarthquakeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time from publishing one event until all of 1, 10 and 100 registered listeners have
+ * consumed it, including the hand-off to and delivery on the service's delivery threads.
+ * One event is in flight at a time, so no subscriber buffer overflows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListenerFanOutBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int listeners;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private EarthquakeService service;
+    private Earthquake earthquake;
+    private long expected;
+
+    @Setup
+    public void setUp() {
+        service = new EarthquakeService();
+        for (int i = 0; i < listeners; i++) {
+            service.addEarthquakeListener(event -> delivered.incrementAndGet());
+        }
+        earthquake = new Earthquake("65928f4a8a2e7c1d5b3e9f01",
+                                    LocalDateTime.of(2024, 1, 1, 16, 10, 0).toEpochSecond(Earthquake.JST),
+                                    "石川県能登地方", 37.5, 137.3, 7.6, 10, 70, "None", ObservationPoints.EMPTY,
+                                    Prefecture.ISHIKAWA.bit());
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public long publishAndDeliver() {
+        expected += listeners;
+        service.getEarthquakePublisher().submit(earthquake);
+        long count;
+        while ((count = delivered.get()) < expected) {
+            Thread.onSpinWait();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,80 @@
+package com.earthquakeviewer.benchmarks;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.model.SeismicIntensity;
+import com.earthquakeviewer.ui.EarthquakeViewAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model construction, on-demand table adaptation and intensity conversion.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+    private static final int[] SCALES = {10, 20, 30, 40, 45, 50, 55, 60, 70, -1};
+
+    private long epochSecond;
+    private ObservationPoints observationPoints;
+    private Earthquake earthquake;
+    private final StringBuilder cellBuffer = new StringBuilder(64);
+
+    @Setup
+    public void setUp() {
+        epochSecond = LocalDateTime.of(2024, 1, 1, 16, 10, 0).toEpochSecond(Earthquake.JST);
+        observationPoints = new ObservationPoints.Builder(3).add("輪島市", 70).add("志賀町", 70).add("七尾市", 60).build();
+        earthquake = constructEarthquake();
+    }
+
+    @Benchmark
+    public Earthquake constructEarthquake() {
+        return new Earthquake("65928f4a8a2e7c1d5b3e9f01", epochSecond, "石川県能登地方", 37.5, 137.3,
+                             7.6, 10, 70, "Warning", observationPoints, Prefecture.ISHIKAWA.bit());
+    }
+
+    /** What a table row costs once it is actually rendered: all five cells, formatted into a reused buffer. */
+    @Benchmark
+    public void adaptForTable(Blackhole blackhole) {
+        StringBuilder buffer = cellBuffer;
+        buffer.setLength(0);
+        EarthquakeViewAdapter.appendTime(earthquake.getEpochSecond(), buffer);
+        blackhole.consume(buffer.length());
+        buffer.setLength(0);
+        buffer.append(earthquake.getLocation());
+        blackhole.consume(buffer.length());
+        buffer.setLength(0);
+        EarthquakeViewAdapter.appendMagnitude(earthquake.getMagnitude(), buffer);
+        blackhole.consume(buffer.length());
+        buffer.setLength(0);
+        EarthquakeViewAdapter.appendDepth(earthquake.getDepth(), buffer);
+        blackhole.consume(buffer.length());
+        buffer.setLength(0);
+        EarthquakeViewAdapter.appendIntensity(earthquake.getMaxScale(), earthquake.getDomesticTsunami(), buffer);
+        blackhole.consume(buffer.length());
+    }
+
+    @Benchmark
+    public void convertScaleToIntensity(Blackhole blackhole) {
+        for (int scale : SCALES) {
+            blackhole.consume(SeismicIntensity.toLabel(scale));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.earthquakeviewer.benchmarks;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.service.EarthquakeJsonDecoder;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing hot paths as the service runs them: the /history response (code filtered),
+ * the /jma/quake response (every entry kept) and single WebSocket messages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({Fixtures.WS_SMALL, Fixtures.WS_LARGE})
+    public String message;
+
+    private byte[] historyBytes;
+    private String messageText;
+    private EarthquakeJsonDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        historyBytes = Fixtures.load(Fixtures.HISTORY);
+        messageText = new String(Fixtures.load(message), StandardCharsets.UTF_8);
+        decoder = new EarthquakeJsonDecoder(new JsonFactory());
+    }
+
+    /** Equivalent of the former parseEarthquake over a /history page. */
+    @Benchmark
+    public void parseEarthquakeHistory(Blackhole blackhole) throws IOException {
+        decoder.decodeArray(new ByteArrayInputStream(historyBytes), true, blackhole::consume);
+    }
+
+    /** Equivalent of the former parseJMAEarthquake over a /jma/quake page. */
+    @Benchmark
+    public void parseJMAEarthquake(Blackhole blackhole) throws IOException {
+        decoder.decodeArray(new ByteArrayInputStream(historyBytes), false, blackhole::consume);
+    }
+
+    @Benchmark
+    public Earthquake parseWebSocketMessage() throws IOException {
+        return decoder.decodeMessage(messageText);
+    }
+}
@@ -0,0 +1,139 @@
+package com.earthquakeviewer.benchmarks;
+
+import com.earthquakeviewer.metrics.LatencyHistogram;
+import com.earthquakeviewer.replay.FrameLogWriter;
+import com.earthquakeviewer.replay.ReplayServer;
+import com.earthquakeviewer.service.EarthquakeService;
+import com.earthquakeviewer.service.EventPublisher;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of the realtime path: plays a frame log through a local
+ * {@link ReplayServer} into an {@link EarthquakeService} and measures, for every message
+ * the service publishes, the time from being queued on the server socket to reaching a
+ * subscriber. Prints sustained throughput and latency percentiles.
+ *
+ * Without a log, a synthetic aftershock storm is generated from the bundled fixtures:
+ * mostly small events with an occasional large one, all with distinct ids.
+ *
+ * <pre>
+ * ReplayLoadTest [FILE] [--speed 1|N|max] [--synthetic COUNT] [--rate PER_SECOND]
+ * </pre>
+ */
+public class ReplayLoadTest {
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    public static void main(String[] args) throws Exception {
+        Path log = null;
+        double speed = Double.POSITIVE_INFINITY;
+        int synthetic = 20_000;
+        double rate = 50;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed":
+                    speed = ReplayServer.parseSpeed(args[++i]);
+                    break;
+                case "--synthetic":
+                    synthetic = Integer.parseInt(args[++i]);
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    log = Paths.get(args[i]);
+                    break;
+            }
+        }
+        if (log == null) {
+            log = Files.createTempFile("storm", ".eqfl");
+            log.toFile().deleteOnExit();
+            writeStorm(log, synthetic, rate);
+        }
+
+        Map<String, Long> sentNanos = new ConcurrentHashMap<>();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong delivered = new AtomicLong();
+        AtomicLong lastDeliveryNanos = new AtomicLong();
+
+        ReplayServer server = new ReplayServer("127.0.0.1", 0, log, speed, sentNanos::put);
+        server.start();
+        while (server.getPort() == 0) {
+            Thread.sleep(10);
+        }
+
+        // Read when EarthquakeService is initialised, so set before it is first touched
+        System.setProperty("earthquake.realtime.url", "ws://127.0.0.1:" + server.getPort() + "/");
+        System.setProperty("earthquake.metrics.port", "-1");
+        EarthquakeService service = new EarthquakeService();
+        // Realtime channels refuse BLOCK; the buffer is large enough that drops, reported below, mean overload
+        service.getFramePublisher().subscribe(frame -> {
+            long now = System.nanoTime();
+            Long sent = sentNanos.remove(frame.getText());
+            if (sent != null) {
+                latency.record(now - sent);
+            }
+            delivered.incrementAndGet();
+            lastDeliveryNanos.set(now);
+        }, EventPublisher.OverflowPolicy.DROP_OLDEST, 1 << 16);
+
+        long startNanos = System.nanoTime();
+        service.start();
+        // Done once the whole log is sent and nothing more has arrived for a while
+        while (server.getCompletedCount() == 0
+                || System.nanoTime() - Math.max(lastDeliveryNanos.get(), startNanos) < IDLE_NANOS) {
+            Thread.sleep(100);
+        }
+        long elapsedNanos = Math.max(1, lastDeliveryNanos.get() - startNanos);
+        service.shutdown();
+        server.close();
+
+        System.out.printf("Sent %d messages, %d published by the service, %d dropped by the subscriber buffer%n",
+                server.getSentCount(), delivered.get(), service.getFramePublisher().getDroppedCount());
+        System.out.printf("Throughput: %.0f messages/s over %.2f s%n",
+                delivered.get() * 1e9 / elapsedNanos, elapsedNanos / 1e9);
+        System.out.printf("Socket to subscriber latency (us): p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                latency.getPercentile(50) / 1e3, latency.getPercentile(90) / 1e3, latency.getPercentile(99) / 1e3,
+                latency.getPercentile(99.9) / 1e3, latency.getMax() / 1e3);
+        service.getParseLatency().forEach((code, histogram) -> {
+            if (histogram.getCount() > 0) {
+                System.out.printf("Decode %d (us): n=%d p50=%.1f p99=%.1f max=%.1f%n", code, histogram.getCount(),
+                        histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3,
+                        histogram.getMax() / 1e3);
+            }
+        });
+        System.exit(0);
+    }
+
+    /**
+     * Write a storm of earthquake reports: one large event for every 50 small ones,
+     * {@code rate} messages per second of recorded time.
+     */
+    private static void writeStorm(Path log, int count, double rate) throws Exception {
+        String small = new String(Fixtures.load(Fixtures.WS_SMALL), StandardCharsets.UTF_8);
+        String large = new String(Fixtures.load(Fixtures.WS_LARGE), StandardCharsets.UTF_8);
+        String smallId = idOf(small);
+        String largeId = idOf(large);
+        long epochMillis = System.currentTimeMillis();
+        try (FrameLogWriter writer = new FrameLogWriter(log)) {
+            for (int i = 0; i < count; i++) {
+                boolean isLarge = i % 50 == 49;
+                String id = String.format("%024x", i);
+                String text = isLarge ? large.replace(largeId, id) : small.replace(smallId, id);
+                writer.append(epochMillis + (long) (i * 1000 / rate), text);
+            }
+        }
+    }
+
+    private static String idOf(String message) {
+        int start = message.indexOf("\"_id\":\"") + 7;
+        return message.substring(start, message.indexOf('"', start));
+    }
+}
@@ -0,0 +1,91 @@
+package com.earthquakeviewer.benchmarks;
+
+import com.earthquakeviewer.analytics.SequenceClusterer;
+import com.earthquakeviewer.model.Earthquake;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigning a storm of events to aftershock sequences: a few large mainshocks, each
+ * followed by a dense swarm within a few tens of km, over background events across Japan,
+ * arriving seconds apart. Reported per event, over a fresh clusterer each invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SequenceClusteringBenchmark {
+    private static final int EVENTS = 200_000;
+    private static final int MAINSHOCKS = 10;
+
+    private Earthquake[] events;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        events = new Earthquake[EVENTS];
+        long time = 1_600_000_000L;
+        double mainLatitude = 0;
+        double mainLongitude = 0;
+        double mainMagnitude = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            time += 1 + random.nextInt(10);
+            if (i % (EVENTS / MAINSHOCKS) == 0) {
+                mainLatitude = 30 + random.nextDouble() * 15;
+                mainLongitude = 130 + random.nextDouble() * 15;
+                mainMagnitude = tenths(6 + random.nextDouble() * 2);
+                events[i] = event(i, time, mainLatitude, mainLongitude, mainMagnitude);
+            } else if (random.nextInt(4) == 0) {
+                events[i] = event(i, time, 24 + random.nextDouble() * 22, 123 + random.nextDouble() * 24,
+                        tenths(gutenbergRichter(random)));
+            } else {
+                // Aftershocks within about 20 km of the mainshock
+                double offset = random.nextDouble() * 0.18;
+                double angle = random.nextDouble() * 2 * Math.PI;
+                events[i] = event(i, time, mainLatitude + offset * Math.cos(angle),
+                        mainLongitude + offset * Math.sin(angle),
+                        tenths(Math.min(mainMagnitude - 0.5, gutenbergRichter(random))));
+            }
+        }
+    }
+
+    /**
+     * @return A magnitude from 2.0 up with a b-value of 1
+     */
+    private static double gutenbergRichter(Random random) {
+        return 2 - Math.log10(1 - random.nextDouble());
+    }
+
+    private static double tenths(double magnitude) {
+        return Math.round(magnitude * 10) / 10.0;
+    }
+
+    private static Earthquake event(int index, long time, double latitude, double longitude, double magnitude) {
+        return new Earthquake("quake-" + index, time, "Synthetic", latitude, longitude, magnitude, 10, 30,
+                "None", null, 0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public SequenceClusterer assign() {
+        SequenceClusterer clusterer = new SequenceClusterer();
+        for (Earthquake event : events) {
+            clusterer.assign(event);
+        }
+        return clusterer;
+    }
+}
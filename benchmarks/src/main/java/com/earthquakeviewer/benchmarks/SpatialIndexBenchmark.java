@@ -0,0 +1,122 @@
+package com.earthquakeviewer.benchmarks;
+
+import com.earthquakeviewer.query.GeoGridIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grid index versus a linear scan of the coordinate arrays for viewport, radius
+ * and k-nearest queries. Epicenters are synthetic, clustered around Japan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpatialIndexBenchmark {
+    // Tokyo Station, as the "facility" for radius and nearest queries
+    private static final double FACILITY_LATITUDE = 35.681;
+    private static final double FACILITY_LONGITUDE = 139.767;
+
+    @Param({"10000", "300000"})
+    public int events;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private GeoGridIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        latitudes = new double[events];
+        longitudes = new double[events];
+        index = new GeoGridIndex();
+        for (int i = 0; i < events; i++) {
+            latitudes[i] = 24 + random.nextDouble() * 22;
+            longitudes[i] = 123 + random.nextDouble() * 23;
+            index.add(i, latitudes[i], longitudes[i]);
+        }
+    }
+
+    @Benchmark
+    public int[] viewportIndexed() {
+        return index.inBoundingBox(34.5, 138.5, 36.5, 141.0);
+    }
+
+    @Benchmark
+    public int[] viewportLinearScan() {
+        int[] result = new int[16];
+        int size = 0;
+        for (int i = 0; i < events; i++) {
+            if (latitudes[i] >= 34.5 && latitudes[i] <= 36.5 && longitudes[i] >= 138.5 && longitudes[i] <= 141.0) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = i;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    @Benchmark
+    public int[] radiusIndexed() {
+        return index.withinRadius(FACILITY_LATITUDE, FACILITY_LONGITUDE, 50);
+    }
+
+    @Benchmark
+    public int[] radiusLinearScan() {
+        int[] result = new int[16];
+        int size = 0;
+        for (int i = 0; i < events; i++) {
+            if (GeoGridIndex.distanceKm(FACILITY_LATITUDE, FACILITY_LONGITUDE, latitudes[i], longitudes[i]) <= 50) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = i;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    @Benchmark
+    public int[] nearestIndexed() {
+        return index.nearest(FACILITY_LATITUDE, FACILITY_LONGITUDE, 10);
+    }
+
+    @Benchmark
+    public int[] nearestLinearScan() {
+        int k = 10;
+        int[] best = new int[k];
+        double[] bestDistances = new double[k];
+        Arrays.fill(bestDistances, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < events; i++) {
+            double distance = GeoGridIndex.distanceKm(FACILITY_LATITUDE, FACILITY_LONGITUDE,
+                                                      latitudes[i], longitudes[i]);
+            if (distance < bestDistances[k - 1]) {
+                int position = k - 1;
+                while (position > 0 && bestDistances[position - 1] > distance) {
+                    bestDistances[position] = bestDistances[position - 1];
+                    best[position] = best[position - 1];
+                    position--;
+                }
+                bestDistances[position] = distance;
+                best[position] = i;
+            }
+        }
+        return best;
+    }
+}
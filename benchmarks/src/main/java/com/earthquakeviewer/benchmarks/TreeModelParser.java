@@ -0,0 +1,81 @@
+package com.earthquakeviewer.benchmarks;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.model.SeismicIntensity;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Baseline: the readTree + JsonNode walk that EarthquakeService used before the
+ * streaming decoder. Kept here only so benchmarks can compare against it.
+ */
+final class TreeModelParser {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    List<Earthquake> parseHistory(String responseBody) throws IOException {
+        JsonNode rootNode = objectMapper.readTree(responseBody);
+        List<Earthquake> earthquakes = new ArrayList<>();
+        for (JsonNode node : rootNode) {
+            if (node.has("code") && node.get("code").asInt() == 551) {
+                earthquakes.add(parseEarthquake(node));
+            }
+        }
+        return earthquakes;
+    }
+
+    Earthquake parseMessage(String message) throws IOException {
+        JsonNode node = objectMapper.readTree(message);
+        if (node.has("code") && node.get("code").asInt() == 551) {
+            return parseEarthquake(node);
+        }
+        return null;
+    }
+
+    private Earthquake parseEarthquake(JsonNode node) {
+        String id = node.get("id").asText();
+
+        JsonNode earthquakeNode = node.get("earthquake");
+        String hypocenterName = earthquakeNode.get("hypocenter").get("name").asText();
+        double latitude = earthquakeNode.get("hypocenter").get("latitude").asDouble();
+        double longitude = earthquakeNode.get("hypocenter").get("longitude").asDouble();
+        double magnitude = earthquakeNode.get("hypocenter").get("magnitude").asDouble();
+        int depth = earthquakeNode.get("hypocenter").get("depth").asInt();
+
+        String timeStr = earthquakeNode.get("time").asText();
+        LocalDateTime time = LocalDateTime.parse(timeStr, DATE_TIME_FORMATTER);
+
+        int maxScale = SeismicIntensity.UNKNOWN;
+        String tsunami = null;
+        ObservationPoints.Builder points = new ObservationPoints.Builder();
+        long prefectureMask = 0;
+        if (earthquakeNode.has("maxScale")) {
+            maxScale = earthquakeNode.get("maxScale").asInt();
+        }
+        if (earthquakeNode.has("domesticTsunami")) {
+            tsunami = earthquakeNode.get("domesticTsunami").asText();
+        }
+        if (node.has("points")) {
+            for (JsonNode pointNode : node.get("points")) {
+                Prefecture prefecture = pointNode.has("pref") ? Prefecture.fromName(pointNode.get("pref").asText()) : null;
+                points.add(pointNode.get("addr").asText(), pointNode.get("scale").asInt(), prefecture);
+                if (prefecture != null) {
+                    prefectureMask |= prefecture.bit();
+                }
+            }
+        }
+
+        return new Earthquake(id, time.toEpochSecond(Earthquake.JST), hypocenterName, latitude, longitude,
+                             magnitude, depth, maxScale, tsunami, points.build(), prefectureMask);
+    }
+
+}
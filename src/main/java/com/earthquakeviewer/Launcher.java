@@ -1,11 +1,21 @@
 package com.earthquakeviewer;
 
+import com.earthquakeviewer.headless.HeadlessDaemon;
+
+import java.util.Arrays;
+
 /**
  * Launcher class that serves as the entry point for the application.
  * This class is used to work around the JavaFX module system when creating executable JARs.
+ * With {@code --headless} it runs the feed without a user interface instead; Main is then
+ * never loaded, so neither is JavaFX.
  */
 public class Launcher {
     public static void main(String[] args) {
-        Main.main(args);
+        if (Arrays.asList(args).contains("--headless")) {
+            HeadlessDaemon.main(args);
+        } else {
+            Main.main(args);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.earthquakeviewer.analytics;
+
+/**
+ * The decay of aftershock activity after a mainshock: observed counts in logarithmically
+ * widening time bins, and the modified Omori (Omori-Utsu) law n(t) = K / (t + c)^p fitted
+ * to the aftershock times by maximum likelihood. Times are in days after the mainshock.
+ */
+public final class AftershockDecay {
+    // Grid for the fit: c log-spaced over [MIN_C, MAX_C] days, p in steps of P_STEP
+    private static final double MIN_C = 0.001;
+    private static final double MAX_C = 1.0;
+    private static final int C_STEPS = 31;
+    private static final double MIN_P = 0.3;
+    private static final double MAX_P = 2.5;
+    private static final double P_STEP = 0.01;
+
+    private final double startDays;
+    private final double endDays;
+    private final int[] counts;
+    private final int count;
+    private final double k;
+    private final double c;
+    private final double p;
+
+    private AftershockDecay(double startDays, double endDays, int[] counts, int count, double k, double c, double p) {
+        this.startDays = startDays;
+        this.endDays = endDays;
+        this.counts = counts;
+        this.count = count;
+        this.k = k;
+        this.c = c;
+        this.p = p;
+    }
+
+    /**
+     * Bin the aftershock times and fit the Omori-Utsu law.
+     *
+     * @param days The aftershock times in days after the mainshock, each within [startDays, endDays]
+     * @param size The number of times in the array to use
+     * @param startDays The start of the period, after the first hours in which catalogs miss events
+     * @param endDays The end of the period
+     * @param bins The number of time bins
+     */
+    static AftershockDecay fit(double[] days, int size, double startDays, double endDays, int bins) {
+        if (!(startDays > 0) || !(endDays > startDays) || bins < 1) {
+            throw new IllegalArgumentException("Need 0 < start < end and at least one bin: "
+                    + startDays + ", " + endDays + ", " + bins);
+        }
+        double logSpan = Math.log(endDays / startDays);
+        int[] counts = new int[bins];
+        for (int i = 0; i < size; i++) {
+            int bin = (int) (bins * Math.log(days[i] / startDays) / logSpan);
+            counts[Math.max(0, Math.min(bins - 1, bin))]++;
+        }
+        if (size < 3) {
+            return new AftershockDecay(startDays, endDays, counts, size, Double.NaN, Double.NaN, Double.NaN);
+        }
+
+        // For fixed c and p the likelihood is maximised by K = n / integral, leaving
+        // log L = n log(n / integral) - p * sum(log(t + c)) - n, where the sum depends only on c
+        double bestLikelihood = Double.NEGATIVE_INFINITY;
+        double bestC = Double.NaN;
+        double bestP = Double.NaN;
+        double bestIntegral = Double.NaN;
+        for (int ci = 0; ci < C_STEPS; ci++) {
+            double candidateC = MIN_C * Math.pow(MAX_C / MIN_C, ci / (double) (C_STEPS - 1));
+            double logSum = 0;
+            for (int i = 0; i < size; i++) {
+                logSum += Math.log(days[i] + candidateC);
+            }
+            for (int pi = 0; MIN_P + pi * P_STEP <= MAX_P + 1e-9; pi++) {
+                double candidateP = MIN_P + pi * P_STEP;
+                double integral = integral(startDays, endDays, candidateC, candidateP);
+                double likelihood = size * Math.log(size / integral) - candidateP * logSum - size;
+                if (likelihood > bestLikelihood) {
+                    bestLikelihood = likelihood;
+                    bestC = candidateC;
+                    bestP = candidateP;
+                    bestIntegral = integral;
+                }
+            }
+        }
+        return new AftershockDecay(startDays, endDays, counts, size, size / bestIntegral, bestC, bestP);
+    }
+
+    /**
+     * @return The integral of (t + c)^-p from start to end
+     */
+    private static double integral(double start, double end, double c, double p) {
+        if (Math.abs(p - 1) < 1e-9) {
+            return Math.log((end + c) / (start + c));
+        }
+        return (Math.pow(end + c, 1 - p) - Math.pow(start + c, 1 - p)) / (1 - p);
+    }
+
+    /**
+     * @return The number of aftershocks in the period
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getBinCount() {
+        return counts.length;
+    }
+
+    /**
+     * @param bin The bin index
+     * @return The start of the bin in days after the mainshock
+     */
+    public double getBinStartDays(int bin) {
+        return startDays * Math.pow(endDays / startDays, bin / (double) counts.length);
+    }
+
+    /**
+     * @param bin The bin index
+     * @return The end of the bin in days after the mainshock
+     */
+    public double getBinEndDays(int bin) {
+        return getBinStartDays(bin + 1);
+    }
+
+    /**
+     * @param bin The bin index
+     * @return The number of aftershocks in the bin
+     */
+    public int getCountInBin(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * @param bin The bin index
+     * @return The observed aftershocks per day in the bin
+     */
+    public double getRateInBin(int bin) {
+        return counts[bin] / (getBinEndDays(bin) - getBinStartDays(bin));
+    }
+
+    /**
+     * @return The productivity K of the fit, or NaN with fewer than three aftershocks
+     */
+    public double getK() {
+        return k;
+    }
+
+    /**
+     * @return The time offset c of the fit in days
+     */
+    public double getC() {
+        return c;
+    }
+
+    /**
+     * @return The decay exponent p of the fit, typically near 1.1
+     */
+    public double getP() {
+        return p;
+    }
+
+    /**
+     * @param days The time after the mainshock
+     * @return The aftershocks per day the fit predicts at that time
+     */
+    public double expectedRate(double days) {
+        return k / Math.pow(days + c, p);
+    }
+
+    /**
+     * @param fromDays The start of a period after the mainshock
+     * @param toDays The end of the period
+     * @return The number of aftershocks the fit predicts in the period
+     */
+    public double expectedCount(double fromDays, double toDays) {
+        return k * integral(fromDays, toDays, c, p);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AftershockDecay{n=%d, K=%.3f, c=%.4f, p=%.2f}", count, k, c, p);
+    }
+}
@@ -0,0 +1,117 @@
+package com.earthquakeviewer.analytics;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.SeismicIntensity;
+
+/**
+ * A group of events that {@link SequenceClusterer} attributes to one mainshock: the largest
+ * event so far, with the others inside its space-time window. The sequence grows while
+ * events arrive and is kept until its window has passed. Accessors may be called from any
+ * thread while the clusterer updates it.
+ */
+public final class AftershockSequence {
+    private final long id;
+    private Earthquake mainshock;
+    private int count;
+    private int maxScale = SeismicIntensity.UNKNOWN;
+    private long firstEpochSecond = Long.MAX_VALUE;
+    private long lastEpochSecond = Long.MIN_VALUE;
+
+    // Window and bookkeeping, only touched under the clusterer's lock
+    double latitude;
+    double longitude;
+    double magnitude;
+    long epochSecond;
+    double radiusKm;
+    long windowStart;
+    long windowEnd;
+    int activeIndex = -1;
+    int[] cells = new int[8];
+    int cellCount;
+    String[] memberIds = new String[4];
+    int memberCount;
+
+    AftershockSequence(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Count an event, making it the mainshock if it is the largest.
+     *
+     * @return Whether the event became the mainshock
+     */
+    synchronized boolean add(Earthquake earthquake) {
+        count++;
+        maxScale = Math.max(maxScale, earthquake.getMaxScale());
+        firstEpochSecond = Math.min(firstEpochSecond, earthquake.getEpochSecond());
+        lastEpochSecond = Math.max(lastEpochSecond, earthquake.getEpochSecond());
+        if (mainshock == null || earthquake.getMagnitude() > mainshock.getMagnitude()) {
+            mainshock = earthquake;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add the counts of a sequence that turned out to belong to this one.
+     */
+    synchronized void absorb(AftershockSequence other) {
+        synchronized (other) {
+            count += other.count;
+            maxScale = Math.max(maxScale, other.maxScale);
+            firstEpochSecond = Math.min(firstEpochSecond, other.firstEpochSecond);
+            lastEpochSecond = Math.max(lastEpochSecond, other.lastEpochSecond);
+        }
+    }
+
+    /**
+     * @return An id, unique within the clusterer, that stays the same as the sequence grows
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return The largest event of the sequence
+     */
+    public synchronized Earthquake getMainshock() {
+        return mainshock;
+    }
+
+    /**
+     * @return The number of events in the sequence, including the mainshock
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The strongest intensity any event of the sequence reached
+     */
+    public synchronized int getMaxScale() {
+        return maxScale;
+    }
+
+    /**
+     * @return The origin time of the earliest event
+     */
+    public synchronized long getFirstEpochSecond() {
+        return firstEpochSecond;
+    }
+
+    /**
+     * @return The origin time of the latest event
+     */
+    public synchronized long getLastEpochSecond() {
+        return lastEpochSecond;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AftershockSequence{id=" + id +
+                ", count=" + count +
+                ", mainshock=" + (mainshock != null ? mainshock.getId() : null) +
+                ", magnitude=" + (mainshock != null ? mainshock.getMagnitude() : Double.NaN) +
+                '}';
+    }
+}
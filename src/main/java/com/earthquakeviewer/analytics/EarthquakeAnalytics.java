@@ -0,0 +1,377 @@
+package com.earthquakeviewer.analytics;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.query.EarthquakeQuery;
+import com.earthquakeviewer.query.GeoGridIndex;
+import com.earthquakeviewer.repository.EarthquakeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregate statistics over the local history: magnitude-frequency distributions and
+ * Gutenberg-Richter fits, event rates and depth profiles per region and time window, and
+ * aftershock decay after a mainshock.
+ *
+ * <p>The attributes the statistics need are copied from the store into primitive arrays,
+ * which grow as events are stored, and each computation is a fork-join reduction over
+ * them: the array is split into ranges that are scanned in parallel and whose partial
+ * histograms are added together. A million events take a few milliseconds. Dashboards
+ * that poll the same selection should {@link #watch} it instead, which keeps its
+ * statistics up to date one new event at a time.</p>
+ *
+ * <p>Computations block the caller while they run on the fork-join pool.</p>
+ */
+public class EarthquakeAnalytics {
+    private static final Logger logger = LoggerFactory.getLogger(EarthquakeAnalytics.class);
+    // Rows per leaf task; smaller ranges cost more in task overhead than they save
+    private static final int LEAF_ROWS = 1 << 14;
+    private static final double KM_PER_DEGREE = Math.PI * GeoGridIndex.EARTH_RADIUS_KM / 180;
+    private static final double SECONDS_PER_DAY = 86400.0;
+
+    private final EarthquakeRepository repository;
+    private final ForkJoinPool pool;
+    private final List<LiveStatistics> watched = new CopyOnWriteArrayList<>();
+
+    // Store rows in row order; arrays are replaced when they grow, never shrunk or rewritten
+    private long[] times = new long[0];
+    private short[] magnitudes = new short[0];
+    private short[] depths = new short[0];
+    private byte[] maxScales = new byte[0];
+    private float[] latitudes = new float[0];
+    private float[] longitudes = new float[0];
+    private long[] prefectureMasks = new long[0];
+    private int size;
+
+    /**
+     * @param repository The local store
+     */
+    public EarthquakeAnalytics(EarthquakeRepository repository) {
+        this(repository, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param repository The local store
+     * @param pool The pool computations run on
+     */
+    public EarthquakeAnalytics(EarthquakeRepository repository, ForkJoinPool pool) {
+        this.repository = repository;
+        this.pool = pool;
+    }
+
+    /**
+     * Copy events stored since the last call and add them to every watched selection
+     * they belong to.
+     */
+    public synchronized void refresh() {
+        int rows = repository.size();
+        if (rows == size) {
+            return;
+        }
+        ensureCapacity(rows);
+        int first = size;
+        for (int row = first; row < rows; row++) {
+            times[row] = repository.epochSecondAt(row);
+            magnitudes[row] = (short) Math.round(repository.magnitudeAt(row) * 10);
+            depths[row] = (short) repository.depthAt(row);
+            maxScales[row] = (byte) repository.maxScaleAt(row);
+            latitudes[row] = (float) repository.latitudeAt(row);
+            longitudes[row] = (float) repository.longitudeAt(row);
+            prefectureMasks[row] = repository.prefectureMaskAt(row);
+        }
+        size = rows;
+
+        Columns columns = columns();
+        for (LiveStatistics live : watched) {
+            Selection selection = live.selection();
+            for (int row = first; row < rows; row++) {
+                if (selection.matches(columns, row)) {
+                    live.add(times[row], magnitudes[row], depths[row]);
+                }
+            }
+        }
+        if (first == 0) {
+            logger.info("Loaded {} events for analytics", rows);
+        }
+    }
+
+    /**
+     * Compute statistics over the stored events matching a selection.
+     *
+     * @param query The time window and criteria; the observation area criterion is not supported
+     * @param region The epicenter region
+     * @return The statistics
+     * @throws IllegalArgumentException If the query has an observation area
+     */
+    public EventStatistics statistics(EarthquakeQuery query, Region region) {
+        Selection selection = new Selection(query, region);
+        Columns columns;
+        synchronized (this) {
+            refresh();
+            columns = columns();
+        }
+        return pool.invoke(new StatisticsTask(columns, selection, 0, columns.size));
+    }
+
+    /**
+     * Compute statistics over the stored events matching a selection and keep them up to
+     * date as events are stored, until the result is closed.
+     *
+     * @param query The time window and criteria; the observation area criterion is not supported
+     * @param region The epicenter region
+     * @return The live statistics
+     * @throws IllegalArgumentException If the query has an observation area
+     */
+    public LiveStatistics watch(EarthquakeQuery query, Region region) {
+        Selection selection = new Selection(query, region);
+        // Hold the lock until registered, so no event is missed or counted twice
+        synchronized (this) {
+            refresh();
+            Columns columns = columns();
+            LiveStatistics live = new LiveStatistics(this, selection,
+                    pool.invoke(new StatisticsTask(columns, selection, 0, columns.size)));
+            watched.add(live);
+            return live;
+        }
+    }
+
+    void unwatch(LiveStatistics live) {
+        watched.remove(live);
+    }
+
+    /**
+     * Measure the aftershock activity around a mainshock and fit the Omori-Utsu law to it.
+     *
+     * @param mainshock The mainshock
+     * @param radiusKm The distance from the mainshock's epicenter within which events count
+     * @param startDays The start of the period in days after the mainshock; the first
+     *                  hours are incomplete in catalogs, so e.g. 0.01 rather than 0
+     * @param endDays The end of the period in days after the mainshock
+     * @param minMagnitude Only count events of at least this magnitude, e.g. the magnitude of completeness
+     * @param bins The number of logarithmic time bins for the observed decay
+     * @return The decay
+     */
+    public AftershockDecay aftershockDecay(Earthquake mainshock, double radiusKm, double startDays, double endDays,
+                                           double minMagnitude, int bins) {
+        Columns columns;
+        synchronized (this) {
+            refresh();
+            columns = columns();
+        }
+        AftershockTask task = new AftershockTask(columns, mainshock.getLatitude(), mainshock.getLongitude(),
+                radiusKm, mainshock.getEpochSecond(), startDays, endDays, minMagnitude, 0, columns.size);
+        double[] days = pool.invoke(task);
+        return AftershockDecay.fit(days, days.length, startDays, endDays, bins);
+    }
+
+    /**
+     * @return The number of events loaded
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private Columns columns() {
+        return new Columns(times, magnitudes, depths, maxScales, latitudes, longitudes, prefectureMasks, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > times.length) {
+            int newCapacity = Math.max(capacity, Math.max(4096, times.length * 2));
+            times = Arrays.copyOf(times, newCapacity);
+            magnitudes = Arrays.copyOf(magnitudes, newCapacity);
+            depths = Arrays.copyOf(depths, newCapacity);
+            maxScales = Arrays.copyOf(maxScales, newCapacity);
+            latitudes = Arrays.copyOf(latitudes, newCapacity);
+            longitudes = Arrays.copyOf(longitudes, newCapacity);
+            prefectureMasks = Arrays.copyOf(prefectureMasks, newCapacity);
+        }
+    }
+
+    /**
+     * The arrays and row count at one moment, read by tasks without the lock. Rows below
+     * the count are never written again, and growth replaces rather than changes arrays.
+     */
+    private static final class Columns {
+        final long[] times;
+        final short[] magnitudes;
+        final short[] depths;
+        final byte[] maxScales;
+        final float[] latitudes;
+        final float[] longitudes;
+        final long[] prefectureMasks;
+        final int size;
+
+        Columns(long[] times, short[] magnitudes, short[] depths, byte[] maxScales, float[] latitudes,
+                float[] longitudes, long[] prefectureMasks, int size) {
+            this.times = times;
+            this.magnitudes = magnitudes;
+            this.depths = depths;
+            this.maxScales = maxScales;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.prefectureMasks = prefectureMasks;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The criteria of an {@link EarthquakeQuery} and a region, checked against columns.
+     */
+    static final class Selection {
+        private final long start;
+        private final long end;
+        private final double minMagnitude;
+        private final int minDepth;
+        private final int maxDepth;
+        private final int minScale;
+        private final long prefectureBit;
+        private final Region region;
+
+        Selection(EarthquakeQuery query, Region region) {
+            if (query.getArea() != null) {
+                throw new IllegalArgumentException("Statistics cannot select by observation area");
+            }
+            this.start = query.getStartEpochSecond();
+            this.end = query.getEndEpochSecond();
+            this.minMagnitude = query.getMinMagnitude();
+            this.minDepth = query.getMinDepth();
+            this.maxDepth = query.getMaxDepth();
+            this.minScale = query.getMinScale();
+            this.prefectureBit = query.getPrefecture() != null ? query.getPrefecture().bit() : 0;
+            this.region = region != Region.EVERYWHERE ? region : null;
+        }
+
+        boolean matches(Columns columns, int row) {
+            long time = columns.times[row];
+            int depth = columns.depths[row];
+            return time >= start && time <= end
+                    && columns.magnitudes[row] / 10.0 >= minMagnitude
+                    && depth >= minDepth && depth <= maxDepth
+                    && columns.maxScales[row] >= minScale
+                    && (prefectureBit == 0 || (columns.prefectureMasks[row] & prefectureBit) != 0)
+                    && (region == null || region.contains(columns.latitudes[row], columns.longitudes[row]));
+        }
+
+        long start() {
+            return start;
+        }
+
+        long end() {
+            return end;
+        }
+    }
+
+    /**
+     * Histograms of the matching rows in a range, split in halves until small enough.
+     */
+    private static final class StatisticsTask extends RecursiveTask<EventStatistics> {
+        private static final long serialVersionUID = 1L;
+
+        private final Columns columns;
+        private final Selection selection;
+        private final int from;
+        private final int to;
+
+        StatisticsTask(Columns columns, Selection selection, int from, int to) {
+            this.columns = columns;
+            this.selection = selection;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected EventStatistics compute() {
+            if (to - from <= LEAF_ROWS) {
+                EventStatistics statistics = new EventStatistics(selection.start(), selection.end());
+                for (int row = from; row < to; row++) {
+                    if (selection.matches(columns, row)) {
+                        statistics.add(columns.times[row], columns.magnitudes[row], columns.depths[row]);
+                    }
+                }
+                return statistics;
+            }
+            int mid = (from + to) >>> 1;
+            StatisticsTask left = new StatisticsTask(columns, selection, from, mid);
+            left.fork();
+            EventStatistics right = new StatisticsTask(columns, selection, mid, to).compute();
+            EventStatistics result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+
+    /**
+     * Times in days after the mainshock of the events near it, split like {@link StatisticsTask}.
+     */
+    private static final class AftershockTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Columns columns;
+        private final double latitude;
+        private final double longitude;
+        private final double radiusKm;
+        private final long mainshockEpochSecond;
+        private final double startDays;
+        private final double endDays;
+        private final double minMagnitude;
+        private final int from;
+        private final int to;
+
+        AftershockTask(Columns columns, double latitude, double longitude, double radiusKm, long mainshockEpochSecond,
+                       double startDays, double endDays, double minMagnitude, int from, int to) {
+            this.columns = columns;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusKm = radiusKm;
+            this.mainshockEpochSecond = mainshockEpochSecond;
+            this.startDays = startDays;
+            this.endDays = endDays;
+            this.minMagnitude = minMagnitude;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > LEAF_ROWS) {
+                int mid = (from + to) >>> 1;
+                AftershockTask left = new AftershockTask(columns, latitude, longitude, radiusKm, mainshockEpochSecond,
+                        startDays, endDays, minMagnitude, from, mid);
+                left.fork();
+                double[] right = new AftershockTask(columns, latitude, longitude, radiusKm, mainshockEpochSecond,
+                        startDays, endDays, minMagnitude, mid, to).compute();
+                double[] leftDays = left.join();
+                double[] result = Arrays.copyOf(leftDays, leftDays.length + right.length);
+                System.arraycopy(right, 0, result, leftDays.length, right.length);
+                return result;
+            }
+
+            // A cheap degree box first, then the great-circle distance
+            double latitudeSpan = radiusKm / KM_PER_DEGREE;
+            double longitudeSpan = latitudeSpan / Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+            double[] days = new double[16];
+            int count = 0;
+            for (int row = from; row < to; row++) {
+                double day = (columns.times[row] - mainshockEpochSecond) / SECONDS_PER_DAY;
+                if (day < startDays || day > endDays || columns.magnitudes[row] / 10.0 < minMagnitude
+                        || Math.abs(columns.latitudes[row] - latitude) > latitudeSpan
+                        || Math.abs(columns.longitudes[row] - longitude) > longitudeSpan
+                        || GeoGridIndex.distanceKm(latitude, longitude, columns.latitudes[row],
+                        columns.longitudes[row]) > radiusKm) {
+                    continue;
+                }
+                if (count == days.length) {
+                    days = Arrays.copyOf(days, count * 2);
+                }
+                days[count++] = day;
+            }
+            return Arrays.copyOf(days, count);
+        }
+    }
+}
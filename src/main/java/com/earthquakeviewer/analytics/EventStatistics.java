@@ -0,0 +1,218 @@
+package com.earthquakeviewer.analytics;
+
+/**
+ * Magnitude-frequency and depth distribution of a set of events, kept as fixed histograms
+ * so that partial results from parallel scans merge by adding counts and a new event is
+ * one increment. Magnitudes are binned by 0.1, the precision JMA reports them with, so
+ * the Gutenberg-Richter fit over the histogram is the same as over the events.
+ */
+public final class EventStatistics {
+    /** Width of a depth histogram bin in km. */
+    public static final int DEPTH_BIN_KM = 10;
+    /** Number of depth bins; the last one holds everything at or below its upper edge. */
+    public static final int DEPTH_BINS = 71;
+
+    // Magnitude bins of 0.1 from -2.0 to 10.0; out-of-range magnitudes go to the end bins
+    private static final int MIN_MAGNITUDE_TENTHS = -20;
+    private static final int MAGNITUDE_BINS = 121;
+    private static final double BIN_WIDTH = 0.1;
+
+    private final int[] magnitudeCounts = new int[MAGNITUDE_BINS];
+    private final int[] depthCounts = new int[DEPTH_BINS];
+    private long count;
+    private long firstEpochSecond = Long.MAX_VALUE;
+    private long lastEpochSecond = Long.MIN_VALUE;
+    private final long windowStart;
+    private final long windowEnd;
+
+    /**
+     * @param windowStart The inclusive start of the period the events were selected from, or Long.MIN_VALUE
+     * @param windowEnd The inclusive end of the period, or Long.MAX_VALUE
+     */
+    EventStatistics(long windowStart, long windowEnd) {
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+    }
+
+    /**
+     * Count one event.
+     *
+     * @param epochSecond The origin time
+     * @param magnitudeTenths The magnitude times ten, as the store keeps it
+     * @param depth The depth in km
+     */
+    void add(long epochSecond, int magnitudeTenths, int depth) {
+        magnitudeCounts[Math.max(0, Math.min(MAGNITUDE_BINS - 1, magnitudeTenths - MIN_MAGNITUDE_TENTHS))]++;
+        depthCounts[Math.max(0, Math.min(DEPTH_BINS - 1, depth / DEPTH_BIN_KM))]++;
+        count++;
+        firstEpochSecond = Math.min(firstEpochSecond, epochSecond);
+        lastEpochSecond = Math.max(lastEpochSecond, epochSecond);
+    }
+
+    /**
+     * Add another partial result over the same window into this one.
+     */
+    void merge(EventStatistics other) {
+        for (int i = 0; i < MAGNITUDE_BINS; i++) {
+            magnitudeCounts[i] += other.magnitudeCounts[i];
+        }
+        for (int i = 0; i < DEPTH_BINS; i++) {
+            depthCounts[i] += other.depthCounts[i];
+        }
+        count += other.count;
+        firstEpochSecond = Math.min(firstEpochSecond, other.firstEpochSecond);
+        lastEpochSecond = Math.max(lastEpochSecond, other.lastEpochSecond);
+    }
+
+    EventStatistics copy() {
+        EventStatistics copy = new EventStatistics(windowStart, windowEnd);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * @return The number of events
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The origin time of the earliest event, or Long.MAX_VALUE without events
+     */
+    public long getFirstEpochSecond() {
+        return firstEpochSecond;
+    }
+
+    /**
+     * @return The origin time of the latest event, or Long.MIN_VALUE without events
+     */
+    public long getLastEpochSecond() {
+        return lastEpochSecond;
+    }
+
+    /**
+     * The mean number of events per day over the selected period. Open ends of the period
+     * are taken at the first and last event.
+     *
+     * @return Events per day, or 0 if the period is empty
+     */
+    public double getRatePerDay() {
+        long start = windowStart != Long.MIN_VALUE ? windowStart : firstEpochSecond;
+        long end = windowEnd != Long.MAX_VALUE ? windowEnd : lastEpochSecond;
+        if (count == 0 || end < start) {
+            return 0;
+        }
+        // An inclusive period of whole seconds; a single event gives one event per its day
+        return count * 86400.0 / Math.max(end - start + 1, 86400);
+    }
+
+    /**
+     * @return The magnitude of the strongest event, or NaN without events
+     */
+    public double getMaxMagnitude() {
+        for (int i = MAGNITUDE_BINS - 1; i >= 0; i--) {
+            if (magnitudeCounts[i] > 0) {
+                return magnitudeOf(i);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @param magnitude The magnitude
+     * @return The number of events of at least this magnitude
+     */
+    public long countAtLeast(double magnitude) {
+        long total = 0;
+        for (int i = binOf(magnitude); i < MAGNITUDE_BINS; i++) {
+            total += magnitudeCounts[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of events in each 0.1 magnitude bin, from {@link #magnitudeOf(int) magnitudeOf(0)}
+     */
+    public int[] getMagnitudeCounts() {
+        return magnitudeCounts.clone();
+    }
+
+    /**
+     * @param bin A magnitude bin index
+     * @return The magnitude the bin holds
+     */
+    public static double magnitudeOf(int bin) {
+        return (bin + MIN_MAGNITUDE_TENTHS) / 10.0;
+    }
+
+    /**
+     * @return The number of events in each {@value #DEPTH_BIN_KM} km depth bin, shallowest first
+     */
+    public int[] getDepthCounts() {
+        return depthCounts.clone();
+    }
+
+    /**
+     * Estimate the magnitude of completeness by maximum curvature: the most populated
+     * magnitude bin. The estimate tends to be low for gradually curved distributions;
+     * adding 0.2 is the usual correction.
+     *
+     * @return The magnitude, or NaN without events
+     */
+    public double estimateCompleteness() {
+        int best = -1;
+        for (int i = 0; i < MAGNITUDE_BINS; i++) {
+            if (magnitudeCounts[i] > 0 && (best < 0 || magnitudeCounts[i] > magnitudeCounts[best])) {
+                best = i;
+            }
+        }
+        return best >= 0 ? magnitudeOf(best) : Double.NaN;
+    }
+
+    /**
+     * Fit the Gutenberg-Richter law log10 N(>=M) = a - bM to the events at or above a
+     * magnitude of completeness, with Aki's maximum likelihood estimate of b corrected for
+     * the 0.1 binning, and Shi and Bolt's standard error.
+     *
+     * @param completeness The magnitude of completeness, e.g. from {@link #estimateCompleteness()}
+     * @return The fit; its values are NaN with fewer than two events above completeness
+     */
+    public GutenbergRichter fitGutenbergRichter(double completeness) {
+        int first = binOf(completeness);
+        double lowerEdge = magnitudeOf(first) - BIN_WIDTH / 2;
+        long n = 0;
+        double sum = 0;
+        for (int i = first; i < MAGNITUDE_BINS; i++) {
+            n += magnitudeCounts[i];
+            sum += magnitudeCounts[i] * magnitudeOf(i);
+        }
+        if (n < 2) {
+            return new GutenbergRichter(magnitudeOf(first), n, Double.NaN, Double.NaN, Double.NaN);
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for (int i = first; i < MAGNITUDE_BINS; i++) {
+            double deviation = magnitudeOf(i) - mean;
+            squares += magnitudeCounts[i] * deviation * deviation;
+        }
+        double b = Math.log10(Math.E) / (mean - lowerEdge);
+        double a = Math.log10(n) + b * magnitudeOf(first);
+        double error = 2.3 * b * b * Math.sqrt(squares / ((double) n * (n - 1)));
+        return new GutenbergRichter(magnitudeOf(first), n, a, b, error);
+    }
+
+    private static int binOf(double magnitude) {
+        // Round to tenths first so 4.5 selects the 4.5 bin despite binary representation
+        long tenths = Math.round(Math.ceil(Math.round(magnitude * 1000) / 100.0));
+        return (int) Math.max(0, Math.min(MAGNITUDE_BINS, tenths - MIN_MAGNITUDE_TENTHS));
+    }
+
+    @Override
+    public String toString() {
+        return "EventStatistics{count=" + count +
+                ", maxMagnitude=" + getMaxMagnitude() +
+                ", ratePerDay=" + getRatePerDay() +
+                '}';
+    }
+}
@@ -0,0 +1,65 @@
+package com.earthquakeviewer.analytics;
+
+/**
+ * A Gutenberg-Richter fit, log10 N(>=M) = a - bM, above a magnitude of completeness.
+ */
+public final class GutenbergRichter {
+    private final double completeness;
+    private final long count;
+    private final double a;
+    private final double b;
+    private final double bError;
+
+    GutenbergRichter(double completeness, long count, double a, double b, double bError) {
+        this.completeness = completeness;
+        this.count = count;
+        this.a = a;
+        this.b = b;
+        this.bError = bError;
+    }
+
+    /**
+     * @return The magnitude of completeness the fit starts at
+     */
+    public double getCompleteness() {
+        return completeness;
+    }
+
+    /**
+     * @return The number of events at or above the magnitude of completeness
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getA() {
+        return a;
+    }
+
+    /**
+     * @return The b-value, typically near 1 for tectonic seismicity
+     */
+    public double getB() {
+        return b;
+    }
+
+    /**
+     * @return The standard error of the b-value
+     */
+    public double getBError() {
+        return bError;
+    }
+
+    /**
+     * @param magnitude A magnitude at or above completeness
+     * @return The number of events of at least this magnitude the fit predicts for the same period
+     */
+    public double expectedCountAtLeast(double magnitude) {
+        return Math.pow(10, a - b * magnitude);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GutenbergRichter{Mc=%.1f, n=%d, a=%.3f, b=%.3f±%.3f}", completeness, count, a, b, bError);
+    }
+}
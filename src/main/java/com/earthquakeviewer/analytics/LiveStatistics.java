@@ -0,0 +1,42 @@
+package com.earthquakeviewer.analytics;
+
+/**
+ * Statistics for a standing selection of events, computed once over the stored history
+ * and then updated one event at a time as {@link EarthquakeAnalytics#refresh()} picks up
+ * newly stored events, so a dashboard that polls them never rescans the history. Windows
+ * with a fixed end stop changing once it has passed.
+ */
+public final class LiveStatistics implements AutoCloseable {
+    private final EarthquakeAnalytics analytics;
+    private final EarthquakeAnalytics.Selection selection;
+    private final EventStatistics statistics;
+
+    LiveStatistics(EarthquakeAnalytics analytics, EarthquakeAnalytics.Selection selection, EventStatistics statistics) {
+        this.analytics = analytics;
+        this.selection = selection;
+        this.statistics = statistics;
+    }
+
+    EarthquakeAnalytics.Selection selection() {
+        return selection;
+    }
+
+    synchronized void add(long epochSecond, int magnitudeTenths, int depth) {
+        statistics.add(epochSecond, magnitudeTenths, depth);
+    }
+
+    /**
+     * @return A copy of the current statistics
+     */
+    public synchronized EventStatistics snapshot() {
+        return statistics.copy();
+    }
+
+    /**
+     * Stop updating these statistics.
+     */
+    @Override
+    public void close() {
+        analytics.unwatch(this);
+    }
+}
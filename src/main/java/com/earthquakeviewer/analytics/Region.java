@@ -0,0 +1,43 @@
+package com.earthquakeviewer.analytics;
+
+/**
+ * A latitude/longitude box that statistics are restricted to, e.g. a seismic zone or the
+ * map viewport.
+ */
+public final class Region {
+    /** No restriction. */
+    public static final Region EVERYWHERE = new Region(-90, -180, 90, 180);
+
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    private Region(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * @return The region of epicenters inside the box, edges included
+     */
+    public static Region box(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            throw new IllegalArgumentException("Empty region: " + minLatitude + "," + minLongitude
+                    + " to " + maxLatitude + "," + maxLongitude);
+        }
+        return new Region(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    @Override
+    public String toString() {
+        return "Region{" + minLatitude + "," + minLongitude + " to " + maxLatitude + "," + maxLongitude + '}';
+    }
+}
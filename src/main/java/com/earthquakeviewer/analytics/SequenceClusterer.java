@@ -0,0 +1,311 @@
+package com.earthquakeviewer.analytics;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.query.GeoGridIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the live stream of events into aftershock sequences as they arrive, with the
+ * space-time windows of Gardner and Knopoff (1974): an event belongs to the sequence of a
+ * larger event if it lies within a distance and a time that grow with that event's
+ * magnitude. Each sequence registers its window in a grid of {@value #CELL_DEGREES} degree
+ * cells, so an event is only compared with the sequences whose window reaches its cell, and
+ * every assignment also checks a couple of sequences for a passed window. Assigning an event
+ * therefore costs amortized constant time however long the stream has run.
+ *
+ * <p>Events that arrive before their mainshock are caught as well: when an event becomes
+ * the largest of its sequence, or starts a new one, smaller sequences whose mainshock lies
+ * inside its window are merged into it.
+ */
+public final class SequenceClusterer {
+    /** Width of a grid cell in degrees. */
+    public static final double CELL_DEGREES = 0.5;
+
+    private static final int ROWS = (int) (180 / CELL_DEGREES);
+    private static final int COLUMNS = (int) (360 / CELL_DEGREES);
+    private static final double KM_PER_DEGREE = Math.PI * GeoGridIndex.EARTH_RADIUS_KM / 180;
+    private static final long SECONDS_PER_DAY = 86400;
+    // Sequences checked for a passed window per assignment; more than one so that the
+    // sweep keeps up with sequences being created
+    private static final int SWEEP_STEP = 2;
+
+    private final AftershockSequence[][] cells = new AftershockSequence[ROWS * COLUMNS][];
+    private final int[] cellSizes = new int[ROWS * COLUMNS];
+    private final List<AftershockSequence> active = new ArrayList<>();
+    private final Map<String, AftershockSequence> byEventId = new HashMap<>();
+    private final List<AftershockSequence> merged = new ArrayList<>();
+    private long nextId = 1;
+    private long latestEpochSecond = Long.MIN_VALUE;
+    private int sweepCursor;
+    private long assignedCount;
+
+    /**
+     * Gardner-Knopoff distance window.
+     *
+     * @param magnitude The magnitude of the larger event
+     * @return The distance in km within which smaller events belong to it
+     */
+    public static double distanceWindowKm(double magnitude) {
+        return Math.pow(10, 0.1238 * magnitude + 0.983);
+    }
+
+    /**
+     * Gardner-Knopoff time window.
+     *
+     * @param magnitude The magnitude of the larger event
+     * @return The time in seconds, before and after it, within which smaller events belong to it
+     */
+    public static long timeWindowSeconds(double magnitude) {
+        double days = magnitude >= 6.5
+                ? Math.pow(10, 0.032 * magnitude + 2.7389)
+                : Math.pow(10, 0.5409 * magnitude - 0.547);
+        return (long) (days * SECONDS_PER_DAY);
+    }
+
+    /**
+     * Assign an event to the sequence whose window holds it, or start a new sequence.
+     * Events without a hypocenter are not clustered; events without a magnitude only join
+     * existing sequences.
+     *
+     * @param earthquake The event
+     * @return The sequence, or null if the event could not be clustered
+     */
+    public synchronized AftershockSequence assign(Earthquake earthquake) {
+        AftershockSequence existing = byEventId.get(earthquake.getId());
+        if (existing != null) {
+            return existing;
+        }
+        double latitude = earthquake.getLatitude();
+        double longitude = earthquake.getLongitude();
+        double magnitude = earthquake.getMagnitude();
+        // The API uses -200 for an unknown hypocenter and -1 for an unknown magnitude
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            return null;
+        }
+        long time = earthquake.getEpochSecond();
+        latestEpochSecond = Math.max(latestEpochSecond, time);
+        sweep();
+
+        // Of the windows holding the event, the largest mainshock wins
+        int cell = cellOf(rowOf(latitude), columnOf(longitude));
+        AftershockSequence[] candidates = cells[cell];
+        AftershockSequence sequence = null;
+        for (int i = 0; i < cellSizes[cell]; i++) {
+            AftershockSequence candidate = candidates[i];
+            if (covers(candidate, latitude, longitude, time)
+                    && (sequence == null || candidate.magnitude > sequence.magnitude)) {
+                sequence = candidate;
+            }
+        }
+        if (sequence == null) {
+            if (!(magnitude >= 0)) {
+                return null;
+            }
+            sequence = new AftershockSequence(nextId++);
+            sequence.activeIndex = active.size();
+            active.add(sequence);
+        }
+        addMember(sequence, earthquake.getId());
+        if (sequence.add(earthquake)) {
+            open(sequence, earthquake);
+        }
+        assignedCount++;
+        return sequence;
+    }
+
+    /**
+     * @param earthquakeId An event id
+     * @return The sequence the event was assigned to, or null if it was not clustered or
+     *         its sequence's window has passed
+     */
+    public synchronized AftershockSequence sequenceOf(String earthquakeId) {
+        return byEventId.get(earthquakeId);
+    }
+
+    /**
+     * @param minCount Only return sequences with at least this many events
+     * @return The sequences whose window is still open, most events first
+     */
+    public synchronized List<AftershockSequence> activeSequences(int minCount) {
+        List<AftershockSequence> result = new ArrayList<>();
+        for (AftershockSequence sequence : active) {
+            if (sequence.getCount() >= minCount) {
+                result.add(sequence);
+            }
+        }
+        result.sort(Comparator.comparingInt(AftershockSequence::getCount).reversed()
+                .thenComparing(Comparator.comparingLong(AftershockSequence::getLastEpochSecond).reversed()));
+        return result;
+    }
+
+    /**
+     * @return The number of sequences whose window is still open
+     */
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+
+    /**
+     * @return The number of events assigned to a sequence
+     */
+    public synchronized long getAssignedCount() {
+        return assignedCount;
+    }
+
+    private static boolean covers(AftershockSequence sequence, double latitude, double longitude, long time) {
+        return time >= sequence.windowStart && time <= sequence.windowEnd
+                && GeoGridIndex.distanceKm(sequence.latitude, sequence.longitude, latitude, longitude) <= sequence.radiusKm;
+    }
+
+    /**
+     * Center the window of a sequence on its new mainshock, register it in the cells it
+     * reaches and merge the smaller sequences it now holds.
+     */
+    private void open(AftershockSequence sequence, Earthquake mainshock) {
+        sequence.latitude = mainshock.getLatitude();
+        sequence.longitude = mainshock.getLongitude();
+        sequence.magnitude = mainshock.getMagnitude();
+        sequence.epochSecond = mainshock.getEpochSecond();
+        sequence.radiusKm = distanceWindowKm(sequence.magnitude);
+        long span = timeWindowSeconds(sequence.magnitude);
+        sequence.windowStart = sequence.epochSecond - span;
+        sequence.windowEnd = sequence.epochSecond + span;
+
+        double latitudeSpan = sequence.radiusKm / KM_PER_DEGREE;
+        double farthestLatitude = Math.min(89, Math.abs(sequence.latitude) + latitudeSpan);
+        double longitudeSpan = Math.min(180, latitudeSpan / Math.cos(Math.toRadians(farthestLatitude)));
+        int firstRow = rowOf(Math.max(-90, sequence.latitude - latitudeSpan));
+        int lastRow = rowOf(Math.min(90, sequence.latitude + latitudeSpan));
+        int firstColumn = columnOf(Math.max(-180, sequence.longitude - longitudeSpan));
+        int lastColumn = columnOf(Math.min(180, sequence.longitude + longitudeSpan));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = cellOf(row, column);
+                AftershockSequence[] members = cells[cell];
+                boolean registered = false;
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    AftershockSequence other = members[i];
+                    if (other == sequence) {
+                        registered = true;
+                    } else if (other.magnitude < sequence.magnitude
+                            && covers(sequence, other.latitude, other.longitude, other.epochSecond)) {
+                        merged.add(other);
+                    }
+                }
+                if (!registered) {
+                    register(sequence, cell);
+                }
+            }
+        }
+        for (AftershockSequence other : merged) {
+            // A sequence reaching several cells is found once per cell
+            if (other.activeIndex >= 0) {
+                merge(sequence, other);
+            }
+        }
+        merged.clear();
+    }
+
+    private void merge(AftershockSequence into, AftershockSequence other) {
+        into.absorb(other);
+        for (int i = 0; i < other.memberCount; i++) {
+            byEventId.put(other.memberIds[i], into);
+            addMember(into, other.memberIds[i]);
+        }
+        retire(other);
+    }
+
+    /**
+     * Retire a few sequences whose window has passed, continuing where the last call stopped.
+     */
+    private void sweep() {
+        for (int step = 0; step < SWEEP_STEP && !active.isEmpty(); step++) {
+            if (sweepCursor >= active.size()) {
+                sweepCursor = 0;
+            }
+            AftershockSequence sequence = active.get(sweepCursor);
+            if (sequence.windowEnd < latestEpochSecond) {
+                // The last sequence moves into the cursor slot and is checked next
+                retire(sequence);
+            } else {
+                sweepCursor++;
+            }
+        }
+    }
+
+    private void retire(AftershockSequence sequence) {
+        int index = sequence.activeIndex;
+        AftershockSequence last = active.remove(active.size() - 1);
+        if (last != sequence) {
+            active.set(index, last);
+            last.activeIndex = index;
+        }
+        sequence.activeIndex = -1;
+        for (int i = 0; i < sequence.cellCount; i++) {
+            unregister(sequence, sequence.cells[i]);
+        }
+        for (int i = 0; i < sequence.memberCount; i++) {
+            byEventId.remove(sequence.memberIds[i], sequence);
+        }
+        sequence.cells = null;
+        sequence.memberIds = null;
+    }
+
+    private void addMember(AftershockSequence sequence, String earthquakeId) {
+        if (sequence.memberCount == sequence.memberIds.length) {
+            sequence.memberIds = Arrays.copyOf(sequence.memberIds, sequence.memberCount * 2);
+        }
+        sequence.memberIds[sequence.memberCount++] = earthquakeId;
+        byEventId.put(earthquakeId, sequence);
+    }
+
+    private void register(AftershockSequence sequence, int cell) {
+        AftershockSequence[] members = cells[cell];
+        if (members == null) {
+            members = new AftershockSequence[2];
+            cells[cell] = members;
+        } else if (cellSizes[cell] == members.length) {
+            members = Arrays.copyOf(members, members.length * 2);
+            cells[cell] = members;
+        }
+        members[cellSizes[cell]++] = sequence;
+        if (sequence.cellCount == sequence.cells.length) {
+            sequence.cells = Arrays.copyOf(sequence.cells, sequence.cellCount * 2);
+        }
+        sequence.cells[sequence.cellCount++] = cell;
+    }
+
+    private void unregister(AftershockSequence sequence, int cell) {
+        AftershockSequence[] members = cells[cell];
+        int size = cellSizes[cell];
+        for (int i = 0; i < size; i++) {
+            if (members[i] == sequence) {
+                members[i] = members[size - 1];
+                members[size - 1] = null;
+                cellSizes[cell] = size - 1;
+                break;
+            }
+        }
+        if (cellSizes[cell] == 0) {
+            cells[cell] = null;
+        }
+    }
+
+    private static int rowOf(double latitude) {
+        return Math.min(ROWS - 1, (int) ((latitude + 90) / CELL_DEGREES));
+    }
+
+    private static int columnOf(double longitude) {
+        return Math.min(COLUMNS - 1, (int) ((longitude + 180) / CELL_DEGREES));
+    }
+
+    private static int cellOf(int row, int column) {
+        return row * COLUMNS + column;
+    }
+}
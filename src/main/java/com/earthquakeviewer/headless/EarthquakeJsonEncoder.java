@@ -0,0 +1,92 @@
+package com.earthquakeviewer.headless;
+
+import com.earthquakeviewer.analytics.AftershockSequence;
+import com.earthquakeviewer.analytics.SequenceClusterer;
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes an {@link Earthquake} as one compact JSON object with the streaming generator.
+ */
+public class EarthquakeJsonEncoder {
+    private final JsonFactory jsonFactory;
+    private final SequenceClusterer sequences;
+
+    public EarthquakeJsonEncoder(JsonFactory jsonFactory) {
+        this(jsonFactory, null);
+    }
+
+    /**
+     * @param jsonFactory The factory for generators
+     * @param sequences The clusterer to add each event's aftershock sequence from, or null to leave it out
+     */
+    public EarthquakeJsonEncoder(JsonFactory jsonFactory, SequenceClusterer sequences) {
+        this.jsonFactory = jsonFactory;
+        this.sequences = sequences;
+    }
+
+    /**
+     * @param earthquake The event
+     * @return The event as UTF-8 JSON, without a trailing newline
+     */
+    public byte[] encode(Earthquake earthquake) {
+        try (ByteArrayBuilder buffer = new ByteArrayBuilder(512)) {
+            try (JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+                write(generator, earthquake);
+            }
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            // Only the in-memory buffer is written to
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the event as a JSON object.
+     *
+     * @param generator The generator, positioned where a value may start
+     * @param earthquake The event
+     * @throws IOException If the generator fails
+     */
+    public void write(JsonGenerator generator, Earthquake earthquake) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", earthquake.getId());
+        generator.writeNumberField("code", earthquake.getCode());
+        generator.writeNumberField("epochSecond", earthquake.getEpochSecond());
+        generator.writeStringField("time", earthquake.getTime().toString());
+        generator.writeStringField("location", earthquake.getLocation());
+        generator.writeNumberField("latitude", earthquake.getLatitude());
+        generator.writeNumberField("longitude", earthquake.getLongitude());
+        generator.writeNumberField("magnitude", earthquake.getMagnitude());
+        generator.writeNumberField("depth", earthquake.getDepth());
+        generator.writeNumberField("maxScale", earthquake.getMaxScale());
+        generator.writeStringField("domesticTsunami", earthquake.getDomesticTsunami());
+        ObservationPoints points = earthquake.getObservationPoints();
+        generator.writeArrayFieldStart("points");
+        for (int i = 0; i < points.size(); i++) {
+            generator.writeStartObject();
+            generator.writeStringField("addr", points.areaNameAt(i));
+            generator.writeNumberField("scale", points.scaleAt(i));
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        AftershockSequence sequence = sequences != null ? sequences.sequenceOf(earthquake.getId()) : null;
+        if (sequence != null) {
+            Earthquake mainshock = sequence.getMainshock();
+            generator.writeObjectFieldStart("sequence");
+            generator.writeNumberField("id", sequence.getId());
+            generator.writeNumberField("count", sequence.getCount());
+            generator.writeStringField("mainshockId", mainshock.getId());
+            generator.writeNumberField("mainshockMagnitude", mainshock.getMagnitude());
+            generator.writeNumberField("maxScale", sequence.getMaxScale());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+}
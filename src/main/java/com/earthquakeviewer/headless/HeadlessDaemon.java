@@ -0,0 +1,210 @@
+package com.earthquakeviewer.headless;
+
+import com.earthquakeviewer.repository.EarthquakeRepository;
+import com.earthquakeviewer.repository.MappedEarthquakeRepository;
+import com.earthquakeviewer.service.EarthquakeService;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the earthquake feed without a user interface: the realtime connection, the local
+ * store and any outbound sinks, until the process is stopped. Nothing in this package
+ * touches JavaFX, so no toolkit classes are loaded.
+ *
+ * <pre>
+ * --data-dir DIR     Where the history and HTTP cache live (default ~/.earthquake_viewer)
+ * --no-store         Do not keep a local history
+ * --jsonl FILE       Append every new earthquake to FILE as JSON lines
+ * --record FILE      Append every raw realtime message to FILE as a frame log for replay
+ * --sse-port PORT    Serve Server-Sent Events at http://HOST:PORT/events
+ * --sse-host HOST    The address for the SSE server (default 127.0.0.1)
+ * --relay-port PORT  Relay realtime messages to WebSocket clients at ws://HOST:PORT/
+ * --relay-host HOST  The address for the relay (default 127.0.0.1)
+ * --relay-replay N   How many recent messages a new relay client is sent (default 20)
+ * --metrics-port N   Serve Prometheus metrics on port N (default 9464; -1 for none)
+ * </pre>
+ */
+public final class HeadlessDaemon {
+    private static final Logger logger = LoggerFactory.getLogger(HeadlessDaemon.class);
+
+    private final EarthquakeRepository repository;
+    private final EarthquakeService service;
+    private final List<AutoCloseable> sinks = new ArrayList<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private HeadlessDaemon(Options options) throws IOException {
+        this.repository = options.store ? new MappedEarthquakeRepository(options.dataDir.resolve("history")) : null;
+        this.service = new EarthquakeService(repository, options.dataDir.resolve("http_cache"));
+        service.setMetricsPort(options.metricsPort);
+
+        if (options.recordFile != null) {
+            service.startRecording(options.recordFile);
+        }
+        EarthquakeJsonEncoder encoder = new EarthquakeJsonEncoder(new JsonFactory(), service.getSequences());
+        if (options.jsonLinesFile != null) {
+            JsonLinesSink jsonLinesSink = new JsonLinesSink(options.jsonLinesFile, encoder,
+                    service.getEarthquakePublisher());
+            service.getMetrics().counter("p2pquake_dropped_events_total", "Events discarded from full subscriber buffers",
+                    jsonLinesSink::getDroppedCount, "channel", "earthquake", "stage", "jsonl");
+            sinks.add(jsonLinesSink);
+        }
+        if (options.ssePort >= 0) {
+            SseServer sseServer = new SseServer(options.sseHost, options.ssePort, encoder,
+                    service.getEarthquakePublisher());
+            service.getMetrics().gauge("earthquake_sse_clients", "Connected SSE clients", sseServer::getClientCount);
+            service.getMetrics().counter("p2pquake_dropped_events_total", "Events discarded from full subscriber buffers",
+                    sseServer::getDroppedCount, "channel", "earthquake", "stage", "sse");
+            sseServer.start();
+            sinks.add(sseServer);
+        }
+        if (options.relayPort >= 0) {
+            RelayServer relayServer = new RelayServer(options.relayHost, options.relayPort, options.relayReplay,
+                    service.getFramePublisher());
+            service.getMetrics().gauge("earthquake_relay_clients", "Connected relay clients",
+                    relayServer::getClientCount);
+            service.getMetrics().counter("earthquake_relay_sent_frames_total", "Frames queued to relay clients",
+                    relayServer::getSentCount);
+            service.getMetrics().counter("p2pquake_dropped_events_total", "Events discarded from full subscriber buffers",
+                    relayServer::getDroppedCount, "channel", "frames", "stage", "relay");
+            relayServer.start();
+            sinks.add(relayServer);
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        HeadlessDaemon daemon;
+        try {
+            daemon = new HeadlessDaemon(options);
+        } catch (IOException e) {
+            logger.error("Failed to start headless daemon", e);
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop, "headless-shutdown"));
+        daemon.run();
+    }
+
+    private void run() {
+        service.start();
+        logger.info("Headless daemon running");
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stop() {
+        logger.info("Stopping headless daemon");
+        for (AutoCloseable sink : sinks) {
+            try {
+                sink.close();
+            } catch (Exception e) {
+                logger.error("Failed to close {}", sink, e);
+            }
+        }
+        service.shutdown();
+        if (repository != null) {
+            try {
+                repository.close();
+            } catch (IOException e) {
+                logger.error("Failed to close local earthquake history", e);
+            }
+        }
+        stopped.countDown();
+    }
+
+    /**
+     * Command line settings.
+     */
+    private static final class Options {
+        private Path dataDir = Paths.get(System.getProperty("user.home"), ".earthquake_viewer");
+        private boolean store = true;
+        private Path jsonLinesFile;
+        private Path recordFile;
+        private String sseHost = "127.0.0.1";
+        private int ssePort = -1;
+        private String relayHost = "127.0.0.1";
+        private int relayPort = -1;
+        private int relayReplay = 20;
+        // Unlike the desktop app, the daemon is usually scraped, so metrics are on by default
+        private int metricsPort = Integer.getInteger(EarthquakeService.METRICS_PORT_PROPERTY,
+                EarthquakeService.DEFAULT_METRICS_PORT);
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--headless":
+                        break;
+                    case "--data-dir":
+                        options.dataDir = Paths.get(value(args, ++i));
+                        break;
+                    case "--no-store":
+                        options.store = false;
+                        break;
+                    case "--jsonl":
+                        options.jsonLinesFile = Paths.get(value(args, ++i));
+                        break;
+                    case "--record":
+                        options.recordFile = Paths.get(value(args, ++i));
+                        break;
+                    case "--sse-host":
+                        options.sseHost = value(args, ++i);
+                        break;
+                    case "--sse-port":
+                        options.ssePort = number(args, ++i);
+                        break;
+                    case "--relay-host":
+                        options.relayHost = value(args, ++i);
+                        break;
+                    case "--relay-port":
+                        options.relayPort = number(args, ++i);
+                        break;
+                    case "--relay-replay":
+                        options.relayReplay = Math.max(0, number(args, ++i));
+                        break;
+                    case "--metrics-port":
+                        options.metricsPort = number(args, ++i);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            return options;
+        }
+
+        private static String value(String[] args, int index) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException(args[index - 1] + " needs a value");
+            }
+            return args[index];
+        }
+
+        private static int number(String[] args, int index) {
+            String value = value(args, index);
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(args[index - 1] + " needs a number");
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.earthquakeviewer.headless;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.service.BackgroundWriter;
+import com.earthquakeviewer.service.EventPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Flow;
+
+/**
+ * Appends every new earthquake to a file as one JSON object per line.
+ * The file is flushed after each event so a tailing reader sees it immediately. Writes run
+ * on their own thread, so a stalled disk discards events once the queue is full rather
+ * than holding up the feed.
+ */
+public class JsonLinesSink implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JsonLinesSink.class);
+    private static final int QUEUE_EVENTS = 65536;
+    private static final int BUFFER_EVENTS = 256;
+
+    private final Path file;
+    private final EarthquakeJsonEncoder encoder;
+    private final OutputStream out;
+    private final BackgroundWriter<Earthquake> writer;
+    private final Flow.Subscription subscription;
+
+    /**
+     * Open the file for appending and subscribe to the feed.
+     *
+     * @param file The output file; parent directories are created
+     * @param encoder Serialises each event
+     * @param publisher The earthquake feed
+     * @throws IOException If the file cannot be opened
+     */
+    public JsonLinesSink(Path file, EarthquakeJsonEncoder encoder, EventPublisher<Earthquake> publisher)
+            throws IOException {
+        this.file = file;
+        this.encoder = encoder;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.out = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        this.writer = new BackgroundWriter<>("jsonl-writer", QUEUE_EVENTS, this::write);
+        this.subscription = publisher.subscribe(writer, EventPublisher.OverflowPolicy.DROP_OLDEST, BUFFER_EVENTS);
+        logger.info("Writing earthquakes to {}", file);
+    }
+
+    private synchronized void write(Earthquake earthquake) {
+        try {
+            out.write(encoder.encode(earthquake));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            logger.error("Failed to write earthquake {} to {}", earthquake.getId(), file, e);
+        }
+    }
+
+    /**
+     * @return The number of events discarded because the disk fell behind
+     */
+    public long getDroppedCount() {
+        return writer.getOverflowCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        subscription.cancel();
+        writer.close();
+        synchronized (this) {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.earthquakeviewer.headless;
+
+import com.earthquakeviewer.model.EarlyWarning;
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.model.QuakeMessage;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * What one relay client wants to receive, taken from the query string it connected with:
+ *
+ * <pre>
+ * codes=551,556        Only these P2P Quake codes
+ * minScale=40          Earthquakes and early warnings reaching at least this P2P scale
+ * minMagnitude=5.0     Earthquakes and early warnings of at least this magnitude
+ * prefecture=Tokyo     Earthquakes observed in, or early warnings covering, a prefecture;
+ *                      repeat or separate with commas for several
+ * </pre>
+ *
+ * Conditions on scale, magnitude and prefecture only apply to messages that carry them;
+ * use {@code codes} to leave out the other kinds.
+ */
+final class RelayFilter {
+    static final RelayFilter ALL = new RelayFilter(null, Integer.MIN_VALUE, Double.NEGATIVE_INFINITY, 0);
+
+    // Bit per accepted code (551 = bit 0), or null for every code
+    private final long[] codes;
+    private final int minScale;
+    private final double minMagnitude;
+    private final long prefectureMask;
+
+    private RelayFilter(long[] codes, int minScale, double minMagnitude, long prefectureMask) {
+        this.codes = codes;
+        this.minScale = minScale;
+        this.minMagnitude = minMagnitude;
+        this.prefectureMask = prefectureMask;
+    }
+
+    /**
+     * Parse the filter from a WebSocket request path such as {@code /?codes=551&minScale=30}.
+     *
+     * @param resource The request path and query
+     * @return The filter
+     * @throws IllegalArgumentException If a parameter is unknown or malformed
+     */
+    static RelayFilter parse(String resource) {
+        String query = resource == null ? null : URI.create(resource).getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return ALL;
+        }
+        long[] codes = null;
+        int minScale = Integer.MIN_VALUE;
+        double minMagnitude = Double.NEGATIVE_INFINITY;
+        long prefectureMask = 0;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            try {
+                switch (name) {
+                    case "codes":
+                        codes = codes != null ? codes : new long[2];
+                        for (String code : value.split(",")) {
+                            int bit = Integer.parseInt(code.trim()) - QuakeMessage.CODE_EARTHQUAKE;
+                            if (bit < 0 || bit >= 128) {
+                                throw new IllegalArgumentException("Unknown code: " + code);
+                            }
+                            codes[bit >> 6] |= 1L << bit;
+                        }
+                        break;
+                    case "minScale":
+                        minScale = Integer.parseInt(value);
+                        break;
+                    case "minMagnitude":
+                        minMagnitude = Double.parseDouble(value);
+                        break;
+                    case "prefecture":
+                        for (String prefectureName : value.split(",")) {
+                            Prefecture prefecture = Prefecture.fromName(prefectureName.trim());
+                            if (prefecture == null) {
+                                throw new IllegalArgumentException("Unknown prefecture: " + prefectureName);
+                            }
+                            prefectureMask |= prefecture.bit();
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown parameter: " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed " + name + ": " + value);
+            }
+        }
+        return new RelayFilter(codes, minScale, minMagnitude, prefectureMask);
+    }
+
+    /**
+     * @param message A decoded message
+     * @return Whether the client should receive it
+     */
+    boolean accepts(QuakeMessage message) {
+        if (codes != null) {
+            int bit = message.getCode() - QuakeMessage.CODE_EARTHQUAKE;
+            if (bit < 0 || bit >= 128 || (codes[bit >> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        if (message instanceof Earthquake) {
+            Earthquake earthquake = (Earthquake) message;
+            return earthquake.getMaxScale() >= minScale
+                    && earthquake.getMagnitude() >= minMagnitude
+                    && (prefectureMask == 0 || (earthquake.getPrefectureMask() & prefectureMask) != 0);
+        }
+        if (message instanceof EarlyWarning) {
+            return accepts((EarlyWarning) message);
+        }
+        return true;
+    }
+
+    private boolean accepts(EarlyWarning warning) {
+        if (warning.getMagnitude() < minMagnitude) {
+            return false;
+        }
+        if (minScale == Integer.MIN_VALUE && prefectureMask == 0) {
+            return true;
+        }
+        // Some area must satisfy both conditions
+        for (EarlyWarning.Area area : warning.getAreas()) {
+            if (area.getScaleFrom() < minScale) {
+                continue;
+            }
+            Prefecture prefecture = Prefecture.fromName(area.getPrefecture());
+            if (prefectureMask == 0 || (prefecture != null && (prefecture.bit() & prefectureMask) != 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
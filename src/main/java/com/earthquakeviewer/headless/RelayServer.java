@@ -0,0 +1,233 @@
+package com.earthquakeviewer.headless;
+
+import com.earthquakeviewer.service.EventPublisher;
+import com.earthquakeviewer.service.RealtimeFrame;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebroadcasts the realtime feed to local WebSocket clients, so any number of viewers
+ * share the daemon's single upstream connection. Clients receive the upstream JSON
+ * unchanged and can point {@code earthquake.realtime.url} at the relay.
+ *
+ * Each message is encoded once: its UTF-8 payload is built when the message arrives and
+ * the same frame is handed to every client that wants it. Clients choose what they want
+ * with a query string (see {@link RelayFilter}) and are sent the last few matching
+ * messages when they connect. A client that has {@value #MAX_QUEUED_FRAMES} frames
+ * waiting skips messages instead of growing memory without bound.
+ */
+public class RelayServer extends WebSocketServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(RelayServer.class);
+    private static final int FEED_BUFFER_FRAMES = 256;
+    // Frames waiting to be written to one client before it misses new ones
+    private static final int MAX_QUEUED_FRAMES = 1024;
+    private static final int STOP_TIMEOUT_MILLIS = 1000;
+
+    private final int replayFrames;
+    private final EventPublisher<RealtimeFrame> publisher;
+    private final Map<WebSocket, Client> clients = new ConcurrentHashMap<>();
+    // Guards the replay buffer and the clients' queue counts, and keeps replay and live
+    // frames in order for a new client
+    private final Object lock = new Object();
+    private final ArrayDeque<Encoded> replay = new ArrayDeque<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private Flow.Subscription feedSubscription;
+
+    /**
+     * Create the relay; call {@link #start()} to bind and start relaying.
+     *
+     * @param host The address to bind
+     * @param port The port, or 0 for any free port
+     * @param replayFrames How many recent messages a new client is sent
+     * @param publisher The realtime frames to relay
+     */
+    public RelayServer(String host, int port, int replayFrames, EventPublisher<RealtimeFrame> publisher) {
+        // No extension such as compression, so a shared frame costs each client only a copy
+        super(new InetSocketAddress(host, port), Collections.<Draft>singletonList(new Draft_6455()));
+        this.replayFrames = replayFrames;
+        this.publisher = publisher;
+        setReuseAddr(true);
+        setConnectionLostTimeout(60);
+    }
+
+    /**
+     * @return The number of connected clients
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return The number of frames queued to clients, including replays
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * @return The number of frames skipped for clients that could not keep up
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void onStart() {
+        feedSubscription = publisher.subscribe(this::relay, EventPublisher.OverflowPolicy.DROP_OLDEST,
+                FEED_BUFFER_FRAMES);
+        logger.info("Relaying realtime messages at ws://{}:{}/", getAddress().getHostString(), getPort());
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        RelayFilter filter;
+        try {
+            filter = RelayFilter.parse(handshake.getResourceDescriptor());
+        } catch (IllegalArgumentException e) {
+            conn.close(CloseFrame.POLICY_VALIDATION, e.getMessage());
+            return;
+        }
+        Client client = new Client(filter);
+        synchronized (lock) {
+            for (Encoded frame : replay) {
+                if (filter.accepts(frame.source.getMessage())) {
+                    send(conn, client, frame.frame);
+                }
+            }
+            clients.put(conn, client);
+        }
+        logger.info("Relay client connected from {}", conn.getRemoteSocketAddress());
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        if (clients.remove(conn) != null) {
+            logger.info("Relay client {} disconnected", conn.getRemoteSocketAddress());
+        }
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        // Clients only listen
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        if (conn == null) {
+            logger.error("Relay server error", ex);
+        } else {
+            logger.debug("Relay client {} failed", conn.getRemoteSocketAddress(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (feedSubscription != null) {
+            feedSubscription.cancel();
+        }
+        try {
+            stop(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void relay(RealtimeFrame frame) {
+        Encoded encoded = new Encoded(frame, textFrame(frame.getText()));
+        synchronized (lock) {
+            if (replayFrames > 0) {
+                if (replay.size() >= replayFrames) {
+                    replay.poll();
+                }
+                replay.add(encoded);
+            }
+            for (Map.Entry<WebSocket, Client> client : clients.entrySet()) {
+                if (client.getValue().filter.accepts(frame.getMessage())) {
+                    send(client.getKey(), client.getValue(), encoded.frame);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue a frame on a connection. The connection only reports whether anything is still
+     * buffered, so the client counts the frames queued since it last had nothing buffered;
+     * that count never understates the queue, which therefore stays within
+     * {@value #MAX_QUEUED_FRAMES} frames. Called with the lock held, since the library
+     * resets a shared frame's payload after encoding it.
+     */
+    private void send(WebSocket conn, Client client, Framedata frame) {
+        if (!conn.isOpen()) {
+            return;
+        }
+        if (!conn.hasBufferedData()) {
+            client.queued = 0;
+        }
+        if (client.queued >= MAX_QUEUED_FRAMES) {
+            dropped.incrementAndGet();
+            return;
+        }
+        try {
+            conn.sendFrame(frame);
+        } catch (WebsocketNotConnectedException e) {
+            // Closed since the check above; onClose removes the client
+            return;
+        }
+        client.queued++;
+        sent.incrementAndGet();
+    }
+
+    /**
+     * Build a final text frame for a message.
+     */
+    static Framedata textFrame(String text) {
+        TextFrame frame = new TextFrame();
+        frame.setPayload(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        return frame;
+    }
+
+    /**
+     * A frame with the message it carries.
+     */
+    private static final class Encoded {
+        final RealtimeFrame source;
+        final Framedata frame;
+
+        Encoded(RealtimeFrame source, Framedata frame) {
+            this.source = source;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * One connected client's filter and the frames queued to it, guarded by the lock.
+     */
+    private static final class Client {
+        final RelayFilter filter;
+        int queued;
+
+        Client(RelayFilter filter) {
+            this.filter = filter;
+        }
+    }
+}
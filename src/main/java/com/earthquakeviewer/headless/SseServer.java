@@ -0,0 +1,203 @@
+package com.earthquakeviewer.headless;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.service.EventPublisher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events fan-out of the earthquake feed at /events.
+ * Each event is serialised once and the same bytes go to every client. Every client has
+ * its own bounded buffer and drops its oldest events when it cannot keep up, so a slow
+ * client never holds up the feed or the other clients. A comment line is sent to every
+ * client every {@value #KEEP_ALIVE_SECONDS} seconds, so a client that went away is noticed
+ * even when the feed is quiet, and proxies do not time the stream out.
+ */
+public class SseServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SseServer.class);
+    private static final int CLIENT_BUFFER_EVENTS = 256;
+    private static final int KEEP_ALIVE_SECONDS = 15;
+    private static final byte[] HELLO = ": connected\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEEP_ALIVE = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpServer server;
+    private final ExecutorService acceptExecutor;
+    private final ExecutorService writeExecutor;
+    private final ScheduledExecutorService keepAliveExecutor;
+    private final EventPublisher<byte[]> frames;
+    private final Flow.Subscription feedSubscription;
+    private final AtomicInteger clients = new AtomicInteger();
+
+    /**
+     * Bind the server and subscribe to the feed; call {@link #start()} to accept clients.
+     *
+     * @param host The address to bind
+     * @param port The port, or 0 for any free port
+     * @param encoder Serialises each event
+     * @param publisher The earthquake feed
+     * @throws IOException If the address cannot be bound
+     */
+    public SseServer(String host, int port, EarthquakeJsonEncoder encoder, EventPublisher<Earthquake> publisher)
+            throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.acceptExecutor = Executors.newSingleThreadExecutor(daemonThreads("sse-server"));
+        // Each client is written to by at most one thread at a time
+        this.writeExecutor = Executors.newCachedThreadPool(daemonThreads("sse-writer"));
+        this.frames = new EventPublisher<>(writeExecutor, EventPublisher.OverflowPolicy.DROP_OLDEST,
+                CLIENT_BUFFER_EVENTS);
+        server.setExecutor(acceptExecutor);
+        server.createContext("/events", this::handle);
+        this.feedSubscription = publisher.subscribe(earthquake -> frames.submit(toFrame(encoder, earthquake)),
+                EventPublisher.OverflowPolicy.DROP_OLDEST, CLIENT_BUFFER_EVENTS);
+        this.keepAliveExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreads("sse-keep-alive"));
+    }
+
+    public void start() {
+        server.start();
+        // Sent through the clients' buffers like any frame, so a stuck client only delays itself
+        keepAliveExecutor.scheduleAtFixedRate(() -> frames.submit(KEEP_ALIVE),
+                KEEP_ALIVE_SECONDS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        logger.info("Serving earthquake events at http://{}:{}/events",
+                server.getAddress().getHostString(), server.getAddress().getPort());
+    }
+
+    /**
+     * @return The bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return The number of connected clients
+     */
+    public int getClientCount() {
+        return clients.get();
+    }
+
+    /**
+     * @return The number of events dropped for slow clients
+     */
+    public long getDroppedCount() {
+        return frames.getDroppedCount();
+    }
+
+    @Override
+    public void close() {
+        keepAliveExecutor.shutdownNow();
+        feedSubscription.cancel();
+        frames.close();
+        server.stop(0);
+        acceptExecutor.shutdownNow();
+        writeExecutor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static byte[] toFrame(EarthquakeJsonEncoder encoder, Earthquake earthquake) {
+        byte[] json = encoder.encode(earthquake);
+        byte[] prefix = ("id: " + earthquake.getId() + "\nevent: earthquake\ndata: ").getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[prefix.length + json.length + 2];
+        System.arraycopy(prefix, 0, frame, 0, prefix.length);
+        System.arraycopy(json, 0, frame, prefix.length, json.length);
+        frame[frame.length - 2] = '\n';
+        frame[frame.length - 1] = '\n';
+        return frame;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        out.write(HELLO);
+        out.flush();
+
+        // The exchange stays open after this handler returns; frames are written on delivery threads
+        clients.incrementAndGet();
+        frames.subscribe(new Client(exchange, out), EventPublisher.OverflowPolicy.DROP_OLDEST, CLIENT_BUFFER_EVENTS);
+        logger.info("SSE client connected from {}", exchange.getRemoteAddress());
+    }
+
+    /**
+     * One connected client. It receives its subscription before any frame is delivered,
+     * and leaves the client count exactly once, on the first failed write or when the feed ends.
+     */
+    private final class Client implements Flow.Subscriber<byte[]> {
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private Flow.Subscription subscription;
+        private boolean closed;
+
+        Client(HttpExchange exchange, OutputStream out) {
+            this.exchange = exchange;
+            this.out = out;
+        }
+
+        @Override
+        public synchronized void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public synchronized void onNext(byte[] frame) {
+            if (closed) {
+                return;
+            }
+            try {
+                out.write(frame);
+                out.flush();
+            } catch (IOException e) {
+                logger.debug("SSE client {} disconnected", exchange.getRemoteAddress());
+                subscription.cancel();
+                disconnect();
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable throwable) {
+            logger.warn("SSE client {} subscription failed", exchange.getRemoteAddress(), throwable);
+            disconnect();
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            disconnect();
+        }
+
+        private void disconnect() {
+            if (!closed) {
+                closed = true;
+                clients.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.earthquakeviewer.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows realtime messages from the socket to the screen and records how long each
+ * stage took:
+ * <ul>
+ *   <li>source: from the message's own timestamp to socket receive (wall clock, includes clock skew)</li>
+ *   <li>dispatch: from receive to a listener picking the message up</li>
+ *   <li>render: from receive to the message being applied to the view</li>
+ *   <li>end to end: from the message's timestamp to the view</li>
+ * </ul>
+ * Parse time is recorded by the decoder itself. Messages are tracked by id; a bounded
+ * number of messages that never reach a later stage are forgotten oldest first.
+ */
+public class AlertLatency {
+    private static final int MAX_PENDING = 1024;
+
+    private final MetricsRegistry registry;
+    private final LatencyHistogram dispatch;
+    private final LatencyHistogram render;
+    private final Map<String, Pending> pending = new LinkedHashMap<String, Pending>(64, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pending> eldest) {
+            return size() > MAX_PENDING;
+        }
+    };
+
+    /**
+     * @param registry Where the stage histograms are registered
+     */
+    public AlertLatency(MetricsRegistry registry) {
+        this.registry = registry;
+        this.dispatch = registry.histogram("p2pquake_dispatch_seconds",
+                "Time from socket receive to a listener handling the message");
+        this.render = registry.histogram("p2pquake_render_seconds",
+                "Time from socket receive to the message being applied to the view");
+    }
+
+    /**
+     * Record that a message was received and decoded.
+     *
+     * @param id The message id
+     * @param code The P2P Quake code
+     * @param issuedEpochMillis The message's own timestamp, or {@link Long#MIN_VALUE} if unknown
+     * @param receivedNanos The {@link System#nanoTime()} at socket receive
+     * @param receivedEpochMillis The wall clock at socket receive
+     */
+    public void received(String id, int code, long issuedEpochMillis, long receivedNanos, long receivedEpochMillis) {
+        String codeLabel = String.valueOf(code);
+        if (issuedEpochMillis != Long.MIN_VALUE) {
+            registry.histogram("p2pquake_source_delay_seconds",
+                    "Time from the message timestamp to socket receive", "code", codeLabel)
+                    .record(TimeUnit.MILLISECONDS.toNanos(receivedEpochMillis - issuedEpochMillis));
+        }
+        synchronized (pending) {
+            pending.put(id, new Pending(codeLabel, issuedEpochMillis, receivedNanos));
+        }
+    }
+
+    /**
+     * Record that a listener started handling a message.
+     *
+     * @param id The message id
+     */
+    public void dispatched(String id) {
+        Pending message;
+        synchronized (pending) {
+            message = pending.get(id);
+        }
+        if (message != null) {
+            dispatch.recordSince(message.receivedNanos);
+        }
+    }
+
+    /**
+     * Record that a message was applied to the view, ending its tracking.
+     *
+     * @param id The message id
+     */
+    public void rendered(String id) {
+        Pending message;
+        synchronized (pending) {
+            message = pending.remove(id);
+        }
+        if (message == null) {
+            return;
+        }
+        render.recordSince(message.receivedNanos);
+        if (message.issuedEpochMillis != Long.MIN_VALUE) {
+            registry.histogram("p2pquake_alert_latency_seconds",
+                    "Time from the message timestamp to the message being applied to the view",
+                    "code", message.code)
+                    .record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - message.issuedEpochMillis));
+        }
+    }
+
+    private static final class Pending {
+        private final String code;
+        private final long issuedEpochMillis;
+        private final long receivedNanos;
+
+        Pending(String code, long issuedEpochMillis, long receivedNanos) {
+            this.code = code;
+            this.issuedEpochMillis = issuedEpochMillis;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.earthquakeviewer.metrics;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * JVM memory, garbage collection, thread and class loading gauges read from the platform MXBeans.
+ */
+public final class JvmMetrics {
+    private JvmMetrics() {
+    }
+
+    /**
+     * Register the JVM metrics.
+     *
+     * @param registry The registry to add them to
+     */
+    public static void register(MetricsRegistry registry) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        registry.gauge("jvm_memory_used_bytes", "Used memory",
+                () -> memory.getHeapMemoryUsage().getUsed(), "area", "heap");
+        registry.gauge("jvm_memory_used_bytes", "Used memory",
+                () -> memory.getNonHeapMemoryUsage().getUsed(), "area", "nonheap");
+        registry.gauge("jvm_memory_committed_bytes", "Committed memory",
+                () -> memory.getHeapMemoryUsage().getCommitted(), "area", "heap");
+        registry.gauge("jvm_memory_committed_bytes", "Committed memory",
+                () -> memory.getNonHeapMemoryUsage().getCommitted(), "area", "nonheap");
+        registry.gauge("jvm_memory_max_bytes", "Maximum heap size, or -1 if undefined",
+                () -> memory.getHeapMemoryUsage().getMax(), "area", "heap");
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            registry.counter("jvm_gc_collections_total", "Garbage collections",
+                    collector::getCollectionCount, "gc", collector.getName());
+            registry.gauge("jvm_gc_collection_seconds", "Total time spent in garbage collection",
+                    () -> collector.getCollectionTime() / 1000.0, "gc", collector.getName());
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        registry.gauge("jvm_threads_live", "Live threads", threads::getThreadCount);
+        registry.gauge("jvm_threads_daemon", "Live daemon threads", threads::getDaemonThreadCount);
+        registry.gauge("jvm_threads_peak", "Peak live threads", threads::getPeakThreadCount);
+
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        registry.gauge("jvm_classes_loaded", "Currently loaded classes", classes::getLoadedClassCount);
+
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        registry.gauge("jvm_uptime_seconds", "Time since the JVM started", () -> runtime.getUptime() / 1000.0);
+        registry.gauge("jvm_available_processors", "Processors available to the JVM",
+                () -> Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,182 @@
+package com.earthquakeviewer.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, gauges and latency histograms, written out in the Prometheus text
+ * exposition format. Metrics are created on first use and looked up by name and labels,
+ * so callers may either keep the returned object or ask for it again.
+ *
+ * Labels are given as alternating names and values, e.g. {@code "code", "551"}.
+ * Histograms are exposed as summaries in seconds with fixed quantiles.
+ */
+public class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Get or create a counter.
+     *
+     * @param name The metric name, ending in "_total"
+     * @param help The description
+     * @param labels Alternating label names and values
+     * @return The counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").child(labels, Counter::new);
+    }
+
+    /**
+     * Expose a count kept elsewhere, e.g. by a component that predates the registry.
+     *
+     * @param name The metric name, ending in "_total"
+     * @param help The description
+     * @param value Reads the current count
+     * @param labels Alternating label names and values
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, "counter").set(labels, (DoubleSupplier) value::getAsLong);
+    }
+
+    /**
+     * Expose a value that can go up and down. Registering the same name and labels again replaces it.
+     *
+     * @param name The metric name
+     * @param help The description
+     * @param value Reads the current value
+     * @param labels Alternating label names and values
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").set(labels, value);
+    }
+
+    /**
+     * Get or create a latency histogram, recorded in nanoseconds.
+     *
+     * @param name The metric name, ending in "_seconds"
+     * @param help The description
+     * @param labels Alternating label names and values
+     * @return The histogram
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, "summary").child(labels, LatencyHistogram::new);
+    }
+
+    /**
+     * Write all metrics in the Prometheus text format, version 0.0.4.
+     *
+     * @param out The destination
+     */
+    public void writePrometheus(StringBuilder out) {
+        Family[] snapshot;
+        synchronized (families) {
+            snapshot = families.values().toArray(new Family[0]);
+        }
+        for (Family family : snapshot) {
+            family.write(out);
+        }
+    }
+
+    private Family family(String name, String help, String type) {
+        synchronized (families) {
+            Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+            if (!family.type.equals(type)) {
+                throw new IllegalArgumentException("Metric " + name + " is already a " + family.type);
+            }
+            return family;
+        }
+    }
+
+    /**
+     * All metrics sharing a name, keyed by their rendered label set.
+     */
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> children = new LinkedHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        synchronized Object child(String[] labels, Supplier<Object> factory) {
+            return children.computeIfAbsent(renderLabels(labels), l -> factory.get());
+        }
+
+        synchronized void set(String[] labels, Object value) {
+            children.put(renderLabels(labels), value);
+        }
+
+        void write(StringBuilder out) {
+            Map<String, Object> snapshot;
+            synchronized (this) {
+                snapshot = new LinkedHashMap<>(children);
+            }
+            out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof Counter) {
+                    sample(out, name, labels, ((Counter) metric).get());
+                } else if (metric instanceof DoubleSupplier) {
+                    sample(out, name, labels, ((DoubleSupplier) metric).getAsDouble());
+                } else {
+                    LatencyHistogram histogram = (LatencyHistogram) metric;
+                    for (double quantile : QUANTILES) {
+                        String quantileLabels = labels.isEmpty()
+                                ? "quantile=\"" + quantile + "\""
+                                : labels + ",quantile=\"" + quantile + "\"";
+                        sample(out, name, quantileLabels, histogram.getPercentile(quantile * 100) / NANOS_PER_SECOND);
+                    }
+                    sample(out, name + "_sum", labels, histogram.getSum() / NANOS_PER_SECOND);
+                    sample(out, name + "_count", labels, histogram.getCount());
+                }
+            }
+        }
+
+        private static void sample(StringBuilder out, String name, String labels, double value) {
+            out.append(name);
+            if (!labels.isEmpty()) {
+                out.append('{').append(labels).append('}');
+            }
+            out.append(' ');
+            if (Double.isNaN(value)) {
+                out.append("NaN");
+            } else if (Double.isInfinite(value)) {
+                out.append(value > 0 ? "+Inf" : "-Inf");
+            } else if (value == (long) value) {
+                out.append((long) value);
+            } else {
+                out.append(value);
+            }
+            out.append('\n');
+        }
+
+        private static String renderLabels(String[] labels) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels must be name/value pairs");
+            }
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                text.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.earthquakeviewer.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary of observation area names. Every distinct name is held once and
+ * referred to by a small dense id, so events refer to areas by id instead of carrying
+ * their own copies of the names. There are a few thousand observation areas in Japan,
+ * and the set only grows.
+ *
+ * <p>Lookups of known names and ids take no lock; adding a new name is serialised.</p>
+ */
+public final class AreaDictionary {
+    /** Id returned by {@link #find(String)} for a name that has never been interned. */
+    public static final int NOT_FOUND = -1;
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Replaced after every addition, so readers that see an id also see its name
+    private static volatile String[] names = new String[1024];
+    private static int size;
+
+    private AreaDictionary() {
+    }
+
+    /**
+     * @param name The area name, e.g. "輪島市"; null is treated as the empty name
+     * @return The id of the name, added if it is new
+     */
+    public static int intern(String name) {
+        String key = name != null ? name : "";
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (AreaDictionary.class) {
+            id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            String[] current = names;
+            String[] updated = size < current.length ? current : Arrays.copyOf(current, current.length * 2);
+            updated[size] = key;
+            names = updated;
+            ids.put(key, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @param name The area name
+     * @return Its id, or {@link #NOT_FOUND} if no event has been observed there
+     */
+    public static int find(String name) {
+        Integer id = ids.get(name != null ? name : "");
+        return id != null ? id : NOT_FOUND;
+    }
+
+    /**
+     * @param id An id returned by {@link #intern(String)}
+     * @return The area name
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return The number of distinct area names
+     */
+    public static int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,165 @@
+package com.earthquakeviewer.model;
+
+import java.util.List;
+
+/**
+ * Immutable model of an earthquake early warning at warning level (code 556).
+ * A warning is revised several times as the event develops; revisions share an
+ * event id and carry an increasing serial number.
+ */
+public final class EarlyWarning implements QuakeMessage {
+    private final String id;
+    private final String eventId;
+    private final int serial;
+    private final long issuedEpochSecond;
+    private final boolean test;
+    private final boolean cancelled;
+    private final long originEpochSecond;
+    private final String location;
+    private final double latitude;
+    private final double longitude;
+    private final int depth;
+    private final double magnitude;
+    private final List<Area> areas;
+
+    /**
+     * @param id The P2P Quake message id
+     * @param eventId The JMA event id shared by all revisions
+     * @param serial The revision number
+     * @param issuedEpochSecond The issue time in seconds since the epoch
+     * @param test Whether this is a test message
+     * @param cancelled Whether this revision cancels the warning
+     * @param originEpochSecond The estimated origin time, or {@link Long#MIN_VALUE} if unknown
+     * @param location The hypocenter name, or null if unknown
+     * @param latitude The hypocenter latitude
+     * @param longitude The hypocenter longitude
+     * @param depth The depth in km
+     * @param magnitude The magnitude
+     * @param areas The areas expected to reach warning-level intensity
+     */
+    public EarlyWarning(String id, String eventId, int serial, long issuedEpochSecond, boolean test,
+                        boolean cancelled, long originEpochSecond, String location, double latitude,
+                        double longitude, int depth, double magnitude, List<Area> areas) {
+        this.id = id;
+        this.eventId = eventId;
+        this.serial = serial;
+        this.issuedEpochSecond = issuedEpochSecond;
+        this.test = test;
+        this.cancelled = cancelled;
+        this.originEpochSecond = originEpochSecond;
+        this.location = location;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.depth = depth;
+        this.magnitude = magnitude;
+        this.areas = areas;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getCode() {
+        return CODE_EEW;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public int getSerial() {
+        return serial;
+    }
+
+    public long getIssuedEpochSecond() {
+        return issuedEpochSecond;
+    }
+
+    public boolean isTest() {
+        return test;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getOriginEpochSecond() {
+        return originEpochSecond;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public double getMagnitude() {
+        return magnitude;
+    }
+
+    public List<Area> getAreas() {
+        return areas;
+    }
+
+    @Override
+    public String toString() {
+        return "EarlyWarning{id='" + id + "', eventId='" + eventId + "', serial=" + serial +
+                ", location='" + location + "', magnitude=" + magnitude + ", cancelled=" + cancelled + '}';
+    }
+
+    /**
+     * One forecast area of a warning.
+     */
+    public static final class Area {
+        private final String prefecture;
+        private final String name;
+        private final int scaleFrom;
+        private final int scaleTo;
+
+        /**
+         * @param prefecture The prefecture name
+         * @param name The forecast area name
+         * @param scaleFrom The lower bound of the expected intensity scale code
+         * @param scaleTo The upper bound of the expected intensity scale code, or 99 for "or more"
+         */
+        public Area(String prefecture, String name, int scaleFrom, int scaleTo) {
+            this.prefecture = prefecture;
+            this.name = name;
+            this.scaleFrom = scaleFrom;
+            this.scaleTo = scaleTo;
+        }
+
+        public String getPrefecture() {
+            return prefecture;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getScaleFrom() {
+            return scaleFrom;
+        }
+
+        public int getScaleTo() {
+            return scaleTo;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + SeismicIntensity.toLabel(scaleFrom);
+        }
+    }
+}
@@ -1,172 +1,160 @@
 package com.earthquakeviewer.model;
 
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
-
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.time.ZoneOffset;
 
 /**
- * Model class representing earthquake data.
+ * Immutable model of a single JMA earthquake report.
+ * Holds only primitive fields and plain strings so that the service, storage and
+ * headless consumers can use it without JavaFX; table properties and formatted
+ * text are produced on demand by the UI layer.
  */
-public class Earthquake {
-    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
-    
-    private String id;
-    private LocalDateTime time;
-    private String location;
-    private double latitude;
-    private double longitude;
-    private double magnitude;
-    private int depth;
-    private String intensity;
-    private List<String> affectedAreas;
-    
-    // Properties for JavaFX TableView
-    private final StringProperty timeProperty = new SimpleStringProperty();
-    private final StringProperty locationProperty = new SimpleStringProperty();
-    private final StringProperty magnitudeProperty = new SimpleStringProperty();
-    private final StringProperty depthProperty = new SimpleStringProperty();
-    private final StringProperty intensityProperty = new SimpleStringProperty();
-    
-    public Earthquake() {
-    }
-    
-    public Earthquake(String id, LocalDateTime time, String location, double latitude, double longitude, 
-                     double magnitude, int depth, String intensity, List<String> affectedAreas) {
+public final class Earthquake implements QuakeMessage {
+    /** P2P Quake timestamps are Japan Standard Time. */
+    public static final ZoneOffset JST = ZoneOffset.ofHours(9);
+
+    private final String id;
+    private final long epochSecond;
+    private final String location;
+    private final double latitude;
+    private final double longitude;
+    private final double magnitude;
+    private final int depth;
+    private final int maxScale;
+    private final String domesticTsunami;
+    private final ObservationPoints observationPoints;
+    private final long prefectureMask;
+
+    /**
+     * Create an earthquake report.
+     *
+     * @param id The P2P Quake message id
+     * @param epochSecond The origin time in seconds since the epoch
+     * @param location The hypocenter name
+     * @param latitude The hypocenter latitude
+     * @param longitude The hypocenter longitude
+     * @param magnitude The magnitude
+     * @param depth The depth in km
+     * @param maxScale The maximum intensity scale code, or {@link SeismicIntensity#UNKNOWN}
+     * @param domesticTsunami The domestic tsunami assessment ("None", "Watch", ...), or null if absent
+     * @param observationPoints The observation points, or null for none
+     * @param prefectureMask The {@link Prefecture#bit() bits} of the prefectures with observation points
+     */
+    public Earthquake(String id, long epochSecond, String location, double latitude, double longitude,
+                      double magnitude, int depth, int maxScale, String domesticTsunami, ObservationPoints observationPoints,
+                      long prefectureMask) {
         this.id = id;
-        this.time = time;
+        this.epochSecond = epochSecond;
         this.location = location;
         this.latitude = latitude;
         this.longitude = longitude;
         this.magnitude = magnitude;
         this.depth = depth;
-        this.intensity = intensity;
-        this.affectedAreas = affectedAreas;
-        
-        // Initialize properties
-        updateProperties();
-    }
-    
-    private void updateProperties() {
-        timeProperty.set(time.format(DATE_TIME_FORMATTER));
-        locationProperty.set(location);
-        magnitudeProperty.set(String.format("%.1f", magnitude));
-        depthProperty.set(depth + " km");
-        intensityProperty.set(intensity);
-    }
-    
-    // Getters and setters
-    
+        this.maxScale = maxScale;
+        this.domesticTsunami = domesticTsunami;
+        this.observationPoints = observationPoints != null ? observationPoints : ObservationPoints.EMPTY;
+        this.prefectureMask = prefectureMask;
+    }
+
+    // Getters
+
+    @Override
     public String getId() {
         return id;
     }
-    
-    public void setId(String id) {
-        this.id = id;
+
+    @Override
+    public int getCode() {
+        return CODE_EARTHQUAKE;
     }
-    
-    public LocalDateTime getTime() {
-        return time;
+
+    public long getEpochSecond() {
+        return epochSecond;
     }
-    
-    public void setTime(LocalDateTime time) {
-        this.time = time;
-        timeProperty.set(time.format(DATE_TIME_FORMATTER));
+
+    /**
+     * @return The origin time as a local date-time in Japan Standard Time
+     */
+    public LocalDateTime getTime() {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, JST);
     }
-    
+
     public String getLocation() {
         return location;
     }
-    
-    public void setLocation(String location) {
-        this.location = location;
-        locationProperty.set(location);
-    }
-    
+
     public double getLatitude() {
         return latitude;
     }
-    
-    public void setLatitude(double latitude) {
-        this.latitude = latitude;
-    }
-    
+
     public double getLongitude() {
         return longitude;
     }
-    
-    public void setLongitude(double longitude) {
-        this.longitude = longitude;
-    }
-    
+
     public double getMagnitude() {
         return magnitude;
     }
-    
-    public void setMagnitude(double magnitude) {
-        this.magnitude = magnitude;
-        magnitudeProperty.set(String.format("%.1f", magnitude));
-    }
-    
+
     public int getDepth() {
         return depth;
     }
-    
-    public void setDepth(int depth) {
-        this.depth = depth;
-        depthProperty.set(depth + " km");
-    }
-    
-    public String getIntensity() {
-        return intensity;
-    }
-    
-    public void setIntensity(String intensity) {
-        this.intensity = intensity;
-        intensityProperty.set(intensity);
-    }
-    
-    public List<String> getAffectedAreas() {
-        return affectedAreas;
+
+    public int getMaxScale() {
+        return maxScale;
     }
-    
-    public void setAffectedAreas(List<String> affectedAreas) {
-        this.affectedAreas = affectedAreas;
+
+    public String getDomesticTsunami() {
+        return domesticTsunami;
     }
-    
-    // Property getters for TableView
-    
-    public StringProperty getTimeProperty() {
-        return timeProperty;
+
+    /**
+     * @return Whether a domestic tsunami assessment other than "None" was issued
+     */
+    public boolean hasTsunamiInfo() {
+        return domesticTsunami != null && !domesticTsunami.equals("None");
     }
-    
-    public StringProperty getLocationProperty() {
-        return locationProperty;
+
+    /**
+     * Build the maximum intensity label, including the tsunami assessment when one was issued.
+     *
+     * @return The label, e.g. "5-" or "6+ (Tsunami: Watch)"
+     */
+    public String getIntensity() {
+        String intensity = SeismicIntensity.toLabel(maxScale);
+        if (hasTsunamiInfo()) {
+            return intensity + " (Tsunami: " + domesticTsunami + ")";
+        }
+        return intensity;
     }
-    
-    public StringProperty getMagnitudeProperty() {
-        return magnitudeProperty;
+
+    /**
+     * @return The areas where the event was observed and the intensity in each, never null
+     */
+    public ObservationPoints getObservationPoints() {
+        return observationPoints;
     }
-    
-    public StringProperty getDepthProperty() {
-        return depthProperty;
+
+    public long getPrefectureMask() {
+        return prefectureMask;
     }
-    
-    public StringProperty getIntensityProperty() {
-        return intensityProperty;
+
+    /**
+     * @param prefecture The prefecture
+     * @return Whether the event was observed in the prefecture
+     */
+    public boolean isObservedIn(Prefecture prefecture) {
+        return (prefectureMask & prefecture.bit()) != 0;
     }
-    
+
     @Override
     public String toString() {
         return "Earthquake{" +
                 "id='" + id + '\'' +
-                ", time=" + time +
+                ", time=" + getTime() +
                 ", location='" + location + '\'' +
                 ", magnitude=" + magnitude +
                 ", depth=" + depth +
-                ", intensity='" + intensity + '\'' +
+                ", intensity='" + getIntensity() + '\'' +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.earthquakeviewer.model;
+
+/**
+ * Immutable model of an earthquake early warning detection (code 554): the first,
+ * content-free signal that a warning is about to be issued.
+ */
+public final class EewDetection implements QuakeMessage {
+    private final String id;
+    private final long epochSecond;
+    private final String type;
+
+    /**
+     * @param id The P2P Quake message id
+     * @param epochSecond The detection time in seconds since the epoch
+     * @param type The detection type ("Full" or "Chime")
+     */
+    public EewDetection(String id, long epochSecond, String type) {
+        this.id = id;
+        this.epochSecond = epochSecond;
+        this.type = type;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getCode() {
+        return CODE_EEW_DETECTION;
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "EewDetection{id='" + id + "', type='" + type + "'}";
+    }
+}
@@ -0,0 +1,205 @@
+package com.earthquakeviewer.model;
+
+import java.util.Arrays;
+
+/**
+ * The observation points of an event: the {@link AreaDictionary} id of each area, the
+ * intensity observed there and the area's prefecture, in parallel primitive arrays. A
+ * report with a thousand points costs about 6 KB instead of a thousand
+ * "address: intensity" strings.
+ *
+ * <p>Instances are immutable.</p>
+ */
+public final class ObservationPoints {
+    /** An event without observation points. */
+    public static final ObservationPoints EMPTY = new ObservationPoints(new int[0], new byte[0], new byte[0]);
+    /** Returned by {@link #maxScaleIn(int)} for an area without a point; below every scale code. */
+    public static final int NOT_OBSERVED = Integer.MIN_VALUE;
+
+    private static final Prefecture[] PREFECTURES = Prefecture.values();
+    private static final byte NO_PREFECTURE = -1;
+
+    private final int[] areaIds;
+    private final byte[] scales;
+    // Prefecture ordinals, or NO_PREFECTURE
+    private final byte[] prefectures;
+
+    private ObservationPoints(int[] areaIds, byte[] scales, byte[] prefectures) {
+        this.areaIds = areaIds;
+        this.scales = scales;
+        this.prefectures = prefectures;
+    }
+
+    /**
+     * @return The number of points
+     */
+    public int size() {
+        return areaIds.length;
+    }
+
+    public boolean isEmpty() {
+        return areaIds.length == 0;
+    }
+
+    /**
+     * @param index The point index, from 0 to size() - 1
+     * @return The {@link AreaDictionary} id of the point's area
+     */
+    public int areaIdAt(int index) {
+        return areaIds[index];
+    }
+
+    /**
+     * @param index The point index
+     * @return The area name, shared with every other event observed there
+     */
+    public String areaNameAt(int index) {
+        return AreaDictionary.name(areaIds[index]);
+    }
+
+    /**
+     * @param index The point index
+     * @return The scale code, or {@link SeismicIntensity#UNKNOWN}
+     */
+    public int scaleAt(int index) {
+        return scales[index];
+    }
+
+    /**
+     * @param index The point index
+     * @return The prefecture of the point's area, or null if the report did not name it
+     */
+    public Prefecture prefectureAt(int index) {
+        return prefectures[index] != NO_PREFECTURE ? PREFECTURES[prefectures[index]] : null;
+    }
+
+    /**
+     * @param areaId An {@link AreaDictionary} id
+     * @return The highest scale observed in the area, or {@link #NOT_OBSERVED}
+     */
+    public int maxScaleIn(int areaId) {
+        int max = NOT_OBSERVED;
+        for (int i = 0; i < areaIds.length; i++) {
+            if (areaIds[i] == areaId && scales[i] > max) {
+                max = scales[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param prefecture The prefecture
+     * @return The highest scale observed in the prefecture, or {@link #NOT_OBSERVED}
+     */
+    public int maxScaleIn(Prefecture prefecture) {
+        int max = NOT_OBSERVED;
+        for (int i = 0; i < prefectures.length; i++) {
+            if (prefectures[i] == prefecture.ordinal() && scales[i] > max) {
+                max = scales[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Append a point as "address: intensity".
+     *
+     * @param index The point index
+     * @param out The buffer to append to
+     */
+    public void appendLabel(int index, StringBuilder out) {
+        out.append(areaNameAt(index)).append(": ").append(SeismicIntensity.toLabel(scales[index]));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ObservationPoints)) {
+            return false;
+        }
+        ObservationPoints other = (ObservationPoints) o;
+        return Arrays.equals(areaIds, other.areaIds) && Arrays.equals(scales, other.scales)
+                && Arrays.equals(prefectures, other.prefectures);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(areaIds) + Arrays.hashCode(scales)) + Arrays.hashCode(prefectures);
+    }
+
+    /**
+     * Collects points in report order.
+     */
+    public static final class Builder {
+        private int[] areaIds;
+        private byte[] scales;
+        private byte[] prefectures;
+        private int size;
+
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * @param expectedSize The number of points expected
+         */
+        public Builder(int expectedSize) {
+            areaIds = new int[Math.max(expectedSize, 1)];
+            scales = new byte[areaIds.length];
+            prefectures = new byte[areaIds.length];
+        }
+
+        /**
+         * Add a point whose prefecture is not known.
+         *
+         * @param areaName The area name, interned in the {@link AreaDictionary}
+         * @param scale The scale code
+         * @return This builder
+         */
+        public Builder add(String areaName, int scale) {
+            return add(AreaDictionary.intern(areaName), scale, null);
+        }
+
+        /**
+         * @param areaName The area name, interned in the {@link AreaDictionary}
+         * @param scale The scale code
+         * @param prefecture The area's prefecture, or null if not known
+         * @return This builder
+         */
+        public Builder add(String areaName, int scale, Prefecture prefecture) {
+            return add(AreaDictionary.intern(areaName), scale, prefecture);
+        }
+
+        /**
+         * @param areaId An {@link AreaDictionary} id
+         * @param scale The scale code
+         * @param prefecture The area's prefecture, or null if not known
+         * @return This builder
+         */
+        public Builder add(int areaId, int scale, Prefecture prefecture) {
+            if (size == areaIds.length) {
+                areaIds = Arrays.copyOf(areaIds, size * 2);
+                scales = Arrays.copyOf(scales, size * 2);
+                prefectures = Arrays.copyOf(prefectures, size * 2);
+            }
+            areaIds[size] = areaId;
+            scales[size] = (byte) scale;
+            prefectures[size] = prefecture != null ? (byte) prefecture.ordinal() : NO_PREFECTURE;
+            size++;
+            return this;
+        }
+
+        /**
+         * @return The points added so far, trimmed to size
+         */
+        public ObservationPoints build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new ObservationPoints(Arrays.copyOf(areaIds, size), Arrays.copyOf(scales, size),
+                    Arrays.copyOf(prefectures, size));
+        }
+    }
+}
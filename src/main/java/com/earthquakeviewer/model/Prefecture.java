@@ -0,0 +1,102 @@
+package com.earthquakeviewer.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The 47 prefectures of Japan in JIS X 0401 order.
+ * Each prefecture owns one bit, so the set of prefectures an event was observed in
+ * fits into a single long.
+ */
+public enum Prefecture {
+    HOKKAIDO("Hokkaido", "北海道"),
+    AOMORI("Aomori", "青森県"),
+    IWATE("Iwate", "岩手県"),
+    MIYAGI("Miyagi", "宮城県"),
+    AKITA("Akita", "秋田県"),
+    YAMAGATA("Yamagata", "山形県"),
+    FUKUSHIMA("Fukushima", "福島県"),
+    IBARAKI("Ibaraki", "茨城県"),
+    TOCHIGI("Tochigi", "栃木県"),
+    GUNMA("Gunma", "群馬県"),
+    SAITAMA("Saitama", "埼玉県"),
+    CHIBA("Chiba", "千葉県"),
+    TOKYO("Tokyo", "東京都"),
+    KANAGAWA("Kanagawa", "神奈川県"),
+    NIIGATA("Niigata", "新潟県"),
+    TOYAMA("Toyama", "富山県"),
+    ISHIKAWA("Ishikawa", "石川県"),
+    FUKUI("Fukui", "福井県"),
+    YAMANASHI("Yamanashi", "山梨県"),
+    NAGANO("Nagano", "長野県"),
+    GIFU("Gifu", "岐阜県"),
+    SHIZUOKA("Shizuoka", "静岡県"),
+    AICHI("Aichi", "愛知県"),
+    MIE("Mie", "三重県"),
+    SHIGA("Shiga", "滋賀県"),
+    KYOTO("Kyoto", "京都府"),
+    OSAKA("Osaka", "大阪府"),
+    HYOGO("Hyogo", "兵庫県"),
+    NARA("Nara", "奈良県"),
+    WAKAYAMA("Wakayama", "和歌山県"),
+    TOTTORI("Tottori", "鳥取県"),
+    SHIMANE("Shimane", "島根県"),
+    OKAYAMA("Okayama", "岡山県"),
+    HIROSHIMA("Hiroshima", "広島県"),
+    YAMAGUCHI("Yamaguchi", "山口県"),
+    TOKUSHIMA("Tokushima", "徳島県"),
+    KAGAWA("Kagawa", "香川県"),
+    EHIME("Ehime", "愛媛県"),
+    KOCHI("Kochi", "高知県"),
+    FUKUOKA("Fukuoka", "福岡県"),
+    SAGA("Saga", "佐賀県"),
+    NAGASAKI("Nagasaki", "長崎県"),
+    KUMAMOTO("Kumamoto", "熊本県"),
+    OITA("Oita", "大分県"),
+    MIYAZAKI("Miyazaki", "宮崎県"),
+    KAGOSHIMA("Kagoshima", "鹿児島県"),
+    OKINAWA("Okinawa", "沖縄県");
+
+    private static final Map<String, Prefecture> BY_NAME = new HashMap<>();
+
+    static {
+        for (Prefecture prefecture : values()) {
+            BY_NAME.put(prefecture.englishName, prefecture);
+            BY_NAME.put(prefecture.japaneseName, prefecture);
+        }
+    }
+
+    private final String englishName;
+    private final String japaneseName;
+
+    Prefecture(String englishName, String japaneseName) {
+        this.englishName = englishName;
+        this.japaneseName = japaneseName;
+    }
+
+    public String getEnglishName() {
+        return englishName;
+    }
+
+    public String getJapaneseName() {
+        return japaneseName;
+    }
+
+    /**
+     * @return The bit representing this prefecture in a prefecture mask
+     */
+    public long bit() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * Look up a prefecture by its English name (as shown in the UI) or its Japanese
+     * name (as sent by the P2P Quake API).
+     *
+     * @param name The name
+     * @return The prefecture, or null if the name is unknown
+     */
+    public static Prefecture fromName(String name) {
+        return name == null ? null : BY_NAME.get(name);
+    }
+}
@@ -0,0 +1,27 @@
+package com.earthquakeviewer.model;
+
+/**
+ * A P2P Quake message, identified by its id and information code.
+ */
+public interface QuakeMessage {
+    /** JMA earthquake information, see {@link Earthquake}. */
+    int CODE_EARTHQUAKE = 551;
+    /** JMA tsunami forecast, see {@link TsunamiForecast}. */
+    int CODE_TSUNAMI = 552;
+    /** Earthquake early warning detection, see {@link EewDetection}. */
+    int CODE_EEW_DETECTION = 554;
+    /** Earthquake early warning (warning level), see {@link EarlyWarning}. */
+    int CODE_EEW = 556;
+    /** A P2P user reporting that they felt shaking, see {@link UserQuakeReport}. */
+    int CODE_USER_QUAKE = 561;
+
+    /**
+     * @return The P2P Quake message id
+     */
+    String getId();
+
+    /**
+     * @return The P2P Quake information code
+     */
+    int getCode();
+}
@@ -0,0 +1,54 @@
+package com.earthquakeviewer.model;
+
+/**
+ * JMA seismic intensity (shindo) scale codes as used by the P2P Quake API.
+ */
+public final class SeismicIntensity {
+    /** Scale code used when the intensity is not (yet) known. */
+    public static final int UNKNOWN = -1;
+
+    private SeismicIntensity() {
+    }
+
+    /**
+     * Convert a P2P Quake scale code (10-70) to the JMA seismic intensity label.
+     *
+     * @param scale The scale code
+     * @return The intensity label, or "Unknown" for unrecognised codes
+     */
+    public static String toLabel(int scale) {
+        switch (scale) {
+            case 10: return "1";
+            case 20: return "2";
+            case 30: return "3";
+            case 40: return "4";
+            case 45: return "5-";
+            case 50: return "5+";
+            case 55: return "6-";
+            case 60: return "6+";
+            case 70: return "7";
+            default: return "Unknown";
+        }
+    }
+
+    /**
+     * Convert a JMA seismic intensity label back to its P2P Quake scale code.
+     *
+     * @param label The intensity label, e.g. "5-"
+     * @return The scale code, or {@link #UNKNOWN} for unrecognised labels
+     */
+    public static int fromLabel(String label) {
+        switch (label) {
+            case "1": return 10;
+            case "2": return 20;
+            case "3": return 30;
+            case "4": return 40;
+            case "5-": return 45;
+            case "5+": return 50;
+            case "6-": return 55;
+            case "6+": return 60;
+            case "7": return 70;
+            default: return UNKNOWN;
+        }
+    }
+}
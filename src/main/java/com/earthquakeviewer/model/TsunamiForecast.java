@@ -0,0 +1,97 @@
+package com.earthquakeviewer.model;
+
+import java.util.List;
+
+/**
+ * Immutable model of a JMA tsunami forecast (code 552).
+ */
+public final class TsunamiForecast implements QuakeMessage {
+    private final String id;
+    private final long issuedEpochSecond;
+    private final boolean cancelled;
+    private final List<Area> areas;
+
+    /**
+     * @param id The P2P Quake message id
+     * @param issuedEpochSecond The issue time in seconds since the epoch
+     * @param cancelled Whether this forecast cancels all earlier ones
+     * @param areas The forecast areas
+     */
+    public TsunamiForecast(String id, long issuedEpochSecond, boolean cancelled, List<Area> areas) {
+        this.id = id;
+        this.issuedEpochSecond = issuedEpochSecond;
+        this.cancelled = cancelled;
+        this.areas = areas;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getCode() {
+        return CODE_TSUNAMI;
+    }
+
+    public long getIssuedEpochSecond() {
+        return issuedEpochSecond;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public List<Area> getAreas() {
+        return areas;
+    }
+
+    @Override
+    public String toString() {
+        return "TsunamiForecast{id='" + id + "', cancelled=" + cancelled + ", areas=" + areas.size() + '}';
+    }
+
+    /**
+     * One coastal forecast area.
+     */
+    public static final class Area {
+        private final String name;
+        private final String grade;
+        private final boolean immediate;
+        private final String maxHeight;
+
+        /**
+         * @param name The forecast area name
+         * @param grade "MajorWarning", "Warning", "Watch" or "Unknown"
+         * @param immediate Whether the tsunami is expected to arrive immediately
+         * @param maxHeight The expected maximum height description, or null if absent
+         */
+        public Area(String name, String grade, boolean immediate, String maxHeight) {
+            this.name = name;
+            this.grade = grade;
+            this.immediate = immediate;
+            this.maxHeight = maxHeight;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getGrade() {
+            return grade;
+        }
+
+        public boolean isImmediate() {
+            return immediate;
+        }
+
+        public String getMaxHeight() {
+            return maxHeight;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + grade;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.earthquakeviewer.model;
+
+/**
+ * Immutable model of a P2P user quake report (code 561): a peer in the given area
+ * reported feeling shaking.
+ */
+public final class UserQuakeReport implements QuakeMessage {
+    private final String id;
+    private final long epochSecond;
+    private final int area;
+
+    /**
+     * @param id The P2P Quake message id
+     * @param epochSecond The report time in seconds since the epoch
+     * @param area The P2P area code of the reporting peer
+     */
+    public UserQuakeReport(String id, long epochSecond, int area) {
+        this.id = id;
+        this.epochSecond = epochSecond;
+        this.area = area;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getCode() {
+        return CODE_USER_QUAKE;
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    public int getArea() {
+        return area;
+    }
+
+    @Override
+    public String toString() {
+        return "UserQuakeReport{id='" + id + "', area=" + area + '}';
+    }
+}
@@ -0,0 +1,200 @@
+package com.earthquakeviewer.query;
+
+import com.earthquakeviewer.model.AreaDictionary;
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.model.SeismicIntensity;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filter criteria for earthquake history. Unset criteria match everything.
+ * Setters return this query so criteria can be chained.
+ */
+public class EarthquakeQuery {
+    private double minMagnitude = Double.NEGATIVE_INFINITY;
+    private Prefecture prefecture;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private long startEpochSecond = Long.MIN_VALUE;
+    private long endEpochSecond = Long.MAX_VALUE;
+    private int minDepth = Integer.MIN_VALUE;
+    private int maxDepth = Integer.MAX_VALUE;
+    private int minScale = Integer.MIN_VALUE;
+    private String area;
+    private int minAreaScale = SeismicIntensity.UNKNOWN;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * @param minMagnitude The minimum magnitude, or 0 or less for no magnitude criterion, so
+     *                     that events of unknown magnitude match as they do through the API
+     */
+    public EarthquakeQuery minMagnitude(double minMagnitude) {
+        this.minMagnitude = minMagnitude > 0 ? minMagnitude : Double.NEGATIVE_INFINITY;
+        return this;
+    }
+
+    /**
+     * @param prefecture Only match events observed in this prefecture, or null for all
+     */
+    public EarthquakeQuery prefecture(Prefecture prefecture) {
+        this.prefecture = prefecture;
+        return this;
+    }
+
+    /**
+     * Restrict origin times to a range in Japan Standard Time.
+     *
+     * @param startTime The inclusive start, or null for no lower bound
+     * @param endTime The inclusive end, or null for no upper bound
+     */
+    public EarthquakeQuery between(LocalDateTime startTime, LocalDateTime endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.startEpochSecond = startTime != null ? startTime.toEpochSecond(Earthquake.JST) : Long.MIN_VALUE;
+        this.endEpochSecond = endTime != null ? endTime.toEpochSecond(Earthquake.JST) : Long.MAX_VALUE;
+        return this;
+    }
+
+    /**
+     * @param minDepth The inclusive minimum depth in km
+     * @param maxDepth The inclusive maximum depth in km
+     */
+    public EarthquakeQuery depthRange(int minDepth, int maxDepth) {
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param minScale The minimum maximum-intensity scale code, e.g. 45 for "5-"
+     */
+    public EarthquakeQuery minScale(int minScale) {
+        this.minScale = minScale;
+        return this;
+    }
+
+    /**
+     * Only match events observed in an area at or above an intensity, e.g. every event
+     * that shook "輪島市" at 5- or more.
+     *
+     * @param area The observation area name, or null for all
+     * @param minAreaScale The minimum scale code observed in the area, or
+     *                     {@link SeismicIntensity#UNKNOWN} for any observation
+     */
+    public EarthquakeQuery observedIn(String area, int minAreaScale) {
+        this.area = area;
+        this.minAreaScale = area != null ? minAreaScale : SeismicIntensity.UNKNOWN;
+        return this;
+    }
+
+    /**
+     * @param limit The maximum number of results
+     */
+    public EarthquakeQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public double getMinMagnitude() {
+        return minMagnitude;
+    }
+
+    public Prefecture getPrefecture() {
+        return prefecture;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public long getStartEpochSecond() {
+        return startEpochSecond;
+    }
+
+    public long getEndEpochSecond() {
+        return endEpochSecond;
+    }
+
+    public int getMinDepth() {
+        return minDepth;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMinScale() {
+        return minScale;
+    }
+
+    public String getArea() {
+        return area;
+    }
+
+    public int getMinAreaScale() {
+        return minAreaScale;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Check the area criterion against an event's observation points.
+     *
+     * @param points The observation points
+     * @return Whether the event was observed in the area at the minimum intensity, or true without an area
+     */
+    public boolean matchesArea(ObservationPoints points) {
+        if (area == null) {
+            return true;
+        }
+        int areaId = AreaDictionary.find(area);
+        return areaId != AreaDictionary.NOT_FOUND && points.maxScaleIn(areaId) >= minAreaScale;
+    }
+
+    /**
+     * Check the non-time criteria against primitive event attributes.
+     */
+    boolean matches(double magnitude, int depth, int maxScale, long prefectureMask) {
+        return magnitude >= minMagnitude
+                && depth >= minDepth && depth <= maxDepth
+                && maxScale >= minScale
+                && (prefecture == null || (prefectureMask & prefecture.bit()) != 0);
+    }
+
+    /**
+     * A canonical form of the criteria, equal for queries that select the same events,
+     * for use as a cache key.
+     */
+    public String normalizedKey() {
+        return "mag=" + minMagnitude +
+                "&pref=" + (prefecture != null ? prefecture.name() : "") +
+                "&from=" + startEpochSecond +
+                "&to=" + endEpochSecond +
+                "&depth=" + minDepth + ".." + maxDepth +
+                "&scale=" + minScale +
+                "&area=" + (area != null ? area + ">=" + minAreaScale : "") +
+                "&limit=" + limit;
+    }
+
+    @Override
+    public String toString() {
+        return "EarthquakeQuery{" +
+                "minMagnitude=" + minMagnitude +
+                ", prefecture=" + prefecture +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                ", depth=" + minDepth + ".." + maxDepth +
+                ", minScale=" + minScale +
+                ", area=" + area + ">=" + minAreaScale +
+                ", limit=" + limit +
+                '}';
+    }
+}
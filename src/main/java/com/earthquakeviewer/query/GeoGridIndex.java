@@ -0,0 +1,272 @@
+package com.earthquakeviewer.query;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index over epicenters: a fixed grid of {@link #CELL_DEGREES} degree cells,
+ * each holding a packed int array of entry ids, with coordinates kept in parallel
+ * primitive arrays. Supports bounding-box, radius and k-nearest queries and
+ * incremental inserts. Not thread-safe; callers synchronise.
+ */
+public class GeoGridIndex {
+    /** Mean Earth radius in km. */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    static final double CELL_DEGREES = 0.5;
+    private static final int ROWS = (int) (180 / CELL_DEGREES);
+    private static final int COLUMNS = (int) (360 / CELL_DEGREES);
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private final int[][] cells = new int[ROWS * COLUMNS][];
+    private final int[] cellSizes = new int[ROWS * COLUMNS];
+    private int[] ids = new int[1024];
+    private double[] latitudes = new double[1024];
+    private double[] longitudes = new double[1024];
+    private int size;
+
+    /**
+     * Add an entry. Coordinates outside the valid range (the API uses -200 for
+     * "unknown") are ignored.
+     *
+     * @param id The caller's id for the entry, e.g. a repository row
+     * @param latitude The latitude in degrees
+     * @param longitude The longitude in degrees
+     * @return Whether the entry was indexed
+     */
+    public boolean add(int id, double latitude, double longitude) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            return false;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            latitudes = Arrays.copyOf(latitudes, size * 2);
+            longitudes = Arrays.copyOf(longitudes, size * 2);
+        }
+        int entry = size++;
+        ids[entry] = id;
+        latitudes[entry] = latitude;
+        longitudes[entry] = longitude;
+
+        int cell = cellOf(rowOf(latitude), columnOf(longitude));
+        int[] members = cells[cell];
+        if (members == null) {
+            members = new int[4];
+            cells[cell] = members;
+        } else if (cellSizes[cell] == members.length) {
+            members = Arrays.copyOf(members, members.length * 2);
+            cells[cell] = members;
+        }
+        members[cellSizes[cell]++] = entry;
+        return true;
+    }
+
+    /**
+     * @return The number of indexed entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the entries inside a bounding box. A box with minLongitude greater than
+     * maxLongitude wraps across the antimeridian.
+     *
+     * @return The ids of the entries inside the box
+     */
+    public int[] inBoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        IdBuffer result = new IdBuffer();
+        if (minLongitude > maxLongitude) {
+            collectBox(minLatitude, minLongitude, maxLatitude, 180, result);
+            collectBox(minLatitude, -180, maxLatitude, maxLongitude, result);
+        } else {
+            collectBox(minLatitude, minLongitude, maxLatitude, maxLongitude, result);
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Find the entries within a great-circle distance of a point.
+     *
+     * @param latitude The latitude of the point
+     * @param longitude The longitude of the point
+     * @param radiusKm The radius in km
+     * @return The ids of the entries within the radius
+     */
+    public int[] withinRadius(double latitude, double longitude, double radiusKm) {
+        IdBuffer result = new IdBuffer();
+        double latitudeSpan = radiusKm / KM_PER_DEGREE;
+        int firstRow = rowOf(Math.max(-90, latitude - latitudeSpan));
+        int lastRow = rowOf(Math.min(90, latitude + latitudeSpan));
+        int columnSpan = columnSpan(latitude, latitudeSpan);
+        int centerColumn = columnOf(longitude);
+        // When the span covers every column, visit each one once
+        int lastOffset = columnSpan * 2 + 1 >= COLUMNS ? COLUMNS - columnSpan - 1 : columnSpan;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int offset = -columnSpan; offset <= lastOffset; offset++) {
+                int cell = cellOf(row, Math.floorMod(centerColumn + offset, COLUMNS));
+                int[] members = cells[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    int entry = members[i];
+                    if (distanceKm(latitude, longitude, latitudes[entry], longitudes[entry]) <= radiusKm) {
+                        result.add(ids[entry]);
+                    }
+                }
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Find the k entries closest to a point, searching outward ring by ring.
+     *
+     * @param latitude The latitude of the point
+     * @param longitude The longitude of the point
+     * @param k The number of entries to find
+     * @return The ids of up to k entries, nearest first
+     */
+    public int[] nearest(double latitude, double longitude, int k) {
+        if (k <= 0 || size == 0) {
+            return new int[0];
+        }
+        int count = Math.min(k, size);
+        int[] bestEntries = new int[count];
+        double[] bestDistances = new double[count];
+        Arrays.fill(bestDistances, Double.POSITIVE_INFINITY);
+        int found = 0;
+
+        int centerRow = rowOf(latitude);
+        int centerColumn = columnOf(longitude);
+        int maxRing = Math.max(ROWS, COLUMNS / 2);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Unvisited cells are at least (ring - 1) cells away; longitude cells shrink towards the poles
+            if (found == count) {
+                double farthestLatitude = Math.min(90, Math.abs(latitude) + (ring + 1) * CELL_DEGREES);
+                double minDistance = (ring - 1) * CELL_DEGREES * KM_PER_DEGREE
+                        * Math.cos(Math.toRadians(farthestLatitude));
+                if (minDistance > bestDistances[count - 1]) {
+                    break;
+                }
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= ROWS) {
+                    continue;
+                }
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int offset = -ring; offset <= ring; offset += Math.max(step, 1)) {
+                    // Offsets past half the globe wrap onto columns already visited
+                    if (offset < -COLUMNS / 2 || offset >= COLUMNS / 2) {
+                        continue;
+                    }
+                    int cell = cellOf(row, Math.floorMod(centerColumn + offset, COLUMNS));
+                    int[] members = cells[cell];
+                    for (int i = 0; i < cellSizes[cell]; i++) {
+                        int entry = members[i];
+                        double distance = distanceKm(latitude, longitude, latitudes[entry], longitudes[entry]);
+                        if (distance < bestDistances[count - 1]) {
+                            // Insertion into the sorted candidate arrays
+                            int position = count - 1;
+                            while (position > 0 && bestDistances[position - 1] > distance) {
+                                bestDistances[position] = bestDistances[position - 1];
+                                bestEntries[position] = bestEntries[position - 1];
+                                position--;
+                            }
+                            bestDistances[position] = distance;
+                            bestEntries[position] = entry;
+                            found = Math.min(found + 1, count);
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] result = new int[found];
+        for (int i = 0; i < found; i++) {
+            result[i] = ids[bestEntries[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Great-circle distance using the haversine formula.
+     *
+     * @return The distance in km
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinHalfPhi = Math.sin((phi2 - phi1) / 2);
+        double sinHalfLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinHalfPhi * sinHalfPhi + Math.cos(phi1) * Math.cos(phi2) * sinHalfLambda * sinHalfLambda;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private void collectBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                            IdBuffer result) {
+        int firstRow = rowOf(Math.max(-90, minLatitude));
+        int lastRow = rowOf(Math.min(90, maxLatitude));
+        int firstColumn = columnOf(Math.max(-180, minLongitude));
+        int lastColumn = columnOf(Math.min(180, maxLongitude));
+        for (int row = firstRow; row <= lastRow; row++) {
+            boolean interiorRow = row > firstRow && row < lastRow;
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = cellOf(row, column);
+                int[] members = cells[cell];
+                boolean interior = interiorRow && column > firstColumn && column < lastColumn;
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    int entry = members[i];
+                    // Cells fully inside the box need no per-entry check
+                    if (interior || (latitudes[entry] >= minLatitude && latitudes[entry] <= maxLatitude
+                            && longitudes[entry] >= minLongitude && longitudes[entry] <= maxLongitude)) {
+                        result.add(ids[entry]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of columns either side of the center that a radius can reach.
+     */
+    private static int columnSpan(double latitude, double latitudeSpan) {
+        double farthestLatitude = Math.min(90, Math.abs(latitude) + latitudeSpan);
+        double cos = Math.cos(Math.toRadians(farthestLatitude));
+        if (farthestLatitude >= 89.9 || cos < 1e-6) {
+            return COLUMNS / 2;
+        }
+        double longitudeSpan = latitudeSpan / cos;
+        return Math.min(COLUMNS / 2, (int) Math.ceil(longitudeSpan / CELL_DEGREES));
+    }
+
+    private static int rowOf(double latitude) {
+        return Math.min(ROWS - 1, (int) ((latitude + 90) / CELL_DEGREES));
+    }
+
+    private static int columnOf(double longitude) {
+        return Math.min(COLUMNS - 1, (int) ((longitude + 180) / CELL_DEGREES));
+    }
+
+    private static int cellOf(int row, int column) {
+        return row * COLUMNS + column;
+    }
+
+    /**
+     * Growable int array for query results.
+     */
+    private static final class IdBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
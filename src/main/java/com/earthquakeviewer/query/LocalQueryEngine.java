@@ -0,0 +1,442 @@
+package com.earthquakeviewer.query;
+
+import com.earthquakeviewer.model.AreaDictionary;
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.model.SeismicIntensity;
+import com.earthquakeviewer.repository.EarthquakeRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers {@link EarthquakeQuery} filters from the local repository.
+ * Keeps a time-sorted index over all stored rows and one time-sorted posting list per
+ * prefecture and per observation area, so a query is a binary search for the time range
+ * followed by a scan of the primitive columns for the remaining criteria. Area and
+ * prefecture postings also carry the intensity observed there, so "every event that shook
+ * X at 5- or more" reads only the events observed in X, and {@link ShakingSummary}
+ * aggregates come from the postings alone. Epicenters are also kept in a
+ * {@link GeoGridIndex} for viewport, radius and nearest-event lookups. Newly stored rows
+ * are indexed lazily on the next query.
+ */
+public class LocalQueryEngine {
+    private final EarthquakeRepository repository;
+    private final PostingList byTime = new PostingList();
+    private final PostingList[] byPrefecture = new PostingList[Prefecture.values().length];
+    // Indexed by area dictionary id; null for areas without stored events
+    private PostingList[] byArea = new PostingList[0];
+    private final GeoGridIndex byLocation = new GeoGridIndex();
+    private int indexedRows;
+
+    public LocalQueryEngine(EarthquakeRepository repository) {
+        this.repository = repository;
+        for (int i = 0; i < byPrefecture.length; i++) {
+            byPrefecture[i] = new PostingList();
+        }
+    }
+
+    /**
+     * Index any rows stored since the last call.
+     */
+    public synchronized void refresh() {
+        int rows = repository.size();
+        if (rows == indexedRows) {
+            return;
+        }
+
+        // Sort the new rows by time once, then merge them into each posting list
+        PostingList batch = new PostingList();
+        for (int row = indexedRows; row < rows; row++) {
+            batch.append(row, repository.epochSecondAt(row));
+        }
+        batch.sort();
+
+        PostingList[] prefectureBatches = new PostingList[byPrefecture.length];
+        PostingList[] areaBatches = new PostingList[AreaDictionary.size()];
+        for (int i = 0; i < batch.size; i++) {
+            int row = batch.rows[i];
+            long time = batch.times[i];
+            ObservationPoints points = repository.pointsAt(row);
+            for (int p = 0; p < points.size(); p++) {
+                int area = points.areaIdAt(p);
+                if (area >= areaBatches.length) {
+                    areaBatches = Arrays.copyOf(areaBatches, Math.max(area + 1, areaBatches.length * 2));
+                }
+                if (areaBatches[area] == null) {
+                    areaBatches[area] = new PostingList();
+                }
+                areaBatches[area].appendMax(row, time, points.scaleAt(p));
+                Prefecture prefecture = points.prefectureAt(p);
+                if (prefecture != null) {
+                    appendMax(prefectureBatches, prefecture.ordinal(), row, time, points.scaleAt(p));
+                }
+            }
+            // Events stored without prefectures per point still count, at an unknown intensity
+            long mask = repository.prefectureMaskAt(row);
+            while (mask != 0) {
+                appendMax(prefectureBatches, Long.numberOfTrailingZeros(mask), row, time, SeismicIntensity.UNKNOWN);
+                mask &= mask - 1;
+            }
+        }
+
+        for (int row = indexedRows; row < rows; row++) {
+            byLocation.add(row, repository.latitudeAt(row), repository.longitudeAt(row));
+        }
+
+        byTime.merge(batch);
+        for (int prefecture = 0; prefecture < byPrefecture.length; prefecture++) {
+            if (prefectureBatches[prefecture] != null) {
+                byPrefecture[prefecture].merge(prefectureBatches[prefecture]);
+            }
+        }
+        if (areaBatches.length > byArea.length) {
+            byArea = Arrays.copyOf(byArea, areaBatches.length);
+        }
+        for (int area = 0; area < areaBatches.length; area++) {
+            if (areaBatches[area] != null) {
+                if (byArea[area] == null) {
+                    byArea[area] = new PostingList();
+                }
+                byArea[area].merge(areaBatches[area]);
+            }
+        }
+        indexedRows = rows;
+    }
+
+    /**
+     * Run a query against the local history.
+     *
+     * @param query The filter criteria
+     * @return The matching earthquakes, newest first
+     */
+    public synchronized List<Earthquake> query(EarthquakeQuery query) {
+        refresh();
+
+        PostingList candidates = candidates(query);
+        int from = candidates.lowerBound(query.getStartEpochSecond());
+        int to = query.getEndEpochSecond() == Long.MAX_VALUE
+                ? candidates.size : candidates.lowerBound(query.getEndEpochSecond() + 1);
+
+        List<Earthquake> result = new ArrayList<>();
+        for (int i = to - 1; i >= from && result.size() < query.getLimit(); i--) {
+            int row = candidates.rows[i];
+            if (candidates.scales[i] >= query.getMinAreaScale()
+                    && query.matches(repository.magnitudeAt(row), repository.depthAt(row),
+                    repository.maxScaleAt(row), repository.prefectureMaskAt(row))) {
+                result.add(repository.get(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run a query against the local history without materialising the results.
+     *
+     * @param query The filter criteria
+     * @return The matching repository rows, newest first
+     */
+    public synchronized int[] queryRows(EarthquakeQuery query) {
+        refresh();
+
+        PostingList candidates = candidates(query);
+        int from = candidates.lowerBound(query.getStartEpochSecond());
+        int to = query.getEndEpochSecond() == Long.MAX_VALUE
+                ? candidates.size : candidates.lowerBound(query.getEndEpochSecond() + 1);
+
+        int[] result = new int[Math.max(0, Math.min(to - from, query.getLimit()))];
+        int count = 0;
+        for (int i = to - 1; i >= from && count < result.length; i--) {
+            int row = candidates.rows[i];
+            if (candidates.scales[i] >= query.getMinAreaScale()
+                    && query.matches(repository.magnitudeAt(row), repository.depthAt(row),
+                    repository.maxScaleAt(row), repository.prefectureMaskAt(row))) {
+                result[count++] = row;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Find stored events whose epicenter lies inside a bounding box, e.g. the map viewport.
+     *
+     * @param query Further criteria; its limit applies to the newest matches
+     * @return The matching earthquakes, newest first
+     */
+    public synchronized List<Earthquake> inBoundingBox(double minLatitude, double minLongitude,
+                                                       double maxLatitude, double maxLongitude,
+                                                       EarthquakeQuery query) {
+        refresh();
+        return materialise(byLocation.inBoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude), query);
+    }
+
+    /**
+     * Find stored events within a distance of a point, e.g. a facility.
+     *
+     * @param radiusKm The great-circle radius in km
+     * @param query Further criteria; its limit applies to the newest matches
+     * @return The matching earthquakes, newest first
+     */
+    public synchronized List<Earthquake> withinRadius(double latitude, double longitude, double radiusKm,
+                                                      EarthquakeQuery query) {
+        refresh();
+        return materialise(byLocation.withinRadius(latitude, longitude, radiusKm), query);
+    }
+
+    /**
+     * Find the stored events with epicenters closest to a point.
+     *
+     * @param k The number of events to return
+     * @return The earthquakes, nearest first
+     */
+    public synchronized List<Earthquake> nearest(double latitude, double longitude, int k) {
+        refresh();
+        int[] rows = byLocation.nearest(latitude, longitude, k);
+        List<Earthquake> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(repository.get(row));
+        }
+        return result;
+    }
+
+    /**
+     * Summarise the shaking observed in one area, e.g. for a facility's site risk report.
+     *
+     * @param area The observation area name
+     * @param startEpochSecond The inclusive start, or Long.MIN_VALUE from the first event
+     * @param endEpochSecond The inclusive end, or Long.MAX_VALUE to the last event
+     * @param bucketSeconds The histogram bucket width
+     * @param minScale Only count events observed in the area at this scale code or above,
+     *                 or {@link SeismicIntensity#UNKNOWN} for all
+     * @return The summary
+     * @throws IllegalArgumentException If the histogram would have too many buckets
+     */
+    public synchronized ShakingSummary areaSummary(String area, long startEpochSecond, long endEpochSecond,
+                                                   long bucketSeconds, int minScale) {
+        refresh();
+        int areaId = AreaDictionary.find(area);
+        PostingList postings = areaId >= 0 && areaId < byArea.length ? byArea[areaId] : null;
+        return summarise(postings != null ? postings : new PostingList(), startEpochSecond, endEpochSecond,
+                bucketSeconds, minScale);
+    }
+
+    /**
+     * Summarise the shaking observed in one prefecture. Each event counts once, at the
+     * strongest intensity observed in the prefecture.
+     *
+     * @param prefecture The prefecture
+     * @param startEpochSecond The inclusive start, or Long.MIN_VALUE from the first event
+     * @param endEpochSecond The inclusive end, or Long.MAX_VALUE to the last event
+     * @param bucketSeconds The histogram bucket width
+     * @param minScale Only count events observed in the prefecture at this scale code or
+     *                 above, or {@link SeismicIntensity#UNKNOWN} for all
+     * @return The summary
+     * @throws IllegalArgumentException If the histogram would have too many buckets
+     */
+    public synchronized ShakingSummary prefectureSummary(Prefecture prefecture, long startEpochSecond,
+                                                         long endEpochSecond, long bucketSeconds, int minScale) {
+        refresh();
+        return summarise(byPrefecture[prefecture.ordinal()], startEpochSecond, endEpochSecond, bucketSeconds, minScale);
+    }
+
+    private static ShakingSummary summarise(PostingList postings, long startEpochSecond, long endEpochSecond,
+                                            long bucketSeconds, int minScale) {
+        int from = postings.lowerBound(startEpochSecond);
+        int to = endEpochSecond == Long.MAX_VALUE ? postings.size : postings.lowerBound(endEpochSecond + 1);
+        return ShakingSummary.of(postings.times, postings.scales, from, to, startEpochSecond, endEpochSecond,
+                bucketSeconds, minScale);
+    }
+
+    /**
+     * @return The number of rows currently indexed
+     */
+    public synchronized int indexedRows() {
+        return indexedRows;
+    }
+
+    /**
+     * Pick the most selective posting list for a query. The time postings hold scale 0
+     * and prefecture postings at least UNKNOWN, so both pass the minimum area scale of a
+     * query without an area.
+     */
+    private PostingList candidates(EarthquakeQuery query) {
+        if (query.getArea() != null) {
+            int area = AreaDictionary.find(query.getArea());
+            PostingList postings = area >= 0 && area < byArea.length ? byArea[area] : null;
+            return postings != null ? postings : new PostingList();
+        }
+        return query.getPrefecture() != null ? byPrefecture[query.getPrefecture().ordinal()] : byTime;
+    }
+
+    private static void appendMax(PostingList[] batches, int index, int row, long time, int scale) {
+        if (batches[index] == null) {
+            batches[index] = new PostingList();
+        }
+        batches[index].appendMax(row, time, scale);
+    }
+
+    /**
+     * Filter spatial candidates by the query and return the newest matches.
+     */
+    private List<Earthquake> materialise(int[] rows, EarthquakeQuery query) {
+        PostingList matches = new PostingList();
+        for (int row : rows) {
+            long time = repository.epochSecondAt(row);
+            if (time >= query.getStartEpochSecond() && time <= query.getEndEpochSecond()
+                    && query.matches(repository.magnitudeAt(row), repository.depthAt(row),
+                    repository.maxScaleAt(row), repository.prefectureMaskAt(row))
+                    && query.matchesArea(repository.pointsAt(row))) {
+                matches.append(row, time);
+            }
+        }
+        matches.sort();
+
+        List<Earthquake> result = new ArrayList<>(Math.min(matches.size, query.getLimit()));
+        for (int i = matches.size - 1; i >= 0 && result.size() < query.getLimit(); i--) {
+            result.add(repository.get(matches.rows[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Row ids ordered by origin time, with the times kept alongside for binary search.
+     * Area and prefecture postings also keep the intensity observed there; the time list leaves it 0.
+     * Events mostly arrive in time order, so merges are usually appends.
+     */
+    private static final class PostingList {
+        private int[] rows = new int[256];
+        private long[] times = new long[256];
+        private byte[] scales = new byte[256];
+        private int size;
+
+        void append(int row, long time) {
+            ensureCapacity(size + 1);
+            rows[size] = row;
+            times[size] = time;
+            size++;
+        }
+
+        /**
+         * Append a row with its scale, or raise the scale if the row was just appended,
+         * as when an event has several points in the same area.
+         */
+        void appendMax(int row, long time, int scale) {
+            if (size > 0 && rows[size - 1] == row) {
+                scales[size - 1] = (byte) Math.max(scales[size - 1], scale);
+                return;
+            }
+            append(row, time);
+            scales[size - 1] = (byte) scale;
+        }
+
+        /**
+         * Merge another time-sorted list into this one. Appending newer rows is the fast path.
+         */
+        void merge(PostingList other) {
+            ensureCapacity(size + other.size);
+            if (size == 0 || other.size == 0 || times[size - 1] <= other.times[0]) {
+                System.arraycopy(other.rows, 0, rows, size, other.size);
+                System.arraycopy(other.times, 0, times, size, other.size);
+                System.arraycopy(other.scales, 0, scales, size, other.size);
+                size += other.size;
+                return;
+            }
+
+            // Merge from the back so no temporary arrays are needed
+            int i = size - 1;
+            int j = other.size - 1;
+            int k = size + other.size - 1;
+            while (j >= 0) {
+                if (i >= 0 && times[i] > other.times[j]) {
+                    rows[k] = rows[i];
+                    scales[k] = scales[i];
+                    times[k--] = times[i--];
+                } else {
+                    rows[k] = other.rows[j];
+                    scales[k] = other.scales[j];
+                    times[k--] = other.times[j--];
+                }
+            }
+            size += other.size;
+        }
+
+        /**
+         * Stable bottom-up merge sort by time; a no-op when already in order.
+         */
+        void sort() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = times[i - 1] <= times[i];
+            }
+            if (sorted) {
+                return;
+            }
+
+            int[] rowBuffer = new int[size];
+            long[] timeBuffer = new long[size];
+            byte[] scaleBuffer = new byte[size];
+            int[] sourceRows = rows;
+            long[] sourceTimes = times;
+            byte[] sourceScales = scales;
+            for (int width = 1; width < size; width *= 2) {
+                for (int low = 0; low < size; low += 2 * width) {
+                    int mid = Math.min(low + width, size);
+                    int high = Math.min(low + 2 * width, size);
+                    int i = low;
+                    int j = mid;
+                    for (int k = low; k < high; k++) {
+                        if (i < mid && (j >= high || sourceTimes[i] <= sourceTimes[j])) {
+                            rowBuffer[k] = sourceRows[i];
+                            scaleBuffer[k] = sourceScales[i];
+                            timeBuffer[k] = sourceTimes[i++];
+                        } else {
+                            rowBuffer[k] = sourceRows[j];
+                            scaleBuffer[k] = sourceScales[j];
+                            timeBuffer[k] = sourceTimes[j++];
+                        }
+                    }
+                }
+                int[] swapRows = sourceRows;
+                sourceRows = rowBuffer;
+                rowBuffer = swapRows;
+                long[] swapTimes = sourceTimes;
+                sourceTimes = timeBuffer;
+                timeBuffer = swapTimes;
+                byte[] swapScales = sourceScales;
+                sourceScales = scaleBuffer;
+                scaleBuffer = swapScales;
+            }
+            rows = sourceRows;
+            times = sourceTimes;
+            scales = sourceScales;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > rows.length) {
+                int newCapacity = Math.max(capacity, rows.length * 2);
+                rows = Arrays.copyOf(rows, newCapacity);
+                times = Arrays.copyOf(times, newCapacity);
+                scales = Arrays.copyOf(scales, newCapacity);
+            }
+        }
+
+        /**
+         * @return The first position whose time is at least the given time
+         */
+        int lowerBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
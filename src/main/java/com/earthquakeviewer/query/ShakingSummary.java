@@ -0,0 +1,192 @@
+package com.earthquakeviewer.query;
+
+import com.earthquakeviewer.model.SeismicIntensity;
+
+import java.util.Arrays;
+
+/**
+ * How often and how strongly one observation area or prefecture was shaken over a period:
+ * the number of events by the intensity observed there, the strongest shaking and a
+ * histogram of event counts over fixed-width time buckets. Built by
+ * {@link LocalQueryEngine} from its posting lists without reading the store.
+ */
+public final class ShakingSummary {
+    /** The most buckets a histogram may have. */
+    public static final int MAX_BUCKETS = 100_000;
+
+    // Scale codes in ascending order; counts has one more slot for unknown or other codes
+    private static final int[] SCALES = {10, 20, 30, 40, 45, 50, 55, 60, 70};
+
+    private final int eventCount;
+    private final int[] counts;
+    private final int maxScale;
+    private final long maxScaleEpochSecond;
+    private final long histogramStart;
+    private final long bucketSeconds;
+    private final int[] histogram;
+
+    private ShakingSummary(int eventCount, int[] counts, int maxScale, long maxScaleEpochSecond,
+                           long histogramStart, long bucketSeconds, int[] histogram) {
+        this.eventCount = eventCount;
+        this.counts = counts;
+        this.maxScale = maxScale;
+        this.maxScaleEpochSecond = maxScaleEpochSecond;
+        this.histogramStart = histogramStart;
+        this.bucketSeconds = bucketSeconds;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Aggregate a time-sorted range of postings.
+     *
+     * @param times The origin times, ascending over the range
+     * @param scales The intensity observed in the area or prefecture for each posting
+     * @param from The first posting, inclusive
+     * @param to The last posting, exclusive
+     * @param startEpochSecond The start of the period, or Long.MIN_VALUE to start at the first event
+     * @param endEpochSecond The inclusive end of the period, or Long.MAX_VALUE to end at the last event
+     * @param bucketSeconds The histogram bucket width
+     * @param minScale Only count events observed at this scale code or above
+     */
+    static ShakingSummary of(long[] times, byte[] scales, int from, int to, long startEpochSecond,
+                             long endEpochSecond, long bucketSeconds, int minScale) {
+        if (bucketSeconds <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive: " + bucketSeconds);
+        }
+        long start = startEpochSecond != Long.MIN_VALUE || from == to ? startEpochSecond : times[from];
+        long end = endEpochSecond != Long.MAX_VALUE || from == to ? endEpochSecond : times[to - 1];
+        int buckets = 0;
+        if (start != Long.MIN_VALUE && end != Long.MAX_VALUE && end >= start) {
+            long span = (end - start) / bucketSeconds + 1;
+            if (span > MAX_BUCKETS) {
+                throw new IllegalArgumentException("Histogram would have " + span + " buckets; the limit is " + MAX_BUCKETS);
+            }
+            buckets = (int) span;
+        }
+
+        int[] counts = new int[SCALES.length + 1];
+        int[] histogram = new int[buckets];
+        int eventCount = 0;
+        int maxScale = SeismicIntensity.UNKNOWN;
+        long maxScaleEpochSecond = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            int scale = scales[i];
+            if (scale < minScale) {
+                continue;
+            }
+            eventCount++;
+            counts[indexOf(scale)]++;
+            // Ties keep the latest event, the one a report is most likely to ask about
+            if (scale >= maxScale) {
+                maxScale = scale;
+                maxScaleEpochSecond = times[i];
+            }
+            if (buckets > 0) {
+                histogram[(int) ((times[i] - start) / bucketSeconds)]++;
+            }
+        }
+        return new ShakingSummary(eventCount, counts, maxScale, maxScaleEpochSecond,
+                buckets > 0 ? start : Long.MIN_VALUE, bucketSeconds, histogram);
+    }
+
+    /**
+     * @return The number of events counted
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @param scale A scale code, or {@link SeismicIntensity#UNKNOWN}
+     * @return The number of events observed at exactly this scale; for UNKNOWN, those
+     *         observed without a recognised scale
+     */
+    public int countAt(int scale) {
+        int index = Arrays.binarySearch(SCALES, scale);
+        if (index >= 0) {
+            return counts[index];
+        }
+        return scale == SeismicIntensity.UNKNOWN ? counts[SCALES.length] : 0;
+    }
+
+    /**
+     * @param scale A scale code, e.g. 45 for "5-"
+     * @return The number of events observed at this scale or above
+     */
+    public int countAtLeast(int scale) {
+        int total = 0;
+        for (int i = 0; i < SCALES.length; i++) {
+            if (SCALES[i] >= scale) {
+                total += counts[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return The strongest scale observed, or {@link SeismicIntensity#UNKNOWN} without events
+     */
+    public int getMaxScale() {
+        return maxScale;
+    }
+
+    /**
+     * @return The origin time of the latest event with the strongest scale, or Long.MIN_VALUE
+     */
+    public long getMaxScaleEpochSecond() {
+        return maxScaleEpochSecond;
+    }
+
+    /**
+     * @return The start of the first histogram bucket, or Long.MIN_VALUE without buckets
+     */
+    public long getHistogramStart() {
+        return histogramStart;
+    }
+
+    public long getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    /**
+     * @return The number of histogram buckets, covering the period up to its end
+     */
+    public int getBucketCount() {
+        return histogram.length;
+    }
+
+    /**
+     * @param bucket The bucket index; bucket i starts at histogramStart + i * bucketSeconds
+     * @return The number of events in the bucket
+     */
+    public int countInBucket(int bucket) {
+        return histogram[bucket];
+    }
+
+    /**
+     * Map a scale code to its counts slot; codes without a slot share the last one.
+     */
+    private static int indexOf(int scale) {
+        int index = Arrays.binarySearch(SCALES, scale);
+        return index >= 0 ? index : SCALES.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("ShakingSummary{events=").append(eventCount)
+                .append(", max=").append(SeismicIntensity.toLabel(maxScale))
+                .append(", byScale={");
+        for (int i = 0; i < SCALES.length; i++) {
+            if (counts[i] > 0) {
+                text.append(SeismicIntensity.toLabel(SCALES[i])).append('=').append(counts[i]).append(", ");
+            }
+        }
+        if (counts[SCALES.length] > 0) {
+            text.append("Unknown=").append(counts[SCALES.length]).append(", ");
+        }
+        if (text.charAt(text.length() - 1) == ' ') {
+            text.setLength(text.length() - 2);
+        }
+        return text.append("}, buckets=").append(histogram.length).append('}').toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.earthquakeviewer.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads a frame log written by {@link FrameLogWriter}, one record at a time.
+ * A record cut off at the end of the file is treated as the end of the log.
+ */
+public class FrameLogReader implements Closeable {
+    // Larger payloads are treated as corruption rather than allocated
+    private static final int MAX_PAYLOAD_BYTES = 64 * 1024 * 1024;
+
+    private final InputStream in;
+    private byte[] buffer = new byte[8192];
+    private long position;
+    private long epochMillis;
+    private String text;
+
+    /**
+     * @param path The log file
+     * @throws IOException If the file cannot be read or is not a frame log
+     */
+    public FrameLogReader(Path path) throws IOException {
+        this.in = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+        byte[] header = new byte[FrameLogWriter.MAGIC.length + 1];
+        if (in.readNBytes(header, 0, header.length) != header.length
+                || !Arrays.equals(Arrays.copyOf(header, FrameLogWriter.MAGIC.length), FrameLogWriter.MAGIC)) {
+            in.close();
+            throw new IOException("Not a frame log: " + path);
+        }
+        if (header[FrameLogWriter.MAGIC.length] != FrameLogWriter.VERSION) {
+            in.close();
+            throw new IOException("Unsupported frame log version " + header[FrameLogWriter.MAGIC.length] + ": " + path);
+        }
+        position = header.length;
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return Whether there was another complete record
+     * @throws IOException If the file cannot be read or a record is corrupt
+     */
+    public boolean next() throws IOException {
+        long start = position;
+        long delta = readVarint();
+        long length = delta < 0 ? -1 : readVarint();
+        if (length < 0) {
+            position = start;
+            return false;
+        }
+        if (length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Corrupt frame log record at offset " + start);
+        }
+        if (buffer.length < length) {
+            buffer = new byte[Math.max((int) length, buffer.length * 2)];
+        }
+        if (in.readNBytes(buffer, 0, (int) length) != length) {
+            position = start;
+            return false;
+        }
+        position += length;
+        epochMillis += delta;
+        text = new String(buffer, 0, (int) length, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    /**
+     * @return When the current record was received, in milliseconds since the epoch
+     */
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    /**
+     * @return The current record's message
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return The file offset just past the last complete record
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * @return The value, or -1 at the end of the file
+     */
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                return -1;
+            }
+            position++;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt frame log varint at offset " + position);
+    }
+}
@@ -0,0 +1,103 @@
+package com.earthquakeviewer.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends realtime WebSocket messages to a frame log, a compact file for replaying a
+ * feed later. After a short header, each record is the milliseconds since the previous
+ * record and the payload length, both as unsigned varints, followed by the UTF-8 payload,
+ * so a typical small message costs three or four bytes on top of its text.
+ *
+ * Opening an existing log continues it. A record cut short by a crash is removed first,
+ * and every record is flushed as it is written.
+ */
+public class FrameLogWriter implements Closeable {
+    static final byte[] MAGIC = {'E', 'Q', 'F', 'L'};
+    static final int VERSION = 1;
+
+    private final OutputStream out;
+    private final byte[] varint = new byte[10];
+    private long lastEpochMillis;
+    private long frames;
+
+    /**
+     * Open a log for appending, creating it if needed.
+     *
+     * @param path The log file
+     * @throws IOException If the file cannot be opened or is not a frame log
+     */
+    public FrameLogWriter(Path path) throws IOException {
+        boolean exists = Files.exists(path) && Files.size(path) > 0;
+        if (exists) {
+            long validLength;
+            try (FrameLogReader reader = new FrameLogReader(path)) {
+                while (reader.next()) {
+                    frames++;
+                }
+                lastEpochMillis = reader.getEpochMillis();
+                validLength = reader.getPosition();
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                if (channel.size() > validLength) {
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        this.out = new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (!exists) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.flush();
+        }
+    }
+
+    /**
+     * Append one message.
+     *
+     * @param epochMillis When the message was received
+     * @param text The message as received
+     * @throws IOException If the record cannot be written
+     */
+    public synchronized void append(long epochMillis, String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        // The first record's delta is from the epoch; a clock stepping back counts as no delay
+        long delta = Math.max(0, epochMillis - lastEpochMillis);
+        lastEpochMillis += delta;
+        writeVarint(delta);
+        writeVarint(payload.length);
+        out.write(payload);
+        out.flush();
+        frames++;
+    }
+
+    /**
+     * @return The number of records in the log, including those that were there when it was opened
+     */
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void writeVarint(long value) throws IOException {
+        int length = 0;
+        while ((value & ~0x7FL) != 0) {
+            varint[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        varint[length++] = (byte) value;
+        out.write(varint, 0, length);
+    }
+}
@@ -0,0 +1,227 @@
+package com.earthquakeviewer.replay;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Plays a frame log back to WebSocket clients, standing in for the P2P Quake realtime
+ * API. Point a viewer or service at it with {@code earthquake.realtime.url}. Every client
+ * that connects gets the whole log from the start on its own thread, with the original
+ * gaps between messages divided by the speed factor, or as fast as the connection drains
+ * at {@link Double#POSITIVE_INFINITY}.
+ *
+ * <pre>
+ * java ... com.earthquakeviewer.replay.ReplayServer FILE [--port 8765] [--speed 1|N|max]
+ * </pre>
+ */
+public class ReplayServer extends WebSocketServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReplayServer.class);
+    // Frames queued to a client before playback waits for it to write them all
+    private static final int MAX_QUEUED_FRAMES = 1024;
+    private static final long DRAIN_WAIT_NANOS = 100_000;
+    private static final int STOP_TIMEOUT_MILLIS = 1000;
+
+    private final Path log;
+    private final double speed;
+    private final ObjLongConsumer<String> sendListener;
+    private final Map<WebSocket, Thread> playbacks = new ConcurrentHashMap<>();
+    private final AtomicInteger playbackCount = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+
+    /**
+     * @param host The address to bind
+     * @param port The port, or 0 for any free port
+     * @param log The frame log to play
+     * @param speed How many times faster than recorded to play, or {@link Double#POSITIVE_INFINITY}
+     * @param sendListener Told each message and the {@link System#nanoTime()} it was queued, or null
+     */
+    public ReplayServer(String host, int port, Path log, double speed, ObjLongConsumer<String> sendListener) {
+        super(new InetSocketAddress(host, port));
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+        this.log = log;
+        this.speed = speed;
+        this.sendListener = sendListener;
+        setReuseAddr(true);
+    }
+
+    /**
+     * @return The number of messages sent, across all clients
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * @return The number of clients that were sent the whole log
+     */
+    public int getCompletedCount() {
+        return completed.get();
+    }
+
+    @Override
+    public void onStart() {
+        logger.info("Replaying {} at {} speed on ws://{}:{}/", log,
+                Double.isInfinite(speed) ? "max" : speed + "x", getAddress().getHostString(), getPort());
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        Thread playback = new Thread(() -> play(conn), "replay-" + playbackCount.incrementAndGet());
+        playback.setDaemon(true);
+        playbacks.put(conn, playback);
+        playback.start();
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        Thread playback = playbacks.remove(conn);
+        if (playback != null) {
+            playback.interrupt();
+        }
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        // Clients only listen
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        logger.error("Replay server error", ex);
+    }
+
+    @Override
+    public void close() {
+        try {
+            stop(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void play(WebSocket conn) {
+        long frames = 0;
+        int queued = 0;
+        long startNanos = System.nanoTime();
+        try (FrameLogReader reader = new FrameLogReader(log)) {
+            long firstEpochMillis = Long.MIN_VALUE;
+            while (reader.next()) {
+                if (firstEpochMillis == Long.MIN_VALUE) {
+                    firstEpochMillis = reader.getEpochMillis();
+                }
+                if (!Double.isInfinite(speed)) {
+                    long dueNanos = startNanos + (long) ((reader.getEpochMillis() - firstEpochMillis) * 1e6 / speed);
+                    long waitNanos;
+                    while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                        if (Thread.interrupted()) {
+                            return;
+                        }
+                    }
+                }
+                // The connection only tells whether anything is still buffered, so count the
+                // frames queued since it last had nothing and hold back once there are too many
+                if (!conn.hasBufferedData()) {
+                    queued = 0;
+                } else if (queued >= MAX_QUEUED_FRAMES) {
+                    if (!awaitDrained(conn)) {
+                        return;
+                    }
+                    queued = 0;
+                }
+                if (!conn.isOpen()) {
+                    return;
+                }
+                if (sendListener != null) {
+                    sendListener.accept(reader.getText(), System.nanoTime());
+                }
+                conn.send(reader.getText());
+                sent.incrementAndGet();
+                queued++;
+                frames++;
+            }
+            completed.incrementAndGet();
+            logger.info("Replayed {} messages to {} in {} ms", frames, conn.getRemoteSocketAddress(),
+                    (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (IOException e) {
+            logger.error("Failed to read frame log {}", log, e);
+            conn.close();
+        } catch (RuntimeException e) {
+            logger.debug("Replay to {} stopped", conn.getRemoteSocketAddress(), e);
+        }
+    }
+
+    /**
+     * Wait until a connection has written everything queued to it.
+     *
+     * @return false if the connection closed or the thread was interrupted first
+     */
+    private static boolean awaitDrained(WebSocket conn) {
+        while (conn.hasBufferedData()) {
+            if (!conn.isOpen()) {
+                return false;
+            }
+            LockSupport.parkNanos(DRAIN_WAIT_NANOS);
+            if (Thread.interrupted()) {
+                return false;
+            }
+        }
+        return conn.isOpen();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayServer FILE [--port PORT] [--host HOST] [--speed 1|N|max]");
+            System.exit(2);
+        }
+        Path log = Paths.get(args[0]);
+        String host = "127.0.0.1";
+        int port = 8765;
+        double speed = 1;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--host":
+                    host = args[i + 1];
+                    break;
+                case "--speed":
+                    speed = parseSpeed(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        ReplayServer server = new ReplayServer(host, port, log, speed, null);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "replay-shutdown"));
+        Thread.currentThread().join();
+    }
+
+    /**
+     * @param value A factor such as "1", "10" or "0.5", or "max"
+     * @return The speed factor for the constructor
+     */
+    public static double parseSpeed(String value) {
+        return "max".equalsIgnoreCase(value) ? Double.POSITIVE_INFINITY : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,109 @@
+package com.earthquakeviewer.repository;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Local store of earthquake history.
+ * Rows are addressed by a dense index in insertion order; the primitive column
+ * accessors let callers scan history without materialising {@link Earthquake} objects.
+ */
+public interface EarthquakeRepository extends Closeable {
+
+    /**
+     * Store an earthquake unless an event with the same id is already stored.
+     *
+     * @param earthquake The earthquake to store
+     * @return true if it was added, false if it was a duplicate
+     * @throws IOException If the event cannot be written
+     */
+    boolean append(Earthquake earthquake) throws IOException;
+
+    /**
+     * @param id The P2P Quake message id
+     * @return Whether an event with this id is stored
+     */
+    boolean contains(String id);
+
+    /**
+     * @return The number of stored events
+     */
+    int size();
+
+    /**
+     * Materialise a stored event.
+     *
+     * @param row The row index, from 0 to size() - 1
+     * @return The earthquake
+     */
+    Earthquake get(int row);
+
+    long epochSecondAt(int row);
+
+    double latitudeAt(int row);
+
+    double longitudeAt(int row);
+
+    double magnitudeAt(int row);
+
+    int depthAt(int row);
+
+    int maxScaleAt(int row);
+
+    long prefectureMaskAt(int row);
+
+    /**
+     * @param row The row index
+     * @return The hypocenter name, shared with every other row of the same name
+     */
+    String locationAt(int row);
+
+    /**
+     * @param row The row index
+     * @return The domestic tsunami assessment, shared with every other row of the same value
+     */
+    String domesticTsunamiAt(int row);
+
+    /**
+     * @param row The row index
+     * @return The observation points, with area names interned in the shared dictionary
+     */
+    ObservationPoints pointsAt(int row);
+
+    /**
+     * Get the most recent stored events by origin time.
+     *
+     * @param limit The maximum number of events to return
+     * @return The events, newest first
+     */
+    List<Earthquake> findRecent(int limit);
+
+    /**
+     * @return The first day of /jma/quake history known to be fully stored, or null if none is
+     */
+    LocalDate getSyncedFrom();
+
+    /**
+     * @return The last day of /jma/quake history known to be fully stored, or null if none is
+     */
+    LocalDate getSyncedUntil();
+
+    /**
+     * Record which days of /jma/quake history are fully stored, so that a restart does not
+     * fetch them again.
+     *
+     * @param from The first day, inclusive
+     * @param until The last day, inclusive
+     */
+    void setSyncedDays(LocalDate from, LocalDate until);
+
+    /**
+     * Write any buffered changes through to disk.
+     */
+    void flush();
+}
@@ -0,0 +1,366 @@
+package com.earthquakeviewer.repository;
+
+import com.earthquakeviewer.model.AreaDictionary;
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The events on screen and the view state, saved so that a restart can show them again
+ * before the network has answered.
+ *
+ * <p>The file is a fixed header, primitive columns with the encodings of
+ * {@link MappedEarthquakeRepository}, and a dictionary holding each distinct id, name and
+ * address once, with the view state as pairs of dictionary entries. The header carries a
+ * format version and a CRC32 of everything after the checksum, so a file cut short by a
+ * power loss is rejected instead of misread. Writes go to a temporary file that is synced
+ * and then moved over the old snapshot; reads load the file into the heap and decode it
+ * in one pass. The file is never mapped: a live mapping would keep the next write from
+ * replacing it on Windows.</p>
+ */
+public final class EarthquakeSnapshot {
+    private static final int MAGIC = 0x45515353; // "EQSS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CHECKSUM = 8;
+    // The checksum covers the rest of the file from the length field on
+    private static final int HEADER_LENGTH = 12;
+    private static final int HEADER_WRITTEN_AT = 16;
+    private static final int HEADER_EVENT_COUNT = 24;
+    private static final int HEADER_POINT_COUNT = 28;
+    private static final int HEADER_STRING_COUNT = 32;
+    private static final int HEADER_STATE_COUNT = 36;
+
+    // Bytes per event over all columns: time, prefecture mask, id, latitude, longitude,
+    // location, tsunami, point count, magnitude, depth, scale
+    private static final int EVENT_WIDTH = 2 * Long.BYTES + 6 * Integer.BYTES + 2 * Short.BYTES + 1;
+    private static final int POINT_WIDTH = 2 * Integer.BYTES;
+    private static final int STATE_WIDTH = 2 * Integer.BYTES;
+    private static final int NULL_STRING = -1;
+    private static final double COORDINATE_SCALE = 1_000_000.0;
+    private static final double MAGNITUDE_SCALE = 10.0;
+    private static final Prefecture[] PREFECTURES = Prefecture.values();
+
+    private final List<Earthquake> earthquakes;
+    private final Map<String, String> state;
+    private final long writtenEpochMillis;
+
+    /**
+     * @param earthquakes The events to save, in the order they should be shown again
+     * @param state The view state, as keys and values chosen by the view
+     */
+    public EarthquakeSnapshot(List<Earthquake> earthquakes, Map<String, String> state) {
+        this(earthquakes, state, System.currentTimeMillis());
+    }
+
+    private EarthquakeSnapshot(List<Earthquake> earthquakes, Map<String, String> state, long writtenEpochMillis) {
+        this.earthquakes = Collections.unmodifiableList(new ArrayList<>(earthquakes));
+        this.state = Collections.unmodifiableMap(new LinkedHashMap<>(state));
+        this.writtenEpochMillis = writtenEpochMillis;
+    }
+
+    public List<Earthquake> getEarthquakes() {
+        return earthquakes;
+    }
+
+    public Map<String, String> getState() {
+        return state;
+    }
+
+    /**
+     * @return When the snapshot was taken, in milliseconds since the epoch
+     */
+    public long getWrittenEpochMillis() {
+        return writtenEpochMillis;
+    }
+
+    /**
+     * Write the snapshot, replacing any previous one only once it is complete on disk.
+     *
+     * @param file The snapshot file
+     * @throws IOException If the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        // Build the dictionary first; every string is then a fixed-width reference
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        int pointCount = 0;
+        for (Earthquake earthquake : earthquakes) {
+            intern(strings, earthquake.getId());
+            intern(strings, earthquake.getLocation());
+            intern(strings, earthquake.getDomesticTsunami());
+            ObservationPoints points = earthquake.getObservationPoints();
+            for (int i = 0; i < points.size(); i++) {
+                intern(strings, points.areaNameAt(i));
+            }
+            pointCount += points.size();
+        }
+        for (Map.Entry<String, String> entry : state.entrySet()) {
+            intern(strings, entry.getKey());
+            intern(strings, entry.getValue());
+        }
+        byte[][] encoded = new byte[strings.size()][];
+        long dictionaryBytes = 0;
+        int index = 0;
+        for (String value : strings.keySet()) {
+            encoded[index] = value.getBytes(StandardCharsets.UTF_8);
+            dictionaryBytes += Integer.BYTES + encoded[index].length;
+            index++;
+        }
+
+        int events = earthquakes.size();
+        long length = HEADER_SIZE + (long) events * EVENT_WIDTH + (long) pointCount * POINT_WIDTH
+                + (long) state.size() * STATE_WIDTH + dictionaryBytes;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + events + " events is too large");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        buffer.putInt(HEADER_VERSION, VERSION);
+        buffer.putInt(HEADER_LENGTH, (int) length);
+        buffer.putLong(HEADER_WRITTEN_AT, writtenEpochMillis);
+        buffer.putInt(HEADER_EVENT_COUNT, events);
+        buffer.putInt(HEADER_POINT_COUNT, pointCount);
+        buffer.putInt(HEADER_STRING_COUNT, strings.size());
+        buffer.putInt(HEADER_STATE_COUNT, state.size());
+
+        Layout layout = new Layout(events, pointCount);
+        int point = 0;
+        for (int row = 0; row < events; row++) {
+            Earthquake earthquake = earthquakes.get(row);
+            ObservationPoints points = earthquake.getObservationPoints();
+            buffer.putLong(layout.times + row * Long.BYTES, earthquake.getEpochSecond());
+            buffer.putLong(layout.prefectureMasks + row * Long.BYTES, earthquake.getPrefectureMask());
+            buffer.putInt(layout.ids + row * Integer.BYTES, idOf(strings, earthquake.getId()));
+            buffer.putInt(layout.latitudes + row * Integer.BYTES,
+                    (int) Math.round(earthquake.getLatitude() * COORDINATE_SCALE));
+            buffer.putInt(layout.longitudes + row * Integer.BYTES,
+                    (int) Math.round(earthquake.getLongitude() * COORDINATE_SCALE));
+            buffer.putInt(layout.locations + row * Integer.BYTES, idOf(strings, earthquake.getLocation()));
+            buffer.putInt(layout.tsunamis + row * Integer.BYTES, idOf(strings, earthquake.getDomesticTsunami()));
+            buffer.putInt(layout.pointCounts + row * Integer.BYTES, points.size());
+            buffer.putShort(layout.magnitudes + row * Short.BYTES,
+                    (short) Math.round(earthquake.getMagnitude() * MAGNITUDE_SCALE));
+            buffer.putShort(layout.depths + row * Short.BYTES, (short) earthquake.getDepth());
+            buffer.put(layout.maxScales + row, (byte) earthquake.getMaxScale());
+            for (int i = 0; i < points.size(); i++, point++) {
+                Prefecture prefecture = points.prefectureAt(i);
+                int prefectureCode = prefecture != null ? prefecture.ordinal() + 1 : 0;
+                buffer.putInt(layout.points + point * POINT_WIDTH, idOf(strings, points.areaNameAt(i)));
+                buffer.putInt(layout.points + point * POINT_WIDTH + Integer.BYTES,
+                        prefectureCode << 8 | points.scaleAt(i) & 0xFF);
+            }
+        }
+        int entry = 0;
+        for (Map.Entry<String, String> pair : state.entrySet()) {
+            buffer.putInt(layout.state + entry * STATE_WIDTH, idOf(strings, pair.getKey()));
+            buffer.putInt(layout.state + entry * STATE_WIDTH + Integer.BYTES, idOf(strings, pair.getValue()));
+            entry++;
+        }
+        buffer.position(layout.state + state.size() * STATE_WIDTH);
+        for (byte[] bytes : encoded) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.putInt(HEADER_CHECKSUM, checksum(buffer));
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // The old snapshot is only replaced by one that is fully on disk
+            channel.force(false);
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read a snapshot file and decode it.
+     *
+     * @param file The snapshot file
+     * @return The snapshot
+     * @throws IOException If the file cannot be read, has an unknown version or fails its checksum
+     */
+    public static EarthquakeSnapshot read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not an earthquake snapshot: " + file);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Earthquake snapshot is incomplete or corrupt: " + file);
+                }
+            }
+            buffer.clear();
+        }
+        if (buffer.getInt(HEADER_MAGIC) != MAGIC) {
+            throw new IOException("Not an earthquake snapshot: " + file);
+        }
+        if (buffer.getInt(HEADER_VERSION) != VERSION) {
+            throw new IOException("Unsupported earthquake snapshot version " + buffer.getInt(HEADER_VERSION) + " in " + file);
+        }
+        if (buffer.getInt(HEADER_LENGTH) != buffer.capacity() || buffer.getInt(HEADER_CHECKSUM) != checksum(buffer)) {
+            throw new IOException("Earthquake snapshot is incomplete or corrupt: " + file);
+        }
+        try {
+            return decode(buffer);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException
+                 | IllegalArgumentException e) {
+            // Only a file written by a faulty writer passes the checksum and still gets here
+            throw new IOException("Earthquake snapshot is inconsistent: " + file, e);
+        }
+    }
+
+    private static EarthquakeSnapshot decode(ByteBuffer buffer) {
+        int events = buffer.getInt(HEADER_EVENT_COUNT);
+        int pointCount = buffer.getInt(HEADER_POINT_COUNT);
+        int stringCount = buffer.getInt(HEADER_STRING_COUNT);
+        int stateCount = buffer.getInt(HEADER_STATE_COUNT);
+        if (events < 0 || pointCount < 0 || stringCount < 0 || stateCount < 0
+                || (long) events * EVENT_WIDTH + (long) pointCount * POINT_WIDTH
+                        + (long) stateCount * STATE_WIDTH + (long) stringCount * Integer.BYTES
+                        > buffer.capacity() - HEADER_SIZE) {
+            throw new IllegalArgumentException("Counts do not fit the file");
+        }
+        Layout layout = new Layout(events, pointCount);
+
+        ByteBuffer dictionary = buffer.duplicate();
+        dictionary.position(layout.state + stateCount * STATE_WIDTH);
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[dictionary.getInt()];
+            dictionary.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        // Each address is interned into the area dictionary once, not once per point
+        int[] areaIds = new int[stringCount];
+        Arrays.fill(areaIds, AreaDictionary.NOT_FOUND);
+
+        List<Earthquake> earthquakes = new ArrayList<>(events);
+        int point = 0;
+        for (int row = 0; row < events; row++) {
+            int count = buffer.getInt(layout.pointCounts + row * Integer.BYTES);
+            ObservationPoints.Builder points = new ObservationPoints.Builder(count);
+            for (int end = point + count; point < end; point++) {
+                int address = buffer.getInt(layout.points + point * POINT_WIDTH);
+                int value = buffer.getInt(layout.points + point * POINT_WIDTH + Integer.BYTES);
+                if (areaIds[address] == AreaDictionary.NOT_FOUND) {
+                    areaIds[address] = AreaDictionary.intern(strings[address]);
+                }
+                int prefectureCode = value >>> 8 & 0xFF;
+                points.add(areaIds[address], (byte) value, prefectureCode != 0 ? PREFECTURES[prefectureCode - 1] : null);
+            }
+            earthquakes.add(new Earthquake(
+                    stringAt(strings, buffer.getInt(layout.ids + row * Integer.BYTES)),
+                    buffer.getLong(layout.times + row * Long.BYTES),
+                    stringAt(strings, buffer.getInt(layout.locations + row * Integer.BYTES)),
+                    buffer.getInt(layout.latitudes + row * Integer.BYTES) / COORDINATE_SCALE,
+                    buffer.getInt(layout.longitudes + row * Integer.BYTES) / COORDINATE_SCALE,
+                    buffer.getShort(layout.magnitudes + row * Short.BYTES) / MAGNITUDE_SCALE,
+                    buffer.getShort(layout.depths + row * Short.BYTES),
+                    buffer.get(layout.maxScales + row),
+                    stringAt(strings, buffer.getInt(layout.tsunamis + row * Integer.BYTES)),
+                    points.build(),
+                    buffer.getLong(layout.prefectureMasks + row * Long.BYTES)));
+        }
+
+        Map<String, String> state = new LinkedHashMap<>();
+        for (int i = 0; i < stateCount; i++) {
+            state.put(stringAt(strings, buffer.getInt(layout.state + i * STATE_WIDTH)),
+                    stringAt(strings, buffer.getInt(layout.state + i * STATE_WIDTH + Integer.BYTES)));
+        }
+        return new EarthquakeSnapshot(earthquakes, state, buffer.getLong(HEADER_WRITTEN_AT));
+    }
+
+    private static void intern(Map<String, Integer> strings, String value) {
+        if (value != null) {
+            strings.putIfAbsent(value, strings.size());
+        }
+    }
+
+    private static int idOf(Map<String, Integer> strings, String value) {
+        return value != null ? strings.get(value) : NULL_STRING;
+    }
+
+    private static String stringAt(String[] strings, int id) {
+        return id == NULL_STRING ? null : strings[id];
+    }
+
+    /**
+     * @return The CRC32 of the buffer from the length field to its end
+     */
+    private static int checksum(ByteBuffer buffer) {
+        ByteBuffer covered = buffer.duplicate();
+        covered.clear().position(HEADER_LENGTH);
+        CRC32 crc = new CRC32();
+        crc.update(covered);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Column offsets for a number of events and points. Eight-byte columns come first so
+     * every value stays aligned to its width.
+     */
+    private static final class Layout {
+        final int times;
+        final int prefectureMasks;
+        final int ids;
+        final int latitudes;
+        final int longitudes;
+        final int locations;
+        final int tsunamis;
+        final int pointCounts;
+        final int points;
+        final int magnitudes;
+        final int depths;
+        final int maxScales;
+        final int state;
+
+        Layout(int events, int pointCount) {
+            times = HEADER_SIZE;
+            prefectureMasks = times + events * Long.BYTES;
+            ids = prefectureMasks + events * Long.BYTES;
+            latitudes = ids + events * Integer.BYTES;
+            longitudes = latitudes + events * Integer.BYTES;
+            locations = longitudes + events * Integer.BYTES;
+            tsunamis = locations + events * Integer.BYTES;
+            pointCounts = tsunamis + events * Integer.BYTES;
+            points = pointCounts + events * Integer.BYTES;
+            magnitudes = points + pointCount * POINT_WIDTH;
+            depths = magnitudes + events * Short.BYTES;
+            maxScales = depths + events * Short.BYTES;
+            state = maxScales + events;
+        }
+    }
+}
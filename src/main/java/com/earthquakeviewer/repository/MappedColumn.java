@@ -0,0 +1,65 @@
+package com.earthquakeviewer.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single memory-mapped column file that grows by remapping at double the size.
+ * Readers may keep using a previously returned buffer; it stays valid after a remap.
+ */
+final class MappedColumn implements Closeable {
+    private static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+
+    private final Path path;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+
+    MappedColumn(Path path, long initialCapacity) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), initialCapacity);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * @return The current mapping; only absolute get/put methods should be used on it
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Make sure at least the given number of bytes are mapped.
+     *
+     * @param bytes The required capacity in bytes
+     * @throws IOException If the file cannot be extended or would exceed a single mapping
+     */
+    void ensureCapacity(long bytes) throws IOException {
+        MappedByteBuffer current = buffer;
+        if (bytes <= current.capacity()) {
+            return;
+        }
+        if (bytes > MAX_MAPPED_BYTES) {
+            throw new IOException("Column " + path.getFileName() + " is full");
+        }
+        long size = Math.min(MAX_MAPPED_BYTES, Math.max(bytes, (long) current.capacity() * 2));
+        current.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
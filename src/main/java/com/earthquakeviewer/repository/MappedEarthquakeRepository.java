@@ -0,0 +1,435 @@
+package com.earthquakeviewer.repository;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Columnar earthquake store backed by memory-mapped files.
+ * Every attribute lives in its own fixed-width column file, so the heap holds only the
+ * small interned string table no matter how many years of history are stored, and a
+ * cold start maps the files instead of parsing JSON.
+ *
+ * <p>Appends are serialised; reads of committed rows need no locking.</p>
+ */
+public class MappedEarthquakeRepository implements EarthquakeRepository {
+    private static final Logger logger = LoggerFactory.getLogger(MappedEarthquakeRepository.class);
+
+    private static final int MAGIC = 0x45514353; // "EQCS"
+    private static final int VERSION = 1;
+    private static final int META_SIZE = 64;
+    private static final int META_MAGIC = 0;
+    private static final int META_VERSION = 4;
+    private static final int META_ROW_COUNT = 8;
+    private static final int META_POINT_COUNT = 12;
+    // Epoch days of the fully synced range; 0 when nothing was synced, as history starts long after 1970
+    private static final int META_SYNCED_FROM = 16;
+    private static final int META_SYNCED_UNTIL = 24;
+
+    private static final int INITIAL_ROWS = 4096;
+    private static final int ID_WIDTH = 32;
+    private static final int MAX_ID_BYTES = ID_WIDTH - 1;
+    private static final int POINT_WIDTH = 8;
+    private static final double COORDINATE_SCALE = 1_000_000.0;
+    private static final double MAGNITUDE_SCALE = 10.0;
+    private static final Prefecture[] PREFECTURES = Prefecture.values();
+
+    private final MappedColumn meta;
+    private final MappedColumn ids;
+    private final MappedColumn times;
+    private final MappedColumn latitudes;
+    private final MappedColumn longitudes;
+    private final MappedColumn magnitudes;
+    private final MappedColumn depths;
+    private final MappedColumn maxScales;
+    private final MappedColumn locations;
+    private final MappedColumn tsunamis;
+    private final MappedColumn prefectureMasks;
+    private final MappedColumn pointStarts;
+    private final MappedColumn pointCounts;
+    private final MappedColumn points;
+    private final StringTable strings;
+    private final List<MappedColumn> columns;
+
+    private volatile int size;
+    private int pointCount;
+    private boolean closed;
+
+    // Off-heap open-addressing index from id to row + 1, rebuilt from the id column on open
+    private ByteBuffer idIndex;
+    private int idIndexMask;
+
+    /**
+     * Open (or create) a repository in the given directory.
+     *
+     * @param directory The directory holding the column files
+     * @throws IOException If the files cannot be opened or have an unknown format
+     */
+    public MappedEarthquakeRepository(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        meta = new MappedColumn(directory.resolve("meta.dat"), META_SIZE);
+        ids = new MappedColumn(directory.resolve("id.col"), (long) INITIAL_ROWS * ID_WIDTH);
+        times = new MappedColumn(directory.resolve("time.col"), (long) INITIAL_ROWS * Long.BYTES);
+        latitudes = new MappedColumn(directory.resolve("lat.col"), (long) INITIAL_ROWS * Integer.BYTES);
+        longitudes = new MappedColumn(directory.resolve("lon.col"), (long) INITIAL_ROWS * Integer.BYTES);
+        magnitudes = new MappedColumn(directory.resolve("mag.col"), (long) INITIAL_ROWS * Short.BYTES);
+        depths = new MappedColumn(directory.resolve("depth.col"), (long) INITIAL_ROWS * Short.BYTES);
+        maxScales = new MappedColumn(directory.resolve("scale.col"), INITIAL_ROWS);
+        locations = new MappedColumn(directory.resolve("location.col"), (long) INITIAL_ROWS * Integer.BYTES);
+        tsunamis = new MappedColumn(directory.resolve("tsunami.col"), (long) INITIAL_ROWS * Integer.BYTES);
+        prefectureMasks = new MappedColumn(directory.resolve("pref.col"), (long) INITIAL_ROWS * Long.BYTES);
+        pointStarts = new MappedColumn(directory.resolve("pstart.col"), (long) INITIAL_ROWS * Integer.BYTES);
+        pointCounts = new MappedColumn(directory.resolve("pcount.col"), (long) INITIAL_ROWS * Integer.BYTES);
+        points = new MappedColumn(directory.resolve("points.col"), (long) INITIAL_ROWS * 16 * POINT_WIDTH);
+        strings = new StringTable(directory.resolve("strings.dat"));
+        columns = List.of(meta, ids, times, latitudes, longitudes, magnitudes, depths, maxScales,
+                locations, tsunamis, prefectureMasks, pointStarts, pointCounts, points);
+
+        ByteBuffer header = meta.buffer();
+        if (header.getInt(META_MAGIC) == 0) {
+            header.putInt(META_MAGIC, MAGIC);
+            header.putInt(META_VERSION, VERSION);
+        } else if (header.getInt(META_MAGIC) != MAGIC || header.getInt(META_VERSION) != VERSION) {
+            close();
+            throw new IOException("Unsupported earthquake store format in " + directory);
+        }
+        size = header.getInt(META_ROW_COUNT);
+        pointCount = header.getInt(META_POINT_COUNT);
+
+        rebuildIdIndex(Math.max(INITIAL_ROWS, size) * 2);
+        logger.info("Opened earthquake store with {} events and {} strings", size, strings.size());
+    }
+
+    @Override
+    public synchronized boolean append(Earthquake earthquake) throws IOException {
+        byte[] idBytes = earthquake.getId() != null ? earthquake.getId().getBytes(StandardCharsets.UTF_8) : null;
+        if (idBytes == null || idBytes.length > MAX_ID_BYTES) {
+            logger.warn("Not storing earthquake with unsupported id: {}", earthquake.getId());
+            return false;
+        }
+        if (findRow(idBytes) >= 0) {
+            return false;
+        }
+
+        int row = size;
+        ObservationPoints observationPoints = earthquake.getObservationPoints();
+        ensureCapacity(row + 1, pointCount + observationPoints.size());
+
+        // Write the columns first and publish the new row count last
+        ByteBuffer idColumn = ids.buffer();
+        int idOffset = row * ID_WIDTH;
+        idColumn.put(idOffset, (byte) idBytes.length);
+        for (int i = 0; i < idBytes.length; i++) {
+            idColumn.put(idOffset + 1 + i, idBytes[i]);
+        }
+        times.buffer().putLong(row * Long.BYTES, earthquake.getEpochSecond());
+        latitudes.buffer().putInt(row * Integer.BYTES, (int) Math.round(earthquake.getLatitude() * COORDINATE_SCALE));
+        longitudes.buffer().putInt(row * Integer.BYTES, (int) Math.round(earthquake.getLongitude() * COORDINATE_SCALE));
+        magnitudes.buffer().putShort(row * Short.BYTES, (short) Math.round(earthquake.getMagnitude() * MAGNITUDE_SCALE));
+        depths.buffer().putShort(row * Short.BYTES, (short) earthquake.getDepth());
+        maxScales.buffer().put(row, (byte) earthquake.getMaxScale());
+        locations.buffer().putInt(row * Integer.BYTES, strings.intern(earthquake.getLocation()));
+        tsunamis.buffer().putInt(row * Integer.BYTES, strings.intern(earthquake.getDomesticTsunami()));
+        prefectureMasks.buffer().putLong(row * Long.BYTES, earthquake.getPrefectureMask());
+
+        ByteBuffer pointColumn = points.buffer();
+        int firstPoint = pointCount;
+        for (int i = 0; i < observationPoints.size(); i++) {
+            // The area dictionary lives only in memory, so the file refers to the name in the string table
+            pointColumn.putInt(pointCount * POINT_WIDTH, strings.intern(observationPoints.areaNameAt(i)));
+            Prefecture prefecture = observationPoints.prefectureAt(i);
+            int prefectureCode = prefecture != null ? prefecture.ordinal() + 1 : 0;
+            pointColumn.putInt(pointCount * POINT_WIDTH + Integer.BYTES,
+                    prefectureCode << 8 | observationPoints.scaleAt(i) & 0xFF);
+            pointCount++;
+        }
+        pointStarts.buffer().putInt(row * Integer.BYTES, firstPoint);
+        pointCounts.buffer().putInt(row * Integer.BYTES, pointCount - firstPoint);
+
+        ByteBuffer header = meta.buffer();
+        header.putInt(META_POINT_COUNT, pointCount);
+        header.putInt(META_ROW_COUNT, row + 1);
+        size = row + 1;
+
+        if ((long) size * 2 > idIndexMask + 1) {
+            rebuildIdIndex((idIndexMask + 1) * 2);
+        } else {
+            insertIntoIdIndex(row);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(String id) {
+        if (id == null) {
+            return false;
+        }
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        return idBytes.length <= MAX_ID_BYTES && findRow(idBytes) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Earthquake get(int row) {
+        checkRow(row);
+        return new Earthquake(readId(row), epochSecondAt(row), locationAt(row),
+                latitudeAt(row), longitudeAt(row), magnitudeAt(row), depthAt(row), maxScaleAt(row),
+                domesticTsunamiAt(row), pointsAt(row), prefectureMaskAt(row));
+    }
+
+    @Override
+    public long epochSecondAt(int row) {
+        checkRow(row);
+        return times.buffer().getLong(row * Long.BYTES);
+    }
+
+    @Override
+    public double latitudeAt(int row) {
+        checkRow(row);
+        return latitudes.buffer().getInt(row * Integer.BYTES) / COORDINATE_SCALE;
+    }
+
+    @Override
+    public double longitudeAt(int row) {
+        checkRow(row);
+        return longitudes.buffer().getInt(row * Integer.BYTES) / COORDINATE_SCALE;
+    }
+
+    @Override
+    public double magnitudeAt(int row) {
+        checkRow(row);
+        return magnitudes.buffer().getShort(row * Short.BYTES) / MAGNITUDE_SCALE;
+    }
+
+    @Override
+    public int depthAt(int row) {
+        checkRow(row);
+        return depths.buffer().getShort(row * Short.BYTES);
+    }
+
+    @Override
+    public int maxScaleAt(int row) {
+        checkRow(row);
+        return maxScales.buffer().get(row);
+    }
+
+    @Override
+    public long prefectureMaskAt(int row) {
+        checkRow(row);
+        return prefectureMasks.buffer().getLong(row * Long.BYTES);
+    }
+
+    @Override
+    public String locationAt(int row) {
+        checkRow(row);
+        return strings.get(locations.buffer().getInt(row * Integer.BYTES));
+    }
+
+    @Override
+    public String domesticTsunamiAt(int row) {
+        checkRow(row);
+        return strings.get(tsunamis.buffer().getInt(row * Integer.BYTES));
+    }
+
+    @Override
+    public ObservationPoints pointsAt(int row) {
+        checkRow(row);
+        int firstPoint = pointStarts.buffer().getInt(row * Integer.BYTES);
+        int count = pointCounts.buffer().getInt(row * Integer.BYTES);
+        ByteBuffer pointColumn = points.buffer();
+        ObservationPoints.Builder builder = new ObservationPoints.Builder(count);
+        for (int i = firstPoint; i < firstPoint + count; i++) {
+            // Table strings are shared instances, so the dictionary lookup reuses their cached hash
+            String address = strings.get(pointColumn.getInt(i * POINT_WIDTH));
+            int value = pointColumn.getInt(i * POINT_WIDTH + Integer.BYTES);
+            int prefectureCode = value >>> 8 & 0xFF;
+            builder.add(address, (byte) value, prefectureCode != 0 ? PREFECTURES[prefectureCode - 1] : null);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public List<Earthquake> findRecent(int limit) {
+        int rows = size;
+        if (limit <= 0 || rows == 0) {
+            return Collections.emptyList();
+        }
+
+        // Keep the newest rows in a min-heap on time while scanning the time column
+        ByteBuffer timeColumn = times.buffer();
+        PriorityQueue<long[]> newest = new PriorityQueue<>(limit, (a, b) -> Long.compare(a[0], b[0]));
+        for (int row = 0; row < rows; row++) {
+            long time = timeColumn.getLong(row * Long.BYTES);
+            if (newest.size() < limit) {
+                newest.add(new long[] {time, row});
+            } else if (time > newest.peek()[0]) {
+                newest.poll();
+                newest.add(new long[] {time, row});
+            }
+        }
+
+        Earthquake[] result = new Earthquake[newest.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = get((int) newest.poll()[1]);
+        }
+        return Arrays.asList(result);
+    }
+
+    @Override
+    public synchronized LocalDate getSyncedFrom() {
+        long epochDay = meta.buffer().getLong(META_SYNCED_FROM);
+        return epochDay != 0 ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    @Override
+    public synchronized LocalDate getSyncedUntil() {
+        long epochDay = meta.buffer().getLong(META_SYNCED_UNTIL);
+        return epochDay != 0 ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    @Override
+    public synchronized void setSyncedDays(LocalDate from, LocalDate until) {
+        ByteBuffer header = meta.buffer();
+        header.putLong(META_SYNCED_FROM, from.toEpochDay());
+        header.putLong(META_SYNCED_UNTIL, until.toEpochDay());
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        for (MappedColumn column : columns) {
+            column.force();
+        }
+        try {
+            strings.force();
+        } catch (IOException e) {
+            logger.warn("Failed to flush earthquake store string table", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (MappedColumn column : columns) {
+            if (column != null) {
+                column.close();
+            }
+        }
+        strings.close();
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range for " + size + " events");
+        }
+    }
+
+    private void ensureCapacity(int rows, int totalPoints) throws IOException {
+        ids.ensureCapacity((long) rows * ID_WIDTH);
+        times.ensureCapacity((long) rows * Long.BYTES);
+        latitudes.ensureCapacity((long) rows * Integer.BYTES);
+        longitudes.ensureCapacity((long) rows * Integer.BYTES);
+        magnitudes.ensureCapacity((long) rows * Short.BYTES);
+        depths.ensureCapacity((long) rows * Short.BYTES);
+        maxScales.ensureCapacity(rows);
+        locations.ensureCapacity((long) rows * Integer.BYTES);
+        tsunamis.ensureCapacity((long) rows * Integer.BYTES);
+        prefectureMasks.ensureCapacity((long) rows * Long.BYTES);
+        pointStarts.ensureCapacity((long) rows * Integer.BYTES);
+        pointCounts.ensureCapacity((long) rows * Integer.BYTES);
+        points.ensureCapacity((long) totalPoints * POINT_WIDTH);
+    }
+
+    private String readId(int row) {
+        ByteBuffer idColumn = ids.buffer();
+        int offset = row * ID_WIDTH;
+        byte[] bytes = new byte[idColumn.get(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = idColumn.get(offset + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int findRow(byte[] idBytes) {
+        int slot = hash(idBytes) & idIndexMask;
+        while (true) {
+            int entry = idIndex.getInt(slot * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (idEquals(entry - 1, idBytes)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & idIndexMask;
+        }
+    }
+
+    private boolean idEquals(int row, byte[] idBytes) {
+        ByteBuffer idColumn = ids.buffer();
+        int offset = row * ID_WIDTH;
+        if (idColumn.get(offset) != idBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < idBytes.length; i++) {
+            if (idColumn.get(offset + 1 + i) != idBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rebuildIdIndex(int minimumSlots) {
+        int slots = Integer.highestOneBit(Math.max(minimumSlots, 16) - 1) << 1;
+        idIndex = ByteBuffer.allocateDirect(slots * Integer.BYTES);
+        idIndexMask = slots - 1;
+        for (int row = 0; row < size; row++) {
+            insertIntoIdIndex(row);
+        }
+    }
+
+    private void insertIntoIdIndex(int row) {
+        ByteBuffer idColumn = ids.buffer();
+        int offset = row * ID_WIDTH;
+        byte[] idBytes = new byte[idColumn.get(offset)];
+        for (int i = 0; i < idBytes.length; i++) {
+            idBytes[i] = idColumn.get(offset + 1 + i);
+        }
+        int slot = hash(idBytes) & idIndexMask;
+        while (idIndex.getInt(slot * Integer.BYTES) != 0) {
+            slot = (slot + 1) & idIndexMask;
+        }
+        idIndex.putInt(slot * Integer.BYTES, row + 1);
+    }
+
+    private static int hash(byte[] bytes) {
+        // FNV-1a, then spread the bits so linear probing stays short
+        int h = 0x811c9dc5;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
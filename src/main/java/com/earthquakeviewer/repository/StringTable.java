@@ -0,0 +1,103 @@
+package com.earthquakeviewer.repository;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only dictionary of interned strings (hypocenter names, observation addresses,
+ * tsunami assessments). Each distinct string is stored once and referenced by its id.
+ * The set of distinct values is small and bounded, so it is kept on-heap for lookups.
+ */
+final class StringTable implements Closeable {
+    /** Id stored for a null string. */
+    static final int NULL_ID = -1;
+
+    private final FileChannel channel;
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    StringTable(Path path) throws IOException {
+        if (Files.exists(path)) {
+            load(path);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void load(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                data.readFully(bytes);
+                String value = new String(bytes, StandardCharsets.UTF_8);
+                ids.put(value, values.size());
+                values.add(value);
+            }
+        }
+    }
+
+    /**
+     * Get the id for a string, adding it to the table if it is new.
+     *
+     * @param value The string, may be null
+     * @return The id, or {@link #NULL_ID} for null
+     * @throws IOException If a new entry cannot be written
+     */
+    synchronized int intern(String value) throws IOException {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        entry.putInt(bytes.length).put(bytes).flip();
+        while (entry.hasRemaining()) {
+            channel.write(entry);
+        }
+        int newId = values.size();
+        values.add(value);
+        ids.put(value, newId);
+        return newId;
+    }
+
+    synchronized String get(int id) {
+        return id == NULL_ID ? null : values.get(id);
+    }
+
+    synchronized int size() {
+        return values.size();
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
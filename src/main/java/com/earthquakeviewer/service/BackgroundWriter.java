@@ -0,0 +1,155 @@
+package com.earthquakeviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hands items to a writer on a dedicated thread through a bounded queue, so that the
+ * thread producing them never waits for the disk. When the queue is full the item is
+ * discarded and counted: a stalled disk loses writes instead of holding up ingestion.
+ *
+ * <p>Items are written in the order they were accepted. An exception thrown by the writer
+ * is logged and writing continues with the next item. An optional callback runs whenever
+ * the queue has been emptied, so work that can be batched, such as indexing what was
+ * written, runs once per burst rather than once per item.</p>
+ *
+ * @param <T> The item type
+ */
+public final class BackgroundWriter<T> implements Consumer<T>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundWriter.class);
+    private static final long POLL_MILLIS = 200;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    // Overflows are logged on the first and then on every this many
+    private static final long OVERFLOW_LOG_INTERVAL = 1000;
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final Consumer<? super T> writer;
+    private final Runnable drained;
+    private final Thread thread;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Start the writer thread.
+     *
+     * @param name The thread name, also used in log messages
+     * @param capacity The maximum number of items waiting to be written
+     * @param writer Writes each item on the writer thread
+     */
+    public BackgroundWriter(String name, int capacity, Consumer<? super T> writer) {
+        this(name, capacity, writer, null);
+    }
+
+    /**
+     * Start the writer thread.
+     *
+     * @param name The thread name, also used in log messages
+     * @param capacity The maximum number of items waiting to be written
+     * @param writer Writes each item on the writer thread
+     * @param drained Runs on the writer thread after an item is written and no more are queued; may be null
+     */
+    public BackgroundWriter(String name, int capacity, Consumer<? super T> writer, Runnable drained) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = writer;
+        this.drained = drained;
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue an item for writing without waiting. Discards and counts it if the queue is full.
+     *
+     * @param item The item
+     */
+    @Override
+    public void accept(T item) {
+        if (closed) {
+            return;
+        }
+        if (!queue.offer(item)) {
+            long count = overflows.incrementAndGet();
+            if (count == 1 || count % OVERFLOW_LOG_INTERVAL == 0) {
+                logger.warn("{} is falling behind, {} items discarded so far", name, count);
+            }
+        }
+    }
+
+    /**
+     * @return The number of items written
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * @return The number of items discarded because the queue was full
+     */
+    public long getOverflowCount() {
+        return overflows.get();
+    }
+
+    /**
+     * @return The number of items waiting to be written
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Stop accepting items and wait a few seconds for the queued ones to be written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("{} did not finish, {} items not written", name, queue.size());
+        }
+    }
+
+    private void run() {
+        while (true) {
+            T item;
+            try {
+                // Polling rather than taking lets the thread notice close without an interrupt,
+                // which would close an interruptible channel the writer is using
+                item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (item == null) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                writer.accept(item);
+                written.incrementAndGet();
+            } catch (RuntimeException e) {
+                logger.error("{} failed to write an item", name, e);
+            }
+            if (drained != null && queue.isEmpty()) {
+                try {
+                    drained.run();
+                } catch (RuntimeException e) {
+                    logger.error("{} failed after writing a batch", name, e);
+                }
+            }
+        }
+    }
+}
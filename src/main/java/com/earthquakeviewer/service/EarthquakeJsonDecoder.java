@@ -0,0 +1,302 @@
+package com.earthquakeviewer.service;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.model.QuakeMessage;
+import com.earthquakeviewer.model.SeismicIntensity;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Token-streaming decoder for P2P Quake JMA earthquake (code 551) payloads.
+ * Reads directly from the response stream and emits one {@link Earthquake} per
+ * JSON object, so neither the response body nor a JsonNode tree is ever held in memory.
+ * Realtime messages of other codes are handled by {@link QuakeMessageDecoder}.
+ */
+public class EarthquakeJsonDecoder {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+
+    private final JsonFactory jsonFactory;
+
+    public EarthquakeJsonDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Decode a JSON array of P2P Quake messages, emitting each earthquake as soon as it is read.
+     *
+     * @param in The response body stream
+     * @param requireEarthquakeCode Whether entries without code 551 should be skipped
+     * @param sink The consumer receiving each decoded earthquake
+     * @return The number of messages in the array, including skipped ones
+     * @throws IOException If the stream cannot be read or is not a JSON array
+     */
+    public int decodeArray(InputStream in, boolean requireEarthquakeCode, Consumer<Earthquake> sink) throws IOException {
+        int messages = 0;
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array of messages");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                messages++;
+                Earthquake earthquake = readMessage(parser, requireEarthquakeCode);
+                if (earthquake != null) {
+                    sink.accept(earthquake);
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Decode a JSON array of P2P Quake messages into a list.
+     *
+     * @param in The response body stream
+     * @param requireEarthquakeCode Whether entries without code 551 should be skipped
+     * @return The decoded earthquakes in document order
+     * @throws IOException If the stream cannot be read or is not a JSON array
+     */
+    public List<Earthquake> decodeList(InputStream in, boolean requireEarthquakeCode) throws IOException {
+        List<Earthquake> earthquakes = new ArrayList<>();
+        decodeArray(in, requireEarthquakeCode, earthquakes::add);
+        return earthquakes;
+    }
+
+    /**
+     * Decode a single WebSocket message.
+     *
+     * @param message The raw message text
+     * @return The earthquake, or null if the message is not a code 551 earthquake report
+     * @throws IOException If the message is not valid JSON
+     */
+    public Earthquake decodeMessage(String message) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            return readMessage(parser, true);
+        }
+    }
+
+    /**
+     * Read one message object. The parser must be positioned on its START_OBJECT token
+     * and is left on the matching END_OBJECT token.
+     */
+    Earthquake readMessage(JsonParser parser, boolean requireEarthquakeCode) throws IOException {
+        return readMessage(parser, requireEarthquakeCode, null);
+    }
+
+    /**
+     * Read one message object, also filling in its header fields.
+     *
+     * @param header Receives the message's publish time, or null
+     */
+    Earthquake readMessage(JsonParser parser, boolean requireEarthquakeCode, MessageHeader header) throws IOException {
+        int code = -1;
+        String id = null;
+        HypocenterFields fields = null;
+        ObservationPoints points = null;
+        long prefectureMask = 0;
+
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "code":
+                    code = parser.getValueAsInt(-1);
+                    break;
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "time":
+                    if (header != null) {
+                        header.time = parser.getValueAsString();
+                    }
+                    break;
+                case "earthquake":
+                    if (token == JsonToken.START_OBJECT) {
+                        fields = readEarthquakeSection(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "points":
+                    if (token == JsonToken.START_ARRAY) {
+                        ObservationPoints.Builder builder = new ObservationPoints.Builder();
+                        prefectureMask = readPoints(parser, builder);
+                        points = builder.build();
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        if (requireEarthquakeCode && code != QuakeMessage.CODE_EARTHQUAKE) {
+            return null;
+        }
+        if (fields == null || !fields.hasHypocenter || fields.time == null) {
+            throw new JsonParseException(parser, "Earthquake message " + id + " is missing hypocenter or time");
+        }
+
+        return new Earthquake(id, parseEpochSecond(fields.time), fields.name, fields.latitude, fields.longitude,
+                             fields.magnitude, fields.depth, fields.maxScale, fields.domesticTsunami, points,
+                             prefectureMask);
+    }
+
+    private HypocenterFields readEarthquakeSection(JsonParser parser) throws IOException {
+        HypocenterFields fields = new HypocenterFields();
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "time":
+                    fields.time = parser.getValueAsString();
+                    break;
+                case "maxScale":
+                    fields.maxScale = parser.getValueAsInt(SeismicIntensity.UNKNOWN);
+                    break;
+                case "domesticTsunami":
+                    fields.domesticTsunami = parser.getValueAsString();
+                    break;
+                case "hypocenter":
+                    if (token == JsonToken.START_OBJECT) {
+                        readHypocenter(parser, fields);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return fields;
+    }
+
+    private void readHypocenter(JsonParser parser, HypocenterFields fields) throws IOException {
+        fields.hasHypocenter = true;
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (fieldName) {
+                case "name":
+                    fields.name = parser.getValueAsString();
+                    break;
+                case "latitude":
+                    fields.latitude = parser.getValueAsDouble();
+                    break;
+                case "longitude":
+                    fields.longitude = parser.getValueAsDouble();
+                    break;
+                case "magnitude":
+                    fields.magnitude = parser.getValueAsDouble();
+                    break;
+                case "depth":
+                    fields.depth = parser.getValueAsInt();
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Read the observation points, interning their area names.
+     *
+     * @return The mask of prefectures the points belong to
+     */
+    private long readPoints(JsonParser parser, ObservationPoints.Builder points) throws IOException {
+        long prefectureMask = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String areaName = null;
+            int scale = -1;
+            Prefecture prefecture = null;
+            String fieldName;
+            while ((fieldName = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                switch (fieldName) {
+                    case "addr":
+                        areaName = parser.getValueAsString();
+                        break;
+                    case "scale":
+                        scale = parser.getValueAsInt(-1);
+                        break;
+                    case "pref":
+                        prefecture = Prefecture.fromName(parser.getValueAsString());
+                        if (prefecture != null) {
+                            prefectureMask |= prefecture.bit();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            points.add(areaName, scale, prefecture);
+        }
+        return prefectureMask;
+    }
+
+    /**
+     * Parse a "yyyy/MM/dd HH:mm:ss" JST timestamp into epoch seconds without going through
+     * the formatter; anything that does not match that exact shape falls back to it.
+     */
+    static long parseEpochSecond(String text) {
+        if (text.length() == 19 && text.charAt(4) == '/' && text.charAt(7) == '/' && text.charAt(10) == ' '
+                && text.charAt(13) == ':' && text.charAt(16) == ':') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            int hour = digits(text, 11, 13);
+            int minute = digits(text, 14, 16);
+            int second = digits(text, 17, 19);
+            if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0) {
+                return LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(Earthquake.JST);
+            }
+        }
+        return LocalDateTime.parse(text, DATE_TIME_FORMATTER).toEpochSecond(Earthquake.JST);
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Scratch holder for the fields of the "earthquake" section, which may arrive in any order.
+     */
+    private static final class HypocenterFields {
+        private String time;
+        private int maxScale = SeismicIntensity.UNKNOWN;
+        private String domesticTsunami;
+        private boolean hasHypocenter;
+        private String name;
+        private double latitude;
+        private double longitude;
+        private double magnitude;
+        private int depth;
+    }
+}
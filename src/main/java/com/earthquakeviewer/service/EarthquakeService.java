@@ -1,84 +1,459 @@
 package com.earthquakeviewer.service;
 
+import com.earthquakeviewer.analytics.AftershockSequence;
+import com.earthquakeviewer.analytics.EarthquakeAnalytics;
+import com.earthquakeviewer.analytics.SequenceClusterer;
+import com.earthquakeviewer.metrics.AlertLatency;
+import com.earthquakeviewer.metrics.Counter;
+import com.earthquakeviewer.metrics.JvmMetrics;
+import com.earthquakeviewer.metrics.LatencyHistogram;
+import com.earthquakeviewer.metrics.MetricsRegistry;
+import com.earthquakeviewer.metrics.MetricsServer;
+import com.earthquakeviewer.model.EarlyWarning;
 import com.earthquakeviewer.model.Earthquake;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.earthquakeviewer.model.EewDetection;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.model.QuakeMessage;
+import com.earthquakeviewer.model.SeismicIntensity;
+import com.earthquakeviewer.model.TsunamiForecast;
+import com.earthquakeviewer.model.UserQuakeReport;
+import com.earthquakeviewer.query.EarthquakeQuery;
+import com.earthquakeviewer.query.LocalQueryEngine;
+import com.earthquakeviewer.query.ShakingSummary;
+import com.earthquakeviewer.replay.FrameLogWriter;
+import com.earthquakeviewer.repository.EarthquakeRepository;
+import com.earthquakeviewer.repository.EarthquakeSnapshot;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.java_websocket.client.WebSocketClient;
-import org.java_websocket.handshake.ServerHandshake;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Service for fetching earthquake data from the P2P Quake API.
  */
 public class EarthquakeService {
+    /** System property for the port of the Prometheus endpoint; unset or negative leaves it off. */
+    public static final String METRICS_PORT_PROPERTY = "earthquake.metrics.port";
+    /** The port the headless daemon serves metrics on when none is configured. */
+    public static final int DEFAULT_METRICS_PORT = 9464;
+
     private static final Logger logger = LoggerFactory.getLogger(EarthquakeService.class);
     private static final String API_BASE_URL = "https://api.p2pquake.net/v2";
     private static final String WEBSOCKET_URL = "wss://api-realtime.p2pquake.net/v2/ws";
-    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+    private static final int JMA_PAGE_SIZE = 100;
+    private static final int MAX_SYNC_PAGES = 50;
+    private static final int DEFAULT_SYNC_DAYS = 30;
+    private static final String ENDPOINT_HISTORY = "history";
+    private static final String ENDPOINT_JMA_QUAKE = "jma/quake";
+    private static final int HISTORY_PAGE_SIZE = 100;
+    private static final int MAX_BACKFILL_PAGES = 10;
+    // Events can be published a few minutes after their origin time
+    private static final long BACKFILL_MARGIN_SECONDS = 600;
+    private static final int RECENT_ID_CAPACITY = 4096;
+    private static final long HTTP_CACHE_SIZE = 50L * 1024 * 1024;
+    private static final int QUERY_CACHE_CAPACITY = 64;
+    private static final long QUERY_CACHE_TTL_SECONDS = Long.getLong("earthquake.cache.ttlSeconds", 15);
+    // Events buffered per subscriber before its overflow policy applies
+    private static final int STREAM_BUFFER_SIZE = Integer.getInteger("earthquake.stream.bufferSize", 256);
+    // Events waiting for the store's writer thread before new ones are discarded
+    private static final int STORE_QUEUE_SIZE = Integer.getInteger("earthquake.store.queueSize", 65536);
+    private static final String METRICS_HOST = System.getProperty("earthquake.metrics.host", "127.0.0.1");
+    // Frame log that every realtime message is appended to, for replaying later
+    private static final String RECORD_FILE = System.getProperty("earthquake.record.file");
+    // Seconds between snapshots of the view for a warm start; 0 writes one only at shutdown
+    private static final long SNAPSHOT_INTERVAL_SECONDS = Long.getLong("earthquake.snapshot.intervalSeconds", 60);
+    // Live data: use a disk-cached copy only after the server confirms it with 304 Not Modified
+    private static final CacheControl REVALIDATE = new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build();
+    // Days that are over rarely change, so a cached copy is served without a round trip
+    private static final CacheControl CLOSED_DAYS = new CacheControl.Builder().maxStale(7, TimeUnit.DAYS).build();
     
+    private final String apiBaseUrl = System.getProperty("earthquake.api.baseUrl", API_BASE_URL);
+    // Point at a relay to share one upstream connection between several viewers
+    private final String realtimeUrl = System.getProperty("earthquake.realtime.url", WEBSOCKET_URL);
     private final OkHttpClient httpClient;
+    private final SingleFlightCache<List<Earthquake>> queryCache =
+            new SingleFlightCache<>(QUERY_CACHE_CAPACITY, QUERY_CACHE_TTL_SECONDS, TimeUnit.SECONDS);
     private final ObjectMapper objectMapper;
-    private final ExecutorService executorService;
-    private final List<Consumer<Earthquake>> earthquakeListeners = new CopyOnWriteArrayList<>();
-    private WebSocketClient webSocketClient;
+    private final EarthquakeJsonDecoder earthquakeDecoder;
+    private final QuakeMessageDecoder messageDecoder;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final AlertLatency alertLatency = new AlertLatency(metrics);
+    private final Counter messagesReceived = metrics.counter("p2pquake_messages_total",
+            "Realtime messages received, of any code");
+    private final Counter parseFailures = metrics.counter("p2pquake_parse_failures_total",
+            "Realtime messages that could not be decoded");
+    private final ServiceExecutors executors;
+    private final Executor ioExecutor;
+    private final EarthquakeRepository repository;
+    private final LocalQueryEngine queryEngine;
+    private final EarthquakeAnalytics analytics;
+    private final SequenceClusterer sequences = new SequenceClusterer();
+    private final SyncedDays syncedDays;
+    private final BackgroundWriter<Earthquake> storeWriter;
+    private final EventPublisher<Earthquake> earthquakePublisher;
+    private final EventPublisher<TsunamiForecast> tsunamiPublisher;
+    private final EventPublisher<EewDetection> eewDetectionPublisher;
+    private final EventPublisher<EarlyWarning> earlyWarningPublisher;
+    private final EventPublisher<UserQuakeReport> userQuakePublisher;
+    private final EventPublisher<RealtimeFrame> framePublisher;
+    private final Map<Consumer<Earthquake>, Flow.Subscription> listenerSubscriptions = new ConcurrentHashMap<>();
+    private final RecentIds deliveredIds = new RecentIds(RECENT_ID_CAPACITY);
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private volatile String lastSeenId;
+    private volatile long lastSeenEpochSecond = Long.MIN_VALUE;
+    private volatile RealtimeClient realtimeClient;
+    private volatile FrameLogWriter recorder;
+    private volatile Path snapshotFile;
+    private volatile Supplier<EarthquakeSnapshot> snapshotSource;
+    private final Object snapshotLock = new Object();
+    private long lastSnapshotEpochMillis = Long.MIN_VALUE;
+    private ScheduledFuture<?> snapshotTask;
+    private MetricsServer metricsServer;
+    private volatile int metricsPort = Integer.getInteger(METRICS_PORT_PROPERTY, -1);
+    private final AtomicBoolean shutDown = new AtomicBoolean();
     
     public EarthquakeService() {
-        this.httpClient = new OkHttpClient.Builder()
+        this(null);
+    }
+    
+    /**
+     * Create a service that writes every fetched and received event into a local store.
+     * 
+     * @param repository The store for earthquake history, or null to keep nothing locally
+     */
+    public EarthquakeService(EarthquakeRepository repository) {
+        this(repository, null);
+    }
+    
+    /**
+     * Create a service with a local store and an HTTP disk cache.
+     * 
+     * @param repository The store for earthquake history, or null to keep nothing locally
+     * @param httpCacheDir The directory for cached HTTP responses, or null for no disk cache
+     */
+    public EarthquakeService(EarthquakeRepository repository, Path httpCacheDir) {
+        this.repository = repository;
+        this.queryEngine = repository != null ? new LocalQueryEngine(repository) : null;
+        this.syncedDays = repository != null ? new SyncedDays(repository) : null;
+        this.analytics = repository != null ? new EarthquakeAnalytics(repository) : null;
+        // Realtime events are indexed, and watched statistics updated, once the writer has
+        // caught up, so a burst is indexed in one go
+        this.storeWriter = repository != null
+                ? new BackgroundWriter<>("earthquake-store-writer", STORE_QUEUE_SIZE, this::store, this::indexStored)
+                : null;
+        OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder()
                 .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
+                .readTimeout(30, TimeUnit.SECONDS);
+        if (httpCacheDir != null) {
+            // Responses with validators are revalidated with conditional requests
+            httpClientBuilder.cache(new Cache(httpCacheDir.toFile(), HTTP_CACHE_SIZE));
+        }
+        this.httpClient = httpClientBuilder.build();
         this.objectMapper = new ObjectMapper();
-        this.executorService = Executors.newCachedThreadPool();
+        this.earthquakeDecoder = new EarthquakeJsonDecoder(objectMapper.getFactory());
+        this.messageDecoder = new QuakeMessageDecoder(objectMapper.getFactory(), earthquakeDecoder, metrics);
+        this.executors = new ServiceExecutors();
+        this.ioExecutor = executors.io();
+        this.earthquakePublisher = newChannel();
+        this.tsunamiPublisher = newChannel();
+        this.eewDetectionPublisher = newChannel();
+        this.earlyWarningPublisher = newChannel();
+        this.userQuakePublisher = newChannel();
+        this.framePublisher = newChannel();
+        if (storeWriter != null) {
+            // Appends run on their own thread, so a stalled disk never holds up the realtime
+            // connection; the writer only discards events once its large queue is full
+            earthquakePublisher.subscribe(storeWriter, EventPublisher.OverflowPolicy.DROP_OLDEST, STREAM_BUFFER_SIZE);
+        }
+        registerMetrics();
+    }
+    
+    /**
+     * Serve Prometheus metrics on a port from {@link #start()} on. By default there is no
+     * endpoint unless {@value #METRICS_PORT_PROPERTY} is set.
+     * 
+     * @param port The port on the loopback address (or earthquake.metrics.host), or a negative number for none
+     */
+    public void setMetricsPort(int port) {
+        this.metricsPort = port;
     }
     
     /**
      * Start the earthquake service and connect to the WebSocket for real-time updates.
      */
     public void start() {
+        // Until the first event arrives, a backfill reaches back to when the service started
+        lastSeenEpochSecond = Instant.now().getEpochSecond();
+        startMetricsServer();
+        if (RECORD_FILE != null && recorder == null) {
+            try {
+                startRecording(Paths.get(RECORD_FILE));
+            } catch (IOException e) {
+                logger.error("Cannot record realtime messages to {}", RECORD_FILE, e);
+            }
+        }
         connectWebSocket();
     }
     
     /**
-     * Shutdown the earthquake service and clean up resources.
+     * Append every realtime message, including duplicates and codes that are not decoded,
+     * to a frame log from now on. The log can be played back with
+     * {@link com.earthquakeviewer.replay.ReplayServer}.
+     * 
+     * @param file The frame log; an existing log is continued
+     * @throws IOException If the log cannot be opened
      */
-    public void shutdown() {
-        if (webSocketClient != null) {
-            webSocketClient.close();
+    public synchronized void startRecording(Path file) throws IOException {
+        stopRecording();
+        recorder = new FrameLogWriter(file);
+        logger.info("Recording realtime messages to {}", file);
+    }
+    
+    /**
+     * Stop recording realtime messages, if recording.
+     */
+    public synchronized void stopRecording() {
+        FrameLogWriter current = recorder;
+        recorder = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close frame log", e);
+            }
+        }
+    }
+    
+    /**
+     * Read the snapshot an earlier run left behind. Its events count as delivered, so the
+     * realtime stream does not show them twice, and rejoin their aftershock sequences.
+     * 
+     * @param file The snapshot file
+     * @return The snapshot, or null if there is none or it cannot be read
+     */
+    public EarthquakeSnapshot restoreSnapshot(Path file) {
+        if (!Files.exists(file)) {
+            return null;
         }
-        executorService.shutdown();
         try {
-            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
+            EarthquakeSnapshot snapshot = EarthquakeSnapshot.read(file);
+            // Cluster in origin order, the way the events arrived live
+            List<Earthquake> restored = new ArrayList<>(snapshot.getEarthquakes());
+            restored.sort(Comparator.comparingLong(Earthquake::getEpochSecond));
+            for (Earthquake earthquake : restored) {
+                deliveredIds.add(earthquake.getId());
+                sequences.assign(earthquake);
             }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
+            logger.info("Restored {} earthquakes from snapshot taken at {}", restored.size(),
+                    Instant.ofEpochMilli(snapshot.getWrittenEpochMillis()));
+            return snapshot;
+        } catch (IOException e) {
+            logger.warn("Ignoring unusable earthquake snapshot {}", file, e);
+            return null;
         }
     }
     
     /**
-     * Add a listener for earthquake updates.
+     * Write a snapshot of the view every {@code earthquake.snapshot.intervalSeconds} and a
+     * last one at shutdown, for {@link #restoreSnapshot(Path)} on the next start.
+     * 
+     * @param file The snapshot file, replaced on each write
+     * @param source Captures the events and state to save; may return null to skip a write
+     */
+    public synchronized void startSnapshots(Path file, Supplier<EarthquakeSnapshot> source) {
+        stopSnapshots();
+        snapshotFile = file;
+        snapshotSource = source;
+        if (SNAPSHOT_INTERVAL_SECONDS > 0) {
+            // Capturing may wait for the UI thread, so it runs off the scheduler thread
+            snapshotTask = executors.scheduler().scheduleWithFixedDelay(() -> ioExecutor.execute(this::writeSnapshot),
+                    SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Stop writing snapshots, without writing a last one.
+     */
+    public synchronized void stopSnapshots() {
+        if (snapshotTask != null) {
+            snapshotTask.cancel(false);
+            snapshotTask = null;
+        }
+        snapshotFile = null;
+        snapshotSource = null;
+    }
+    
+    /**
+     * Write a snapshot now, if snapshots were started.
+     */
+    public void writeSnapshot() {
+        Path file = snapshotFile;
+        Supplier<EarthquakeSnapshot> source = snapshotSource;
+        if (file == null || source == null) {
+            return;
+        }
+        try {
+            // Capture outside the lock; a capture that lost the race to a newer one is dropped
+            EarthquakeSnapshot snapshot = source.get();
+            if (snapshot == null) {
+                return;
+            }
+            synchronized (snapshotLock) {
+                if (snapshot.getWrittenEpochMillis() < lastSnapshotEpochMillis) {
+                    return;
+                }
+                snapshot.write(file);
+                lastSnapshotEpochMillis = snapshot.getWrittenEpochMillis();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to write earthquake snapshot to {}", file, e);
+        }
+    }
+    
+    /**
+     * Shutdown the earthquake service and clean up resources. Calls after the first do nothing.
+     */
+    public void shutdown() {
+        if (!shutDown.compareAndSet(false, true)) {
+            return;
+        }
+        writeSnapshot();
+        stopSnapshots();
+        if (realtimeClient != null) {
+            realtimeClient.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        stopRecording();
+        // Let subscribers, including the store, finish what is buffered before flushing
+        earthquakePublisher.close();
+        tsunamiPublisher.close();
+        eewDetectionPublisher.close();
+        earlyWarningPublisher.close();
+        userQuakePublisher.close();
+        framePublisher.close();
+        executors.shutdown(5, TimeUnit.SECONDS);
+        if (storeWriter != null) {
+            storeWriter.close();
+        }
+        if (repository != null) {
+            repository.flush();
+        }
+    }
+    
+    /**
+     * @return The service's executors, for thread and queue metrics
+     */
+    public ServiceExecutors getExecutors() {
+        return executors;
+    }
+    
+    /**
+     * @return The registry behind the metrics endpoint; other components may add their own metrics
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * @return The stage latency tracker; views report when live events are dispatched and rendered
+     */
+    public AlertLatency getAlertLatency() {
+        return alertLatency;
+    }
+    
+    /**
+     * @return The stream of new earthquakes, in arrival order. Subscribers choose their own
+     *         buffer size and overflow policy with
+     *         {@link EventPublisher#subscribe(java.util.concurrent.Flow.Subscriber, EventPublisher.OverflowPolicy, int)}.
+     *         Like every realtime channel, it refuses {@link EventPublisher.OverflowPolicy#BLOCK},
+     *         which would stall the realtime connection for all subscribers.
+     */
+    public EventPublisher<Earthquake> getEarthquakePublisher() {
+        return earthquakePublisher;
+    }
+    
+    /**
+     * @return The stream of tsunami forecasts (code 552)
+     */
+    public EventPublisher<TsunamiForecast> getTsunamiPublisher() {
+        return tsunamiPublisher;
+    }
+    
+    /**
+     * @return The stream of early warning detections (code 554)
+     */
+    public EventPublisher<EewDetection> getEewDetectionPublisher() {
+        return eewDetectionPublisher;
+    }
+    
+    /**
+     * @return The stream of early warnings (code 556), including every revision
+     */
+    public EventPublisher<EarlyWarning> getEarlyWarningPublisher() {
+        return earlyWarningPublisher;
+    }
+    
+    /**
+     * @return The stream of P2P user quake reports (code 561)
+     */
+    public EventPublisher<UserQuakeReport> getUserQuakePublisher() {
+        return userQuakePublisher;
+    }
+    
+    /**
+     * @return Every new realtime message with its original text, after duplicates are removed
+     */
+    public EventPublisher<RealtimeFrame> getFramePublisher() {
+        return framePublisher;
+    }
+    
+    /**
+     * @return Realtime message decode latency per P2P Quake code
+     */
+    public Map<Integer, LatencyHistogram> getParseLatency() {
+        return messageDecoder.getParseLatency();
+    }
+    
+    /**
+     * Add a listener for earthquake updates. The listener runs on a delivery thread
+     * and, if it falls behind, misses the oldest undelivered events.
      * 
      * @param listener The listener to add
      */
     public void addEarthquakeListener(Consumer<Earthquake> listener) {
-        earthquakeListeners.add(listener);
+        listenerSubscriptions.computeIfAbsent(listener, l -> earthquakePublisher.subscribe(
+                l, EventPublisher.OverflowPolicy.DROP_OLDEST, STREAM_BUFFER_SIZE));
     }
     
     /**
@@ -87,7 +462,10 @@ public class EarthquakeService {
      * @param listener The listener to remove
      */
     public void removeEarthquakeListener(Consumer<Earthquake> listener) {
-        earthquakeListeners.remove(listener);
+        Flow.Subscription subscription = listenerSubscriptions.remove(listener);
+        if (subscription != null) {
+            subscription.cancel();
+        }
     }
     
     /**
@@ -97,35 +475,78 @@ public class EarthquakeService {
      * @return A CompletableFuture that will be completed with the list of earthquakes
      */
     public CompletableFuture<List<Earthquake>> getRecentEarthquakes(int limit) {
-        return CompletableFuture.supplyAsync(() -> {
+        // Identical concurrent requests share one call, and results are reused for a short TTL
+        return queryCache.get("history?codes=551&limit=" + limit, () -> CompletableFuture.supplyAsync(() -> {
             try {
-                String url = API_BASE_URL + "/history?codes=551&limit=" + limit;
-                Request request = new Request.Builder()
-                        .url(url)
-                        .build();
-                
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (!response.isSuccessful()) {
-                        throw new IOException("Unexpected response code: " + response);
-                    }
-                    
-                    String responseBody = response.body().string();
-                    JsonNode rootNode = objectMapper.readTree(responseBody);
-                    
-                    List<Earthquake> earthquakes = new ArrayList<>();
-                    for (JsonNode node : rootNode) {
-                        if (node.has("code") && node.get("code").asInt() == 551) {
-                            earthquakes.add(parseEarthquake(node));
-                        }
-                    }
-                    
-                    return earthquakes;
-                }
+                List<Earthquake> earthquakes = fetchHistoryPage(limit, 0);
+                store(earthquakes);
+                return Collections.unmodifiableList(earthquakes);
             } catch (Exception e) {
                 logger.error("Failed to get recent earthquakes", e);
                 throw new CompletionException(e);
             }
-        }, executorService);
+        }, ioExecutor));
+    }
+    
+    /**
+     * Get the most recent earthquakes from the local store, without a network call.
+     * 
+     * @param limit The maximum number of earthquakes to return
+     * @return A CompletableFuture that will be completed with the stored earthquakes, newest first
+     */
+    public CompletableFuture<List<Earthquake>> getStoredEarthquakes(int limit) {
+        if (repository == null) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return CompletableFuture.supplyAsync(() -> repository.findRecent(limit), ioExecutor);
+    }
+
+    /**
+     * Write earthquakes to the local history in the background. Events that are
+     * already stored are skipped.
+     *
+     * @param earthquakes The earthquakes to archive
+     */
+    public void archiveEarthquakes(List<Earthquake> earthquakes) {
+        if (repository == null || earthquakes.isEmpty()) {
+            return;
+        }
+        List<Earthquake> copy = new ArrayList<>(earthquakes);
+        ioExecutor.execute(() -> store(copy));
+    }
+
+    /**
+     * Get stored earthquakes within a distance of a location, e.g. a facility.
+     *
+     * @param latitude The latitude of the location
+     * @param longitude The longitude of the location
+     * @param radiusKm The radius in km
+     * @param limit The maximum number of earthquakes to return
+     * @return A CompletableFuture with the earthquakes, newest first
+     */
+    public CompletableFuture<List<Earthquake>> getEarthquakesNear(double latitude, double longitude,
+                                                                  double radiusKm, int limit) {
+        if (queryEngine == null) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return CompletableFuture.supplyAsync(() -> queryEngine.withinRadius(
+                latitude, longitude, radiusKm, new EarthquakeQuery().limit(limit)), ioExecutor);
+    }
+
+    /**
+     * Get stored earthquakes with epicenters inside a map viewport.
+     *
+     * @param query Further filter criteria
+     * @return A CompletableFuture with the earthquakes, newest first
+     */
+    public CompletableFuture<List<Earthquake>> getEarthquakesInViewport(double minLatitude, double minLongitude,
+                                                                        double maxLatitude, double maxLongitude,
+                                                                        EarthquakeQuery query) {
+        if (queryEngine == null) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return CompletableFuture.supplyAsync(() -> queryEngine.inBoundingBox(
+                minLatitude, minLongitude, maxLatitude, maxLongitude, query), ioExecutor);
     }
     
     /**
@@ -139,223 +560,595 @@ public class EarthquakeService {
      */
     public CompletableFuture<List<Earthquake>> getFilteredEarthquakes(
             double minMagnitude, String prefecture, LocalDateTime startDate, LocalDateTime endDate) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                StringBuilder urlBuilder = new StringBuilder(API_BASE_URL + "/jma/quake?");
-                
-                // Add magnitude filter
-                if (minMagnitude > 0) {
-                    urlBuilder.append("minMagnitude=").append(minMagnitude).append("&");
-                }
-                
-                // Add prefecture filter
-                if (prefecture != null && !prefecture.equals("All Prefectures")) {
-                    urlBuilder.append("prefecture=").append(prefecture).append("&");
-                }
-                
-                // Add date filters
-                if (startDate != null) {
-                    urlBuilder.append("sinceDate=").append(startDate.format(DateTimeFormatter.ISO_DATE)).append("&");
-                }
-                
-                if (endDate != null) {
-                    urlBuilder.append("untilDate=").append(endDate.format(DateTimeFormatter.ISO_DATE)).append("&");
-                }
-                
-                // Add limit
-                urlBuilder.append("limit=100");
-                
-                Request request = new Request.Builder()
-                        .url(urlBuilder.toString())
-                        .build();
-                
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (!response.isSuccessful()) {
-                        throw new IOException("Unexpected response code: " + response);
-                    }
-                    
-                    String responseBody = response.body().string();
-                    JsonNode rootNode = objectMapper.readTree(responseBody);
-                    
-                    List<Earthquake> earthquakes = new ArrayList<>();
-                    for (JsonNode node : rootNode) {
-                        earthquakes.add(parseJMAEarthquake(node));
-                    }
-                    
-                    return earthquakes;
+        return getFilteredEarthquakes(new EarthquakeQuery()
+                .minMagnitude(minMagnitude)
+                .prefecture(Prefecture.fromName(prefecture))
+                .between(startDate, endDate));
+    }
+    
+    /**
+     * Get filtered earthquakes based on criteria.
+     * With a local store, the query is answered locally after fetching only the days
+     * of the requested window that have not been synced yet, so it includes events that
+     * just arrived; without one, it is sent to the API, and identical requests share a
+     * cached result for a few seconds.
+     * 
+     * @param query The filter criteria
+     * @return A CompletableFuture that will be completed with the list of earthquakes, newest first
+     */
+    public CompletableFuture<List<Earthquake>> getFilteredEarthquakes(EarthquakeQuery query) {
+        if (queryEngine != null) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    syncHistory(query);
+                    return Collections.unmodifiableList(queryEngine.query(query));
+                } catch (Exception e) {
+                    logger.error("Failed to get filtered earthquakes", e);
+                    throw new CompletionException(e);
                 }
+            }, ioExecutor);
+        }
+        String key = "filter?" + query.normalizedKey();
+        return queryCache.get(key, () -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return Collections.unmodifiableList(fetchFilteredEarthquakes(query));
             } catch (Exception e) {
                 logger.error("Failed to get filtered earthquakes", e);
                 throw new CompletionException(e);
             }
-        }, executorService);
+        }, ioExecutor));
+    }
+
+    /**
+     * Find the rows of the local store that match a query, for views that read the
+     * store's columns directly. Days of the window that have not been synced yet are
+     * fetched first.
+     * 
+     * @param query The filter criteria
+     * @return A CompletableFuture that will be completed with the matching rows, newest first
+     * @throws IllegalStateException If the service has no local store
+     */
+    public CompletableFuture<int[]> getFilteredRows(EarthquakeQuery query) {
+        if (queryEngine == null) {
+            throw new IllegalStateException("No local earthquake store");
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                syncHistory(query);
+                return queryEngine.queryRows(query);
+            } catch (Exception e) {
+                logger.error("Failed to get filtered rows", e);
+                throw new CompletionException(e);
+            }
+        }, ioExecutor);
+    }
+    
+    /**
+     * Summarise how often and how strongly an observation area was shaken, from the
+     * stored history alone; use {@link #backfillHistory} first to cover long periods.
+     *
+     * @param area The observation area name, e.g. "輪島市"
+     * @param startTime The inclusive start in Japan Standard Time, or null from the first stored event
+     * @param endTime The inclusive end, or null to the last stored event
+     * @param bucket The histogram bucket width
+     * @param minScale Only count events observed at this scale code or above, or
+     *                 {@link SeismicIntensity#UNKNOWN} for all
+     * @return A CompletableFuture that will be completed with the summary
+     * @throws IllegalStateException If the service has no local store
+     */
+    public CompletableFuture<ShakingSummary> getAreaShaking(String area, LocalDateTime startTime,
+                                                            LocalDateTime endTime, Duration bucket, int minScale) {
+        if (queryEngine == null) {
+            throw new IllegalStateException("No local earthquake store");
+        }
+        return CompletableFuture.supplyAsync(() -> queryEngine.areaSummary(area, toEpochSecond(startTime, Long.MIN_VALUE),
+                toEpochSecond(endTime, Long.MAX_VALUE), bucket.getSeconds(), minScale), ioExecutor);
+    }
+
+    /**
+     * Summarise how often and how strongly a prefecture was shaken, from the stored
+     * history alone. Each event counts once, at the strongest intensity in the prefecture.
+     *
+     * @param prefecture The prefecture
+     * @param startTime The inclusive start in Japan Standard Time, or null from the first stored event
+     * @param endTime The inclusive end, or null to the last stored event
+     * @param bucket The histogram bucket width
+     * @param minScale Only count events observed at this scale code or above, or
+     *                 {@link SeismicIntensity#UNKNOWN} for all
+     * @return A CompletableFuture that will be completed with the summary
+     * @throws IllegalStateException If the service has no local store
+     */
+    public CompletableFuture<ShakingSummary> getPrefectureShaking(Prefecture prefecture, LocalDateTime startTime,
+                                                                  LocalDateTime endTime, Duration bucket, int minScale) {
+        if (queryEngine == null) {
+            throw new IllegalStateException("No local earthquake store");
+        }
+        return CompletableFuture.supplyAsync(() -> queryEngine.prefectureSummary(prefecture,
+                toEpochSecond(startTime, Long.MIN_VALUE), toEpochSecond(endTime, Long.MAX_VALUE),
+                bucket.getSeconds(), minScale), ioExecutor);
+    }
+
+    private static long toEpochSecond(LocalDateTime time, long unbounded) {
+        return time != null ? time.toEpochSecond(Earthquake.JST) : unbounded;
+    }
+
+    /**
+     * @return Statistics over the local store, or null if the service keeps no history
+     */
+    public EarthquakeAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    /**
+     * @return The aftershock sequences of the live stream
+     */
+    public SequenceClusterer getSequences() {
+        return sequences;
+    }
+
+    /**
+     * @param earthquakeId The id of a delivered event
+     * @return The aftershock sequence the event belongs to, or null if it was not clustered
+     *         or the sequence has ended
+     */
+    public AftershockSequence getSequenceOf(String earthquakeId) {
+        return sequences.sequenceOf(earthquakeId);
+    }
+
+    /**
+     * @param minCount Only return sequences with at least this many events
+     * @return The aftershock sequences still open, most events first
+     */
+    public List<AftershockSequence> getActiveSequences(int minCount) {
+        return sequences.activeSequences(minCount);
+    }
+
+    /**
+     * @return The local store, or null if the service keeps no history
+     */
+    public EarthquakeRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Fetch a long range of history in parallel day windows and store every event.
+     *
+     * @param from The first day, inclusive
+     * @param until The last day, inclusive
+     * @param options Parallelism, rate limit and checkpoint settings
+     * @param sink Receives each event after it is stored, oldest first; may be null. It is
+     *             called on an I/O thread while the backfill holds its lock, so it must be fast
+     * @return A CompletableFuture that will be completed with the number of events fetched
+     */
+    public CompletableFuture<Long> backfillHistory(LocalDate from, LocalDate until,
+                                                   HistoryBackfill.Options options, Consumer<Earthquake> sink) {
+        HistoryBackfill backfill = new HistoryBackfill(this::fetchJmaPage, JMA_PAGE_SIZE, ioExecutor, options);
+        return backfill.run(from, until, earthquake -> {
+            store(earthquake);
+            if (sink != null) {
+                sink.accept(earthquake);
+            }
+        }).thenApply(count -> {
+            logger.info("Backfilled {} events for {} to {}", count, from, until);
+            if (syncedDays != null) {
+                syncedDays.markSynced(from, until, LocalDate.now(Earthquake.JST));
+            }
+            return count;
+        });
+    }
+
+    private List<Earthquake> fetchFilteredEarthquakes(EarthquakeQuery query) throws IOException {
+        StringBuilder urlBuilder = new StringBuilder(apiBaseUrl + "/jma/quake?");
+        
+        // Add magnitude filter
+        if (query.getMinMagnitude() > 0) {
+            urlBuilder.append("minMagnitude=").append(query.getMinMagnitude()).append("&");
+        }
+        
+        // Add prefecture filter
+        if (query.getPrefecture() != null) {
+            urlBuilder.append("prefecture=").append(query.getPrefecture().getEnglishName()).append("&");
+        }
+        
+        // Add date filters
+        if (query.getStartTime() != null) {
+            urlBuilder.append("sinceDate=").append(query.getStartTime().format(DateTimeFormatter.ISO_DATE)).append("&");
+        }
+        
+        if (query.getEndTime() != null) {
+            urlBuilder.append("untilDate=").append(query.getEndTime().format(DateTimeFormatter.ISO_DATE)).append("&");
+        }
+        
+        // Add limit
+        urlBuilder.append("limit=100");
+        
+        Request request = new Request.Builder()
+                .url(urlBuilder.toString())
+                .cacheControl(REVALIDATE)
+                .build();
+        
+        ServiceExecutors.Permit permit = executors.acquire(ENDPOINT_JMA_QUAKE);
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected response code: " + response);
+            }
+            
+            List<Earthquake> earthquakes = earthquakeDecoder.decodeList(bodyStream(response), false);
+            // The API has no area filter
+            if (query.getArea() != null) {
+                earthquakes.removeIf(earthquake -> !query.matchesArea(earthquake.getObservationPoints()));
+            }
+            return earthquakes;
+        } finally {
+            permit.close();
+        }
+    }
+    
+    /**
+     * Fetch the days of the query window that the local store does not cover yet.
+     */
+    private void syncHistory(EarthquakeQuery query) throws IOException {
+        LocalDate today = LocalDate.now(Earthquake.JST);
+        LocalDate startDay = query.getStartTime() != null
+                ? query.getStartTime().toLocalDate() : today.minusDays(DEFAULT_SYNC_DAYS);
+        LocalDate endDay = query.getEndTime() != null && query.getEndTime().toLocalDate().isBefore(today)
+                ? query.getEndTime().toLocalDate() : today;
+        if (endDay.isBefore(startDay)) {
+            return;
+        }
+        
+        for (SyncedDays.Range range : syncedDays.missing(startDay, endDay, today)) {
+            LocalDate coveredUntil = fetchJmaWindow(range.getFrom(), range.getUntil());
+            if (!coveredUntil.isBefore(range.getFrom())) {
+                syncedDays.markSynced(range.getFrom(), coveredUntil, today);
+            }
+        }
+    }
+    
+    /**
+     * Page through /jma/quake for a day window, oldest first, storing every event.
+     * 
+     * @return The last day that was fetched completely: until if the end of the window was
+     *         reached, otherwise the day before the last event fetched
+     */
+    private LocalDate fetchJmaWindow(LocalDate from, LocalDate until) throws IOException {
+        int fetched = 0;
+        long[] lastEpochSecond = {Long.MIN_VALUE};
+        Consumer<Earthquake> sink = earthquake -> {
+            lastEpochSecond[0] = Math.max(lastEpochSecond[0], earthquake.getEpochSecond());
+            store(earthquake);
+        };
+        for (int page = 0; page < MAX_SYNC_PAGES; page++) {
+            int pageSize = fetchJmaPage(from, until, page * JMA_PAGE_SIZE, sink);
+            fetched += pageSize;
+            if (pageSize < JMA_PAGE_SIZE) {
+                logger.debug("Synced {} events for {} to {}", fetched, from, until);
+                return until;
+            }
+        }
+        // The last day reached may have more events on the next page; the next query resumes there
+        LocalDate coveredUntil = lastEpochSecond[0] != Long.MIN_VALUE
+                ? LocalDateTime.ofEpochSecond(lastEpochSecond[0], 0, Earthquake.JST).toLocalDate().minusDays(1)
+                : from.minusDays(1);
+        logger.warn("Stopped syncing {} to {} after {} events, complete until {}; "
+                + "use a history backfill for large ranges", from, until, fetched, coveredUntil);
+        return coveredUntil;
+    }
+    
+    /**
+     * Fetch one page of /jma/quake for a day range, oldest first.
+     * 
+     * @param offset The number of events to skip
+     * @param sink Receives each decoded earthquake
+     * @return The number of entries on the page; fewer than a full page means it was the last
+     */
+    int fetchJmaPage(LocalDate from, LocalDate until, int offset, Consumer<Earthquake> sink) throws IOException {
+        String url = apiBaseUrl + "/jma/quake?since_date=" + from.format(DateTimeFormatter.BASIC_ISO_DATE)
+                + "&until_date=" + until.format(DateTimeFormatter.BASIC_ISO_DATE)
+                + "&order=1&limit=" + JMA_PAGE_SIZE + "&offset=" + offset;
+        Request request = new Request.Builder()
+                .url(url)
+                .cacheControl(until.isBefore(LocalDate.now(Earthquake.JST)) ? CLOSED_DAYS : REVALIDATE)
+                .build();
+        
+        ServiceExecutors.Permit permit = executors.acquire(ENDPOINT_JMA_QUAKE);
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected response code: " + response);
+            }
+            
+            return earthquakeDecoder.decodeArray(bodyStream(response), false, sink);
+        } finally {
+            permit.close();
+        }
     }
     
     private void connectWebSocket() {
         try {
-            webSocketClient = new WebSocketClient(new URI(WEBSOCKET_URL)) {
-                @Override
-                public void onOpen(ServerHandshake handshakedata) {
-                    logger.info("WebSocket connection opened");
-                }
-                
-                @Override
-                public void onMessage(String message) {
-                    try {
-                        JsonNode node = objectMapper.readTree(message);
-                        if (node.has("code") && node.get("code").asInt() == 551) {
-                            Earthquake earthquake = parseEarthquake(node);
-                            notifyListeners(earthquake);
-                        }
-                    } catch (Exception e) {
-                        logger.error("Failed to parse WebSocket message", e);
-                    }
-                }
-                
-                @Override
-                public void onClose(int code, String reason, boolean remote) {
-                    logger.info("WebSocket connection closed: {} - {}", code, reason);
-                    
-                    // Attempt to reconnect after a delay
-                    if (remote) {
-                        executorService.schedule(() -> {
-                            logger.info("Attempting to reconnect WebSocket");
-                            connectWebSocket();
-                        }, 5, TimeUnit.SECONDS);
-                    }
-                }
-                
-                @Override
-                public void onError(Exception ex) {
-                    logger.error("WebSocket error", ex);
-                }
-            };
-            
-            webSocketClient.connect();
+            realtimeClient = new RealtimeClient(new URI(realtimeUrl), executors.scheduler(),
+                    this::handleRealtimeMessage, this::handleReconnect);
+            realtimeClient.start();
         } catch (URISyntaxException e) {
             logger.error("Invalid WebSocket URI", e);
         }
     }
     
-    private Earthquake parseEarthquake(JsonNode node) {
-        try {
-            String id = node.get("id").asText();
-            
-            // Parse earthquake data
-            JsonNode earthquakeNode = node.get("earthquake");
-            String hypocenterName = earthquakeNode.get("hypocenter").get("name").asText();
-            double latitude = earthquakeNode.get("hypocenter").get("latitude").asDouble();
-            double longitude = earthquakeNode.get("hypocenter").get("longitude").asDouble();
-            double magnitude = earthquakeNode.get("hypocenter").get("magnitude").asDouble();
-            int depth = earthquakeNode.get("hypocenter").get("depth").asInt();
-            
-            // Parse time
-            String timeStr = earthquakeNode.get("time").asText();
-            LocalDateTime time = LocalDateTime.parse(timeStr, DATE_TIME_FORMATTER);
-            
-            // Parse intensity
-            String maxIntensity = "Unknown";
-            List<String> affectedAreas = new ArrayList<>();
-            
-            if (earthquakeNode.has("maxScale")) {
-                int scaleCode = earthquakeNode.get("maxScale").asInt();
-                maxIntensity = convertScaleToIntensity(scaleCode);
+    private void handleRealtimeMessage(String message) {
+        long receivedNanos = System.nanoTime();
+        long receivedEpochMillis = System.currentTimeMillis();
+        messagesReceived.increment();
+        FrameLogWriter currentRecorder = recorder;
+        if (currentRecorder != null) {
+            try {
+                currentRecorder.append(receivedEpochMillis, message);
+            } catch (IOException e) {
+                logger.error("Failed to record realtime message, recording stopped", e);
+                stopRecording();
             }
-            
-            if (earthquakeNode.has("domesticTsunami")) {
-                String tsunami = earthquakeNode.get("domesticTsunami").asText();
-                if (!tsunami.equals("None")) {
-                    maxIntensity += " (Tsunami: " + tsunami + ")";
-                }
+        }
+        try {
+            MessageHeader header = new MessageHeader();
+            QuakeMessage decoded = messageDecoder.decode(message, header);
+            if (decoded == null || deliveredIds.contains(decoded.getId())) {
+                return;
             }
-            
-            // Parse affected areas
-            if (node.has("points")) {
-                for (JsonNode pointNode : node.get("points")) {
-                    String areaName = pointNode.get("addr").asText();
-                    String scaleStr = convertScaleToIntensity(pointNode.get("scale").asInt());
-                    affectedAreas.add(areaName + ": " + scaleStr);
+            alertLatency.received(decoded.getId(), decoded.getCode(), header.epochMillis(),
+                    receivedNanos, receivedEpochMillis);
+            if (decoded instanceof Earthquake) {
+                if (!deliver((Earthquake) decoded)) {
+                    return;
                 }
+            } else if (deliveredIds.add(decoded.getId())) {
+                route(decoded);
+            } else {
+                return;
             }
-            
-            return new Earthquake(id, time, hypocenterName, latitude, longitude, 
-                                 magnitude, depth, maxIntensity, affectedAreas);
+            framePublisher.submit(new RealtimeFrame(decoded, message, receivedEpochMillis));
         } catch (Exception e) {
-            logger.error("Failed to parse earthquake data", e);
-            throw new RuntimeException("Failed to parse earthquake data", e);
+            parseFailures.increment();
+            logger.error("Failed to parse WebSocket message", e);
+        }
+    }
+    
+    /**
+     * Hand a non-earthquake message to the channel for its code.
+     */
+    private void route(QuakeMessage message) {
+        switch (message.getCode()) {
+            case QuakeMessage.CODE_TSUNAMI:
+                tsunamiPublisher.submit((TsunamiForecast) message);
+                break;
+            case QuakeMessage.CODE_EEW_DETECTION:
+                eewDetectionPublisher.submit((EewDetection) message);
+                break;
+            case QuakeMessage.CODE_EEW:
+                earlyWarningPublisher.submit((EarlyWarning) message);
+                break;
+            case QuakeMessage.CODE_USER_QUAKE:
+                userQuakePublisher.submit((UserQuakeReport) message);
+                break;
+            default:
+                break;
         }
     }
     
-    private Earthquake parseJMAEarthquake(JsonNode node) {
+    private void startMetricsServer() {
+        int port = metricsPort;
+        if (port < 0 || metricsServer != null) {
+            return;
+        }
         try {
-            String id = node.get("id").asText();
-            
-            // Parse earthquake data
-            String hypocenterName = node.get("earthquake").get("hypocenter").get("name").asText();
-            double latitude = node.get("earthquake").get("hypocenter").get("latitude").asDouble();
-            double longitude = node.get("earthquake").get("hypocenter").get("longitude").asDouble();
-            double magnitude = node.get("earthquake").get("hypocenter").get("magnitude").asDouble();
-            int depth = node.get("earthquake").get("hypocenter").get("depth").asInt();
-            
-            // Parse time
-            String timeStr = node.get("earthquake").get("time").asText();
-            LocalDateTime time = LocalDateTime.parse(timeStr, DATE_TIME_FORMATTER);
-            
-            // Parse intensity
-            String maxIntensity = "Unknown";
-            if (node.get("earthquake").has("maxScale")) {
-                int scaleCode = node.get("earthquake").get("maxScale").asInt();
-                maxIntensity = convertScaleToIntensity(scaleCode);
-            }
-            
-            // Parse tsunami info
-            if (node.get("earthquake").has("domesticTsunami")) {
-                String tsunami = node.get("earthquake").get("domesticTsunami").asText();
-                if (!tsunami.equals("None")) {
-                    maxIntensity += " (Tsunami: " + tsunami + ")";
+            metricsServer = new MetricsServer(metrics, METRICS_HOST, port);
+            metricsServer.start();
+        } catch (IOException e) {
+            // Usually another instance already serves the port; that is not worth a stack trace
+            logger.warn("Metrics endpoint unavailable on {}:{}: {}", METRICS_HOST, port, e.toString());
+        }
+    }
+    
+    private void registerMetrics() {
+        JvmMetrics.register(metrics);
+        metrics.counter("p2pquake_reconnects_total", "WebSocket reconnects after a lost connection",
+                () -> realtimeClient != null ? realtimeClient.getReconnectCount() : 0);
+        metrics.gauge("p2pquake_connected", "Whether the realtime WebSocket is open",
+                () -> realtimeClient != null && realtimeClient.isConnected() ? 1 : 0);
+        
+        registerChannelMetrics("earthquake", earthquakePublisher);
+        registerChannelMetrics("tsunami", tsunamiPublisher);
+        registerChannelMetrics("eew_detection", eewDetectionPublisher);
+        registerChannelMetrics("eew", earlyWarningPublisher);
+        registerChannelMetrics("user_quake", userQuakePublisher);
+        registerChannelMetrics("frames", framePublisher);
+        
+        registerPoolMetrics("io", executors.getIoPool());
+        registerPoolMetrics("delivery", executors.getDeliveryPool());
+        for (String endpoint : new String[] {ENDPOINT_HISTORY, ENDPOINT_JMA_QUAKE}) {
+            metrics.gauge("earthquake_http_in_flight", "API requests in progress",
+                    () -> executors.getEndpointsInFlight().getOrDefault(endpoint, 0), "endpoint", endpoint);
+            metrics.gauge("earthquake_http_waiting", "API requests waiting for a permit",
+                    () -> executors.getEndpointsWaiting().getOrDefault(endpoint, 0), "endpoint", endpoint);
+        }
+        
+        metrics.counter("earthquake_query_cache_hits_total", "Queries answered from the cache", queryCache::getHitCount);
+        metrics.counter("earthquake_query_cache_misses_total", "Queries that started a load", queryCache::getMissCount);
+        metrics.counter("earthquake_query_cache_coalesced_total", "Queries that joined an in-flight load",
+                queryCache::getCoalescedCount);
+        metrics.gauge("earthquake_active_sequences", "Aftershock sequences whose window is open",
+                sequences::getActiveCount);
+        metrics.counter("earthquake_sequence_assignments_total", "Events assigned to an aftershock sequence",
+                sequences::getAssignedCount);
+        if (repository != null) {
+            metrics.gauge("earthquake_stored_events", "Events in the local store", repository::size);
+            metrics.gauge("earthquake_store_queued_events", "Events waiting to be stored", storeWriter::getQueued);
+            metrics.counter("p2pquake_dropped_events_total", "Events discarded from full subscriber buffers",
+                    storeWriter::getOverflowCount, "channel", "earthquake", "stage", "store");
+        }
+    }
+    
+    private void registerPoolMetrics(String pool, ServiceExecutors.Pool executor) {
+        metrics.gauge("earthquake_executor_queued_tasks", "Tasks waiting for a thread",
+                executor::getQueuedTasks, "pool", pool);
+        metrics.gauge("earthquake_executor_active_tasks", "Tasks running", executor::getActiveTasks, "pool", pool);
+        metrics.counter("earthquake_executor_completed_tasks_total", "Tasks finished",
+                executor::getCompletedTasks, "pool", pool);
+        metrics.gauge("earthquake_executor_pool_size", "Executor threads", executor::getPoolSize, "pool", pool);
+    }
+    
+    private void registerChannelMetrics(String channel, EventPublisher<?> publisher) {
+        metrics.counter("p2pquake_published_total", "Events handed to subscribers",
+                publisher::getSubmittedCount, "channel", channel);
+        metrics.counter("p2pquake_dropped_events_total", "Events discarded from full subscriber buffers",
+                publisher::getDroppedCount, "channel", channel, "stage", "stream");
+        metrics.gauge("p2pquake_max_buffered_events", "Largest subscriber backlog",
+                publisher::getMaxBuffered, "channel", channel);
+    }
+    
+    private <T> EventPublisher<T> newChannel() {
+        // Fed from the realtime connection, which must never wait for a subscriber
+        return new EventPublisher<>(executors.delivery(), EventPublisher.OverflowPolicy.DROP_OLDEST,
+                STREAM_BUFFER_SIZE, false);
+    }
+    
+    private void handleReconnect() {
+        // Anything published while disconnected is fetched from /history
+        ioExecutor.execute(this::backfillGap);
+    }
+    
+    /**
+     * Fetch /history pages back to the last event seen before the connection dropped
+     * and deliver the missed events oldest first, skipping any already delivered.
+     */
+    private void backfillGap() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            String stopId = lastSeenId;
+            long stopEpochSecond = lastSeenEpochSecond - BACKFILL_MARGIN_SECONDS;
+            List<Earthquake> missed = new ArrayList<>();
+            boolean reachedGapStart = false;
+            for (int page = 0; page < MAX_BACKFILL_PAGES && !reachedGapStart; page++) {
+                List<Earthquake> earthquakes = fetchHistoryPage(HISTORY_PAGE_SIZE, page * HISTORY_PAGE_SIZE);
+                for (Earthquake earthquake : earthquakes) {
+                    if (earthquake.getId().equals(stopId) || earthquake.getEpochSecond() < stopEpochSecond) {
+                        reachedGapStart = true;
+                        break;
+                    }
+                    missed.add(earthquake);
+                }
+                if (earthquakes.size() < HISTORY_PAGE_SIZE) {
+                    break;
                 }
             }
+            if (!reachedGapStart) {
+                logger.warn("Backfill stopped after {} pages without reaching the last seen event", MAX_BACKFILL_PAGES);
+            }
             
-            // Parse affected areas
-            List<String> affectedAreas = new ArrayList<>();
-            if (node.has("points")) {
-                for (JsonNode pointNode : node.get("points")) {
-                    String areaName = pointNode.get("addr").asText();
-                    String scaleStr = convertScaleToIntensity(pointNode.get("scale").asInt());
-                    affectedAreas.add(areaName + ": " + scaleStr);
+            // History is newest first; deliver in arrival order
+            Collections.reverse(missed);
+            int delivered = 0;
+            for (Earthquake earthquake : missed) {
+                if (deliver(earthquake)) {
+                    delivered++;
                 }
             }
-            
-            return new Earthquake(id, time, hypocenterName, latitude, longitude, 
-                                 magnitude, depth, maxIntensity, affectedAreas);
+            logger.info("Backfilled {} earthquakes missed while disconnected", delivered);
         } catch (Exception e) {
-            logger.error("Failed to parse JMA earthquake data", e);
-            throw new RuntimeException("Failed to parse JMA earthquake data", e);
+            logger.error("Failed to backfill earthquakes after reconnect", e);
+        } finally {
+            backfillRunning.set(false);
         }
     }
     
-    private String convertScaleToIntensity(int scale) {
-        switch (scale) {
-            case 10: return "1";
-            case 20: return "2";
-            case 30: return "3";
-            case 40: return "4";
-            case 45: return "5-";
-            case 50: return "5+";
-            case 55: return "6-";
-            case 60: return "6+";
-            case 70: return "7";
-            default: return "Unknown";
+    /**
+     * Assign an event to its aftershock sequence and publish it to subscribers, including
+     * the store, unless it was already delivered.
+     * 
+     * @return Whether the event was new
+     */
+    private boolean deliver(Earthquake earthquake) {
+        if (!deliveredIds.add(earthquake.getId())) {
+            return false;
         }
+        lastSeenId = earthquake.getId();
+        lastSeenEpochSecond = Math.max(lastSeenEpochSecond, earthquake.getEpochSecond());
+        // Clustered before publishing so subscribers can look up the event's sequence
+        sequences.assign(earthquake);
+        earthquakePublisher.submit(earthquake);
+        return true;
     }
     
-    private void notifyListeners(Earthquake earthquake) {
-        for (Consumer<Earthquake> listener : earthquakeListeners) {
-            try {
-                listener.accept(earthquake);
-            } catch (Exception e) {
-                logger.error("Error notifying earthquake listener", e);
+    /**
+     * Fetch one page of earthquake reports from /history, newest first.
+     */
+    private List<Earthquake> fetchHistoryPage(int limit, int offset) throws IOException {
+        String url = apiBaseUrl + "/history?codes=551&limit=" + limit + (offset > 0 ? "&offset=" + offset : "");
+        Request request = new Request.Builder()
+                .url(url)
+                .cacheControl(REVALIDATE)
+                .build();
+        
+        ServiceExecutors.Permit permit = executors.acquire(ENDPOINT_HISTORY);
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected response code: " + response);
             }
+            
+            // Decode straight from the body stream; only code 551 entries are kept
+            return earthquakeDecoder.decodeList(bodyStream(response), true);
+        } finally {
+            permit.close();
+        }
+    }
+    
+    /**
+     * Stream a response body for decoding. Closing the stream first reads to the end of
+     * the body, because OkHttp only commits a response to the disk cache once it has been
+     * read completely.
+     */
+    private static InputStream bodyStream(Response response) {
+        ResponseBody body = response.body();
+        return new FilterInputStream(body.byteStream()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    BufferedSource source = body.source();
+                    while (!source.exhausted()) {
+                        source.skip(source.getBuffer().size());
+                    }
+                } finally {
+                    super.close();
+                }
+            }
+        };
+    }
+    
+    private void store(List<Earthquake> earthquakes) {
+        for (Earthquake earthquake : earthquakes) {
+            store(earthquake);
+        }
+        indexStored();
+    }
+    
+    /**
+     * Index stored events now rather than on the next query, and bring watched statistics
+     * up to date; backfills catch up lazily.
+     */
+    private void indexStored() {
+        if (queryEngine != null) {
+            queryEngine.refresh();
+            analytics.refresh();
+        }
+    }
+    
+    private void store(Earthquake earthquake) {
+        if (repository == null) {
+            return;
+        }
+        try {
+            repository.append(earthquake);
+        } catch (IOException e) {
+            logger.error("Failed to store earthquake {}", earthquake.getId(), e);
         }
     }
 }
\ No newline at end of file
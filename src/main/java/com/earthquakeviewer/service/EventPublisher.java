@@ -0,0 +1,398 @@
+package com.earthquakeviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Flow.Publisher} that hands each item to every subscriber through its own bounded
+ * buffer. {@link #submit(Object)} only touches the buffers, and items are passed to
+ * {@code onNext} on the delivery executor as subscribers request them, so a slow subscriber
+ * only falls behind itself. What happens when a subscriber's buffer is full is chosen per
+ * subscriber with an {@link OverflowPolicy}.
+ *
+ * Items for one subscriber are delivered in order, one at a time. A subscriber hands its
+ * delivery thread back after a batch of items and continues in a new task, so a
+ * busy subscriber cannot keep a small delivery pool from the others. An exception thrown by
+ * {@code onNext} is logged and delivery continues with the next item.
+ *
+ * @param <T> The item type
+ */
+public class EventPublisher<T> implements Flow.Publisher<T> {
+    private static final Logger logger = LoggerFactory.getLogger(EventPublisher.class);
+    // Items delivered per drain task before the thread is handed back
+    private static final int DRAIN_BATCH = 64;
+
+    /**
+     * What to do with a new item when a subscriber's buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the oldest buffered item to make room. */
+        DROP_OLDEST,
+        /** Keep only the newest item; anything not yet delivered is replaced. */
+        LATEST_ONLY,
+        /**
+         * Make {@link #submit(Object)} wait for room, which stalls the producer and with it every
+         * other subscriber. Use only for subscribers that must see every item, on publishers
+         * that allow it.
+         */
+        BLOCK
+    }
+
+    private final Executor executor;
+    private final OverflowPolicy defaultPolicy;
+    private final int defaultCapacity;
+    private final boolean blockingAllowed;
+    private final List<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param executor Runs delivery to subscribers
+     * @param defaultPolicy The overflow policy for {@link #subscribe(Flow.Subscriber)}
+     * @param defaultCapacity The buffer size for {@link #subscribe(Flow.Subscriber)}
+     */
+    public EventPublisher(Executor executor, OverflowPolicy defaultPolicy, int defaultCapacity) {
+        this(executor, defaultPolicy, defaultCapacity, true);
+    }
+
+    /**
+     * @param executor Runs delivery to subscribers
+     * @param defaultPolicy The overflow policy for {@link #subscribe(Flow.Subscriber)}
+     * @param defaultCapacity The buffer size for {@link #subscribe(Flow.Subscriber)}
+     * @param blockingAllowed Whether subscribers may use {@link OverflowPolicy#BLOCK}; publishers
+     *                        fed from a thread that must never wait, such as the realtime
+     *                        connection, refuse it
+     * @throws IllegalArgumentException If the default policy is BLOCK and blocking is not allowed
+     */
+    public EventPublisher(Executor executor, OverflowPolicy defaultPolicy, int defaultCapacity,
+                          boolean blockingAllowed) {
+        if (defaultPolicy == OverflowPolicy.BLOCK && !blockingAllowed) {
+            throw new IllegalArgumentException("BLOCK is not allowed on this publisher");
+        }
+        this.executor = executor;
+        this.defaultPolicy = defaultPolicy;
+        this.defaultCapacity = defaultCapacity;
+        this.blockingAllowed = blockingAllowed;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscribe(subscriber, defaultPolicy, defaultCapacity);
+    }
+
+    /**
+     * Subscribe with a specific buffer.
+     *
+     * @param subscriber The subscriber
+     * @param policy What to do when the subscriber's buffer is full
+     * @param capacity The maximum number of items buffered for the subscriber
+     * @throws IllegalArgumentException If the policy is BLOCK and this publisher does not allow it
+     */
+    public void subscribe(Flow.Subscriber<? super T> subscriber, OverflowPolicy policy, int capacity) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (policy == OverflowPolicy.BLOCK && !blockingAllowed) {
+            throw new IllegalArgumentException("BLOCK subscribers would stall the producer of this publisher; "
+                    + "use DROP_OLDEST with a larger buffer");
+        }
+        for (BufferedSubscription existing : subscriptions) {
+            if (existing.subscriber == subscriber) {
+                subscriber.onError(new IllegalStateException("Already subscribed"));
+                return;
+            }
+        }
+        BufferedSubscription subscription = new BufferedSubscription(subscriber, policy,
+                policy == OverflowPolicy.LATEST_ONLY ? 1 : Math.max(1, capacity));
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Subscribe a plain callback with unbounded demand; it still only receives items through its buffer.
+     *
+     * @param consumer Receives each item on the delivery executor
+     * @param policy What to do when the consumer's buffer is full
+     * @param capacity The maximum number of items buffered for the consumer
+     * @return The subscription, to cancel it later
+     * @throws IllegalArgumentException If the policy is BLOCK and this publisher does not allow it
+     */
+    public Flow.Subscription subscribe(Consumer<? super T> consumer, OverflowPolicy policy, int capacity) {
+        ConsumerSubscriber<T> subscriber = new ConsumerSubscriber<>(consumer);
+        subscribe(subscriber, policy, capacity);
+        return subscriber.subscription;
+    }
+
+    /**
+     * Offer an item to every subscriber. Returns without waiting unless a
+     * {@link OverflowPolicy#BLOCK} subscriber's buffer is full.
+     *
+     * @param item The item
+     */
+    public void submit(T item) {
+        Objects.requireNonNull(item, "item");
+        if (closed) {
+            return;
+        }
+        submitted.incrementAndGet();
+        for (BufferedSubscription subscription : subscriptions) {
+            subscription.offer(item);
+        }
+    }
+
+    /**
+     * Stop accepting items. Subscribers are completed once their buffers are delivered.
+     */
+    public void close() {
+        closed = true;
+        for (BufferedSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * @return The number of current subscribers
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return The number of items submitted
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return The number of items discarded from full buffers, across all subscribers
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The largest number of items currently buffered for one subscriber
+     */
+    public int getMaxBuffered() {
+        int max = 0;
+        for (BufferedSubscription subscription : subscriptions) {
+            max = Math.max(max, subscription.buffered());
+        }
+        return max;
+    }
+
+    /**
+     * One subscriber's buffer and demand. All state is guarded by the subscription's monitor;
+     * at most one drain task runs at a time, so onNext calls never overlap.
+     */
+    private final class BufferedSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final OverflowPolicy policy;
+        private final int capacity;
+        private final ArrayDeque<T> buffer = new ArrayDeque<>();
+        private long demand;
+        private boolean draining;
+        private boolean completing;
+        private boolean cancelled;
+
+        BufferedSubscription(Flow.Subscriber<? super T> subscriber, OverflowPolicy policy, int capacity) {
+            this.subscriber = subscriber;
+            this.policy = policy;
+            this.capacity = capacity;
+        }
+
+        void offer(T item) {
+            boolean schedule;
+            synchronized (this) {
+                if (cancelled || completing) {
+                    return;
+                }
+                if (buffer.size() >= capacity) {
+                    switch (policy) {
+                        case BLOCK:
+                            while (buffer.size() >= capacity && !cancelled) {
+                                try {
+                                    wait();
+                                } catch (InterruptedException e) {
+                                    // Give up on this item rather than on the caller's interrupt
+                                    Thread.currentThread().interrupt();
+                                    dropped.incrementAndGet();
+                                    return;
+                                }
+                            }
+                            if (cancelled) {
+                                return;
+                            }
+                            break;
+                        case LATEST_ONLY:
+                            dropped.addAndGet(buffer.size());
+                            buffer.clear();
+                            break;
+                        default:
+                            buffer.poll();
+                            dropped.incrementAndGet();
+                            break;
+                    }
+                }
+                buffer.add(item);
+                schedule = startDrain();
+            }
+            if (schedule) {
+                executeDrain();
+            }
+        }
+
+        void complete() {
+            boolean schedule;
+            synchronized (this) {
+                completing = true;
+                schedule = startDrain();
+            }
+            if (schedule) {
+                executeDrain();
+            }
+        }
+
+        synchronized int buffered() {
+            return buffer.size();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested " + n + " items"));
+                return;
+            }
+            boolean schedule;
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                schedule = startDrain();
+            }
+            if (schedule) {
+                executeDrain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                buffer.clear();
+                notifyAll();
+            }
+            subscriptions.remove(this);
+        }
+
+        /**
+         * @return Whether the caller must schedule a drain task
+         */
+        private boolean startDrain() {
+            if (draining || cancelled) {
+                return false;
+            }
+            if ((demand > 0 && !buffer.isEmpty()) || (completing && buffer.isEmpty())) {
+                draining = true;
+                return true;
+            }
+            return false;
+        }
+
+        private void executeDrain() {
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                logger.warn("Cannot deliver events, executor rejected the task", e);
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+
+        private void drain() {
+            for (int delivered = 0; ; delivered++) {
+                T item;
+                synchronized (this) {
+                    if (cancelled) {
+                        draining = false;
+                        return;
+                    }
+                    if (delivered == DRAIN_BATCH) {
+                        // Still draining; continue behind the tasks of other subscribers
+                        break;
+                    }
+                    if (buffer.isEmpty() && completing) {
+                        cancelled = true;
+                        draining = false;
+                        item = null;
+                    } else if (buffer.isEmpty() || demand == 0) {
+                        draining = false;
+                        return;
+                    } else {
+                        item = buffer.poll();
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                        notifyAll();
+                    }
+                }
+
+                if (item == null) {
+                    subscriptions.remove(this);
+                    subscriber.onComplete();
+                    return;
+                }
+                try {
+                    subscriber.onNext(item);
+                } catch (RuntimeException e) {
+                    logger.error("Error delivering event to subscriber", e);
+                }
+            }
+            executeDrain();
+        }
+    }
+
+    /**
+     * Adapts a Consumer to a subscriber that requests everything up front.
+     */
+    private static final class ConsumerSubscriber<T> implements Flow.Subscriber<T> {
+        private final Consumer<? super T> consumer;
+        private Flow.Subscription subscription;
+
+        ConsumerSubscriber(Consumer<? super T> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T item) {
+            consumer.accept(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            logger.error("Event subscription failed", throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
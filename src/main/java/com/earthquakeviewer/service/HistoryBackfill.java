@@ -0,0 +1,303 @@
+package com.earthquakeviewer.service;
+
+import com.earthquakeviewer.model.Earthquake;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pulls a long range of /jma/quake history, e.g. to seed a new instance.
+ * The range is split into windows of whole days; up to {@link Options#parallelism(int)}
+ * windows are fetched at once, page by page, with all requests spaced to the configured
+ * rate. Events reach the sink strictly in window order, each window oldest first, and
+ * at most parallelism windows are buffered at any time.
+ *
+ * With a checkpoint file, the last window delivered is recorded after each window, and
+ * a later run over the same range resumes after it.
+ */
+public class HistoryBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryBackfill.class);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final PageSource pageSource;
+    private final int pageSize;
+    private final Executor executor;
+    private final Options options;
+    private final RateLimiter rateLimiter;
+
+    HistoryBackfill(PageSource pageSource, int pageSize, Executor executor, Options options) {
+        this.pageSource = pageSource;
+        this.pageSize = pageSize;
+        this.executor = executor;
+        this.options = options;
+        this.rateLimiter = new RateLimiter(options.requestsPerSecond);
+    }
+
+    /**
+     * Fetch every event between two days.
+     *
+     * @param from The first day, inclusive
+     * @param until The last day, inclusive
+     * @param sink Receives the events in order, on a worker thread and while the run's lock is
+     *             held, so it must be fast: windows that finish meanwhile wait for it, and new
+     *             windows are only started once it returns
+     * @return A future completed with the number of events delivered by this run
+     */
+    public CompletableFuture<Long> run(LocalDate from, LocalDate until, Consumer<Earthquake> sink) {
+        LocalDate start = from;
+        LocalDate resumeAfter = readCheckpoint(from, until);
+        if (resumeAfter != null) {
+            logger.info("Resuming backfill of {} to {} after {}", from, until, resumeAfter);
+            start = resumeAfter.plusDays(1);
+        }
+
+        List<Window> windows = new ArrayList<>();
+        for (LocalDate day = start; !day.isAfter(until); day = day.plusDays(options.windowDays)) {
+            LocalDate end = day.plusDays(options.windowDays - 1);
+            windows.add(new Window(day, end.isAfter(until) ? until : end));
+        }
+
+        Run run = new Run(from, until, windows, sink);
+        run.startMore();
+        return run.result;
+    }
+
+    /**
+     * Fetch all pages of one window, retrying failed pages.
+     */
+    private List<Earthquake> fetchWindow(Window window) throws IOException {
+        List<Earthquake> events = new ArrayList<>();
+        for (int offset = 0; ; offset += pageSize) {
+            int entries = fetchPageWithRetry(window, offset, events);
+            if (entries < pageSize) {
+                return events;
+            }
+        }
+    }
+
+    private int fetchPageWithRetry(Window window, int offset, List<Earthquake> events) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            List<Earthquake> page = new ArrayList<>();
+            try {
+                int entries = pageSource.fetch(window.from, window.until, offset, page::add);
+                events.addAll(page);
+                return entries;
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= options.maxAttempts) {
+                    throw e;
+                }
+                logger.warn("Backfill page {} to {} offset {} failed (attempt {}), retrying",
+                        window.from, window.until, offset, attempt, e);
+                sleep(RETRY_DELAY_MILLIS << (attempt - 1));
+            }
+        }
+    }
+
+    private LocalDate readCheckpoint(LocalDate from, LocalDate until) {
+        if (options.checkpoint == null || !Files.exists(options.checkpoint)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(options.checkpoint)) {
+            properties.load(in);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable backfill checkpoint {}", options.checkpoint, e);
+            return null;
+        }
+        if (!from.toString().equals(properties.getProperty("from"))
+                || !until.toString().equals(properties.getProperty("until"))) {
+            logger.info("Backfill checkpoint {} is for a different range, starting over", options.checkpoint);
+            return null;
+        }
+        String completedThrough = properties.getProperty("completedThrough");
+        return completedThrough != null ? LocalDate.parse(completedThrough) : null;
+    }
+
+    private void writeCheckpoint(LocalDate from, LocalDate until, LocalDate completedThrough) {
+        if (options.checkpoint == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty("from", from.toString());
+        properties.setProperty("until", until.toString());
+        properties.setProperty("completedThrough", completedThrough.toString());
+        try {
+            // Write a temporary file and move it into place so a crash never leaves half a checkpoint
+            Path temp = options.checkpoint.resolveSibling(options.checkpoint.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "History backfill checkpoint");
+            }
+            Files.move(temp, options.checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to write backfill checkpoint {}", options.checkpoint, e);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during backfill retry delay");
+        }
+    }
+
+    /**
+     * One backfill run: starts windows, reorders finished ones and delivers them in order.
+     */
+    private final class Run {
+        private final LocalDate from;
+        private final LocalDate until;
+        private final List<Window> windows;
+        private final Consumer<Earthquake> sink;
+        private final Map<Integer, List<Earthquake>> finished = new HashMap<>();
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private int nextToStart;
+        private int nextToDeliver;
+        private long delivered;
+
+        Run(LocalDate from, LocalDate until, List<Window> windows, Consumer<Earthquake> sink) {
+            this.from = from;
+            this.until = until;
+            this.windows = windows;
+            this.sink = sink;
+        }
+
+        synchronized void startMore() {
+            // Started but undelivered windows are bounded by the parallelism, which bounds buffering
+            while (!result.isDone() && nextToStart < windows.size()
+                    && nextToStart - nextToDeliver < options.parallelism) {
+                int index = nextToStart++;
+                try {
+                    executor.execute(() -> fetch(index));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+            if (nextToDeliver == windows.size()) {
+                result.complete(delivered);
+            }
+        }
+
+        private void fetch(int index) {
+            Window window = windows.get(index);
+            try {
+                List<Earthquake> events = fetchWindow(window);
+                finished(index, events);
+            } catch (Exception e) {
+                logger.error("Backfill of {} to {} failed", window.from, window.until, e);
+                result.completeExceptionally(e);
+            }
+        }
+
+        private synchronized void finished(int index, List<Earthquake> events) {
+            if (result.isDone()) {
+                return;
+            }
+            finished.put(index, events);
+            while (finished.containsKey(nextToDeliver)) {
+                for (Earthquake earthquake : finished.remove(nextToDeliver)) {
+                    sink.accept(earthquake);
+                    delivered++;
+                }
+                writeCheckpoint(from, until, windows.get(nextToDeliver).until);
+                nextToDeliver++;
+            }
+            startMore();
+        }
+    }
+
+    /**
+     * An inclusive range of days fetched as one unit.
+     */
+    private static final class Window {
+        private final LocalDate from;
+        private final LocalDate until;
+
+        Window(LocalDate from, LocalDate until) {
+            this.from = from;
+            this.until = until;
+        }
+    }
+
+    /**
+     * Fetches one page of events for a day range.
+     */
+    interface PageSource {
+        /**
+         * @return The number of entries on the page
+         */
+        int fetch(LocalDate from, LocalDate until, int offset, Consumer<Earthquake> sink) throws IOException;
+    }
+
+    /**
+     * Backfill settings. Setters return this object so they can be chained.
+     */
+    public static class Options {
+        private int parallelism = 4;
+        private double requestsPerSecond = 2;
+        private int windowDays = 1;
+        private int maxAttempts = 3;
+        private Path checkpoint;
+
+        /**
+         * @param parallelism The number of windows fetched at once
+         */
+        public Options parallelism(int parallelism) {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        /**
+         * @param requestsPerSecond The maximum request rate across all windows, or 0 for no limit
+         */
+        public Options requestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * @param windowDays The number of days fetched as one window
+         */
+        public Options windowDays(int windowDays) {
+            this.windowDays = Math.max(1, windowDays);
+            return this;
+        }
+
+        /**
+         * @param maxAttempts The number of tries per page before the backfill fails
+         */
+        public Options maxAttempts(int maxAttempts) {
+            this.maxAttempts = Math.max(1, maxAttempts);
+            return this;
+        }
+
+        /**
+         * @param checkpoint The file recording progress, or null to always start from the beginning
+         */
+        public Options checkpoint(Path checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.earthquakeviewer.service;
+
+/**
+ * Top-level fields of a realtime message that are not part of its model, filled in while decoding.
+ */
+final class MessageHeader {
+    // "yyyy/MM/dd HH:mm:ss.SSS" in JST, when the message was published
+    String time;
+
+    /**
+     * @return The publish time in milliseconds since the epoch, or {@link Long#MIN_VALUE} if absent or malformed
+     */
+    long epochMillis() {
+        if (time == null || time.length() < 19) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            long millis = EarthquakeJsonDecoder.parseEpochSecond(time.substring(0, 19)) * 1000;
+            if (time.length() == 23 && time.charAt(19) == '.') {
+                millis += Integer.parseInt(time.substring(20));
+            }
+            return millis;
+        } catch (RuntimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
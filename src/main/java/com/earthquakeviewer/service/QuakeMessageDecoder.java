@@ -0,0 +1,470 @@
+package com.earthquakeviewer.service;
+
+import com.earthquakeviewer.metrics.LatencyHistogram;
+import com.earthquakeviewer.metrics.MetricsRegistry;
+import com.earthquakeviewer.model.EarlyWarning;
+import com.earthquakeviewer.model.EewDetection;
+import com.earthquakeviewer.model.QuakeMessage;
+import com.earthquakeviewer.model.SeismicIntensity;
+import com.earthquakeviewer.model.TsunamiForecast;
+import com.earthquakeviewer.model.UserQuakeReport;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decoder for realtime P2P Quake messages of every code this viewer handles
+ * (551, 552, 554, 556 and 561). It first reads the top-level fields up to "code"
+ * without building anything; messages with other codes are dropped at that point.
+ * P2P Quake sends "_id" and "code" first, so the typed read normally continues on
+ * the same parser; if other fields came first, the message is read again from the start.
+ *
+ * The time taken to decode, or to skip, each message is recorded per code as
+ * p2pquake_parse_seconds.
+ */
+public class QuakeMessageDecoder {
+    private final JsonFactory jsonFactory;
+    private final EarthquakeJsonDecoder earthquakeDecoder;
+    private final MetricsRegistry metrics;
+    private final Map<Integer, LatencyHistogram> parseLatency = new ConcurrentHashMap<>();
+
+    public QuakeMessageDecoder(JsonFactory jsonFactory, EarthquakeJsonDecoder earthquakeDecoder) {
+        this(jsonFactory, earthquakeDecoder, new MetricsRegistry());
+    }
+
+    /**
+     * @param metrics Where the parse latency histograms are registered
+     */
+    public QuakeMessageDecoder(JsonFactory jsonFactory, EarthquakeJsonDecoder earthquakeDecoder,
+                               MetricsRegistry metrics) {
+        this.jsonFactory = jsonFactory;
+        this.earthquakeDecoder = earthquakeDecoder;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Decode one WebSocket message.
+     *
+     * @param message The raw message text
+     * @return The typed message, or null if its code is not handled
+     * @throws IOException If the message is not valid JSON or misses required fields
+     */
+    public QuakeMessage decode(String message) throws IOException {
+        return decode(message, null);
+    }
+
+    /**
+     * Decode one WebSocket message and its header fields.
+     *
+     * @param header Receives the message's publish time, or null
+     */
+    QuakeMessage decode(String message, MessageHeader header) throws IOException {
+        long start = System.nanoTime();
+        int code = -1;
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+
+            // Peek at the code, skipping whatever precedes it
+            boolean skippedFields = false;
+            String fieldName;
+            while ((fieldName = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                if (fieldName.equals("code")) {
+                    code = parser.getValueAsInt(-1);
+                    break;
+                }
+                if (!fieldName.equals("_id")) {
+                    skippedFields = true;
+                }
+                parser.skipChildren();
+            }
+            if (!isHandled(code)) {
+                return null;
+            }
+            if (!skippedFields) {
+                return read(code, parser, header);
+            }
+            try (JsonParser reparser = jsonFactory.createParser(message)) {
+                reparser.nextToken();
+                return read(code, reparser, header);
+            }
+        } finally {
+            latencyFor(code).recordSince(start);
+        }
+    }
+
+    /**
+     * @return Decode latency per message code, including codes that were skipped
+     */
+    public Map<Integer, LatencyHistogram> getParseLatency() {
+        return Collections.unmodifiableMap(new TreeMap<>(parseLatency));
+    }
+
+    private LatencyHistogram latencyFor(int code) {
+        return parseLatency.computeIfAbsent(code, c -> metrics.histogram("p2pquake_parse_seconds",
+                "Time to decode or skip a realtime message", "code", String.valueOf(c)));
+    }
+
+    private static boolean isHandled(int code) {
+        switch (code) {
+            case QuakeMessage.CODE_EARTHQUAKE:
+            case QuakeMessage.CODE_TSUNAMI:
+            case QuakeMessage.CODE_EEW_DETECTION:
+            case QuakeMessage.CODE_EEW:
+            case QuakeMessage.CODE_USER_QUAKE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read the rest of a message of a known code. Fields other than "code" may come in any order.
+     */
+    private QuakeMessage read(int code, JsonParser parser, MessageHeader header) throws IOException {
+        switch (code) {
+            case QuakeMessage.CODE_EARTHQUAKE:
+                return earthquakeDecoder.readMessage(parser, false, header);
+            case QuakeMessage.CODE_TSUNAMI:
+                return readTsunami(parser, header);
+            case QuakeMessage.CODE_EEW_DETECTION:
+                return readEewDetection(parser, header);
+            case QuakeMessage.CODE_EEW:
+                return readEarlyWarning(parser, header);
+            default:
+                return readUserQuake(parser, header);
+        }
+    }
+
+    private TsunamiForecast readTsunami(JsonParser parser, MessageHeader header) throws IOException {
+        String id = null;
+        String issueTime = null;
+        boolean cancelled = false;
+        List<TsunamiForecast.Area> areas = new ArrayList<>();
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "cancelled":
+                    cancelled = parser.getValueAsBoolean();
+                    break;
+                case "time":
+                    if (header != null) {
+                        header.time = parser.getValueAsString();
+                    }
+                    break;
+                case "issue":
+                    issueTime = readIssueTime(parser, token);
+                    break;
+                case "areas":
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            areas.add(readTsunamiArea(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (issueTime == null) {
+            throw new JsonParseException(parser, "Tsunami message " + id + " is missing its issue time");
+        }
+        return new TsunamiForecast(id, parseTime(issueTime), cancelled, Collections.unmodifiableList(areas));
+    }
+
+    private TsunamiForecast.Area readTsunamiArea(JsonParser parser) throws IOException {
+        String name = null;
+        String grade = null;
+        boolean immediate = false;
+        String maxHeight = null;
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "name":
+                    name = parser.getValueAsString();
+                    break;
+                case "grade":
+                    grade = parser.getValueAsString();
+                    break;
+                case "immediate":
+                    immediate = parser.getValueAsBoolean();
+                    break;
+                case "maxHeight":
+                    if (token == JsonToken.START_OBJECT) {
+                        maxHeight = readStringField(parser, "description");
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return new TsunamiForecast.Area(name, grade, immediate, maxHeight);
+    }
+
+    private EewDetection readEewDetection(JsonParser parser, MessageHeader header) throws IOException {
+        String id = null;
+        String time = null;
+        String type = null;
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "time":
+                    time = parser.getValueAsString();
+                    break;
+                case "type":
+                    type = parser.getValueAsString();
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (time == null) {
+            throw new JsonParseException(parser, "EEW detection " + id + " is missing its time");
+        }
+        if (header != null) {
+            header.time = time;
+        }
+        return new EewDetection(id, parseTime(time), type);
+    }
+
+    private EarlyWarning readEarlyWarning(JsonParser parser, MessageHeader header) throws IOException {
+        String id = null;
+        String time = null;
+        boolean test = false;
+        boolean cancelled = false;
+        String eventId = null;
+        int serial = 0;
+        WarningHypocenter hypocenter = new WarningHypocenter();
+        List<EarlyWarning.Area> areas = new ArrayList<>();
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "time":
+                    time = parser.getValueAsString();
+                    break;
+                case "test":
+                    test = parser.getValueAsBoolean();
+                    break;
+                case "cancelled":
+                    cancelled = parser.getValueAsBoolean();
+                    break;
+                case "issue":
+                    if (token == JsonToken.START_OBJECT) {
+                        while ((fieldName = parser.nextFieldName()) != null) {
+                            parser.nextToken();
+                            if (fieldName.equals("eventId")) {
+                                eventId = parser.getValueAsString();
+                            } else if (fieldName.equals("serial")) {
+                                serial = parser.getValueAsInt();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "earthquake":
+                    if (token == JsonToken.START_OBJECT) {
+                        readWarningEarthquake(parser, hypocenter);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "areas":
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            areas.add(readWarningArea(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (time == null) {
+            throw new JsonParseException(parser, "EEW message " + id + " is missing its time");
+        }
+        if (header != null) {
+            header.time = time;
+        }
+        long originEpochSecond = hypocenter.originTime != null ? parseTime(hypocenter.originTime) : Long.MIN_VALUE;
+        return new EarlyWarning(id, eventId, serial, parseTime(time), test, cancelled, originEpochSecond,
+                                hypocenter.name, hypocenter.latitude, hypocenter.longitude, hypocenter.depth,
+                                hypocenter.magnitude, Collections.unmodifiableList(areas));
+    }
+
+    private void readWarningEarthquake(JsonParser parser, WarningHypocenter hypocenter) throws IOException {
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            if (fieldName.equals("originTime")) {
+                hypocenter.originTime = parser.getValueAsString();
+            } else if (fieldName.equals("hypocenter") && token == JsonToken.START_OBJECT) {
+                while ((fieldName = parser.nextFieldName()) != null) {
+                    parser.nextToken();
+                    switch (fieldName) {
+                        case "name":
+                            hypocenter.name = parser.getValueAsString();
+                            break;
+                        case "latitude":
+                            hypocenter.latitude = parser.getValueAsDouble();
+                            break;
+                        case "longitude":
+                            hypocenter.longitude = parser.getValueAsDouble();
+                            break;
+                        case "depth":
+                            hypocenter.depth = parser.getValueAsInt();
+                            break;
+                        case "magnitude":
+                            hypocenter.magnitude = parser.getValueAsDouble();
+                            break;
+                        default:
+                            parser.skipChildren();
+                            break;
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private EarlyWarning.Area readWarningArea(JsonParser parser) throws IOException {
+        String prefecture = null;
+        String name = null;
+        int scaleFrom = SeismicIntensity.UNKNOWN;
+        int scaleTo = SeismicIntensity.UNKNOWN;
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (fieldName) {
+                case "pref":
+                    prefecture = parser.getValueAsString();
+                    break;
+                case "name":
+                    name = parser.getValueAsString();
+                    break;
+                case "scaleFrom":
+                    scaleFrom = parser.getValueAsInt(SeismicIntensity.UNKNOWN);
+                    break;
+                case "scaleTo":
+                    scaleTo = parser.getValueAsInt(SeismicIntensity.UNKNOWN);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return new EarlyWarning.Area(prefecture, name, scaleFrom, scaleTo);
+    }
+
+    private UserQuakeReport readUserQuake(JsonParser parser, MessageHeader header) throws IOException {
+        String id = null;
+        String time = null;
+        int area = -1;
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "time":
+                    time = parser.getValueAsString();
+                    break;
+                case "area":
+                    area = parser.getValueAsInt(-1);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (time == null) {
+            throw new JsonParseException(parser, "User quake message " + id + " is missing its time");
+        }
+        if (header != null) {
+            header.time = time;
+        }
+        return new UserQuakeReport(id, parseTime(time), area);
+    }
+
+    private String readIssueTime(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        return readStringField(parser, "time");
+    }
+
+    /**
+     * Read one string field of the current object and skip the rest of it.
+     */
+    private static String readStringField(JsonParser parser, String wanted) throws IOException {
+        String value = null;
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            if (fieldName.equals(wanted)) {
+                value = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Parse a JST timestamp; message times carry milliseconds, which are dropped.
+     */
+    private static long parseTime(String text) {
+        return EarthquakeJsonDecoder.parseEpochSecond(text.length() > 19 ? text.substring(0, 19) : text);
+    }
+
+    /**
+     * Scratch holder for the "earthquake" section of a warning.
+     */
+    private static final class WarningHypocenter {
+        private String originTime;
+        private String name;
+        private double latitude;
+        private double longitude;
+        private int depth;
+        private double magnitude;
+    }
+}
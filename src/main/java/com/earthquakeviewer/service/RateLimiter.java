@@ -0,0 +1,46 @@
+package com.earthquakeviewer.service;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out requests to a fixed rate. Callers reserve the next free slot and sleep
+ * until it arrives, so concurrent callers are served in turn without bursts.
+ */
+class RateLimiter {
+    private final long intervalNanos;
+    private long nextSlotNanos = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond The sustained rate, or 0 or less for no limit
+     */
+    RateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+    }
+
+    /**
+     * Wait for the next slot.
+     *
+     * @throws InterruptedIOException If interrupted while waiting
+     */
+    void acquire() throws InterruptedIOException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long slot;
+        synchronized (this) {
+            long now = System.nanoTime();
+            slot = Math.max(now, nextSlotNanos);
+            nextSlotNanos = slot + intervalNanos;
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a request slot");
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.earthquakeviewer.service;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * WebSocket connection to the P2P Quake realtime API that stays connected.
+ * Any close other than {@link #close()} schedules a reconnect with jittered exponential
+ * backoff, so an outage produces at most one attempt per backoff interval; the backoff
+ * only starts over once a connection has stayed up for a while, so a server that accepts
+ * and immediately drops connections is not hammered either. Liveness is
+ * checked with WebSocket pings: a connection that stops answering is closed and reconnected.
+ * After every reconnect the owner is told so it can backfill what was missed.
+ */
+class RealtimeClient {
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeClient.class);
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    // Ping interval; the connection is dropped if no pong arrives within 1.5 intervals
+    private static final int CONNECTION_LOST_TIMEOUT_SECONDS = 30;
+    // A connection must stay up this long before the backoff starts over
+    private static final long STABLE_CONNECTION_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final URI uri;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<String> messageHandler;
+    private final Runnable reconnectHandler;
+    private final AtomicBoolean reconnectPending = new AtomicBoolean();
+    private final AtomicLong reconnects = new AtomicLong();
+    private volatile WebSocketClient client;
+    private volatile boolean closed;
+    private boolean everConnected;
+    private long openedNanos;
+    private int failedAttempts;
+
+    /**
+     * @param uri The WebSocket endpoint
+     * @param scheduler Runs reconnect attempts
+     * @param messageHandler Receives each text message on the WebSocket thread
+     * @param reconnectHandler Called on the WebSocket thread when a connection opens after an earlier one was lost
+     */
+    RealtimeClient(URI uri, ScheduledExecutorService scheduler, Consumer<String> messageHandler,
+                   Runnable reconnectHandler) {
+        this.uri = uri;
+        this.scheduler = scheduler;
+        this.messageHandler = messageHandler;
+        this.reconnectHandler = reconnectHandler;
+    }
+
+    /**
+     * Open the first connection.
+     */
+    void start() {
+        connect();
+    }
+
+    /**
+     * Close the connection and stop reconnecting.
+     */
+    void close() {
+        closed = true;
+        WebSocketClient current = client;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * @return Whether a connection is currently open
+     */
+    boolean isConnected() {
+        WebSocketClient current = client;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * @return The number of connections opened after the first
+     */
+    long getReconnectCount() {
+        return reconnects.get();
+    }
+
+    private void connect() {
+        if (closed) {
+            return;
+        }
+        WebSocketClient newClient = new WebSocketClient(uri) {
+            @Override
+            public void onOpen(ServerHandshake handshakedata) {
+                logger.info("WebSocket connection opened");
+                boolean reconnected;
+                synchronized (RealtimeClient.this) {
+                    openedNanos = System.nanoTime();
+                    reconnected = everConnected;
+                    everConnected = true;
+                }
+                if (reconnected) {
+                    reconnects.incrementAndGet();
+                    reconnectHandler.run();
+                }
+            }
+
+            @Override
+            public void onMessage(String message) {
+                messageHandler.accept(message);
+            }
+
+            @Override
+            public void onClose(int code, String reason, boolean remote) {
+                logger.info("WebSocket connection closed: {} - {}", code, reason);
+                synchronized (RealtimeClient.this) {
+                    if (openedNanos != 0 && System.nanoTime() - openedNanos >= STABLE_CONNECTION_NANOS) {
+                        failedAttempts = 0;
+                    }
+                    openedNanos = 0;
+                }
+                scheduleReconnect();
+            }
+
+            @Override
+            public void onError(Exception ex) {
+                logger.error("WebSocket error", ex);
+            }
+        };
+        newClient.setConnectionLostTimeout(CONNECTION_LOST_TIMEOUT_SECONDS);
+        client = newClient;
+        newClient.connect();
+    }
+
+    private void scheduleReconnect() {
+        if (closed || !reconnectPending.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = nextBackoffMillis();
+        logger.info("Reconnecting WebSocket in {} ms", delay);
+        scheduler.schedule(() -> {
+            reconnectPending.set(false);
+            try {
+                connect();
+            } catch (RuntimeException e) {
+                logger.error("Failed to reconnect WebSocket", e);
+                scheduleReconnect();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random delay up to min(max, initial * 2^attempts),
+     * so many clients recovering from the same outage spread out their reconnects.
+     */
+    private synchronized long nextBackoffMillis() {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(failedAttempts, 16));
+        failedAttempts++;
+        return INITIAL_BACKOFF_MILLIS / 2 + ThreadLocalRandom.current().nextLong(ceiling);
+    }
+}
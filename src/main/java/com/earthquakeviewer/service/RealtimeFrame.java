@@ -0,0 +1,41 @@
+package com.earthquakeviewer.service;
+
+import com.earthquakeviewer.model.QuakeMessage;
+
+/**
+ * A realtime message as it arrived, together with its decoded form. Consumers that pass
+ * messages on, such as a relay, forward the original text and use the decoded message
+ * only to decide where it goes, so nothing is parsed or serialised twice.
+ */
+public final class RealtimeFrame {
+    private final QuakeMessage message;
+    private final String text;
+    private final long receivedEpochMillis;
+
+    RealtimeFrame(QuakeMessage message, String text, long receivedEpochMillis) {
+        this.message = message;
+        this.text = text;
+        this.receivedEpochMillis = receivedEpochMillis;
+    }
+
+    /**
+     * @return The decoded message
+     */
+    public QuakeMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The JSON text exactly as received from the WebSocket
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return When the frame was received, in milliseconds since the epoch
+     */
+    public long getReceivedEpochMillis() {
+        return receivedEpochMillis;
+    }
+}
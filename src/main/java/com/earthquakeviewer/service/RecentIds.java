@@ -0,0 +1,38 @@
+package com.earthquakeviewer.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded set of the most recently delivered event ids, used to drop events that
+ * arrive twice, e.g. from both the WebSocket and a backfill after a reconnect.
+ */
+class RecentIds {
+    private final Map<String, Boolean> ids;
+
+    /**
+     * @param capacity The number of ids remembered; older ids are forgotten first
+     */
+    RecentIds(int capacity) {
+        this.ids = new LinkedHashMap<String, Boolean>(capacity * 2, 0.75f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Record an id.
+     *
+     * @param id The event id
+     * @return true if the id was not seen before
+     */
+    synchronized boolean add(String id) {
+        return ids.put(id, Boolean.TRUE) == null;
+    }
+
+    synchronized boolean contains(String id) {
+        return ids.containsKey(id);
+    }
+}
@@ -0,0 +1,292 @@
+package com.earthquakeviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Threads used by {@link EarthquakeService}: one scheduler thread for timers, an
+ * executor for blocking I/O and one for delivering events to subscribers, plus a
+ * concurrency limit per API endpoint.
+ *
+ * The I/O and delivery executors are chosen with the {@value #MODE_PROPERTY} system property:
+ * "bounded" (the default) uses fixed pools of {@value #THREADS_PROPERTY} and
+ * {@value #DELIVERY_THREADS_PROPERTY} threads with a queue, "virtual" uses one virtual thread
+ * per task where the runtime supports it and falls back to the bounded pools otherwise. The
+ * thread count therefore stays fixed however many subscribers there are; a subscriber drains
+ * its buffer on at most one thread at a time and hands the thread back after a batch.
+ * Either way, the per-endpoint permits ({@value #PERMITS_PROPERTY}) cap how many requests
+ * hit the same endpoint at once.
+ */
+public final class ServiceExecutors {
+    public static final String MODE_PROPERTY = "earthquake.executor";
+    public static final String THREADS_PROPERTY = "earthquake.executor.ioThreads";
+    public static final String DELIVERY_THREADS_PROPERTY = "earthquake.executor.deliveryThreads";
+    public static final String PERMITS_PROPERTY = "earthquake.http.maxConcurrentPerEndpoint";
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceExecutors.class);
+    private static final int DEFAULT_IO_THREADS = 8;
+    private static final int DEFAULT_DELIVERY_THREADS = 4;
+    private static final int DEFAULT_PERMITS = 4;
+
+    private final ScheduledExecutorService scheduler;
+    private final Pool ioPool;
+    private final Pool deliveryPool;
+    private final boolean virtualThreads;
+    private final int permitsPerEndpoint;
+    private final Map<String, Semaphore> endpointPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Create executors configured from system properties.
+     */
+    ServiceExecutors() {
+        this(System.getProperty(MODE_PROPERTY, "bounded"),
+             Integer.getInteger(THREADS_PROPERTY, DEFAULT_IO_THREADS),
+             Integer.getInteger(DELIVERY_THREADS_PROPERTY, DEFAULT_DELIVERY_THREADS),
+             Integer.getInteger(PERMITS_PROPERTY, DEFAULT_PERMITS));
+    }
+
+    /**
+     * @param mode "bounded" or "virtual"
+     * @param ioThreads The number of threads in the bounded I/O pool
+     * @param deliveryThreads The number of threads in the bounded delivery pool
+     * @param permitsPerEndpoint The maximum concurrent requests per endpoint
+     */
+    ServiceExecutors(String mode, int ioThreads, int deliveryThreads, int permitsPerEndpoint) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("earthquake-scheduler"));
+        this.permitsPerEndpoint = permitsPerEndpoint;
+
+        boolean virtual = "virtual".equals(mode);
+        ExecutorService virtualIo = virtual ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtualIo != null;
+        if (virtualThreads) {
+            this.ioPool = new Pool(virtualIo);
+            this.deliveryPool = new Pool(newVirtualThreadExecutor());
+        } else {
+            this.ioPool = new Pool(newBoundedPool(ioThreads, "earthquake-io"));
+            this.deliveryPool = new Pool(newBoundedPool(deliveryThreads, "earthquake-delivery"));
+        }
+        logger.info("Using {} I/O and {} delivery executors", virtualThreads ? "virtual thread" : ioThreads + "-thread",
+                virtualThreads ? "virtual thread" : deliveryThreads + "-thread");
+    }
+
+    /**
+     * @return The executor for timers and delayed tasks
+     */
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return An executor for blocking I/O that records queue and activity counts
+     */
+    Executor io() {
+        return ioPool;
+    }
+
+    /**
+     * @return The executor that runs event delivery to subscribers, which records queue and activity counts
+     */
+    Executor delivery() {
+        return deliveryPool;
+    }
+
+    /**
+     * Wait for a request slot on an endpoint. Close the permit when the request is done.
+     *
+     * @param endpoint The endpoint name, e.g. "history"
+     * @return The permit
+     * @throws InterruptedIOException If interrupted while waiting
+     */
+    Permit acquire(String endpoint) throws InterruptedIOException {
+        Semaphore semaphore = endpointPermits.computeIfAbsent(endpoint, e -> new Semaphore(permitsPerEndpoint, true));
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + endpoint);
+        }
+        return semaphore::release;
+    }
+
+    /**
+     * Stop the scheduler and let queued I/O and pending deliveries finish for up to the given time.
+     */
+    void shutdown(long timeout, TimeUnit unit) {
+        scheduler.shutdownNow();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        awaitShutdown(ioPool.executor, deadline);
+        awaitShutdown(deliveryPool.executor, deadline);
+    }
+
+    private static void awaitShutdown(ExecutorService executor, long deadlineNanos) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Whether I/O and delivery run on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return The I/O executor's task counts
+     */
+    public Pool getIoPool() {
+        return ioPool;
+    }
+
+    /**
+     * @return The delivery executor's task counts
+     */
+    public Pool getDeliveryPool() {
+        return deliveryPool;
+    }
+
+    /**
+     * @return Requests in progress per endpoint
+     */
+    public Map<String, Integer> getEndpointsInFlight() {
+        Map<String, Integer> inFlight = new TreeMap<>();
+        endpointPermits.forEach((endpoint, semaphore) ->
+                inFlight.put(endpoint, permitsPerEndpoint - semaphore.availablePermits()));
+        return Collections.unmodifiableMap(inFlight);
+    }
+
+    /**
+     * @return Requests waiting for a permit per endpoint
+     */
+    public Map<String, Integer> getEndpointsWaiting() {
+        Map<String, Integer> waiting = new TreeMap<>();
+        endpointPermits.forEach((endpoint, semaphore) -> waiting.put(endpoint, semaphore.getQueueLength()));
+        return Collections.unmodifiableMap(waiting);
+    }
+
+    private static ExecutorService newBoundedPool(int threads, String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor via reflection, so the code still runs on Java 11.
+     *
+     * @return The executor, or null if virtual threads are unavailable
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads are not available on this runtime, using a bounded pool");
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * An executor that records how many of its tasks are queued, running and finished.
+     */
+    public static final class Pool implements Executor {
+        private final ExecutorService executor;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+
+        Pool(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            queued.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    queued.decrementAndGet();
+                    active.incrementAndGet();
+                    try {
+                        task.run();
+                    } finally {
+                        active.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                queued.decrementAndGet();
+                throw e;
+            }
+        }
+
+        /**
+         * @return The number of tasks waiting for a thread
+         */
+        public int getQueuedTasks() {
+            return queued.get();
+        }
+
+        /**
+         * @return The number of tasks currently running
+         */
+        public int getActiveTasks() {
+            return active.get();
+        }
+
+        /**
+         * @return The number of tasks finished
+         */
+        public long getCompletedTasks() {
+            return completed.get();
+        }
+
+        /**
+         * @return The number of threads in the bounded pool, or the active task count for virtual threads
+         */
+        public int getPoolSize() {
+            return executor instanceof ThreadPoolExecutor
+                    ? ((ThreadPoolExecutor) executor).getPoolSize() : active.get();
+        }
+    }
+
+    /**
+     * A held endpoint permit.
+     */
+    interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,116 @@
+package com.earthquakeviewer.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory LRU cache of completed results with a time-to-live, plus single-flight
+ * loading: concurrent requests for a key that is not cached share one in-flight load
+ * instead of each starting their own. Failed loads are not cached.
+ *
+ * @param <V> The cached value type; values are shared between callers, so they must be immutable
+ */
+class SingleFlightCache<V> {
+    // Both maps are guarded by the entries lock, so a key is always either cached, in
+    // flight, or neither, and a load completing cannot slip between the two lookups
+    private final Map<String, CachedValue<V>> entries;
+    private final Map<String, CompletableFuture<V>> inFlight = new HashMap<>();
+    private final long ttlNanos;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param capacity The maximum number of cached results
+     * @param ttl How long a result is served before it is loaded again
+     * @param unit The unit of ttl
+     */
+    SingleFlightCache(int capacity, long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<String, CachedValue<V>>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedValue<V>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get a cached result, join an in-flight load, or start a new one.
+     *
+     * @param key The normalized request key
+     * @param loader Starts the load when neither a fresh result nor an in-flight load exists
+     * @return A future for the result
+     */
+    CompletableFuture<V> get(String key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        synchronized (entries) {
+            CachedValue<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedNanos < ttlNanos) {
+                    hits.incrementAndGet();
+                    return CompletableFuture.completedFuture(entry.value);
+                }
+                entries.remove(key);
+            }
+            CompletableFuture<V> loading = inFlight.putIfAbsent(key, future);
+            if (loading != null) {
+                coalesced.incrementAndGet();
+                return loading;
+            }
+        }
+
+        // Start the load outside the lock, since it may complete synchronously
+        misses.incrementAndGet();
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((value, error) -> {
+            synchronized (entries) {
+                if (error == null) {
+                    entries.put(key, new CachedValue<>(value, System.nanoTime()));
+                }
+                inFlight.remove(key);
+            }
+            if (error == null) {
+                future.complete(value);
+            } else {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of requests that joined an in-flight load
+     */
+    long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    private static final class CachedValue<V> {
+        private final V value;
+        private final long loadedNanos;
+
+        CachedValue(V value, long loadedNanos) {
+            this.value = value;
+            this.loadedNanos = loadedNanos;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.earthquakeviewer.service;
+
+import com.earthquakeviewer.repository.EarthquakeRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks which days of /jma/quake history have been fully fetched into the local store,
+ * so filter queries only request the days that are missing. The current day is never
+ * complete; it is re-fetched at most once per {@link #OPEN_DAY_REFRESH_NANOS}. The
+ * complete range is kept in the store, so it survives a restart.
+ */
+class SyncedDays {
+    private static final long OPEN_DAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final EarthquakeRepository repository;
+    private LocalDate from;
+    private LocalDate until;
+    private long lastOpenDaySync;
+    private boolean openDaySynced;
+
+    /**
+     * @param repository The store the days are fetched into, which records the complete range
+     */
+    SyncedDays(EarthquakeRepository repository) {
+        this.repository = repository;
+        this.from = repository.getSyncedFrom();
+        this.until = repository.getSyncedUntil();
+        if (from == null || until == null) {
+            from = null;
+            until = null;
+        }
+    }
+
+    /**
+     * @return The day ranges of [start, end] that still need to be fetched
+     */
+    synchronized List<Range> missing(LocalDate start, LocalDate end, LocalDate today) {
+        List<Range> ranges = new ArrayList<>();
+        if (from == null) {
+            ranges.add(new Range(start, end));
+        } else {
+            if (start.isBefore(from)) {
+                LocalDate rangeEnd = end.isBefore(from) ? end : from.minusDays(1);
+                ranges.add(new Range(start, rangeEnd));
+            }
+            if (end.isAfter(until)) {
+                LocalDate rangeStart = start.isAfter(until) ? start : until.plusDays(1);
+                ranges.add(new Range(rangeStart, end));
+            }
+        }
+
+        // A range that is only the still-open current day was refreshed recently enough
+        boolean openDayFresh = openDaySynced && System.nanoTime() - lastOpenDaySync < OPEN_DAY_REFRESH_NANOS;
+        if (openDayFresh) {
+            ranges.removeIf(range -> !range.from.isBefore(today));
+        }
+        return ranges;
+    }
+
+    /**
+     * Record that [rangeFrom, rangeUntil] was fetched. Days before today become complete.
+     */
+    synchronized void markSynced(LocalDate rangeFrom, LocalDate rangeUntil, LocalDate today) {
+        if (!rangeUntil.isBefore(today)) {
+            openDaySynced = true;
+            lastOpenDaySync = System.nanoTime();
+        }
+        LocalDate completeUntil = rangeUntil.isBefore(today) ? rangeUntil : today.minusDays(1);
+        if (completeUntil.isBefore(rangeFrom)) {
+            return;
+        }
+
+        boolean touches = from != null
+                && !rangeFrom.isAfter(until.plusDays(1)) && !completeUntil.isBefore(from.minusDays(1));
+        if (touches) {
+            from = rangeFrom.isBefore(from) ? rangeFrom : from;
+            until = completeUntil.isAfter(until) ? completeUntil : until;
+        } else if (from == null || completeUntil.isAfter(until)) {
+            // Keep a single contiguous range, preferring the more recent one
+            from = rangeFrom;
+            until = completeUntil;
+        }
+        repository.setSyncedDays(from, until);
+    }
+
+    /**
+     * An inclusive range of days.
+     */
+    static final class Range {
+        private final LocalDate from;
+        private final LocalDate until;
+
+        Range(LocalDate from, LocalDate until) {
+            this.from = from;
+            this.until = until;
+        }
+
+        LocalDate getFrom() {
+            return from;
+        }
+
+        LocalDate getUntil() {
+            return until;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.earthquakeviewer.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Batches items published from background threads and hands them to the UI thread
+ * at most once per interval. Items wait in a bounded queue; when it is full the oldest
+ * item is dropped and counted, so a burst can never back up the UI thread's queue.
+ *
+ * @param <T> The item type
+ */
+public class CoalescingDispatcher<T> {
+    /** System property for the drain interval in milliseconds. */
+    public static final String INTERVAL_PROPERTY = "earthquake.ui.batchIntervalMillis";
+    /** System property for the queue capacity. */
+    public static final String CAPACITY_PROPERTY = "earthquake.ui.batchCapacity";
+
+    private static final long DEFAULT_INTERVAL_MILLIS = 16;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final BlockingQueue<T> queue;
+    private final long intervalNanos;
+    private final Consumer<List<T>> batchConsumer;
+    private final Executor uiExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile long lastDrainNanos;
+    private volatile int maxBatchSize;
+
+    /**
+     * Create a dispatcher configured from system properties, falling back to a 16 ms
+     * interval and a queue of 1024 items.
+     *
+     * @param batchConsumer Receives each batch, oldest item first, on the UI thread
+     * @param uiExecutor Runs tasks on the UI thread, e.g. Platform::runLater
+     */
+    public CoalescingDispatcher(Consumer<List<T>> batchConsumer, Executor uiExecutor) {
+        this(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY),
+             Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MILLIS), batchConsumer, uiExecutor);
+    }
+
+    /**
+     * @param capacity The maximum number of items waiting for the next drain
+     * @param intervalMillis The minimum time between drains
+     * @param batchConsumer Receives each batch, oldest item first, on the UI thread
+     * @param uiExecutor Runs tasks on the UI thread, e.g. Platform::runLater
+     */
+    public CoalescingDispatcher(int capacity, long intervalMillis, Consumer<List<T>> batchConsumer,
+                                Executor uiExecutor) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.batchConsumer = batchConsumer;
+        this.uiExecutor = uiExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ui-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lastDrainNanos = System.nanoTime() - intervalNanos;
+    }
+
+    /**
+     * Queue an item for the next batch. Safe to call from any thread.
+     *
+     * @param item The item to deliver
+     */
+    public void publish(T item) {
+        published.incrementAndGet();
+        while (!queue.offer(item)) {
+            // Full: make room by discarding the oldest waiting item
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Stop scheduling drains. Items still queued are discarded.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        queue.clear();
+    }
+
+    /**
+     * @return The number of items waiting for the next drain
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return The number of items discarded because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of items published
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * @return The number of batches delivered to the UI thread
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * @return The largest batch delivered so far
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    private void scheduleDrain() {
+        if (!drainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        // Wait out the remainder of the interval since the last drain
+        long delay = Math.max(0, lastDrainNanos + intervalNanos - System.nanoTime());
+        try {
+            scheduler.schedule(() -> uiExecutor.execute(this::drain), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down; nothing more will be delivered
+            drainScheduled.set(false);
+        }
+    }
+
+    private void drain() {
+        lastDrainNanos = System.nanoTime();
+        drainScheduled.set(false);
+
+        List<T> batch = new ArrayList<>(queue.size());
+        queue.drainTo(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.incrementAndGet();
+        if (batch.size() > maxBatchSize) {
+            maxBatchSize = batch.size();
+        }
+        batchConsumer.accept(batch);
+    }
+}
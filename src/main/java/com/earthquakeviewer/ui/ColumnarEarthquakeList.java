@@ -0,0 +1,213 @@
+package com.earthquakeviewer.ui;
+
+import com.earthquakeviewer.repository.EarthquakeRepository;
+import javafx.collections.ObservableListBase;
+import javafx.util.Pair;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Read-only table items that are rows of the columnar store rather than
+ * {@link com.earthquakeviewer.model.Earthquake} objects. The list is an int array of row
+ * indices, so 100k events cost 400 KB here and cells read the few columns they show
+ * straight from the store. Sorting reorders the array by keys read once per row from the
+ * primitive columns and is reported as a single permutation.
+ */
+final class ColumnarEarthquakeList extends ObservableListBase<Integer> {
+    private final EarthquakeRepository repository;
+    // Rows in their loaded order, and in the current sort order
+    private int[] baseRows = new int[0];
+    private int[] rows = baseRows;
+
+    ColumnarEarthquakeList(EarthquakeRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Integer get(int index) {
+        if (index < 0 || index >= rows.length) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + rows.length);
+        }
+        return rows[index];
+    }
+
+    @Override
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * @param index The list index
+     * @return The repository row shown at the index
+     */
+    int rowAt(int index) {
+        return rows[index];
+    }
+
+    /**
+     * Replace the contents.
+     *
+     * @param newRows The repository rows in their natural order; the list keeps the array
+     */
+    void setRows(int[] newRows) {
+        int[] removed = rows;
+        baseRows = newRows;
+        rows = newRows;
+        if (removed.length == 0 && newRows.length == 0) {
+            return;
+        }
+        beginChange();
+        nextReplace(0, newRows.length, new RowView(removed));
+        endChange();
+    }
+
+    /**
+     * Sort by one or more columns, or restore the loaded order.
+     *
+     * @param keys The sort columns, most significant first; empty for the loaded order
+     */
+    void sort(List<Pair<EarthquakeColumn, Boolean>> keys) {
+        int size = baseRows.length;
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // Stable sorts from the least significant key leave ties in the order of the next
+        int[] scratch = new int[size];
+        for (int k = keys.size() - 1; k >= 0; k--) {
+            EarthquakeColumn column = keys.get(k).getKey();
+            int direction = keys.get(k).getValue() ? 1 : -1;
+            mergeSort(order, scratch, comparatorFor(column, direction));
+        }
+
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = baseRows[order[i]];
+        }
+
+        // Where each currently shown row moves to
+        int[] position = new int[size];
+        int[] previous = rows;
+        int[] baseIndex = indexOfBase(previous);
+        for (int i = 0; i < size; i++) {
+            position[order[i]] = i;
+        }
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = position[baseIndex[i]];
+        }
+
+        rows = sorted;
+        if (size == 0) {
+            return;
+        }
+        beginChange();
+        nextPermutation(0, size, permutation);
+        endChange();
+    }
+
+    /**
+     * Compare positions in the loaded order by keys read once per row.
+     */
+    private IntBinaryOperator comparatorFor(EarthquakeColumn column, int direction) {
+        int size = baseRows.length;
+        if (column.isNumeric()) {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = column.sortKey(repository, baseRows[i]);
+            }
+            return (a, b) -> direction * Long.compare(keys[a], keys[b]);
+        }
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = column.textKey(repository, baseRows[i]);
+        }
+        return (a, b) -> {
+            String x = keys[a];
+            String y = keys[b];
+            // Dictionary strings are shared, so equal names are usually the same instance
+            int result = x == y ? 0 : x == null ? -1 : y == null ? 1 : x.compareTo(y);
+            return direction * result;
+        };
+    }
+
+    /**
+     * @return For each index of the given order, the index of the same row in the loaded order
+     */
+    private int[] indexOfBase(int[] current) {
+        int size = baseRows.length;
+        int[] result = new int[size];
+        if (current == baseRows) {
+            for (int i = 0; i < size; i++) {
+                result[i] = i;
+            }
+            return result;
+        }
+        // Rows are distinct, so one pass over the store's row space finds every index
+        int maxRow = 0;
+        for (int row : baseRows) {
+            maxRow = Math.max(maxRow, row);
+        }
+        int[] baseIndexOfRow = new int[maxRow + 1];
+        for (int i = 0; i < size; i++) {
+            baseIndexOfRow[baseRows[i]] = i;
+        }
+        for (int i = 0; i < size; i++) {
+            result[i] = baseIndexOfRow[current[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Stable bottom-up merge sort of positions.
+     */
+    private static void mergeSort(int[] values, int[] scratch, IntBinaryOperator comparator) {
+        int size = values.length;
+        int[] from = values;
+        int[] to = scratch;
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                int mid = Math.min(low + width, size);
+                int high = Math.min(low + 2 * width, size);
+                int left = low;
+                int right = mid;
+                for (int out = low; out < high; out++) {
+                    if (left < mid && (right >= high || comparator.applyAsInt(from[left], from[right]) <= 0)) {
+                        to[out] = from[left++];
+                    } else {
+                        to[out] = from[right++];
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != values) {
+            System.arraycopy(from, 0, values, 0, size);
+        }
+    }
+
+    /**
+     * Boxes rows only if a listener reads the removed items.
+     */
+    private static final class RowView extends AbstractList<Integer> {
+        private final int[] rows;
+
+        RowView(int[] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return rows[index];
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+}
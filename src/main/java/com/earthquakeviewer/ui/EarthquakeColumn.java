@@ -0,0 +1,138 @@
+package com.earthquakeviewer.ui;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.repository.EarthquakeRepository;
+
+import java.util.Comparator;
+
+/**
+ * The columns of the earthquake tables. Each column formats its cell text into a buffer
+ * and sorts on the underlying number, from either an {@link Earthquake} or a row of the
+ * columnar store, so neither tables nor sorting go through formatted strings.
+ */
+enum EarthquakeColumn {
+    TIME(Comparator.comparingLong(Earthquake::getEpochSecond)) {
+        @Override
+        void format(Earthquake earthquake, StringBuilder out) {
+            EarthquakeViewAdapter.appendTime(earthquake.getEpochSecond(), out);
+        }
+
+        @Override
+        void format(EarthquakeRepository repository, int row, StringBuilder out) {
+            EarthquakeViewAdapter.appendTime(repository.epochSecondAt(row), out);
+        }
+
+        @Override
+        long sortKey(EarthquakeRepository repository, int row) {
+            return repository.epochSecondAt(row);
+        }
+    },
+    LOCATION(Comparator.comparing(Earthquake::getLocation, Comparator.nullsFirst(Comparator.naturalOrder()))) {
+        @Override
+        void format(Earthquake earthquake, StringBuilder out) {
+            appendNullable(earthquake.getLocation(), out);
+        }
+
+        @Override
+        void format(EarthquakeRepository repository, int row, StringBuilder out) {
+            appendNullable(repository.locationAt(row), out);
+        }
+
+        @Override
+        boolean isNumeric() {
+            return false;
+        }
+
+        @Override
+        String textKey(EarthquakeRepository repository, int row) {
+            return repository.locationAt(row);
+        }
+    },
+    MAGNITUDE(Comparator.comparingDouble(Earthquake::getMagnitude)) {
+        @Override
+        void format(Earthquake earthquake, StringBuilder out) {
+            EarthquakeViewAdapter.appendMagnitude(earthquake.getMagnitude(), out);
+        }
+
+        @Override
+        void format(EarthquakeRepository repository, int row, StringBuilder out) {
+            EarthquakeViewAdapter.appendMagnitude(repository.magnitudeAt(row), out);
+        }
+
+        @Override
+        long sortKey(EarthquakeRepository repository, int row) {
+            // Stored with one decimal, so tenths order exactly
+            return Math.round(repository.magnitudeAt(row) * 10);
+        }
+    },
+    DEPTH(Comparator.comparingInt(Earthquake::getDepth)) {
+        @Override
+        void format(Earthquake earthquake, StringBuilder out) {
+            EarthquakeViewAdapter.appendDepth(earthquake.getDepth(), out);
+        }
+
+        @Override
+        void format(EarthquakeRepository repository, int row, StringBuilder out) {
+            EarthquakeViewAdapter.appendDepth(repository.depthAt(row), out);
+        }
+
+        @Override
+        long sortKey(EarthquakeRepository repository, int row) {
+            return repository.depthAt(row);
+        }
+    },
+    INTENSITY(Comparator.comparingInt(Earthquake::getMaxScale)) {
+        @Override
+        void format(Earthquake earthquake, StringBuilder out) {
+            EarthquakeViewAdapter.appendIntensity(earthquake.getMaxScale(), earthquake.getDomesticTsunami(), out);
+        }
+
+        @Override
+        void format(EarthquakeRepository repository, int row, StringBuilder out) {
+            EarthquakeViewAdapter.appendIntensity(repository.maxScaleAt(row), repository.domesticTsunamiAt(row), out);
+        }
+
+        @Override
+        long sortKey(EarthquakeRepository repository, int row) {
+            return repository.maxScaleAt(row);
+        }
+    };
+
+    private final Comparator<Earthquake> comparator;
+
+    EarthquakeColumn(Comparator<Earthquake> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * @return The ascending order of events by this column
+     */
+    Comparator<Earthquake> comparator() {
+        return comparator;
+    }
+
+    abstract void format(Earthquake earthquake, StringBuilder out);
+
+    abstract void format(EarthquakeRepository repository, int row, StringBuilder out);
+
+    /**
+     * @return Whether rows sort by {@link #sortKey}, otherwise by {@link #textKey}
+     */
+    boolean isNumeric() {
+        return true;
+    }
+
+    long sortKey(EarthquakeRepository repository, int row) {
+        throw new UnsupportedOperationException(name() + " sorts by text");
+    }
+
+    String textKey(EarthquakeRepository repository, int row) {
+        throw new UnsupportedOperationException(name() + " sorts by number");
+    }
+
+    private static void appendNullable(String value, StringBuilder out) {
+        if (value != null) {
+            out.append(value);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.earthquakeviewer.ui;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.SeismicIntensity;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Adapts the FX-free {@link Earthquake} model for display.
+ * Text is formatted only when a table cell or detail view actually asks for it, instead
+ * of being stored on every event. The append methods take primitive values, so table
+ * cells can format straight from the columnar store into a reused buffer.
+ */
+public final class EarthquakeViewAdapter {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+    private static final int JST_OFFSET_SECONDS = Earthquake.JST.getTotalSeconds();
+
+    private EarthquakeViewAdapter() {
+    }
+
+    public static String formatTime(Earthquake earthquake) {
+        return earthquake.getTime().format(DATE_TIME_FORMATTER);
+    }
+
+    public static String formatMagnitude(Earthquake earthquake) {
+        return String.format("%.1f", earthquake.getMagnitude());
+    }
+
+    public static String formatDepth(Earthquake earthquake) {
+        return earthquake.getDepth() + " km";
+    }
+
+    // Allocation-free formatting for table cells
+
+    /**
+     * Append an origin time as "yyyy/MM/dd HH:mm:ss" in Japan Standard Time.
+     *
+     * @param epochSecond The time in seconds since the epoch
+     * @param out The buffer to append to
+     */
+    public static void appendTime(long epochSecond, StringBuilder out) {
+        long local = epochSecond + JST_OFFSET_SECONDS;
+        long days = Math.floorDiv(local, 86400);
+        int secondOfDay = Math.floorMod(local, 86400);
+
+        // Civil date from days since 1970-01-01 (proleptic Gregorian, 400-year eras)
+        long shifted = days + 719468;
+        long era = Math.floorDiv(shifted, 146097);
+        long dayOfEra = shifted - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        out.append(year).append('/');
+        appendTwoDigits(month, out);
+        out.append('/');
+        appendTwoDigits(day, out);
+        out.append(' ');
+        appendTwoDigits(secondOfDay / 3600, out);
+        out.append(':');
+        appendTwoDigits(secondOfDay / 60 % 60, out);
+        out.append(':');
+        appendTwoDigits(secondOfDay % 60, out);
+    }
+
+    /**
+     * Append a magnitude with one decimal, as {@link #formatMagnitude(Earthquake)} does.
+     *
+     * @param magnitude The magnitude
+     * @param out The buffer to append to
+     */
+    public static void appendMagnitude(double magnitude, StringBuilder out) {
+        if (Double.isNaN(magnitude) || Double.isInfinite(magnitude)) {
+            out.append(magnitude);
+            return;
+        }
+        long tenths = Math.round(Math.abs(magnitude) * 10);
+        if (magnitude < 0 && tenths != 0) {
+            out.append('-');
+        }
+        out.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    /**
+     * @param depth The depth in km
+     * @param out The buffer to append to
+     */
+    public static void appendDepth(int depth, StringBuilder out) {
+        out.append(depth).append(" km");
+    }
+
+    /**
+     * Append the maximum intensity label, as {@link Earthquake#getIntensity()} builds it.
+     *
+     * @param maxScale The maximum intensity scale code
+     * @param domesticTsunami The domestic tsunami assessment, may be null
+     * @param out The buffer to append to
+     */
+    public static void appendIntensity(int maxScale, String domesticTsunami, StringBuilder out) {
+        out.append(SeismicIntensity.toLabel(maxScale));
+        if (domesticTsunami != null && !domesticTsunami.equals("None")) {
+            out.append(" (Tsunami: ").append(domesticTsunami).append(')');
+        }
+    }
+
+    private static void appendTwoDigits(int value, StringBuilder out) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
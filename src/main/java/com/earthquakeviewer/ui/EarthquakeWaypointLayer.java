@@ -0,0 +1,247 @@
+package com.earthquakeviewer.ui;
+
+import com.earthquakeviewer.model.Earthquake;
+import org.jxmapviewer.JXMapViewer;
+import org.jxmapviewer.painter.AbstractPainter;
+import org.jxmapviewer.viewer.DefaultWaypoint;
+import org.jxmapviewer.viewer.DefaultWaypointRenderer;
+import org.jxmapviewer.viewer.GeoPosition;
+import org.jxmapviewer.viewer.WaypointRenderer;
+
+import javax.swing.SwingUtilities;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map overlay that keeps one waypoint per earthquake id and updates incrementally.
+ * Adding or removing an earthquake repaints only the marker's screen region, and
+ * painting skips markers outside the viewport. World pixel positions are cached per
+ * zoom level so panning does not re-project every marker.
+ *
+ * Updates come from the FX thread while Swing paints on the EDT, so access is synchronized.
+ * The viewport and zoom belong to Swing, so the region to repaint is worked out on the EDT.
+ */
+public class EarthquakeWaypointLayer extends AbstractPainter<JXMapViewer> {
+    // Size of the standard waypoint image, anchored at its bottom centre
+    private static final int MARKER_WIDTH = 20;
+    private static final int MARKER_HEIGHT = 34;
+
+    private final JXMapViewer mapViewer;
+    private final Map<String, Marker> markers = new LinkedHashMap<>();
+    private final WaypointRenderer<? super DefaultWaypoint> renderer = new DefaultWaypointRenderer();
+
+    /**
+     * Create a layer and install it as the map's overlay painter.
+     *
+     * @param mapViewer The map to draw on
+     */
+    public EarthquakeWaypointLayer(JXMapViewer mapViewer) {
+        this.mapViewer = mapViewer;
+        setAntialiasing(true);
+        mapViewer.setOverlayPainter(this);
+    }
+
+    /**
+     * Add a marker for an earthquake, unless one with the same id is already shown.
+     *
+     * @param earthquake The earthquake to show
+     */
+    public void add(Earthquake earthquake) {
+        Marker marker;
+        synchronized (this) {
+            if (markers.containsKey(earthquake.getId())) {
+                return;
+            }
+            marker = new Marker(earthquake);
+            markers.put(earthquake.getId(), marker);
+        }
+        repaint(Collections.singletonList(marker));
+    }
+
+    /**
+     * Add markers for several earthquakes with a single repaint of the combined region.
+     *
+     * @param earthquakes The earthquakes to show
+     */
+    public void addAll(Collection<Earthquake> earthquakes) {
+        List<Marker> changed = new ArrayList<>();
+        synchronized (this) {
+            for (Earthquake earthquake : earthquakes) {
+                if (!markers.containsKey(earthquake.getId())) {
+                    Marker marker = new Marker(earthquake);
+                    markers.put(earthquake.getId(), marker);
+                    changed.add(marker);
+                }
+            }
+        }
+        repaint(changed);
+    }
+
+    /**
+     * Remove the marker for an earthquake id.
+     *
+     * @param id The earthquake id
+     */
+    public void remove(String id) {
+        Marker marker;
+        synchronized (this) {
+            marker = markers.remove(id);
+            if (marker == null) {
+                return;
+            }
+        }
+        repaint(Collections.singletonList(marker));
+    }
+
+    /**
+     * Remove the markers for several earthquakes with a single repaint of the combined region.
+     *
+     * @param earthquakes The earthquakes to stop showing
+     */
+    public void removeAll(Collection<Earthquake> earthquakes) {
+        List<Marker> changed = new ArrayList<>();
+        synchronized (this) {
+            for (Earthquake earthquake : earthquakes) {
+                Marker marker = markers.remove(earthquake.getId());
+                if (marker != null) {
+                    changed.add(marker);
+                }
+            }
+        }
+        repaint(changed);
+    }
+
+    /**
+     * Show exactly the given earthquakes, adding and removing only the markers that differ.
+     *
+     * @param earthquakes The earthquakes to show
+     */
+    public void setAll(Collection<Earthquake> earthquakes) {
+        List<Marker> changed = new ArrayList<>();
+        synchronized (this) {
+            Set<String> keep = new HashSet<>();
+            for (Earthquake earthquake : earthquakes) {
+                keep.add(earthquake.getId());
+                if (!markers.containsKey(earthquake.getId())) {
+                    Marker marker = new Marker(earthquake);
+                    markers.put(earthquake.getId(), marker);
+                    changed.add(marker);
+                }
+            }
+            Iterator<Marker> iterator = markers.values().iterator();
+            while (iterator.hasNext()) {
+                Marker marker = iterator.next();
+                if (!keep.contains(marker.id)) {
+                    iterator.remove();
+                    changed.add(marker);
+                }
+            }
+        }
+        repaint(changed);
+    }
+
+    /**
+     * @return The number of markers in the layer
+     */
+    public synchronized int size() {
+        return markers.size();
+    }
+
+    @Override
+    protected synchronized void doPaint(Graphics2D g, JXMapViewer map, int width, int height) {
+        Rectangle viewport = map.getViewportBounds();
+        int zoom = map.getZoom();
+
+        g = (Graphics2D) g.create();
+        try {
+            g.translate(-viewport.x, -viewport.y);
+            for (Marker marker : markers.values()) {
+                Point2D point = marker.worldPoint(map, zoom);
+                // Cull markers whose image cannot overlap the viewport
+                if (point.getX() + MARKER_WIDTH / 2.0 < viewport.x
+                        || point.getX() - MARKER_WIDTH / 2.0 > viewport.x + viewport.width
+                        || point.getY() < viewport.y
+                        || point.getY() - MARKER_HEIGHT > viewport.y + viewport.height) {
+                    continue;
+                }
+                renderer.paintWaypoint(g, map, marker);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Must be called on the EDT with the layer's lock held.
+     *
+     * @return The marker's bounds in component coordinates, or null if it is off screen
+     */
+    private Rectangle screenBounds(Marker marker) {
+        Rectangle viewport = mapViewer.getViewportBounds();
+        Point2D point = marker.worldPoint(mapViewer, mapViewer.getZoom());
+        Rectangle bounds = new Rectangle(
+                (int) Math.floor(point.getX() - viewport.x) - MARKER_WIDTH / 2 - 1,
+                (int) Math.floor(point.getY() - viewport.y) - MARKER_HEIGHT - 1,
+                MARKER_WIDTH + 2, MARKER_HEIGHT + 2);
+        return bounds.intersects(0, 0, viewport.width, viewport.height) ? bounds : null;
+    }
+
+    private static Rectangle union(Rectangle a, Rectangle b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.union(b);
+    }
+
+    /**
+     * Repaint the region covering the given markers, once the EDT gets to it.
+     */
+    private void repaint(List<Marker> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            Rectangle dirty = null;
+            synchronized (this) {
+                for (Marker marker : changed) {
+                    dirty = union(dirty, screenBounds(marker));
+                }
+            }
+            if (dirty != null) {
+                mapViewer.repaint(dirty);
+            }
+        });
+    }
+
+    /**
+     * A waypoint with its world pixel position cached for the zoom level it was computed at.
+     */
+    private static final class Marker extends DefaultWaypoint {
+        private final String id;
+        private Point2D worldPoint;
+        private int worldPointZoom = Integer.MIN_VALUE;
+
+        Marker(Earthquake earthquake) {
+            super(new GeoPosition(earthquake.getLatitude(), earthquake.getLongitude()));
+            this.id = earthquake.getId();
+        }
+
+        Point2D worldPoint(JXMapViewer map, int zoom) {
+            if (worldPointZoom != zoom) {
+                worldPoint = map.getTileFactory().geoToPixel(getPosition(), zoom);
+                worldPointZoom = zoom;
+            }
+            return worldPoint;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.earthquakeviewer.ui;
+
+import javafx.collections.ObservableList;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableView;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Table cell that formats its row item directly, without a cell value factory or an
+ * observable value per cell. The text is built in a buffer that the cell keeps, and a
+ * cell that is asked to show the same row again, which is most of them while
+ * scrolling, keeps its text as it is.
+ *
+ * Row items must be immutable, so equal items always format to the same text.
+ *
+ * @param <S> The row item type
+ */
+final class FormattedCell<S> extends TableCell<S, Void> {
+    private final BiConsumer<? super S, StringBuilder> formatter;
+    private final StringBuilder buffer = new StringBuilder(32);
+    private S shownItem;
+
+    /**
+     * @param formatter Appends the text for a row item to the buffer
+     */
+    FormattedCell(BiConsumer<? super S, StringBuilder> formatter) {
+        this.formatter = formatter;
+    }
+
+    @Override
+    public void updateIndex(int index) {
+        super.updateIndex(index);
+        // Without a cell value the cell is not told when a new item lands on the same index
+        refresh();
+    }
+
+    @Override
+    protected void updateItem(Void value, boolean empty) {
+        super.updateItem(value, empty);
+        refresh();
+    }
+
+    private void refresh() {
+        TableView<S> table = getTableView();
+        int index = getIndex();
+        ObservableList<S> items = table == null ? null : table.getItems();
+        S item = items == null || index < 0 || index >= items.size() ? null : items.get(index);
+        if (item == null) {
+            shownItem = null;
+            setText(null);
+            return;
+        }
+        if (item.equals(shownItem)) {
+            return;
+        }
+        shownItem = item;
+        buffer.setLength(0);
+        formatter.accept(item, buffer);
+        setText(buffer.toString());
+    }
+}
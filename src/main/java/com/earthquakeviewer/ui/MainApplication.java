@@ -1,5 +1,8 @@
 package com.earthquakeviewer.ui;
 
+import com.earthquakeviewer.repository.EarthquakeRepository;
+import com.earthquakeviewer.repository.EarthquakeSnapshot;
+import com.earthquakeviewer.repository.MappedEarthquakeRepository;
 import com.earthquakeviewer.service.EarthquakeService;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -12,7 +15,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Main JavaFX Application class that initializes the UI and services.
@@ -20,20 +26,31 @@ import java.util.Objects;
 public class MainApplication extends Application {
     private static final Logger logger = LoggerFactory.getLogger(MainApplication.class);
     private EarthquakeService earthquakeService;
+    private EarthquakeRepository earthquakeRepository;
+    private MainController controller;
+    // The close request and stop() both shut down; only the first one runs
+    private final AtomicBoolean shutDown = new AtomicBoolean();
 
     @Override
     public void start(Stage primaryStage) {
         try {
-            // Initialize the earthquake service
-            earthquakeService = new EarthquakeService();
+            // Open the local earthquake history and initialize the earthquake service
+            earthquakeRepository = openRepository();
+            Path httpCacheDir = Paths.get(System.getProperty("user.home"), ".earthquake_viewer", "http_cache");
+            earthquakeService = new EarthquakeService(earthquakeRepository, httpCacheDir);
+            
+            // Read the last run's view before building the UI, so the first frame shows it
+            Path snapshotFile = Paths.get(System.getProperty("user.home"), ".earthquake_viewer", "snapshot.bin");
+            EarthquakeSnapshot snapshot = earthquakeService.restoreSnapshot(snapshotFile);
             
             // Load the main FXML
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/MainView.fxml"));
             Parent root = loader.load();
             
             // Get the controller and initialize it with the service
-            MainController controller = loader.getController();
-            controller.initialize(earthquakeService);
+            controller = loader.getController();
+            controller.initialize(earthquakeService, snapshot);
+            earthquakeService.startSnapshots(snapshotFile, controller::captureSnapshot);
             
             // Set up the primary stage
             primaryStage.setTitle("Japan Real-time Earthquake Viewer");
@@ -62,10 +79,34 @@ public class MainApplication extends Application {
         shutdown();
     }
     
+    private EarthquakeRepository openRepository() {
+        Path historyDir = Paths.get(System.getProperty("user.home"), ".earthquake_viewer", "history");
+        try {
+            return new MappedEarthquakeRepository(historyDir);
+        } catch (IOException e) {
+            logger.error("Failed to open local earthquake history, continuing without it", e);
+            return null;
+        }
+    }
+    
     private void shutdown() {
+        if (!shutDown.compareAndSet(false, true)) {
+            return;
+        }
+        if (controller != null) {
+            controller.shutdown();
+        }
         if (earthquakeService != null) {
             earthquakeService.shutdown();
         }
+        if (earthquakeRepository != null) {
+            try {
+                earthquakeRepository.close();
+            } catch (IOException e) {
+                logger.error("Failed to close local earthquake history", e);
+            }
+            earthquakeRepository = null;
+        }
         Platform.exit();
     }
 }
\ No newline at end of file
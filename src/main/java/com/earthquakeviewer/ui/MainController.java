@@ -1,25 +1,52 @@
 package com.earthquakeviewer.ui;
 
+import com.earthquakeviewer.analytics.AftershockSequence;
+import com.earthquakeviewer.metrics.AlertLatency;
+import com.earthquakeviewer.metrics.MetricsRegistry;
 import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.model.ObservationPoints;
+import com.earthquakeviewer.model.Prefecture;
+import com.earthquakeviewer.model.SeismicIntensity;
+import com.earthquakeviewer.query.EarthquakeQuery;
+import com.earthquakeviewer.repository.EarthquakeRepository;
+import com.earthquakeviewer.repository.EarthquakeSnapshot;
 import com.earthquakeviewer.service.EarthquakeService;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.web.WebView;
+import javafx.util.Duration;
+import javafx.util.Pair;
 import org.jxmapviewer.JXMapViewer;
 import org.jxmapviewer.OSMTileFactoryInfo;
+import org.jxmapviewer.cache.FileBasedLocalCache;
 import org.jxmapviewer.viewer.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 /**
  * Controller for the main view of the application.
@@ -27,17 +54,52 @@ import java.util.Set;
 public class MainController {
     private static final Logger logger = LoggerFactory.getLogger(MainController.class);
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+    // Retention of the live list, so long-running instances use constant memory
+    private static final int LIVE_CAPACITY = Integer.getInteger("earthquake.ui.liveCapacity", 1000);
+    private static final long LIVE_MAX_AGE_MILLIS =
+        TimeUnit.HOURS.toMillis(Long.getLong("earthquake.ui.liveMaxAgeHours", 0));
+    // How often the live list drops events past the maximum age when nothing new arrives
+    private static final Duration EVICTION_INTERVAL = Duration.minutes(1);
+    // Minimum intensity in the area filter; the first choice matches any observation
+    private static final List<String> AREA_SCALE_CHOICES =
+        List.of("Any", "1", "2", "3", "4", "5-", "5+", "6-", "6+", "7");
+    // Busiest aftershock sequences listed under the selected event
+    private static final int SEQUENCES_SHOWN = 5;
+    // How long a periodic snapshot waits for the FX thread before skipping a write
+    private static final long SNAPSHOT_CAPTURE_TIMEOUT_SECONDS = 5;
+    // Keys of the view state saved in a snapshot
+    private static final String STATE_TAB = "tab";
+    private static final String STATE_SELECTED = "selected";
+    private static final String STATE_MIN_MAGNITUDE = "filter.minMagnitude";
+    private static final String STATE_PREFECTURE = "filter.prefecture";
+    private static final String STATE_AREA = "filter.area";
+    private static final String STATE_AREA_SCALE = "filter.areaScale";
+    private static final String STATE_START_DATE = "filter.startDate";
+    private static final String STATE_END_DATE = "filter.endDate";
+    private static final String STATE_MAP_LATITUDE = "map.latitude";
+    private static final String STATE_MAP_LONGITUDE = "map.longitude";
+    private static final String STATE_MAP_ZOOM = "map.zoom";
 
     @FXML private TabPane tabPane;
     @FXML private TableView<Earthquake> earthquakeTable;
-    @FXML private TableColumn<Earthquake, String> timeColumn;
-    @FXML private TableColumn<Earthquake, String> locationColumn;
-    @FXML private TableColumn<Earthquake, String> magnitudeColumn;
-    @FXML private TableColumn<Earthquake, String> depthColumn;
-    @FXML private TableColumn<Earthquake, String> intensityColumn;
+    @FXML private TableColumn<Earthquake, Void> timeColumn;
+    @FXML private TableColumn<Earthquake, Void> locationColumn;
+    @FXML private TableColumn<Earthquake, Void> magnitudeColumn;
+    @FXML private TableColumn<Earthquake, Void> depthColumn;
+    @FXML private TableColumn<Earthquake, Void> intensityColumn;
+    @FXML private Tab historyTab;
+    @FXML private Label historyLabel;
+    @FXML private TableView<Integer> historyTable;
+    @FXML private TableColumn<Integer, Void> historyTimeColumn;
+    @FXML private TableColumn<Integer, Void> historyLocationColumn;
+    @FXML private TableColumn<Integer, Void> historyMagnitudeColumn;
+    @FXML private TableColumn<Integer, Void> historyDepthColumn;
+    @FXML private TableColumn<Integer, Void> historyIntensityColumn;
     @FXML private Label statusLabel;
     @FXML private Slider magnitudeSlider;
     @FXML private ComboBox<String> prefectureComboBox;
+    @FXML private TextField areaField;
+    @FXML private ComboBox<String> areaScaleComboBox;
     @FXML private DatePicker startDatePicker;
     @FXML private DatePicker endDatePicker;
     @FXML private Button applyFilterButton;
@@ -45,10 +107,14 @@ public class MainController {
     @FXML private WebView detailWebView;
     
     private EarthquakeService earthquakeService;
-    private ObservableList<Earthquake> earthquakes = FXCollections.observableArrayList();
+    private RingBufferObservableList<Earthquake> earthquakes = new RingBufferObservableList<>(
+        LIVE_CAPACITY, LIVE_MAX_AGE_MILLIS, earthquake -> earthquake.getEpochSecond() * 1000);
+    private ColumnarEarthquakeList historyRows;
     private JXMapViewer mapViewer;
-    private Set<Waypoint> waypoints = new HashSet<>();
-    private WaypointPainter<Waypoint> waypointPainter = new WaypointPainter<>();
+    private EarthquakeWaypointLayer waypointLayer;
+    private CoalescingDispatcher<Earthquake> updateDispatcher;
+    private Timeline evictionTimer;
+    private final Consumer<Earthquake> earthquakeListener = this::handleEarthquakeUpdate;
     
     /**
      * Initialize the controller with the earthquake service.
@@ -56,21 +122,48 @@ public class MainController {
      * @param earthquakeService The earthquake service to use
      */
     public void initialize(EarthquakeService earthquakeService) {
+        initialize(earthquakeService, null);
+    }
+    
+    /**
+     * Initialize the controller with the earthquake service and show a snapshot from the
+     * last run until the network catches up.
+     * 
+     * @param earthquakeService The earthquake service to use
+     * @param snapshot The snapshot from {@link EarthquakeService#restoreSnapshot}, or null
+     */
+    public void initialize(EarthquakeService earthquakeService, EarthquakeSnapshot snapshot) {
         this.earthquakeService = earthquakeService;
         
-        // Set up the earthquake table
-        earthquakeTable.setItems(earthquakes);
+        // Set up the earthquake table; sorting happens in a view so the live list keeps its order
+        SortedList<Earthquake> sortedEarthquakes = new SortedList<>(earthquakes);
+        earthquakeTable.setItems(sortedEarthquakes);
+        earthquakeTable.setSortPolicy(table -> {
+            sortedEarthquakes.setComparator(liveComparator(table.getSortOrder()));
+            return true;
+        });
         
-        timeColumn.setCellValueFactory(cellData -> 
-            cellData.getValue().getTimeProperty());
-        locationColumn.setCellValueFactory(cellData -> 
-            cellData.getValue().getLocationProperty());
-        magnitudeColumn.setCellValueFactory(cellData -> 
-            cellData.getValue().getMagnitudeProperty());
-        depthColumn.setCellValueFactory(cellData -> 
-            cellData.getValue().getDepthProperty());
-        intensityColumn.setCellValueFactory(cellData -> 
-            cellData.getValue().getIntensityProperty());
+        // Events evicted from the live list leave the map and are kept in the local history
+        earthquakes.setSpillHandler(evicted -> {
+            waypointLayer.removeAll(evicted);
+            earthquakeService.archiveEarthquakes(evicted);
+        });
+        if (LIVE_MAX_AGE_MILLIS > 0) {
+            // Adding events only evicts on arrival, so a quiet feed needs a timer to age out
+            evictionTimer = new Timeline(new KeyFrame(EVICTION_INTERVAL, event -> earthquakes.evictExpired()));
+            evictionTimer.setCycleCount(Animation.INDEFINITE);
+            evictionTimer.play();
+        }
+        
+        // Cells format only the rows that are actually rendered, and sort on the numbers
+        bindLiveColumn(timeColumn, EarthquakeColumn.TIME);
+        bindLiveColumn(locationColumn, EarthquakeColumn.LOCATION);
+        bindLiveColumn(magnitudeColumn, EarthquakeColumn.MAGNITUDE);
+        bindLiveColumn(depthColumn, EarthquakeColumn.DEPTH);
+        bindLiveColumn(intensityColumn, EarthquakeColumn.INTENSITY);
+        
+        // Set up the history table over the local store's columns
+        initializeHistoryTable();
         
         // Set up the map viewer
         initializeMapViewer();
@@ -85,14 +178,95 @@ public class MainController {
         earthquakeTable.getSelectionModel().selectedItemProperty().addListener(
             (observable, oldValue, newValue) -> showEarthquakeDetails(newValue));
         
-        // Register for earthquake updates
-        earthquakeService.addEarthquakeListener(this::handleEarthquakeUpdate);
+        // Register for earthquake updates, batched so bursts reach the FX thread once per pulse
+        updateDispatcher = new CoalescingDispatcher<>(this::applyEarthquakeBatch, Platform::runLater);
+        registerDispatcherMetrics();
+        earthquakeService.addEarthquakeListener(earthquakeListener);
         
-        // Load initial earthquake data
-        loadInitialEarthquakeData();
+        // Show the last run's view at once, then load initial earthquake data
+        boolean restored = restoreSnapshot(snapshot);
+        if (historyRows != null) {
+            // The history table starts out with the restored filters applied
+            loadHistoryRows(snapshot != null ? currentQuery() : new EarthquakeQuery(), false);
+        }
+        loadInitialEarthquakeData(restored);
         
         // Update status
-        updateStatus("Ready");
+        updateStatus(restored ? "Restored " + earthquakes.size() + " earthquakes" : "Ready");
+    }
+    
+    private void bindLiveColumn(TableColumn<Earthquake, Void> column, EarthquakeColumn key) {
+        column.setUserData(key);
+        column.setCellFactory(c -> new FormattedCell<Earthquake>(key::format));
+    }
+    
+    /**
+     * @return The order of the table's sort columns, or null for the live order
+     */
+    private static Comparator<Earthquake> liveComparator(List<TableColumn<Earthquake, ?>> sortOrder) {
+        Comparator<Earthquake> comparator = null;
+        for (TableColumn<Earthquake, ?> column : sortOrder) {
+            Comparator<Earthquake> next = ((EarthquakeColumn) column.getUserData()).comparator();
+            if (column.getSortType() == TableColumn.SortType.DESCENDING) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+    
+    private void initializeHistoryTable() {
+        EarthquakeRepository repository = earthquakeService.getRepository();
+        if (repository == null) {
+            historyTable.setPlaceholder(new Label("No local history"));
+            return;
+        }
+        
+        // Items are row numbers; cells and sorting read the store's columns
+        historyRows = new ColumnarEarthquakeList(repository);
+        historyTable.setItems(historyRows);
+        bindHistoryColumn(historyTimeColumn, EarthquakeColumn.TIME, repository);
+        bindHistoryColumn(historyLocationColumn, EarthquakeColumn.LOCATION, repository);
+        bindHistoryColumn(historyMagnitudeColumn, EarthquakeColumn.MAGNITUDE, repository);
+        bindHistoryColumn(historyDepthColumn, EarthquakeColumn.DEPTH, repository);
+        bindHistoryColumn(historyIntensityColumn, EarthquakeColumn.INTENSITY, repository);
+        historyTable.setSortPolicy(table -> {
+            List<Pair<EarthquakeColumn, Boolean>> keys = new ArrayList<>();
+            for (TableColumn<Integer, ?> column : table.getSortOrder()) {
+                keys.add(new Pair<>((EarthquakeColumn) column.getUserData(),
+                        column.getSortType() == TableColumn.SortType.ASCENDING));
+            }
+            historyRows.sort(keys);
+            return true;
+        });
+        historyTable.getSelectionModel().selectedItemProperty().addListener(
+            (observable, oldValue, newValue) -> showEarthquakeDetails(newValue == null ? null : repository.get(newValue)));
+    }
+    
+    private void bindHistoryColumn(TableColumn<Integer, Void> column, EarthquakeColumn key,
+                                   EarthquakeRepository repository) {
+        column.setUserData(key);
+        column.setCellFactory(c -> new FormattedCell<Integer>((row, out) -> key.format(repository, row, out)));
+    }
+    
+    private void loadHistoryRows(EarthquakeQuery query, boolean show) {
+        earthquakeService.getFilteredRows(query)
+            .thenAccept(rows -> Platform.runLater(() -> {
+                historyRows.setRows(rows);
+                if (!historyTable.getSortOrder().isEmpty()) {
+                    historyTable.sort();
+                }
+                historyLabel.setText(rows.length + " stored earthquakes");
+                if (show) {
+                    tabPane.getSelectionModel().select(historyTab);
+                    updateStatus("Found " + rows.length + " earthquakes");
+                }
+            }))
+            .exceptionally(ex -> {
+                logger.error("Failed to load earthquake history", ex);
+                Platform.runLater(() -> updateStatus("Failed to load earthquake history: " + ex.getMessage()));
+                return null;
+            });
     }
     
     private void initializeMapViewer() {
@@ -113,9 +287,8 @@ public class MainController {
         mapViewer.setZoom(7);
         mapViewer.setAddressLocation(japan);
         
-        // Set up the waypoint painter
-        waypointPainter.setWaypoints(waypoints);
-        mapViewer.setOverlayPainter(waypointPainter);
+        // Set up the waypoint layer
+        waypointLayer = new EarthquakeWaypointLayer(mapViewer);
         
         // Add the map viewer to the UI
         // Note: This would be added to a specific pane in the FXML
@@ -187,13 +360,40 @@ public class MainController {
         magnitudeSlider.setMinorTickCount(0);
         magnitudeSlider.setSnapToTicks(true);
         
+        // Set up the area intensity choices
+        areaScaleComboBox.setItems(FXCollections.observableArrayList(AREA_SCALE_CHOICES));
+        areaScaleComboBox.getSelectionModel().selectFirst();
+        
         // Set up the filter buttons
         applyFilterButton.setOnAction(event -> applyFilters());
         resetFilterButton.setOnAction(event -> resetFilters());
     }
     
-    private void loadInitialEarthquakeData() {
-        earthquakeService.getRecentEarthquakes(20)
+    private void loadInitialEarthquakeData(boolean restored) {
+        if (restored) {
+            // The snapshot already fills the view; only add what it is missing
+            earthquakeService.getRecentEarthquakes(20)
+                .thenAccept(this::mergeEarthquakeList)
+                .exceptionally(ex -> {
+                    logger.error("Failed to catch up after restoring the snapshot", ex);
+                    Platform.runLater(() -> updateStatus("Failed to load earthquake data: " + ex.getMessage()));
+                    return null;
+                });
+            return;
+        }
+        
+        // Show what is already stored locally, then refresh from the network
+        earthquakeService.getStoredEarthquakes(20)
+            .thenAccept(stored -> {
+                if (!stored.isEmpty()) {
+                    updateEarthquakeList(stored);
+                }
+            })
+            .exceptionally(ex -> {
+                logger.warn("Failed to load stored earthquake data", ex);
+                return null;
+            })
+            .thenCompose(ignored -> earthquakeService.getRecentEarthquakes(20))
             .thenAccept(this::updateEarthquakeList)
             .exceptionally(ex -> {
                 logger.error("Failed to load initial earthquake data", ex);
@@ -202,45 +402,211 @@ public class MainController {
             });
     }
     
+    /**
+     * Capture the live list and the view state for a snapshot. Safe to call from any
+     * thread; off the FX thread it waits for the FX thread to take the copy.
+     * 
+     * @return The snapshot, or null if the FX thread did not respond in time
+     */
+    public EarthquakeSnapshot captureSnapshot() {
+        if (!Platform.isFxApplicationThread()) {
+            FutureTask<EarthquakeSnapshot> capture = new FutureTask<>(this::captureSnapshot);
+            Platform.runLater(capture);
+            try {
+                return capture.get(SNAPSHOT_CAPTURE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | TimeoutException e) {
+                logger.warn("Failed to capture the view for a snapshot", e);
+                return null;
+            }
+        }
+        
+        Map<String, String> state = new LinkedHashMap<>();
+        state.put(STATE_TAB, Integer.toString(tabPane.getSelectionModel().getSelectedIndex()));
+        Earthquake selected = earthquakeTable.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            state.put(STATE_SELECTED, selected.getId());
+        }
+        state.put(STATE_MIN_MAGNITUDE, Double.toString(magnitudeSlider.getValue()));
+        putIfPresent(state, STATE_PREFECTURE, prefectureComboBox.getValue());
+        putIfPresent(state, STATE_AREA, areaField.getText());
+        putIfPresent(state, STATE_AREA_SCALE, areaScaleComboBox.getValue());
+        if (startDatePicker.getValue() != null) {
+            state.put(STATE_START_DATE, startDatePicker.getValue().toString());
+        }
+        if (endDatePicker.getValue() != null) {
+            state.put(STATE_END_DATE, endDatePicker.getValue().toString());
+        }
+        GeoPosition center = mapViewer.getCenterPosition();
+        state.put(STATE_MAP_LATITUDE, Double.toString(center.getLatitude()));
+        state.put(STATE_MAP_LONGITUDE, Double.toString(center.getLongitude()));
+        state.put(STATE_MAP_ZOOM, Integer.toString(mapViewer.getZoom()));
+        return new EarthquakeSnapshot(new ArrayList<>(earthquakes), state);
+    }
+    
+    private static void putIfPresent(Map<String, String> state, String key, String value) {
+        if (value != null && !value.isEmpty()) {
+            state.put(key, value);
+        }
+    }
+    
+    /**
+     * Put the last run's events and view state back.
+     * 
+     * @return Whether the snapshot had events to show
+     */
+    private boolean restoreSnapshot(EarthquakeSnapshot snapshot) {
+        if (snapshot == null) {
+            return false;
+        }
+        Map<String, String> state = snapshot.getState();
+        try {
+            String value = state.get(STATE_MIN_MAGNITUDE);
+            if (value != null) {
+                magnitudeSlider.setValue(Double.parseDouble(value));
+            }
+            value = state.get(STATE_PREFECTURE);
+            if (value != null && prefectureComboBox.getItems().contains(value)) {
+                prefectureComboBox.setValue(value);
+            }
+            areaField.setText(state.getOrDefault(STATE_AREA, ""));
+            value = state.get(STATE_AREA_SCALE);
+            if (value != null && areaScaleComboBox.getItems().contains(value)) {
+                areaScaleComboBox.setValue(value);
+            }
+            value = state.get(STATE_START_DATE);
+            startDatePicker.setValue(value != null ? LocalDate.parse(value) : null);
+            value = state.get(STATE_END_DATE);
+            endDatePicker.setValue(value != null ? LocalDate.parse(value) : null);
+            String latitude = state.get(STATE_MAP_LATITUDE);
+            String longitude = state.get(STATE_MAP_LONGITUDE);
+            if (latitude != null && longitude != null) {
+                mapViewer.setAddressLocation(new GeoPosition(Double.parseDouble(latitude), Double.parseDouble(longitude)));
+            }
+            value = state.get(STATE_MAP_ZOOM);
+            if (value != null) {
+                mapViewer.setZoom(Integer.parseInt(value));
+            }
+            value = state.get(STATE_TAB);
+            if (value != null) {
+                tabPane.getSelectionModel().select(Integer.parseInt(value));
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            logger.warn("Ignoring unreadable view state in snapshot", e);
+        }
+        
+        List<Earthquake> restored = snapshot.getEarthquakes();
+        if (restored.isEmpty()) {
+            return false;
+        }
+        earthquakes.setAll(restored);
+        updateMap();
+        String selectedId = state.get(STATE_SELECTED);
+        for (Earthquake earthquake : earthquakeTable.getItems()) {
+            if (earthquake.getId().equals(selectedId)) {
+                earthquakeTable.getSelectionModel().select(earthquake);
+                earthquakeTable.scrollTo(earthquake);
+                break;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Stop delivering live updates to the view.
+     */
+    public void shutdown() {
+        if (earthquakeService != null) {
+            earthquakeService.removeEarthquakeListener(earthquakeListener);
+        }
+        if (updateDispatcher != null) {
+            updateDispatcher.shutdown();
+        }
+        if (evictionTimer != null) {
+            evictionTimer.stop();
+        }
+    }
+    
+    private void registerDispatcherMetrics() {
+        MetricsRegistry metrics = earthquakeService.getMetrics();
+        metrics.counter("p2pquake_dropped_events_total", "Events discarded from full subscriber buffers",
+                updateDispatcher::getDroppedCount, "channel", "earthquake", "stage", "ui");
+        metrics.gauge("earthquake_ui_queue_depth", "Live events waiting for the FX thread",
+                updateDispatcher::getQueueDepth);
+        metrics.counter("earthquake_ui_batches_total", "Batches applied on the FX thread",
+                updateDispatcher::getBatchCount);
+        metrics.gauge("earthquake_ui_max_batch_size", "Largest batch applied on the FX thread",
+                updateDispatcher::getMaxBatchSize);
+    }
+    
     private void handleEarthquakeUpdate(Earthquake earthquake) {
-        Platform.runLater(() -> {
-            // Add the earthquake to the list
-            earthquakes.add(0, earthquake);
-            
-            // Update the map
-            updateMap();
-            
-            // Show notification
+        // Called on a delivery thread; the dispatcher hands batches to the FX thread
+        earthquakeService.getAlertLatency().dispatched(earthquake.getId());
+        updateDispatcher.publish(earthquake);
+    }
+    
+    private void applyEarthquakeBatch(List<Earthquake> batch) {
+        // The batch is oldest first and the table is newest first
+        List<Earthquake> newestFirst = new ArrayList<>(batch);
+        Collections.reverse(newestFirst);
+        earthquakes.addAll(0, newestFirst);
+        
+        // One repaint for all new markers
+        waypointLayer.addAll(batch);
+        
+        // Show notifications
+        AlertLatency alertLatency = earthquakeService.getAlertLatency();
+        for (Earthquake earthquake : batch) {
             showNotification(earthquake);
-            
-            // Update status
-            updateStatus("Received new earthquake data: " + earthquake.getLocation() + " (M" + earthquake.getMagnitude() + ")");
-        });
+            alertLatency.rendered(earthquake.getId());
+        }
+        
+        // Update status once, for the newest event
+        Earthquake latest = newestFirst.get(0);
+        String message = "Received new earthquake data: " + latest.getLocation() + " (M" + latest.getMagnitude() + ")";
+        if (batch.size() > 1) {
+            message += " and " + (batch.size() - 1) + " more";
+        }
+        if (updateDispatcher.getDroppedCount() > 0) {
+            message += " [" + updateDispatcher.getDroppedCount() + " dropped]";
+        }
+        updateStatus(message);
     }
     
     private void updateEarthquakeList(List<Earthquake> earthquakeList) {
         Platform.runLater(() -> {
-            earthquakes.clear();
-            earthquakes.addAll(earthquakeList);
+            earthquakes.setAll(earthquakeList);
             updateMap();
             updateStatus("Loaded " + earthquakeList.size() + " earthquakes");
         });
     }
     
+    private void mergeEarthquakeList(List<Earthquake> recent) {
+        Platform.runLater(() -> {
+            Set<String> shown = new HashSet<>();
+            for (Earthquake earthquake : earthquakes) {
+                shown.add(earthquake.getId());
+            }
+            List<Earthquake> missed = new ArrayList<>();
+            for (Earthquake earthquake : recent) {
+                if (!shown.contains(earthquake.getId())) {
+                    missed.add(earthquake);
+                }
+            }
+            if (!missed.isEmpty()) {
+                // Both lists are newest first
+                earthquakes.addAll(0, missed);
+                waypointLayer.addAll(missed);
+            }
+            updateStatus("Caught up with " + missed.size() + " earthquakes since the last run");
+        });
+    }
+    
     private void updateMap() {
-        // Clear existing waypoints
-        waypoints.clear();
-        
-        // Add waypoints for each earthquake
-        for (Earthquake earthquake : earthquakes) {
-            GeoPosition position = new GeoPosition(earthquake.getLatitude(), earthquake.getLongitude());
-            Waypoint waypoint = new DefaultWaypoint(position);
-            waypoints.add(waypoint);
-        }
-        
-        // Update the waypoint painter
-        waypointPainter.setWaypoints(waypoints);
-        mapViewer.repaint();
+        // Only markers that were added or removed are touched and repainted
+        waypointLayer.setAll(earthquakes);
     }
     
     private void showEarthquakeDetails(Earthquake earthquake) {
@@ -252,17 +618,57 @@ public class MainController {
         StringBuilder html = new StringBuilder();
         html.append("<html><body style='font-family: Arial, sans-serif;'>");
         html.append("<h2>").append(earthquake.getLocation()).append("</h2>");
-        html.append("<p><strong>Time:</strong> ").append(earthquake.getTime()).append("</p>");
+        html.append("<p><strong>Time:</strong> ").append(EarthquakeViewAdapter.formatTime(earthquake)).append("</p>");
         html.append("<p><strong>Magnitude:</strong> ").append(earthquake.getMagnitude()).append("</p>");
         html.append("<p><strong>Depth:</strong> ").append(earthquake.getDepth()).append(" km</p>");
         html.append("<p><strong>Maximum Intensity:</strong> ").append(earthquake.getIntensity()).append("</p>");
         
-        // Add affected areas if available
-        if (earthquake.getAffectedAreas() != null && !earthquake.getAffectedAreas().isEmpty()) {
+        // Add affected areas if available, strongest intensity first
+        ObservationPoints points = earthquake.getObservationPoints();
+        if (!points.isEmpty()) {
             html.append("<h3>Affected Areas:</h3>");
             html.append("<ul>");
-            for (String area : earthquake.getAffectedAreas()) {
-                html.append("<li>").append(area).append("</li>");
+            int previous = Integer.MAX_VALUE;
+            while (true) {
+                int scale = ObservationPoints.NOT_OBSERVED;
+                for (int i = 0; i < points.size(); i++) {
+                    if (points.scaleAt(i) < previous && points.scaleAt(i) > scale) {
+                        scale = points.scaleAt(i);
+                    }
+                }
+                if (scale == ObservationPoints.NOT_OBSERVED) {
+                    break;
+                }
+                html.append("<li><strong>").append(SeismicIntensity.toLabel(scale)).append(":</strong> ");
+                String separator = "";
+                for (int i = 0; i < points.size(); i++) {
+                    if (points.scaleAt(i) == scale) {
+                        html.append(separator).append(points.areaNameAt(i));
+                        separator = ", ";
+                    }
+                }
+                html.append("</li>");
+                previous = scale;
+            }
+            html.append("</ul>");
+        }
+        
+        // The aftershock sequence of the event, then the other busiest ones
+        AftershockSequence sequence = earthquakeService.getSequenceOf(earthquake.getId());
+        if (sequence != null && sequence.getCount() > 1) {
+            html.append("<h3>Aftershock Sequence:</h3>");
+            html.append("<p>");
+            appendSequence(sequence, html);
+            html.append("</p>");
+        }
+        List<AftershockSequence> sequences = earthquakeService.getActiveSequences(2);
+        if (!sequences.isEmpty()) {
+            html.append("<h3>Active Sequences:</h3>");
+            html.append("<ul>");
+            for (AftershockSequence active : sequences.subList(0, Math.min(SEQUENCES_SHOWN, sequences.size()))) {
+                html.append("<li>");
+                appendSequence(active, html);
+                html.append("</li>");
             }
             html.append("</ul>");
         }
@@ -272,20 +678,29 @@ public class MainController {
         detailWebView.getEngine().loadContent(html.toString());
     }
     
+    private static void appendSequence(AftershockSequence sequence, StringBuilder html) {
+        Earthquake mainshock = sequence.getMainshock();
+        html.append(sequence.getCount()).append(" events, largest M").append(mainshock.getMagnitude())
+            .append(' ').append(mainshock.getLocation())
+            .append(" (").append(EarthquakeViewAdapter.formatTime(mainshock)).append(')')
+            .append(", max intensity ").append(SeismicIntensity.toLabel(sequence.getMaxScale()));
+    }
+    
     private void showNotification(Earthquake earthquake) {
         // Create and show a notification
         // This would be implemented using a custom notification system or JavaFX Alert
     }
     
     private void applyFilters() {
-        double minMagnitude = magnitudeSlider.getValue();
-        String prefecture = prefectureComboBox.getValue();
-        LocalDateTime startDate = startDatePicker.getValue() != null ? 
-            startDatePicker.getValue().atStartOfDay() : null;
-        LocalDateTime endDate = endDatePicker.getValue() != null ? 
-            endDatePicker.getValue().atTime(23, 59, 59) : null;
+        EarthquakeQuery query = currentQuery();
+        
+        // With a local store, results of any size go to the history table
+        if (historyRows != null) {
+            loadHistoryRows(query, true);
+            return;
+        }
         
-        earthquakeService.getFilteredEarthquakes(minMagnitude, prefecture, startDate, endDate)
+        earthquakeService.getFilteredEarthquakes(query)
             .thenAccept(this::updateEarthquakeList)
             .exceptionally(ex -> {
                 logger.error("Failed to apply filters", ex);
@@ -294,13 +709,40 @@ public class MainController {
             });
     }
     
+    /**
+     * @return The query the filter controls describe
+     */
+    private EarthquakeQuery currentQuery() {
+        double minMagnitude = magnitudeSlider.getValue();
+        String prefecture = prefectureComboBox.getValue();
+        LocalDateTime startDate = startDatePicker.getValue() != null ? 
+            startDatePicker.getValue().atStartOfDay() : null;
+        LocalDateTime endDate = endDatePicker.getValue() != null ? 
+            endDatePicker.getValue().atTime(23, 59, 59) : null;
+        
+        String area = areaField.getText() != null && !areaField.getText().isBlank()
+            ? areaField.getText().trim() : null;
+        String areaScale = areaScaleComboBox.getValue();
+        return new EarthquakeQuery()
+            .minMagnitude(minMagnitude)
+            .prefecture(Prefecture.fromName(prefecture))
+            .between(startDate, endDate)
+            .observedIn(area, areaScale == null || areaScale.equals(AREA_SCALE_CHOICES.get(0))
+                ? SeismicIntensity.UNKNOWN : SeismicIntensity.fromLabel(areaScale));
+    }
+    
     private void resetFilters() {
         magnitudeSlider.setValue(0);
         prefectureComboBox.getSelectionModel().selectFirst();
+        areaField.clear();
+        areaScaleComboBox.getSelectionModel().selectFirst();
         startDatePicker.setValue(null);
         endDatePicker.setValue(null);
         
-        loadInitialEarthquakeData();
+        if (historyRows != null) {
+            loadHistoryRows(new EarthquakeQuery(), false);
+        }
+        loadInitialEarthquakeData(false);
     }
     
     private void updateStatus(String message) {
@@ -0,0 +1,298 @@
+package com.earthquakeviewer.ui;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Fixed-capacity observable list for a live feed, newest element first.
+ * Elements are kept in a circular array, so prepending is O(1) and never shifts.
+ * When the list is full the oldest elements at the end are evicted; elements older
+ * than the optional maximum age are evicted as well, wherever they are in the list, since
+ * backfilled events may be inserted at the front. Evicted elements can be handed to a
+ * spill handler, e.g. to archive them in persistent history.
+ *
+ * Like other observable lists backing controls, it must only be used from the FX thread.
+ *
+ * @param <E> The element type
+ */
+public class RingBufferObservableList<E> extends ObservableListBase<E> {
+    private final Object[] elements;
+    private final ToLongFunction<? super E> timestampMillis;
+    private final long maxAgeMillis;
+    private Consumer<List<E>> spillHandler;
+    private int head;
+    private int size;
+    // No retained element is older than this; it may be older than the actual oldest after
+    // count evictions, which only costs an unnecessary scan
+    private long oldestMillis = Long.MAX_VALUE;
+
+    /**
+     * Create a list that only evicts by count.
+     *
+     * @param capacity The maximum number of elements retained
+     */
+    public RingBufferObservableList(int capacity) {
+        this(capacity, 0, element -> Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a list that evicts by count and by age.
+     *
+     * @param capacity The maximum number of elements retained
+     * @param maxAgeMillis The maximum element age, or 0 for no age limit
+     * @param timestampMillis Extracts an element's timestamp in epoch milliseconds
+     */
+    public RingBufferObservableList(int capacity, long maxAgeMillis, ToLongFunction<? super E> timestampMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.elements = new Object[capacity];
+        this.maxAgeMillis = maxAgeMillis;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /**
+     * @param spillHandler Receives evicted elements, oldest last, or null to discard them
+     */
+    public void setSpillHandler(Consumer<List<E>> spillHandler) {
+        this.spillHandler = spillHandler;
+    }
+
+    /**
+     * @return The maximum number of elements retained
+     */
+    public int getCapacity() {
+        return elements.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (E) elements[slot(index)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Insert at the front (newest) or back (oldest) of the list. Inserting at the back of
+     * a full list evicts the element immediately.
+     */
+    @Override
+    public void add(int index, E element) {
+        addAll(index, Collections.singletonList(element));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        return addAll(size, collection);
+    }
+
+    /**
+     * Insert elements at the front (newest) or back (oldest) of the list, evicting from
+     * the back as needed. The collection is in list order, newest first.
+     */
+    @Override
+    public boolean addAll(int index, Collection<? extends E> collection) {
+        if (index != 0 && index != size) {
+            throw new UnsupportedOperationException("Only the front or back of a ring buffer can be added to");
+        }
+        if (collection.isEmpty()) {
+            return false;
+        }
+
+        List<E> evicted = new ArrayList<>();
+        beginChange();
+        try {
+            if (index == 0) {
+                prepend(collection, evicted);
+            } else {
+                append(collection, evicted);
+            }
+            evictExpired(System.currentTimeMillis(), evicted);
+        } finally {
+            endChange();
+        }
+        spill(evicted);
+        return true;
+    }
+
+    /**
+     * Replace the contents, keeping at most the first capacity elements that are not older
+     * than the maximum age. The others are handed to the spill handler.
+     */
+    @Override
+    public boolean setAll(Collection<? extends E> collection) {
+        List<E> evicted = new ArrayList<>();
+        beginChange();
+        try {
+            List<E> removed = new ArrayList<>(this);
+            Collections.fill(Arrays.asList(elements), null);
+            head = 0;
+            size = 0;
+            oldestMillis = Long.MAX_VALUE;
+            if (!removed.isEmpty()) {
+                nextRemove(0, removed);
+            }
+            long now = System.currentTimeMillis();
+            for (E element : collection) {
+                if (size == elements.length || expired(element, now)) {
+                    evicted.add(element);
+                } else {
+                    elements[size++] = element;
+                    retained(element);
+                }
+            }
+            if (size > 0) {
+                nextAdd(0, size);
+            }
+        } finally {
+            endChange();
+        }
+        spill(evicted);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        setAll(Collections.emptyList());
+    }
+
+    /**
+     * Evict elements older than the maximum age from anywhere in the list.
+     */
+    public void evictExpired() {
+        List<E> evicted = new ArrayList<>();
+        beginChange();
+        try {
+            evictExpired(System.currentTimeMillis(), evicted);
+        } finally {
+            endChange();
+        }
+        spill(evicted);
+    }
+
+    private void prepend(Collection<? extends E> collection, List<E> evicted) {
+        // Only the first capacity elements of the batch can be retained
+        int count = Math.min(collection.size(), elements.length);
+        int overflow = size + count - elements.length;
+        if (overflow > 0) {
+            evictLast(overflow, evicted);
+        }
+
+        List<? extends E> batch = collection instanceof List
+                ? (List<? extends E>) collection : new ArrayList<>(collection);
+        // Write the batch back to front so the first element ends up at index 0
+        for (int i = count - 1; i >= 0; i--) {
+            head = (head - 1 + elements.length) % elements.length;
+            elements[head] = batch.get(i);
+            retained(batch.get(i));
+        }
+        size += count;
+        nextAdd(0, count);
+
+        for (int i = count; i < batch.size(); i++) {
+            evicted.add(batch.get(i));
+        }
+    }
+
+    private void append(Collection<? extends E> collection, List<E> evicted) {
+        int from = size;
+        for (E element : collection) {
+            if (size < elements.length) {
+                elements[slot(size++)] = element;
+                retained(element);
+            } else {
+                evicted.add(element);
+            }
+        }
+        if (size > from) {
+            nextAdd(from, size);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evictLast(int count, List<E> evicted) {
+        List<E> removed = new ArrayList<>(count);
+        for (int i = size - count; i < size; i++) {
+            int slot = slot(i);
+            removed.add((E) elements[slot]);
+            elements[slot] = null;
+        }
+        size -= count;
+        nextRemove(size, removed);
+        evicted.addAll(removed);
+    }
+
+    /**
+     * Remove every expired element, moving the fresh ones up to keep them in order.
+     * Skipped without a scan while even the oldest element is fresh.
+     */
+    @SuppressWarnings("unchecked")
+    private void evictExpired(long nowMillis, List<E> evicted) {
+        if (maxAgeMillis <= 0 || size == 0 || nowMillis - oldestMillis <= maxAgeMillis) {
+            return;
+        }
+        int kept = 0;
+        long oldestKept = Long.MAX_VALUE;
+        List<E> run = null;
+        for (int i = 0; i < size; i++) {
+            E element = (E) elements[slot(i)];
+            if (expired(element, nowMillis)) {
+                if (run == null) {
+                    run = new ArrayList<>();
+                }
+                run.add(element);
+                evicted.add(element);
+            } else {
+                // Removals are reported at their index once the earlier runs are gone
+                if (run != null) {
+                    nextRemove(kept, run);
+                    run = null;
+                }
+                elements[slot(kept++)] = element;
+                oldestKept = Math.min(oldestKept, timestampMillis.applyAsLong(element));
+            }
+        }
+        if (run != null) {
+            nextRemove(kept, run);
+        }
+        for (int i = kept; i < size; i++) {
+            elements[slot(i)] = null;
+        }
+        size = kept;
+        oldestMillis = oldestKept;
+    }
+
+    private boolean expired(E element, long nowMillis) {
+        return maxAgeMillis > 0 && nowMillis - timestampMillis.applyAsLong(element) > maxAgeMillis;
+    }
+
+    private void retained(E element) {
+        if (maxAgeMillis > 0) {
+            oldestMillis = Math.min(oldestMillis, timestampMillis.applyAsLong(element));
+        }
+    }
+
+    private void spill(List<E> evicted) {
+        if (!evicted.isEmpty() && spillHandler != null) {
+            spillHandler.accept(evicted);
+        }
+    }
+
+    private int slot(int index) {
+        return (head + index) % elements.length;
+    }
+}
@@ -4,18 +4,26 @@ module com.earthquakeviewer {
     requires javafx.web;
     requires com.fasterxml.jackson.databind;
     requires okhttp3;
+    requires okio;
     requires org.java_websocket;
     requires org.jxmapviewer2;
     requires org.slf4j;
     requires ch.qos.logback.classic;
     requires java.desktop;
+    requires java.management;
+    requires jdk.httpserver;
     
     opens com.earthquakeviewer to javafx.fxml;
     opens com.earthquakeviewer.ui to javafx.fxml;
-    opens com.earthquakeviewer.model to javafx.base;
     
     exports com.earthquakeviewer;
     exports com.earthquakeviewer.ui;
+    exports com.earthquakeviewer.analytics;
+    exports com.earthquakeviewer.headless;
     exports com.earthquakeviewer.model;
+    exports com.earthquakeviewer.metrics;
+    exports com.earthquakeviewer.replay;
+    exports com.earthquakeviewer.repository;
+    exports com.earthquakeviewer.query;
     exports com.earthquakeviewer.service;
 }
\ No newline at end of file
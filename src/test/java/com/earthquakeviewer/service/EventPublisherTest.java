@@ -0,0 +1,92 @@
+package com.earthquakeviewer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventPublisherTest {
+    private final ServiceExecutors executors = new ServiceExecutors("bounded", 1, 2, 1);
+
+    @AfterEach
+    void tearDown() {
+        executors.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void manySubscribersShareTheBoundedDeliveryPool() throws Exception {
+        int subscribers = 100;
+        int items = 1000;
+        EventPublisher<Integer> publisher = new EventPublisher<>(executors.delivery(),
+                EventPublisher.OverflowPolicy.BLOCK, 16);
+        AtomicIntegerArray received = new AtomicIntegerArray(subscribers);
+        CountDownLatch done = new CountDownLatch(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            int subscriber = i;
+            publisher.subscribe(item -> {
+                if (received.incrementAndGet(subscriber) == items) {
+                    done.countDown();
+                }
+            }, EventPublisher.OverflowPolicy.BLOCK, 16);
+        }
+
+        for (int i = 0; i < items; i++) {
+            publisher.submit(i);
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS), "Not every subscriber received every item");
+        assertTrue(executors.getDeliveryPool().getPoolSize() <= 2);
+        assertEquals(0, publisher.getDroppedCount());
+    }
+
+    @Test
+    void busySubscriberDoesNotHoldUpTheOthers() throws Exception {
+        EventPublisher<Integer> publisher = new EventPublisher<>(executors.delivery(),
+                EventPublisher.OverflowPolicy.DROP_OLDEST, 1024);
+        CountDownLatch release = new CountDownLatch(1);
+        // Occupies one of the two delivery threads until released
+        publisher.subscribe(item -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, EventPublisher.OverflowPolicy.DROP_OLDEST, 1024);
+        // A fast subscriber with more items than one drain batch
+        AtomicInteger fast = new AtomicInteger();
+        CountDownLatch fastDone = new CountDownLatch(1);
+        publisher.subscribe(item -> {
+            if (fast.incrementAndGet() == 500) {
+                fastDone.countDown();
+            }
+        }, EventPublisher.OverflowPolicy.DROP_OLDEST, 1024);
+
+        for (int i = 0; i < 500; i++) {
+            publisher.submit(i);
+        }
+        try {
+            assertTrue(fastDone.await(10, TimeUnit.SECONDS), "Fast subscriber received " + fast.get());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void blockingSubscribersAreRefusedWhereNotAllowed() {
+        EventPublisher<Integer> publisher = new EventPublisher<>(executors.delivery(),
+                EventPublisher.OverflowPolicy.DROP_OLDEST, 16, false);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> publisher.subscribe(item -> { }, EventPublisher.OverflowPolicy.BLOCK, 16));
+        assertEquals(0, publisher.getSubscriberCount());
+        assertThrows(IllegalArgumentException.class, () -> new EventPublisher<Integer>(executors.delivery(),
+                EventPublisher.OverflowPolicy.BLOCK, 16, false));
+    }
+}
@@ -0,0 +1,78 @@
+package com.earthquakeviewer.service;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.query.EarthquakeQuery;
+import com.earthquakeviewer.repository.MappedEarthquakeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The same filter query answered from the local store and by the API must select the
+ * same events.
+ */
+class FilteredQueryConsistencyTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    @TempDir
+    Path storeDirectory;
+
+    private StubJmaServer stub;
+    private MappedEarthquakeRepository repository;
+    private EarthquakeService localService;
+    private EarthquakeService apiService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubJmaServer();
+        stub.addEvents(DAY, 3, 3.5);
+        // Intensity-only reports carry no magnitude
+        stub.addEvents(DAY, 2, -1);
+        stub.addEvents(DAY, 2, 5.0);
+        System.setProperty("earthquake.api.baseUrl", stub.getBaseUrl());
+        repository = new MappedEarthquakeRepository(storeDirectory);
+        localService = new EarthquakeService(repository);
+        apiService = new EarthquakeService();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        System.clearProperty("earthquake.api.baseUrl");
+        localService.shutdown();
+        apiService.shutdown();
+        repository.close();
+        stub.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0, 4.0})
+    void localStoreAndApiSelectTheSameEvents(double minMagnitude) throws Exception {
+        EarthquakeQuery query = new EarthquakeQuery()
+                .minMagnitude(minMagnitude)
+                .between(DAY.atStartOfDay(), DAY.atTime(23, 59, 59));
+
+        List<String> local = ids(localService.getFilteredEarthquakes(query).get(10, TimeUnit.SECONDS));
+        List<String> api = ids(apiService.getFilteredEarthquakes(query).get(10, TimeUnit.SECONDS));
+
+        assertEquals(api, local);
+        assertEquals(minMagnitude > 0 ? 2 : 7, local.size());
+    }
+
+    private static List<String> ids(List<Earthquake> earthquakes) {
+        List<String> ids = new ArrayList<>();
+        for (Earthquake earthquake : earthquakes) {
+            ids.add(earthquake.getId());
+        }
+        return ids;
+    }
+}
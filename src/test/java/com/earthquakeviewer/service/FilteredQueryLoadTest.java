@@ -0,0 +1,83 @@
+package com.earthquakeviewer.service;
+
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.query.EarthquakeQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Identical filter queries from many clients at once, without a local store, against a
+ * stub API that answers slowly: they must reach the API once.
+ */
+class FilteredQueryLoadTest {
+    private static final int CLIENTS = 64;
+
+    private StubJmaServer stub;
+    private EarthquakeService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubJmaServer();
+        stub.addEvents(LocalDate.of(2024, 1, 1), 30);
+        stub.delayAll(300);
+        System.setProperty("earthquake.api.baseUrl", stub.getBaseUrl());
+        service = new EarthquakeService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("earthquake.api.baseUrl");
+        service.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void identicalQueriesReachTheApiOnce() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            CountDownLatch ready = new CountDownLatch(CLIENTS);
+            List<Future<CompletableFuture<List<Earthquake>>>> requests = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                requests.add(clients.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    // A new but equal query per client, as each view builds its own
+                    return service.getFilteredEarthquakes(new EarthquakeQuery().minMagnitude(3.0));
+                }));
+            }
+            List<List<Earthquake>> results = new ArrayList<>();
+            for (Future<CompletableFuture<List<Earthquake>>> request : requests) {
+                results.add(request.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS));
+            }
+
+            assertEquals(1, stub.getRequests().size());
+            assertEquals(30, results.get(0).size());
+            for (List<Earthquake> result : results) {
+                assertSame(results.get(0), result);
+            }
+
+            // Served from the cache while it is fresh
+            service.getFilteredEarthquakes(new EarthquakeQuery().minMagnitude(3.0)).get(10, TimeUnit.SECONDS);
+            assertEquals(1, stub.getRequests().size());
+            // A different query is its own request
+            service.getFilteredEarthquakes(new EarthquakeQuery().minMagnitude(4.0)).get(10, TimeUnit.SECONDS);
+            assertEquals(2, stub.getRequests().size());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+}
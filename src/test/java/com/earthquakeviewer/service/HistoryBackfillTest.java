@@ -0,0 +1,167 @@
+package com.earthquakeviewer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs backfills through the service against a stub of the /jma/quake endpoint.
+ */
+class HistoryBackfillTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(2024, 1, 5);
+
+    @TempDir
+    Path tempDir;
+
+    private StubJmaServer stub;
+    private EarthquakeService service;
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubJmaServer();
+        System.setProperty("earthquake.api.baseUrl", stub.getBaseUrl());
+        service = new EarthquakeService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("earthquake.api.baseUrl");
+        service.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void eventsArriveInWindowOrderWhenLaterWindowsFinishFirst() throws Exception {
+        // The first day spans two pages and both early days answer slowly
+        stub.addEvents(FIRST_DAY, 150);
+        for (LocalDate day = FIRST_DAY.plusDays(1); !day.isAfter(LAST_DAY); day = day.plusDays(1)) {
+            stub.addEvents(day, 3);
+        }
+        stub.delay(FIRST_DAY, 300);
+        stub.delay(FIRST_DAY.plusDays(1), 150);
+
+        long count = backfill(new HistoryBackfill.Options().parallelism(4).requestsPerSecond(0));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            expected.add(FIRST_DAY + "/" + i);
+        }
+        for (LocalDate day = FIRST_DAY.plusDays(1); !day.isAfter(LAST_DAY); day = day.plusDays(1)) {
+            for (int i = 0; i < 3; i++) {
+                expected.add(day + "/" + i);
+            }
+        }
+        assertEquals(expected, delivered);
+        assertEquals(expected.size(), count);
+        assertEquals(2, requestsFor(FIRST_DAY).size());
+    }
+
+    @Test
+    void rerunResumesAfterTheCheckpoint() throws Exception {
+        for (LocalDate day = FIRST_DAY; !day.isAfter(LAST_DAY); day = day.plusDays(1)) {
+            stub.addEvents(day, 3);
+        }
+        Path checkpoint = tempDir.resolve("backfill.properties");
+        HistoryBackfill.Options options = new HistoryBackfill.Options()
+                .parallelism(1).requestsPerSecond(0).maxAttempts(1).checkpoint(checkpoint);
+
+        LocalDate failingDay = FIRST_DAY.plusDays(2);
+        stub.failPage(failingDay, 0, Integer.MAX_VALUE);
+        assertThrows(ExecutionException.class, () -> backfill(options));
+        assertEquals(6, delivered.size());
+        assertEquals(FIRST_DAY.plusDays(1).toString(), readCheckpoint(checkpoint).getProperty("completedThrough"));
+
+        stub.clearFailures();
+        stub.clearRequests();
+        delivered.clear();
+        assertEquals(9, backfill(options));
+        assertEquals(failingDay + "/0", delivered.get(0));
+        for (StubJmaServer.Request request : stub.getRequests()) {
+            assertFalse(request.from.isBefore(failingDay), "Refetched " + request.from);
+        }
+        assertEquals(LAST_DAY.toString(), readCheckpoint(checkpoint).getProperty("completedThrough"));
+    }
+
+    @Test
+    void failedPageIsRetried() throws Exception {
+        stub.addEvents(FIRST_DAY, 3);
+        stub.failPage(FIRST_DAY, 0, 1);
+
+        long count = backfill(FIRST_DAY, FIRST_DAY, new HistoryBackfill.Options().requestsPerSecond(0).maxAttempts(2));
+
+        assertEquals(3, count);
+        assertEquals(List.of(FIRST_DAY + "/0", FIRST_DAY + "/1", FIRST_DAY + "/2"), delivered);
+        assertEquals(2, requestsFor(FIRST_DAY).size());
+    }
+
+    @Test
+    void requestsAreSpacedToTheRateLimit() throws Exception {
+        LocalDate lastDay = FIRST_DAY.plusDays(7);
+        for (LocalDate day = FIRST_DAY; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            stub.addEvents(day, 1);
+        }
+
+        backfill(FIRST_DAY, lastDay, new HistoryBackfill.Options().parallelism(4).requestsPerSecond(10));
+
+        List<StubJmaServer.Request> requests = stub.getRequests();
+        assertEquals(8, requests.size());
+        List<Long> arrivals = new ArrayList<>();
+        for (StubJmaServer.Request request : requests) {
+            arrivals.add(request.arrivalNanos);
+        }
+        Collections.sort(arrivals);
+        // Slots are 100 ms apart; allow for threads waking up late after their slot
+        for (int i = 1; i < arrivals.size(); i++) {
+            long gapMillis = TimeUnit.NANOSECONDS.toMillis(arrivals.get(i) - arrivals.get(i - 1));
+            assertTrue(gapMillis >= 60, "Requests " + gapMillis + " ms apart");
+        }
+        long spanMillis = TimeUnit.NANOSECONDS.toMillis(arrivals.get(arrivals.size() - 1) - arrivals.get(0));
+        assertTrue(spanMillis >= 650, "Requests spread over only " + spanMillis + " ms");
+    }
+
+    private long backfill(HistoryBackfill.Options options) throws Exception {
+        return backfill(FIRST_DAY, LAST_DAY, options);
+    }
+
+    private long backfill(LocalDate from, LocalDate until, HistoryBackfill.Options options) throws Exception {
+        return service.backfillHistory(from, until, options, earthquake -> delivered.add(earthquake.getId()))
+                .get(30, TimeUnit.SECONDS);
+    }
+
+    private List<StubJmaServer.Request> requestsFor(LocalDate from) {
+        List<StubJmaServer.Request> requests = new ArrayList<>();
+        for (StubJmaServer.Request request : stub.getRequests()) {
+            if (from.equals(request.from)) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    private static Properties readCheckpoint(Path checkpoint) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+}
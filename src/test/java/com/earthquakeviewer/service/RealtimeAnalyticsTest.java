@@ -0,0 +1,82 @@
+package com.earthquakeviewer.service;
+
+import com.earthquakeviewer.analytics.LiveStatistics;
+import com.earthquakeviewer.analytics.Region;
+import com.earthquakeviewer.model.Earthquake;
+import com.earthquakeviewer.query.EarthquakeQuery;
+import com.earthquakeviewer.repository.MappedEarthquakeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Statistics watched through the service must follow the realtime feed, without any
+ * REST fetch or new query.
+ */
+class RealtimeAnalyticsTest {
+    @TempDir
+    Path storeDirectory;
+
+    private StubJmaServer api;
+    private StubRealtimeServer realtime;
+    private MappedEarthquakeRepository repository;
+    private EarthquakeService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = new StubJmaServer();
+        realtime = new StubRealtimeServer();
+        System.setProperty("earthquake.api.baseUrl", api.getBaseUrl());
+        System.setProperty("earthquake.realtime.url", realtime.getUrl());
+        repository = new MappedEarthquakeRepository(storeDirectory);
+        service = new EarthquakeService(repository);
+        service.start();
+        assertTrue(realtime.awaitConnection(10, TimeUnit.SECONDS), "Service did not connect");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        System.clearProperty("earthquake.api.baseUrl");
+        System.clearProperty("earthquake.realtime.url");
+        service.shutdown();
+        repository.close();
+        realtime.close();
+        api.close();
+    }
+
+    @Test
+    void watchedStatisticsFollowRealtimeEvents() throws Exception {
+        LiveStatistics live = service.getAnalytics().watch(new EarthquakeQuery(), Region.EVERYWHERE);
+        assertEquals(0, live.snapshot().getCount());
+
+        LocalDateTime now = LocalDateTime.now(Earthquake.JST).withNano(0);
+        realtime.send(StubJmaServer.event("live/0", now.minusMinutes(10), 4.2));
+        awaitCount(1, () -> live.snapshot().getCount());
+        assertEquals(4.2, live.snapshot().getMaxMagnitude(), 1e-9);
+
+        // A burst is indexed once the store writer has caught up
+        for (int i = 1; i <= 50; i++) {
+            realtime.send(StubJmaServer.event("live/" + i, now.minusMinutes(10).plusSeconds(i), 3.0));
+        }
+        awaitCount(51, () -> live.snapshot().getCount());
+        assertEquals(0, api.getRequests().size());
+        live.close();
+    }
+
+    private static void awaitCount(long expected, LongSupplier count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (count.getAsLong() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+}
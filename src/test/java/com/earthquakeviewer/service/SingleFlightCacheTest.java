@@ -0,0 +1,193 @@
+package com.earthquakeviewer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightCacheTest {
+
+    @Test
+    void concurrentRequestsShareOneLoad() throws Exception {
+        SingleFlightCache<String> cache = new SingleFlightCache<>(16, 1, TimeUnit.MINUTES);
+        CountingLoader loader = new CountingLoader();
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch ready = new CountDownLatch(threads);
+            List<Future<CompletableFuture<String>>> requests = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                requests.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    return cache.get("key", loader);
+                }));
+            }
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (Future<CompletableFuture<String>> request : requests) {
+                results.add(request.get(5, TimeUnit.SECONDS));
+            }
+
+            // Nothing has completed yet, so every request is waiting on the one load
+            assertEquals(1, loader.loads.get());
+            loader.complete("value");
+            for (CompletableFuture<String> result : results) {
+                assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, cache.getMissCount());
+            assertEquals(threads - 1, cache.getCoalescedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loadCompletingBetweenLookupsIsNotRepeated() throws Exception {
+        SingleFlightCache<String> cache = new SingleFlightCache<>(4096, 1, TimeUnit.MINUTES);
+        CountingLoader loader = new CountingLoader().completeImmediately();
+        int threads = 8;
+        int keys = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Loads complete synchronously, so racing requests for each key keep landing
+            // right as the winner moves its result from in flight to cached
+            CountDownLatch ready = new CountDownLatch(threads);
+            List<Future<?>> requests = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                requests.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int key = 0; key < keys; key++) {
+                        cache.get("key-" + key, loader).join();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> request : requests) {
+                request.get(30, TimeUnit.SECONDS);
+            }
+
+            assertEquals(keys, loader.loads.get());
+            assertEquals(keys, cache.getMissCount());
+            assertEquals((long) keys * threads, cache.getMissCount() + cache.getHitCount()
+                    + cache.getCoalescedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void resultIsServedUntilTheTtlExpires() throws Exception {
+        SingleFlightCache<String> cache = new SingleFlightCache<>(16, 200, TimeUnit.MILLISECONDS);
+        CountingLoader loader = new CountingLoader().completeImmediately();
+
+        assertEquals("value-1", cache.get("key", loader).get());
+        assertEquals("value-1", cache.get("key", loader).get());
+        assertEquals(1, loader.loads.get());
+        assertEquals(1, cache.getHitCount());
+
+        Thread.sleep(300);
+        assertEquals("value-2", cache.get("key", loader).get());
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    void failedLoadsAreNotCached() throws Exception {
+        SingleFlightCache<String> cache = new SingleFlightCache<>(16, 1, TimeUnit.MINUTES);
+        CountingLoader loader = new CountingLoader();
+
+        CompletableFuture<String> first = cache.get("key", loader);
+        CompletableFuture<String> joined = cache.get("key", loader);
+        loader.fail(new IOException("Unexpected response code: 500"));
+        // Callers that joined the load see the same failure
+        ExecutionException error = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, error.getCause());
+        assertThrows(ExecutionException.class, () -> joined.get(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> retry = cache.get("key", loader);
+        assertFalse(retry.isDone());
+        assertEquals(2, loader.loads.get());
+        loader.complete("value");
+        assertEquals("value", retry.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void loaderThrowingIsReportedAndNotCached() throws Exception {
+        SingleFlightCache<String> cache = new SingleFlightCache<>(16, 1, TimeUnit.MINUTES);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<CompletableFuture<String>> throwing = () -> {
+            loads.incrementAndGet();
+            throw new IllegalStateException("No connection");
+        };
+
+        assertThrows(ExecutionException.class, () -> cache.get("key", throwing).get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> cache.get("key", throwing).get(5, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void leastRecentlyUsedResultIsEvicted() throws Exception {
+        SingleFlightCache<String> cache = new SingleFlightCache<>(2, 1, TimeUnit.MINUTES);
+        CountingLoader loader = new CountingLoader().completeImmediately();
+
+        String a = cache.get("a", loader).get();
+        cache.get("b", loader).get();
+        // Touching a makes b the eldest
+        assertSame(a, cache.get("a", loader).get());
+        cache.get("c", loader).get();
+        assertEquals(3, loader.loads.get());
+
+        assertSame(a, cache.get("a", loader).get());
+        cache.get("b", loader).get();
+        assertEquals(4, loader.loads.get());
+    }
+
+    /**
+     * Counts the loads it starts. The latest load is completed by the test, or immediately
+     * with a value numbered after the load.
+     */
+    private static final class CountingLoader implements Supplier<CompletableFuture<String>> {
+        private final AtomicInteger loads = new AtomicInteger();
+        private volatile CompletableFuture<String> pending;
+        private boolean immediate;
+
+        CountingLoader completeImmediately() {
+            immediate = true;
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<String> get() {
+            int load = loads.incrementAndGet();
+            if (immediate) {
+                return CompletableFuture.completedFuture("value-" + load);
+            }
+            pending = new CompletableFuture<>();
+            return pending;
+        }
+
+        void complete(String value) {
+            pending.complete(value);
+        }
+
+        void fail(Throwable error) {
+            pending.completeExceptionally(error);
+        }
+    }
+}
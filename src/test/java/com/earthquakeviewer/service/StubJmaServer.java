@@ -0,0 +1,269 @@
+package com.earthquakeviewer.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the P2PQuake /jma/quake endpoint, serving pages of recorded
+ * events the way the API does: since_date and until_date select whole days in JST,
+ * order=1 lists oldest first, minMagnitude drops smaller events, limit and offset page
+ * through the result. Point a service
+ * at it with the earthquake.api.baseUrl property.
+ *
+ * <p>Every request is recorded with its arrival time. Chosen pages can be made to fail
+ * with a 500 or to respond late.</p>
+ */
+final class StubJmaServer implements AutoCloseable {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stub-jma-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final NavigableMap<LocalDate, List<Entry>> days = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+    private final Map<LocalDate, Long> delays = new ConcurrentHashMap<>();
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+    private volatile long delayMillis;
+
+    /**
+     * Start the server on a free port of the loopback interface.
+     */
+    StubJmaServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v2/jma/quake", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return The base URL to use for earthquake.api.baseUrl
+     */
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v2";
+    }
+
+    /**
+     * Record more events on a day, one minute apart from midnight, with ids "yyyy-MM-dd/n".
+     *
+     * @param day The day in JST
+     * @param count The number of events
+     */
+    void addEvents(LocalDate day, int count) {
+        addEvents(day, count, 3.5);
+    }
+
+    /**
+     * Record more events of a magnitude on a day, continuing the times and ids of
+     * {@link #addEvents(LocalDate, int)}.
+     *
+     * @param day The day in JST
+     * @param count The number of events
+     * @param magnitude The magnitude, or -1 for unknown as the API reports it
+     */
+    void addEvents(LocalDate day, int count, double magnitude) {
+        List<Entry> entries = days.computeIfAbsent(day, d -> Collections.synchronizedList(new ArrayList<>()));
+        synchronized (entries) {
+            int first = entries.size();
+            for (int i = first; i < first + count; i++) {
+                entries.add(new Entry(event(day + "/" + i, day.atStartOfDay().plusMinutes(i), magnitude), magnitude));
+            }
+        }
+    }
+
+    /**
+     * Answer the page of a day range starting at an offset with a 500, a number of times.
+     *
+     * @param from The since_date of the failing requests
+     * @param offset The offset of the failing requests
+     * @param times How many requests fail before the page is served again
+     */
+    void failPage(LocalDate from, int offset, int times) {
+        failures.put(from + "@" + offset, new AtomicInteger(times));
+    }
+
+    /**
+     * Stop failing pages.
+     */
+    void clearFailures() {
+        failures.clear();
+    }
+
+    /**
+     * Delay the responses to requests for a day range.
+     *
+     * @param from The since_date of the delayed requests
+     * @param millis The delay
+     */
+    void delay(LocalDate from, long millis) {
+        delays.put(from, millis);
+    }
+
+    /**
+     * Delay every response.
+     *
+     * @param millis The delay
+     */
+    void delayAll(long millis) {
+        delayMillis = millis;
+    }
+
+    /**
+     * @return The requests served so far, in arrival order
+     */
+    List<Request> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    /**
+     * Forget the requests served so far.
+     */
+    void clearRequests() {
+        requests.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long arrivalNanos = System.nanoTime();
+        Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+        LocalDate from = date(parameters.get("since_date"));
+        LocalDate until = date(parameters.get("until_date"));
+        int offset = Integer.parseInt(parameters.getOrDefault("offset", "0"));
+        int limit = Integer.parseInt(parameters.getOrDefault("limit", "10"));
+        double minMagnitude = Double.parseDouble(parameters.getOrDefault("minMagnitude", "-Infinity"));
+        requests.add(new Request(from, until, offset, arrivalNanos));
+
+        try {
+            long delay = delayMillis + (from != null ? delays.getOrDefault(from, 0L) : 0L);
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        AtomicInteger remainingFailures = failures.get(from + "@" + offset);
+        if (remainingFailures != null && remainingFailures.getAndDecrement() > 0) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+
+        List<String> selected = new ArrayList<>();
+        for (Map.Entry<LocalDate, List<Entry>> day : days.entrySet()) {
+            if ((from == null || !day.getKey().isBefore(from)) && (until == null || !day.getKey().isAfter(until))) {
+                synchronized (day.getValue()) {
+                    for (Entry entry : day.getValue()) {
+                        if (entry.magnitude >= minMagnitude) {
+                            selected.add(entry.json);
+                        }
+                    }
+                }
+            }
+        }
+        if (!"1".equals(parameters.get("order"))) {
+            Collections.reverse(selected);
+        }
+        List<String> page = selected.subList(Math.min(offset, selected.size()),
+                Math.min(offset + limit, selected.size()));
+
+        byte[] body = ("[" + String.join(",", page) + "]").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(pair.substring(0, separator),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static LocalDate date(String value) {
+        return value != null ? LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE) : null;
+    }
+
+    /**
+     * @param id The event id
+     * @param time The origin time in JST
+     * @param magnitude The magnitude, or -1 for unknown
+     * @return A code 551 earthquake report as the API and the realtime feed send it
+     */
+    static String event(String id, LocalDateTime time, double magnitude) {
+        String formatted = time.format(TIME_FORMAT);
+        return "{\"code\":551,\"id\":\"" + id + "\",\"time\":\"" + formatted + "\","
+                + "\"earthquake\":{\"time\":\"" + formatted + "\",\"maxScale\":20,\"domesticTsunami\":\"None\","
+                + "\"hypocenter\":{\"name\":\"福島県沖\",\"latitude\":37.3,\"longitude\":141.3,"
+                + "\"magnitude\":" + magnitude + ",\"depth\":20}},"
+                + "\"points\":[{\"addr\":\"いわき市\",\"pref\":\"福島県\",\"scale\":20}]}";
+    }
+
+    private static final class Entry {
+        private final String json;
+        private final double magnitude;
+
+        Entry(String json, double magnitude) {
+            this.json = json;
+            this.magnitude = magnitude;
+        }
+    }
+
+    /**
+     * A request the server received.
+     */
+    static final class Request {
+        final LocalDate from;
+        final LocalDate until;
+        final int offset;
+        final long arrivalNanos;
+
+        Request(LocalDate from, LocalDate until, int offset, long arrivalNanos) {
+            this.from = from;
+            this.until = until;
+            this.offset = offset;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
+}
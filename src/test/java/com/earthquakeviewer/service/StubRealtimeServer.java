@@ -0,0 +1,84 @@
+package com.earthquakeviewer.service;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local stand-in for the P2PQuake realtime WebSocket, sending whatever messages the
+ * test gives it to every connected client. Point a service at it with the
+ * earthquake.realtime.url property.
+ */
+final class StubRealtimeServer extends WebSocketServer {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch connected = new CountDownLatch(1);
+
+    /**
+     * Start the server on a free port of the loopback interface.
+     */
+    StubRealtimeServer() throws InterruptedException {
+        super(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        setReuseAddr(true);
+        start();
+        if (!started.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Stub realtime server did not start");
+        }
+    }
+
+    /**
+     * @return The URL to use for earthquake.realtime.url
+     */
+    String getUrl() {
+        return "ws://127.0.0.1:" + getPort();
+    }
+
+    /**
+     * Wait for the first client to connect.
+     *
+     * @return Whether a client connected in time
+     */
+    boolean awaitConnection(long timeout, TimeUnit unit) throws InterruptedException {
+        return connected.await(timeout, unit);
+    }
+
+    /**
+     * @param message The message to send to every client
+     */
+    void send(String message) {
+        broadcast(message);
+    }
+
+    /**
+     * Stop the server and disconnect every client.
+     */
+    void close() throws InterruptedException {
+        stop(1000);
+    }
+
+    @Override
+    public void onStart() {
+        started.countDown();
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        connected.countDown();
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+    }
+}
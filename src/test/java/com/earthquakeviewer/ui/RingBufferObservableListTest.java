@@ -0,0 +1,78 @@
+package com.earthquakeviewer.ui;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Elements are their own timestamps in epoch milliseconds.
+ */
+class RingBufferObservableListTest {
+    private static final long MAX_AGE_MILLIS = 300;
+
+    private final List<Long> spilled = new ArrayList<>();
+
+    @Test
+    void backfilledEventAtTheFrontIsEvictedOnceExpired() throws Exception {
+        RingBufferObservableList<Long> list = newList(10);
+        long now = System.currentTimeMillis();
+        Long live = now;
+        // A reconnect backfill merges an older event in front of the live one
+        Long backfilled = now - 250;
+        Long newer = now + 1;
+        list.addAll(0, List.of(live));
+        list.addAll(0, List.of(backfilled));
+        list.addAll(0, List.of(newer));
+        assertEquals(List.of(newer, backfilled, live), list);
+
+        List<Integer> removedAt = new ArrayList<>();
+        list.addListener((ListChangeListener<Long>) change -> {
+            while (change.next()) {
+                if (change.wasRemoved()) {
+                    removedAt.add(change.getFrom());
+                }
+            }
+        });
+        Thread.sleep(150);
+        list.evictExpired();
+
+        assertEquals(List.of(newer, live), list);
+        assertEquals(List.of(backfilled), spilled);
+        assertEquals(List.of(1), removedAt);
+    }
+
+    @Test
+    void expiredRunsAnywhereAreRemovedInOrder() {
+        RingBufferObservableList<Long> list = newList(8);
+        long now = System.currentTimeMillis();
+        long old = now - 10 * MAX_AGE_MILLIS;
+        // The second batch overflows the capacity, so the ring wraps around
+        list.addAll(0, List.of(now - 5, now - 6, now - 7, now - 8, now - 9, now - 10));
+        list.addAll(0, List.of(now, old, old - 1, now - 1, old - 2, now - 2));
+
+        assertEquals(List.of(now, now - 1, now - 2, now - 5, now - 6), list);
+        assertEquals(List.of(now - 7, now - 8, now - 9, now - 10, old, old - 1, old - 2), spilled);
+    }
+
+    @Test
+    void setAllEvictsExpiredAndSpillsOverflow() {
+        RingBufferObservableList<Long> list = newList(2);
+        long now = System.currentTimeMillis();
+        long old = now - 10 * MAX_AGE_MILLIS;
+
+        list.setAll(List.of(now, old, now - 1, now - 2));
+
+        assertEquals(List.of(now, now - 1), list);
+        assertEquals(List.of(old, now - 2), spilled);
+    }
+
+    private RingBufferObservableList<Long> newList(int capacity) {
+        RingBufferObservableList<Long> list = new RingBufferObservableList<>(capacity, MAX_AGE_MILLIS, Long::longValue);
+        list.setSpillHandler(spilled::addAll);
+        return list;
+    }
+}